@@ -1,46 +1,121 @@
 package app;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
 import app.handlers.AuthHandler;
 import app.handlers.ReporteHandler;
+import app.handlers.ReservaHandler;
 import app.handlers.StockHandler;
+import app.handlers.TareasHandler;
 import app.handlers.UsuarioHandler;
 import app.ui.ConsoleUI;
 import app.ui.MenuPrincipal;
+import domain.Movimiento;
 import domain.Usuario;
+import infra.alertas.GestorAlertas;
+import infra.eventos.BusEventos;
+import infra.jfr.PerfiladorContinuo;
+import infra.metricas.Metricas;
+import infra.planificador.Planificador;
+import infra.traza.Trazador;
 import exceptions.CredencialesInvalidasException;
 import exceptions.EntidadNoEncontradaException;
+import exceptions.InsumoNoDisponibleException;
 import exceptions.StockInsuficienteException;
+import repo.DepositoRepository;
 import repo.InsumoRepository;
 import repo.MovimientoRepository;
 import repo.ServicioRepository;
 import repo.UsuarioRepository;
+import repo.instrumentado.DepositoInstrumentado;
+import repo.instrumentado.EscrowInstrumentado;
+import repo.instrumentado.InsumoInstrumentado;
+import repo.instrumentado.LoteInstrumentado;
+import repo.instrumentado.MovimientoInstrumentado;
+import repo.instrumentado.ReservaInstrumentado;
+import repo.instrumentado.SaldoInstrumentado;
+import repo.instrumentado.ServicioInstrumentado;
+import repo.instrumentado.UsuarioInstrumentado;
+import repo.instrumentado.ValuacionInstrumentado;
+import repo.jdbc.DepositoJDBC;
+import repo.jdbc.EscrowJDBC;
+import repo.jdbc.LoteJDBC;
 import repo.jdbc.InsumoJDBC;
+import repo.jdbc.MantenimientoParticiones;
 import repo.jdbc.MovimientoJDBC;
+import repo.jdbc.ReservaJDBC;
+import repo.jdbc.SaldoJDBC;
 import repo.jdbc.ServicioJDBC;
 import repo.jdbc.UsuarioJDBC;
+import repo.jdbc.ValuacionJDBC;
+import repo.segmentos.CompactadorSegmentos;
+import repo.segmentos.MovimientoSegmentado;
+import repo.segmentos.SaldoSegmentado;
+import usecase.AlertasStock;
 import usecase.AutenticacionService;
+import usecase.ConsumoEnVivo;
+import usecase.DetectorAnomalias;
 import usecase.GestionUsuariosService;
+import usecase.ImportacionCatalogoService;
+import usecase.InventarioService;
+import usecase.PronosticoService;
 import usecase.ReportesService;
+import usecase.ReportesServiceInstrumentado;
+import usecase.ReservaService;
+import usecase.StockReservado;
 import usecase.StockService;
+import usecase.StockServiceInstrumentado;
 
 /**
  * Clase principal de la aplicación Clínica Horizonte - Sistema de Gestión de Stock
  */
 public class MainDemo {
+  // Días de historial con los que se precarga el pronóstico de consumo al arrancar
+  private static final int DIAS_CALENTAMIENTO_PRONOSTICO = 60;
+  // Días de movimientos que se dejan en la caché de reportes antes del primer turno
+  private static final int DIAS_PRECARGA_REPORTES = 30;
+
   // Handlers de la aplicación
   private static AuthHandler authHandler;
   private static UsuarioHandler usuarioHandler;
   private static StockHandler stockHandler;
   private static ReporteHandler reporteHandler;
+  private static ReservaHandler reservaHandler;
+  private static TareasHandler tareasHandler;
+  // Servicios con recursos propios que deben liberarse al salir
+  private static AutenticacionService authService;
+  private static BusEventos eventos;
+  private static ReservaService reservaService;
+  private static Planificador planificador;
 
   public static void main(String[] args) {
     try {
+      // Perfilado continuo con JFR (-Dclinica.jfr.continuo=true)
+      PerfiladorContinuo.iniciarSiCorresponde();
       inicializarServicios();
       ejecutarAplicacion();
     } catch (Exception e) {
       System.err.println("Error fatal: " + e.getMessage());
       e.printStackTrace();
     } finally {
+      if (planificador != null) {
+        planificador.close();
+      }
+      if (authService != null) {
+        authService.cerrar();
+      }
+      if (reservaService != null) {
+        reservaService.close();
+      }
+      if (eventos != null) {
+        eventos.detener();
+      }
+      GestorAlertas.detener();
+      Metricas.detenerVolcadoPeriodico();
+      Trazador.detener();
+      PerfiladorContinuo.detener();
       ConsoleUI.cerrar();
     }
   }
@@ -51,25 +126,95 @@ public class MainDemo {
    */
   private static void inicializarServicios() {
     try {
-      // Inicializar repositorios JDBC (conexión a MySQL)
-      UsuarioRepository usuariosRepo = new UsuarioJDBC();
-      ServicioRepository serviciosRepo = new ServicioJDBC();
-      InsumoRepository insumosRepo = new InsumoJDBC();
+      // Inicializar repositorios JDBC (conexión a MySQL), instrumentados con métricas de latencia
+      UsuarioRepository usuariosRepo = new UsuarioInstrumentado(new UsuarioJDBC());
+      ServicioRepository serviciosRepo = new ServicioInstrumentado(new ServicioJDBC());
+      InsumoRepository insumosRepo = new InsumoInstrumentado(new InsumoJDBC());
+      DepositoRepository depositosRepo = new DepositoInstrumentado(new DepositoJDBC());
       
       // MovimientoJDBC necesita otros repositorios para cargar relaciones
-      MovimientoRepository movRepo = new MovimientoJDBC(insumosRepo, usuariosRepo, serviciosRepo);
+      MovimientoRepository movBase = new MovimientoJDBC(insumosRepo, usuariosRepo, serviciosRepo);
+      // Los meses fuera del horizonte de retención se leen de segmentos comprimidos
+      MovimientoSegmentado movSegmentado =
+          new MovimientoSegmentado(movBase, insumosRepo, usuariosRepo, serviciosRepo);
+      MovimientoRepository movRepo = new MovimientoInstrumentado(movSegmentado);
+
+      // Particiones mensuales de movimientos: crear los meses próximos y archivar los viejos
+      try {
+        MantenimientoParticiones.ejecutar();
+      } catch (RuntimeException e) {
+        ConsoleUI.mostrarError("No se pudo mantener las particiones de movimientos: " + e.getMessage());
+      }
 
       // Inicializar servicios de la capa de casos de uso
-      AutenticacionService authService = new AutenticacionService(usuariosRepo);
+      authService = new AutenticacionService(usuariosRepo);
       GestionUsuariosService userService = new GestionUsuariosService(usuariosRepo);
-      StockService stockService = new StockService(insumosRepo, movRepo, serviciosRepo);
-      ReportesService reportService = new ReportesService(movRepo);
+      PronosticoService pronostico = new PronosticoService(insumosRepo);
+      List<Movimiento> historial = movRepo.findByPeriodoYServicio(
+          LocalDate.now().minusDays(DIAS_CALENTAMIENTO_PRONOSTICO), LocalDate.now(), null);
+      pronostico.calentar(historial);
+      DetectorAnomalias anomalias = new DetectorAnomalias();
+      anomalias.calentar(historial);
+
+      // Bus de eventos de movimientos: cada suscriptor reacciona en su propio hilo
+      eventos = new BusEventos();
+      eventos.suscribir("pronostico", pronostico);
+      eventos.suscribir("alertas", new AlertasStock());
+      eventos.suscribir("anomalias", anomalias);
+      ConsumoEnVivo consumoEnVivo = new ConsumoEnVivo();
+      eventos.suscribir("consumo", consumoEnVivo);
+      // Lo reservado no se puede retirar: StockService lo respeta en cada egreso
+      StockReservado reservado = new StockReservado();
+      StockService stockService = new StockServiceInstrumentado(insumosRepo, movRepo, serviciosRepo,
+          new StockService.Opciones()
+              .depositos(depositosRepo)
+              .lotes(new LoteInstrumentado(new LoteJDBC()))
+              .cuotas(new EscrowInstrumentado(new EscrowJDBC()))
+              .saldos(new SaldoInstrumentado(new SaldoSegmentado(new SaldoJDBC(), movSegmentado)))
+              .costos(new ValuacionInstrumentado(new ValuacionJDBC()))
+              .reservado(reservado)
+              .eventos(eventos));
+      reservaService = new ReservaService(stockService, insumosRepo, new ReservaInstrumentado(new ReservaJDBC()),
+          reservado);
+      ReportesService reportService = new ReportesServiceInstrumentado(movRepo, stockService, consumoEnVivo);
+
+      // Mantenimiento pesado en horario de poca actividad, fuera del camino de las operaciones
+      planificador = new Planificador();
+      planificador.segunCron("particiones", System.getProperty("clinica.tareas.particiones", "0 2 * * *"),
+          MantenimientoParticiones::ejecutar);
+      // Meses fuera del horizonte de retención: de la base a segmentos comprimidos
+      CompactadorSegmentos compactador = new CompactadorSegmentos(movSegmentado, movBase);
+      planificador.segunCron("compactacion", System.getProperty("clinica.tareas.compactacion", "30 3 * * *"),
+          compactador::compactar);
+      // Saldo de cierre de ayer: punto de partida de las consultas de stock a una fecha
+      planificador.segunCron("saldos", System.getProperty("clinica.tareas.saldos", "15 0 * * *"),
+          () -> stockService.cerrarSaldos(LocalDate.now().minusDays(1)));
+      // Los vencidos se bloquean apenas empieza el día; al arrancar se recupera la pasada perdida
+      planificador.segunCron("vencimientos", System.getProperty("clinica.tareas.vencimientos", "1 0 * * *"),
+          stockService::bloquearVencidos);
+      planificador.ejecutarAhora("vencimientos");
+      // Los movimientos solo anotan su valuación: se aplica cada pocos segundos fuera de los egresos
+      planificador.cadaIntervalo("valuacion", Duration.ofSeconds(Long.getLong("clinica.tareas.valuacionSeg", 30)),
+          stockService::aplicarValuaciones);
+      planificador.segunCron("precargaReportes", System.getProperty("clinica.tareas.precargaReportes", "0 6 * * *"),
+          () -> reportService.movimientosPorPeriodoYServicio(
+              LocalDate.now().minusDays(DIAS_PRECARGA_REPORTES), LocalDate.now(), null));
 
       // Inicializar handlers
       authHandler = new AuthHandler(authService);
       usuarioHandler = new UsuarioHandler(userService);
-      stockHandler = new StockHandler(stockService);
-      reporteHandler = new ReporteHandler(reportService, stockService);
+      stockHandler = new StockHandler(stockService, new ImportacionCatalogoService(insumosRepo),
+          new InventarioService(stockService, insumosRepo));
+      reporteHandler = new ReporteHandler(reportService, stockService, pronostico, anomalias);
+      reservaHandler = new ReservaHandler(reservaService, stockService);
+      tareasHandler = new TareasHandler(planificador);
+
+      // Métricas publicadas por JMX y volcadas periódicamente en texto
+      Metricas.iniciarVolcadoPeriodico();
+      // Trazas muestreadas (-Dclinica.traza.muestreo)
+      Trazador.iniciarEscritor();
+      // Alertas de stock entregadas en segundo plano (consola, alertas.log, UDP)
+      GestorAlertas.iniciar();
       
       ConsoleUI.mostrarInfo("Conexión a base de datos establecida correctamente");
     } catch (Exception e) {
@@ -134,6 +279,45 @@ public class MainDemo {
             usuarioLogueado = null;
             ConsoleUI.mostrarInfo("Sesión cerrada.");
             break;
+          case 11:
+            reporteHandler.sugerenciasReposicion(usuarioLogueado);
+            break;
+          case 12:
+            stockHandler.importarCatalogo(usuarioLogueado);
+            break;
+          case 13:
+            stockHandler.transferirEntreDepositos(usuarioLogueado);
+            break;
+          case 14:
+            stockHandler.stockPorDeposito();
+            break;
+          case 15:
+            reservaHandler.reservarStock(usuarioLogueado);
+            break;
+          case 16:
+            reservaHandler.gestionarReservas(usuarioLogueado);
+            break;
+          case 17:
+            reporteHandler.stockAlDia(usuarioLogueado);
+            break;
+          case 18:
+            reporteHandler.kardex(usuarioLogueado);
+            break;
+          case 19:
+            reporteHandler.rankingConsumo(usuarioLogueado);
+            break;
+          case 20:
+            reporteHandler.anomaliasConsumo(usuarioLogueado);
+            break;
+          case 21:
+            tareasHandler.gestionarTareas(usuarioLogueado);
+            break;
+          case 22:
+            stockHandler.inventarioFisico(usuarioLogueado);
+            break;
+          case 23:
+            reporteHandler.valuacionStock(usuarioLogueado);
+            break;
           case 0:
             salir = true;
             ConsoleUI.mostrarInfo("Fin de la aplicación.");
@@ -142,7 +326,8 @@ public class MainDemo {
             ConsoleUI.mostrarError("Opción inválida. Intente nuevamente.");
         }
 
-      } catch (CredencialesInvalidasException | StockInsuficienteException | EntidadNoEncontradaException e) {
+      } catch (CredencialesInvalidasException | StockInsuficienteException | EntidadNoEncontradaException
+          | InsumoNoDisponibleException e) {
         // Manejo de excepciones de negocio
         ConsoleUI.mostrarError(e.getMessage());
       } catch (IllegalArgumentException e) {
@@ -3,6 +3,7 @@ package app.handlers;
 import app.ui.ConsoleUI;
 import app.ui.MenuPrincipal;
 import domain.Usuario;
+import exceptions.AutenticacionNoDisponibleException;
 import exceptions.CredencialesInvalidasException;
 import usecase.AutenticacionService;
 
@@ -31,7 +32,7 @@ public class AuthHandler {
       Usuario usuario = authService.login(legajo, password);
       ConsoleUI.mostrarFormato("Bienvenido %s [%s]%n", usuario.getNombreCompleto(), usuario.getRol());
       return usuario;
-    } catch (CredencialesInvalidasException e) {
+    } catch (CredencialesInvalidasException | AutenticacionNoDisponibleException e) {
       ConsoleUI.mostrarError(e.getMessage());
       return null;
     }
@@ -1,13 +1,31 @@
 package app.handlers;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.List;
 
 import app.ui.ConsoleUI;
 import app.ui.MenuPrincipal;
+import domain.AnomaliaConsumo;
+import domain.CostoConsumo;
 import domain.Movimiento;
+import domain.Servicio;
+import domain.SugerenciaReposicion;
+import domain.TotalConsumo;
 import domain.Usuario;
+import domain.ValuacionInsumo;
+import domain.enums.AgrupacionConsumo;
+import domain.enums.AmbitoAnomalia;
 import domain.enums.Rol;
+import usecase.DetectorAnomalias;
+import usecase.PronosticoService;
 import usecase.ReportesService;
 import usecase.StockService;
 
@@ -17,10 +35,15 @@ import usecase.StockService;
 public class ReporteHandler {
   private final ReportesService reportService;
   private final StockService stockService;
+  private final PronosticoService pronostico;
+  private final DetectorAnomalias anomalias;
 
-  public ReporteHandler(ReportesService reportService, StockService stockService) {
+  public ReporteHandler(ReportesService reportService, StockService stockService, PronosticoService pronostico,
+      DetectorAnomalias anomalias) {
     this.reportService = reportService;
     this.stockService = stockService;
+    this.pronostico = pronostico;
+    this.anomalias = anomalias;
   }
 
   /**
@@ -90,5 +113,234 @@ public class ReporteHandler {
       }
     }
   }
-}
 
+  /**
+   * Muestra el stock total de un insumo al cierre de una fecha pasada (solo ADMIN)
+   */
+  public void stockAlDia(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden generar reportes.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Stock a una Fecha --");
+
+    String codigo = ConsoleUI.leerString(MenuPrincipal.PROMPT_CODIGO).toUpperCase();
+    LocalDate fecha;
+    try {
+      fecha = LocalDate.parse(ConsoleUI.leerString("Fecha (AAAA-MM-DD): ").trim());
+    } catch (DateTimeParseException e) {
+      ConsoleUI.mostrarError("Fecha inválida. Use el formato AAAA-MM-DD.");
+      return;
+    }
+    ConsoleUI.mostrarFormato("Stock de %s al cierre del %s: %d%n", codigo, fecha, stockService.stockAl(codigo, fecha));
+  }
+
+  /**
+   * Muestra el kardex de un insumo en pantalla o lo exporta a un CSV (solo ADMIN)
+   */
+  public void kardex(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden generar reportes.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Kardex de Insumo --");
+
+    String codigo = ConsoleUI.leerString(MenuPrincipal.PROMPT_CODIGO).toUpperCase();
+    int dias = ConsoleUI.leerEntero(MenuPrincipal.PROMPT_DIAS);
+    String ruta = ConsoleUI.leerString("Archivo CSV (Enter para ver en pantalla): ").trim();
+    LocalDate hasta = LocalDate.now();
+    LocalDate desde = hasta.minusDays(dias);
+
+    if (!ruta.isEmpty()) {
+      try (BufferedWriter out = Files.newBufferedWriter(Paths.get(ruta), StandardCharsets.UTF_8)) {
+        int saldo = reportService.exportarKardexCsv(codigo, desde, hasta, out);
+        ConsoleUI.mostrarExito("Kardex exportado a " + ruta + ". Saldo final: " + saldo);
+      } catch (IOException e) {
+        ConsoleUI.mostrarError("No se pudo escribir el archivo: " + e.getMessage());
+      }
+      return;
+    }
+
+    ConsoleUI.mostrarFormato("\nKardex de %s desde %s hasta %s%n", codigo, desde, hasta);
+    ConsoleUI.mostrarFormato("Saldo inicial: %d%n", stockService.stockAl(codigo, desde.minusDays(1)));
+    ConsoleUI.mostrarInfo("-------------------------------------------------------");
+    int saldo = reportService.kardex(codigo, desde, hasta, l -> ConsoleUI.mostrarFormato(
+        "%s | %-13s | Entrada: %5d | Salida: %5d | Saldo: %6d%n",
+        l.getMovimiento().getFecha().toLocalDate().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")),
+        l.getMovimiento().getTipo(),
+        l.getEntrada(),
+        l.getSalida(),
+        l.getSaldo()));
+    ConsoleUI.mostrarFormato("Saldo final: %d%n", saldo);
+  }
+
+  /**
+   * Muestra los que más consumieron por insumo, servicio o usuario: exacto para un período o
+   * aproximado en vivo desde el arranque (solo ADMIN)
+   */
+  public void rankingConsumo(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden generar reportes.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Ranking de Consumo --");
+    ConsoleUI.mostrarInfo("Agrupar por: 1 - Insumo, 2 - Servicio, 3 - Usuario");
+    int opcion = ConsoleUI.leerEntero("Agrupación (número): ");
+    if (opcion < 1 || opcion > 3) {
+      ConsoleUI.mostrarError("Opción inválida. Debe estar entre 1 y 3");
+      return;
+    }
+    AgrupacionConsumo por = AgrupacionConsumo.values()[opcion - 1];
+    int n = ConsoleUI.leerEntero("Posiciones (ej. 20): ");
+    boolean enVivo = ConsoleUI.leerEntero("Modo: 1 - Período (exacto), 2 - En vivo desde el arranque: ") == 2;
+
+    var serviciosList = new ArrayList<>(stockService.obtenerTodosLosServicios());
+    List<TotalConsumo> ranking;
+    if (enVivo) {
+      ranking = reportService.topConsumoEnVivo(por, n);
+    } else {
+      int dias = ConsoleUI.leerEntero(MenuPrincipal.PROMPT_DIAS);
+      ConsoleUI.mostrarInfo("\nFiltrar por servicio:");
+      ConsoleUI.mostrarInfo("  0 - Todos");
+      for (int i = 0; i < serviciosList.size(); i++) {
+        ConsoleUI.mostrarFormato("  %d - %s%n", i + 1, serviciosList.get(i).getNombre());
+      }
+      int opcionVisual = ConsoleUI.leerEntero("Servicio (número): ");
+      if (opcionVisual < 0 || opcionVisual > serviciosList.size()) {
+        ConsoleUI.mostrarError("Opción inválida. Debe estar entre 0 y " + serviciosList.size());
+        return;
+      }
+      Integer srvFiltro = opcionVisual == 0 ? null : serviciosList.get(opcionVisual - 1).getId();
+      LocalDate hoy = LocalDate.now();
+      ranking = reportService.topConsumo(por, hoy.minusDays(dias), hoy, srvFiltro, n);
+    }
+
+    if (ranking.isEmpty()) {
+      ConsoleUI.mostrarInfo("Sin egresos para el ranking pedido.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("-------------------------------------------------------");
+    int posicion = 1;
+    for (TotalConsumo t : ranking) {
+      String nombre = t.getClave();
+      if (por == AgrupacionConsumo.SERVICIO) {
+        nombre = serviciosList.stream()
+            .filter(srv -> String.valueOf(srv.getId()).equals(t.getClave()))
+            .map(Servicio::getNombre)
+            .findFirst()
+            .orElse(t.getClave());
+      } else if (por == AgrupacionConsumo.USUARIO) {
+        nombre = "Legajo " + t.getClave();
+      }
+      ConsoleUI.mostrarFormato("#%d | %s | %s%d%n", posicion++, nombre, t.isAproximado() ? "~" : "", t.getCantidad());
+    }
+  }
+
+  /**
+   * Muestra los insumos que alcanzaron su punto de reposición según el consumo pronosticado (solo ADMIN)
+   */
+  public void sugerenciasReposicion(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden generar reportes.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Sugerencias de Reposición --");
+
+    var lista = pronostico.sugerenciasDeReposicion();
+    if (lista.isEmpty()) {
+      ConsoleUI.mostrarInfo("Ningún insumo alcanzó su punto de reposición.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("-------------------------------------------------------");
+    for (SugerenciaReposicion s : lista) {
+      String cobertura = Double.isInfinite(s.getDiasDeCobertura())
+          ? "sin consumo"
+          : String.format("%.1f días", s.getDiasDeCobertura());
+      ConsoleUI.mostrarFormato("%s | Stock: %d | Consumo/día: %.2f (±%.2f) | Cobertura: %s | Punto de reposición: %d | Pedir: %d%n",
+          s.getCodigo(),
+          s.getStock(),
+          s.getConsumoDiario(),
+          s.getDesvioDiario(),
+          cobertura,
+          s.getPuntoDeReposicion(),
+          s.getCantidadSugerida());
+    }
+  }
+
+  /**
+   * Muestra los egresos inusuales detectados en los últimos días (solo ADMIN)
+   */
+  public void anomaliasConsumo(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden generar reportes.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Anomalías de Consumo --");
+    int dias = ConsoleUI.leerEntero(MenuPrincipal.PROMPT_DIAS);
+
+    List<AnomaliaConsumo> lista = anomalias.anomalias(LocalDate.now().minusDays(dias).atStartOfDay(), null);
+    if (lista.isEmpty()) {
+      ConsoleUI.mostrarInfo("No se detectaron egresos inusuales en el período.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("-------------------------------------------------------");
+    for (AnomaliaConsumo a : lista) {
+      if (a.getAmbito() == AmbitoAnomalia.INSUMO_SERVICIO) {
+        ConsoleUI.mostrarFormato("%s | %s | Servicio %d | Legajo %d | Cantidad: %.0f (habitual %.1f ± %.1f, z=%.1f)%n",
+            a.getFecha(), a.getCodigo(), a.getServicioId(), a.getLegajo(), a.getValor(), a.getMedia(),
+            a.getDesvio(), a.getPuntaje());
+      } else {
+        ConsoleUI.mostrarFormato("%s | Legajo %d | Egresos en el día: %.0f (habitual %.1f ± %.1f, z=%.1f)%n",
+            a.getFecha(), a.getLegajo(), a.getValor(), a.getMedia(), a.getDesvio(), a.getPuntaje());
+      }
+    }
+  }
+
+  /**
+   * Muestra el valor del stock por FIFO y por costo promedio y el costo de lo consumido por servicio (solo ADMIN)
+   */
+  public void valuacionStock(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden generar reportes.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Valuación de Stock --");
+    int dias = ConsoleUI.leerEntero(MenuPrincipal.PROMPT_DIAS);
+
+    BigDecimal totalFifo = BigDecimal.ZERO;
+    BigDecimal totalPromedio = BigDecimal.ZERO;
+    ConsoleUI.mostrarInfo("-------------------------------------------------------");
+    for (ValuacionInsumo v : stockService.valuacionStock()) {
+      if (v.getCantidad() == 0) {
+        continue;
+      }
+      ConsoleUI.mostrarFormato("%s | Cantidad: %d | Costo promedio: %.2f | Valor FIFO: %.2f | Valor promedio: %.2f%n",
+          v.getCodigo(), v.getCantidad(), v.getCostoPromedio(), v.getValorFifo(), v.getValorPromedio());
+      totalFifo = totalFifo.add(v.getValorFifo());
+      totalPromedio = totalPromedio.add(v.getValorPromedio());
+    }
+    ConsoleUI.mostrarFormato("Valor del inventario: FIFO %.2f | Promedio %.2f%n", totalFifo, totalPromedio);
+
+    LocalDate hasta = LocalDate.now();
+    LocalDate desde = hasta.minusDays(dias);
+    List<CostoConsumo> consumo = stockService.costoConsumo(desde, hasta, null);
+    ConsoleUI.mostrarFormato("%nCosto de lo consumido desde %s hasta %s%n", desde, hasta);
+    ConsoleUI.mostrarInfo("-------------------------------------------------------");
+    if (consumo.isEmpty()) {
+      ConsoleUI.mostrarInfo("Sin consumos valuados en el período.");
+      return;
+    }
+    var serviciosList = stockService.obtenerTodosLosServicios();
+    for (CostoConsumo c : consumo) {
+      String nombre = c.getServicioId() == CostoConsumo.FALTANTES_INVENTARIO
+          ? "Faltantes de inventario"
+          : serviciosList.stream()
+              .filter(srv -> srv.getId() == c.getServicioId())
+              .map(Servicio::getNombre)
+              .findFirst()
+              .orElse("Servicio " + c.getServicioId());
+      ConsoleUI.mostrarFormato("%s | Cantidad: %d | Costo FIFO: %.2f | Costo promedio: %.2f%n",
+          nombre, c.getCantidad(), c.getCostoFifo(), c.getCostoPromedio());
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package app.handlers;
+
+import java.util.List;
+
+import app.ui.ConsoleUI;
+import app.ui.MenuPrincipal;
+import domain.Deposito;
+import domain.Reserva;
+import domain.Servicio;
+import domain.Usuario;
+import usecase.ReservaService;
+import usecase.StockService;
+
+/**
+ * Handler para las reservas de stock (por ejemplo, para cirugías programadas)
+ */
+public class ReservaHandler {
+  private final ReservaService reservaService;
+  private final StockService stockService;
+
+  public ReservaHandler(ReservaService reservaService, StockService stockService) {
+    this.reservaService = reservaService;
+    this.stockService = stockService;
+  }
+
+  /**
+   * Reserva stock de un insumo para un servicio
+   */
+  public void reservarStock(Usuario actor) {
+    ConsoleUI.mostrarInfo("\n-- Reserva de Stock --");
+
+    String codigo = ConsoleUI.leerString(MenuPrincipal.PROMPT_CODIGO).toUpperCase();
+    int cantidad = ConsoleUI.leerEntero("Cantidad a reservar: ");
+
+    List<Servicio> servicios = stockService.obtenerTodosLosServicios();
+    ConsoleUI.mostrarInfo("\nServicios disponibles:");
+    for (int i = 0; i < servicios.size(); i++) {
+      ConsoleUI.mostrarFormato("  %d - %s%n", i + 1, servicios.get(i).getNombre());
+    }
+    int opcion = ConsoleUI.leerEntero("Servicio (número): ");
+    if (opcion < 1 || opcion > servicios.size()) {
+      ConsoleUI.mostrarError("Opción inválida. Debe estar entre 1 y " + servicios.size());
+      return;
+    }
+    int servicioId = servicios.get(opcion - 1).getId();
+
+    List<Deposito> depositos = stockService.obtenerDepositos();
+    int depositoId = depositos.get(0).getId();
+    if (depositos.size() > 1) {
+      ConsoleUI.mostrarInfo("\nDepósitos:");
+      for (int i = 0; i < depositos.size(); i++) {
+        Deposito d = depositos.get(i);
+        ConsoleUI.mostrarFormato("  %d - %s (disponible: %d)%n", i + 1, d.getNombre(),
+            reservaService.disponible(codigo, d.getId()));
+      }
+      opcion = ConsoleUI.leerEntero("Depósito (número): ");
+      if (opcion < 1 || opcion > depositos.size()) {
+        ConsoleUI.mostrarError("Opción inválida. Debe estar entre 1 y " + depositos.size());
+        return;
+      }
+      depositoId = depositos.get(opcion - 1).getId();
+    }
+
+    Reserva r = reservaService.reservar(codigo, cantidad, servicioId, depositoId, actor);
+    ConsoleUI.mostrarExito("Reserva registrada: " + r);
+  }
+
+  /**
+   * Lista las reservas activas y permite confirmar o liberar una
+   */
+  public void gestionarReservas(Usuario actor) {
+    ConsoleUI.mostrarInfo("\n-- Reservas Activas --");
+
+    List<Reserva> activas = reservaService.reservasActivas();
+    if (activas.isEmpty()) {
+      ConsoleUI.mostrarInfo("No hay reservas activas.");
+      return;
+    }
+    activas.forEach(r -> ConsoleUI.mostrarInfo("  " + r));
+
+    long id = ConsoleUI.leerEntero("Número de reserva (0 para volver): ");
+    if (id == 0) {
+      return;
+    }
+    String accion = ConsoleUI.leerString("Confirmar (C) o liberar (L): ").trim().toUpperCase();
+    if (accion.equals("C")) {
+      reservaService.confirmar(id, actor);
+      ConsoleUI.mostrarExito("Reserva confirmada: se registró el egreso.");
+    } else if (accion.equals("L")) {
+      reservaService.liberar(id);
+      ConsoleUI.mostrarExito("Reserva liberada.");
+    } else {
+      ConsoleUI.mostrarError("Opción inválida.");
+    }
+  }
+}
@@ -1,12 +1,33 @@
 package app.handlers;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 import app.ui.ConsoleUI;
 import app.ui.MenuPrincipal;
+import domain.ConsumoLote;
+import domain.Deposito;
+import domain.DiferenciaInventario;
 import domain.Insumo;
+import domain.Lote;
+import domain.Movimiento;
+import domain.ResultadoConteo;
+import domain.ResultadoImportacion;
 import domain.Usuario;
+import domain.enums.Rol;
+import usecase.ImportacionCatalogoService;
+import usecase.InventarioService;
 import usecase.StockService;
 
 /**
@@ -14,9 +35,14 @@ import usecase.StockService;
  */
 public class StockHandler {
   private final StockService stockService;
+  private final ImportacionCatalogoService importacionService;
+  private final InventarioService inventarioService;
 
-  public StockHandler(StockService stockService) {
+  public StockHandler(StockService stockService, ImportacionCatalogoService importacionService,
+      InventarioService inventarioService) {
     this.stockService = stockService;
+    this.importacionService = importacionService;
+    this.inventarioService = inventarioService;
   }
 
   /**
@@ -27,8 +53,33 @@ public class StockHandler {
     
     String codigo = ConsoleUI.leerString(MenuPrincipal.PROMPT_CODIGO).toUpperCase();
     int cantidad = ConsoleUI.leerEntero("Cantidad a ingresar: ");
+    Integer depositoId = elegirDeposito("Depósito (número): ");
+    if (depositoId == null) {
+      return;
+    }
+    String costo = ConsoleUI.leerString("Costo unitario (Enter si no se informa): ").trim();
+    BigDecimal costoUnitario = null;
+    if (!costo.isEmpty()) {
+      try {
+        costoUnitario = new BigDecimal(costo.replace(',', '.'));
+      } catch (NumberFormatException e) {
+        ConsoleUI.mostrarError("Costo inválido.");
+        return;
+      }
+    }
+    String numeroLote = ConsoleUI.leerString("Número de lote (Enter si no tiene): ").trim();
+    LocalDate vencimiento = null;
+    if (!numeroLote.isEmpty()) {
+      try {
+        vencimiento = LocalDate.parse(ConsoleUI.leerString("Vencimiento del lote (AAAA-MM-DD): ").trim());
+      } catch (DateTimeParseException e) {
+        ConsoleUI.mostrarError("Fecha inválida.");
+        return;
+      }
+    }
     
-    stockService.registrarIngreso(codigo, cantidad, actor);
+    stockService.registrarIngreso(codigo, cantidad, depositoId, numeroLote.isEmpty() ? null : numeroLote,
+        vencimiento, costoUnitario, actor, null);
     ConsoleUI.mostrarExito("Ingreso registrado exitosamente.");
   }
 
@@ -66,8 +117,64 @@ public class StockHandler {
     // Obtener el ID real del servicio seleccionado
     int servicioIdReal = serviciosList.get(opcionVisual - 1).getId();
     
-    stockService.registrarEgreso(codigo, cantidad, servicioIdReal, actor);
+    Integer depositoId = elegirDeposito("Depósito del que se retira (número): ");
+    if (depositoId == null) {
+      return;
+    }
+    
+    Movimiento mov = stockService.registrarEgreso(codigo, cantidad, servicioIdReal, depositoId, actor, null);
     ConsoleUI.mostrarExito("Egreso registrado exitosamente.");
+    for (ConsumoLote c : mov.getLotes()) {
+      ConsoleUI.mostrarFormato("  %s%n", c);
+    }
+  }
+
+  /**
+   * Transfiere stock de un insumo entre dos depósitos
+   */
+  public void transferirEntreDepositos(Usuario actor) {
+    ConsoleUI.mostrarInfo("\n-- Transferencia entre Depósitos --");
+    
+    String codigo = ConsoleUI.leerString(MenuPrincipal.PROMPT_CODIGO).toUpperCase();
+    int cantidad = ConsoleUI.leerEntero("Cantidad a transferir: ");
+    Integer origenId = elegirDeposito("Depósito origen (número): ");
+    if (origenId == null) {
+      return;
+    }
+    Integer destinoId = elegirDeposito("Depósito destino (número): ");
+    if (destinoId == null) {
+      return;
+    }
+    
+    stockService.transferir(codigo, cantidad, origenId, destinoId, actor);
+    ConsoleUI.mostrarExito("Transferencia registrada exitosamente.");
+  }
+
+  /**
+   * Muestra el stock de un insumo en cada depósito y el total
+   */
+  public void stockPorDeposito() {
+    ConsoleUI.mostrarInfo("\n-- Stock por Depósito --");
+    
+    String codigo = ConsoleUI.leerString(MenuPrincipal.PROMPT_CODIGO).toUpperCase();
+    Map<Integer, Integer> stock = stockService.stockPorDeposito(codigo);
+    
+    int total = 0;
+    for (Deposito d : stockService.obtenerDepositos()) {
+      int cantidad = stock.getOrDefault(d.getId(), 0);
+      total += cantidad;
+      ConsoleUI.mostrarFormato("  %-25s %8d%n", d.getNombre(), cantidad);
+    }
+    ConsoleUI.mostrarFormato("  %-25s %8d%n", "Total", total);
+    
+    List<Lote> lotes = stockService.lotesDe(codigo);
+    if (!lotes.isEmpty()) {
+      ConsoleUI.mostrarInfo("\nLotes (en orden de salida):");
+      for (Lote l : lotes) {
+        ConsoleUI.mostrarFormato("  %-15s dep. %-3d vence %s %8d%n", l.getNumero(), l.getDepositoId(),
+            l.getVencimiento(), l.getCantidad());
+      }
+    }
   }
 
   /**
@@ -123,5 +230,124 @@ public class StockHandler {
           i.getCodigo(), i.getNombre(), i.getStock(), i.getStockMinimo()));
     }
   }
-}
 
+  /**
+   * Muestra los depósitos numerados y devuelve el id del elegido, o null si la opción es inválida
+   */
+  private Integer elegirDeposito(String prompt) {
+    List<Deposito> depositos = stockService.obtenerDepositos();
+    if (depositos.size() == 1) {
+      return depositos.get(0).getId();
+    }
+    
+    ConsoleUI.mostrarInfo("\nDepósitos:");
+    for (int i = 0; i < depositos.size(); i++) {
+      ConsoleUI.mostrarFormato("  %d - %s%n", i + 1, depositos.get(i).getNombre());
+    }
+    
+    int opcion = ConsoleUI.leerEntero(prompt);
+    if (opcion < 1 || opcion > depositos.size()) {
+      ConsoleUI.mostrarError("Opción inválida. Debe estar entre 1 y " + depositos.size());
+      return null;
+    }
+    return depositos.get(opcion - 1).getId();
+  }
+
+  /**
+   * Importa el catálogo de insumos del proveedor desde un archivo CSV (solo ADMIN)
+   */
+  public void importarCatalogo(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden importar el catálogo.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Importar Catálogo de Insumos --");
+    ConsoleUI.mostrarInfo("Formato: codigo;nombre;unidad;stock_minimo;fecha_vencimiento (AAAA-MM-DD, opcional)");
+
+    Path archivo = Paths.get(ConsoleUI.leerString(MenuPrincipal.PROMPT_ARCHIVO));
+    ResultadoImportacion r;
+    try {
+      r = importacionService.importar(archivo);
+    } catch (IOException e) {
+      ConsoleUI.mostrarError("No se pudo leer el archivo: " + e.getMessage());
+      return;
+    }
+
+    ConsoleUI.mostrarExito(String.format("Importación finalizada en %d ms: %d nuevos, %d actualizados, %d rechazados.",
+        r.getDuracionMs(), r.getInsertados(), r.getActualizados(), r.getRechazados()));
+    r.getErrores().forEach(e -> ConsoleUI.mostrarInfo("  " + e));
+    if (r.getRechazados() > r.getErrores().size()) {
+      ConsoleUI.mostrarFormato("  ... y %d filas rechazadas más%n", r.getRechazados() - r.getErrores().size());
+    }
+  }
+
+  /**
+   * Concilia un conteo físico de un depósito: muestra las diferencias y, si se confirma, las ajusta (solo ADMIN)
+   */
+  public void inventarioFisico(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden ajustar el inventario.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Inventario Físico --");
+    ConsoleUI.mostrarInfo("Formato: codigo;cantidad (un archivo por depósito)");
+
+    Path archivo = Paths.get(ConsoleUI.leerString(MenuPrincipal.PROMPT_ARCHIVO));
+    Integer depositoId = elegirDeposito("Depósito contado (número): ");
+    if (depositoId == null) {
+      return;
+    }
+    Path reporte = Paths.get(archivo + ".diferencias.csv");
+
+    ResultadoConteo previa = conciliar(archivo, depositoId, false, actor, reporte);
+    if (previa == null) {
+      return;
+    }
+    if (previa.getDiferencias().isEmpty()) {
+      ConsoleUI.mostrarExito("El conteo coincide con el stock del sistema; no hay nada que ajustar.");
+      return;
+    }
+    String respuesta = ConsoleUI.leerString("¿Aplicar los ajustes? (S/N): ").trim();
+    if (!respuesta.equalsIgnoreCase("S")) {
+      ConsoleUI.mostrarInfo("No se aplicaron ajustes.");
+      return;
+    }
+    // Se vuelve a leer el stock: lo que cambió desde la vista previa se ajusta con el valor actual
+    ResultadoConteo r = conciliar(archivo, depositoId, true, actor, reporte);
+    if (r != null && r.getNoAplicados() > 0) {
+      ConsoleUI.mostrarError(r.getNoAplicados() + " filas quedaron sin ajustar; se puede volver a procesar el mismo archivo.");
+    }
+  }
+
+  private ResultadoConteo conciliar(Path archivo, int depositoId, boolean aplicar, Usuario actor, Path reporte) {
+    ResultadoConteo r;
+    try {
+      r = inventarioService.conciliar(archivo, depositoId, aplicar, actor);
+    } catch (IOException e) {
+      ConsoleUI.mostrarError("No se pudo leer el archivo: " + e.getMessage());
+      return null;
+    }
+
+    ConsoleUI.mostrarExito(String.format("%s en %d ms: %d contados, %d con diferencia, %d rechazados.",
+        aplicar ? "Ajuste finalizado" : "Vista previa", r.getDuracionMs(), r.getContados(),
+        r.getDiferencias().size(), r.getRechazados()));
+    r.getErrores().forEach(e -> ConsoleUI.mostrarInfo("  " + e));
+    if (r.getCantidadErrores() > r.getErrores().size()) {
+      ConsoleUI.mostrarFormato("  ... y %d errores más%n", r.getCantidadErrores() - r.getErrores().size());
+    }
+    List<DiferenciaInventario> diferencias = r.getDiferencias();
+    for (int i = 0; i < Math.min(diferencias.size(), 20); i++) {
+      DiferenciaInventario d = diferencias.get(i);
+      ConsoleUI.mostrarFormato("  %-12s Sistema: %6d | Contado: %6d | Diferencia: %+6d%n",
+          d.getCodigo(), d.getSistema(), d.getContado(), d.getDiferencia());
+    }
+
+    try (BufferedWriter out = Files.newBufferedWriter(reporte, StandardCharsets.UTF_8)) {
+      inventarioService.exportarDiferencias(r, out);
+      ConsoleUI.mostrarInfo("Diferencias guardadas en " + reporte);
+    } catch (IOException e) {
+      ConsoleUI.mostrarError("No se pudo escribir el reporte: " + e.getMessage());
+    }
+    return r;
+  }
+}
@@ -0,0 +1,61 @@
+package app.handlers;
+
+import java.util.List;
+
+import app.ui.ConsoleUI;
+import domain.Usuario;
+import domain.enums.Rol;
+import infra.planificador.EjecucionTarea;
+import infra.planificador.EstadoTarea;
+import infra.planificador.Planificador;
+
+/**
+ * Handler para consultar y lanzar las tareas de mantenimiento programadas
+ */
+public class TareasHandler {
+  private final Planificador planificador;
+
+  public TareasHandler(Planificador planificador) {
+    this.planificador = planificador;
+  }
+
+  /**
+   * Muestra cada tarea con su próxima corrida y sus últimas corridas, y permite lanzar una ahora (solo ADMIN)
+   */
+  public void gestionarTareas(Usuario actor) {
+    if (actor.getRol() != Rol.ADMIN) {
+      ConsoleUI.mostrarError("Acceso denegado: Solo usuarios ADMIN pueden gestionar tareas programadas.");
+      return;
+    }
+    ConsoleUI.mostrarInfo("\n-- Tareas Programadas --");
+
+    List<EstadoTarea> tareas = planificador.estado();
+    if (tareas.isEmpty()) {
+      ConsoleUI.mostrarInfo("No hay tareas programadas.");
+      return;
+    }
+    for (int i = 0; i < tareas.size(); i++) {
+      EstadoTarea t = tareas.get(i);
+      ConsoleUI.mostrarFormato("  %d - %s | %s | Próxima: %s | Salteadas: %d%n", i + 1, t.getNombre(),
+          t.getProgramacion(), t.isEnEjecucion() ? "corriendo" : String.valueOf(t.getProxima()), t.getSalteadas());
+      for (EjecucionTarea e : t.getHistorial()) {
+        ConsoleUI.mostrarFormato("      %s | %d ms | %s%n", e.getInicio(), e.getDuracionMs(),
+            e.isExitosa() ? "OK" : "Error: " + e.getError());
+      }
+    }
+
+    int opcion = ConsoleUI.leerEntero("Tarea a ejecutar ahora (0 para volver): ");
+    if (opcion == 0) {
+      return;
+    }
+    if (opcion < 1 || opcion > tareas.size()) {
+      ConsoleUI.mostrarError("Opción inválida. Debe estar entre 0 y " + tareas.size());
+      return;
+    }
+    if (planificador.ejecutarAhora(tareas.get(opcion - 1).getNombre())) {
+      ConsoleUI.mostrarExito("Tarea lanzada en segundo plano.");
+    } else {
+      ConsoleUI.mostrarError("La tarea ya está corriendo.");
+    }
+  }
+}
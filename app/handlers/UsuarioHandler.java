@@ -102,11 +102,9 @@ public class UsuarioHandler {
       apellido = usuarioExistente.getApellido();
     }
     
+    // Vacía: se mantiene la contraseña actual
     ConsoleUI.mostrarInfo("Password (nueva, mínimo 6 caracteres): ");
     String password = ConsoleUI.leerStringSilencioso().trim();
-    if (password.isEmpty()) {
-      password = usuarioExistente.getPassword();
-    }
     
     ConsoleUI.mostrarFormato("Rol (ADMIN/AUXILIAR) [%s]: ", usuarioExistente.getRol());
     String rolStr = ConsoleUI.leerStringSilencioso().trim().toUpperCase();
@@ -129,7 +127,7 @@ public class UsuarioHandler {
     }
     
     // Crear usuario actualizado
-    Usuario usuarioActualizado = new Usuario(legajo, password, nombre, apellido, rol);
+    Usuario usuarioActualizado = new Usuario(legajo, null, nombre, apellido, rol);
     
     // Aplicar el estado activo/inactivo
     if (activo) {
@@ -138,7 +136,7 @@ public class UsuarioHandler {
       usuarioActualizado.desactivar();
     }
     
-    userService.editar(usuarioActualizado);
+    userService.editar(usuarioActualizado, password);
     ConsoleUI.mostrarExito("Usuario modificado exitosamente.");
   }
 
@@ -15,6 +15,19 @@ public class MenuPrincipal {
       "8) Listar insumos críticos\n" +
       "9) Reporte de movimientos (ADMIN)\n" +
       "10) Logout\n" +
+      "11) Sugerencias de reposición (ADMIN)\n" +
+      "12) Importar catálogo de insumos (ADMIN)\n" +
+      "13) Transferir entre depósitos\n" +
+      "14) Stock por depósito\n" +
+      "15) Reservar stock\n" +
+      "16) Confirmar o liberar reservas\n" +
+      "17) Stock a una fecha (ADMIN)\n" +
+      "18) Kardex de un insumo (ADMIN)\n" +
+      "19) Ranking de consumo (ADMIN)\n" +
+      "20) Anomalías de consumo (ADMIN)\n" +
+      "21) Tareas programadas (ADMIN)\n" +
+      "22) Inventario físico (ADMIN)\n" +
+      "23) Valuación de stock (ADMIN)\n" +
       "0) Salir";
 
   // Prompts para entrada de datos
@@ -27,4 +40,5 @@ public class MenuPrincipal {
   public static final String PROMPT_CANTIDAD = "Cantidad: ";
   public static final String PROMPT_OPCION = "Opción: ";
   public static final String PROMPT_DIAS = "Días hacia atrás (ej. 30): ";
+  public static final String PROMPT_ARCHIVO = "Ruta del archivo: ";
 }
\ No newline at end of file
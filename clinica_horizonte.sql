@@ -11,6 +11,8 @@ USE clinica_horizonte;
 DROP TABLE IF EXISTS usuarios;
 CREATE TABLE usuarios (
   legajo      INT           NOT NULL,
+  -- hash PBKDF2 (pbkdf2_sha256$iteraciones$salt$hash); los valores en texto
+  -- plano se migran al hash en el primer login exitoso
   password    VARCHAR(255)  NOT NULL,
   nombre      VARCHAR(60)   NOT NULL,
   apellido    VARCHAR(60)   NOT NULL,
@@ -28,20 +30,49 @@ CREATE TABLE servicios (
   UNIQUE KEY uk_servicio_nombre (nombre)
 ) ENGINE=InnoDB;
 
+DROP TABLE IF EXISTS depositos;
+CREATE TABLE depositos (
+  id       INT          NOT NULL AUTO_INCREMENT,
+  nombre   VARCHAR(60)  NOT NULL,
+  central  TINYINT(1)   NOT NULL DEFAULT 0,
+  PRIMARY KEY (id),
+  UNIQUE KEY uk_deposito_nombre (nombre)
+) ENGINE=InnoDB;
+
+-- el stock no se guarda en insumos: cada depósito tiene su fila en stock_depositos
+-- y el total de un insumo es la suma de sus depósitos
 DROP TABLE IF EXISTS insumos;
 CREATE TABLE insumos (
   codigo            VARCHAR(30)   NOT NULL,
   nombre            VARCHAR(120)  NOT NULL,
   unidad            VARCHAR(20)   NOT NULL,
-  stock             INT UNSIGNED  NOT NULL DEFAULT 0,
   stock_minimo      INT UNSIGNED  NOT NULL DEFAULT 0,
   estado            ENUM('ACTIVO','BLOQUEADO','BAJA') NOT NULL DEFAULT 'ACTIVO',
   fecha_vencimiento DATE NULL,
   PRIMARY KEY (codigo),
-  CHECK (stock >= 0),
+  -- barrido de vencidos: StockService.bloquearVencidos los pasa a BLOQUEADO con un solo UPDATE
+  KEY ix_insumos_venc (estado, fecha_vencimiento),
   CHECK (stock_minimo >= 0)
 ) ENGINE=InnoDB;
 
+-- stock de cada insumo por depósito: ingresos, egresos y transferencias actualizan
+-- solo la fila de su depósito, así los depósitos no compiten por la misma fila
+DROP TABLE IF EXISTS stock_depositos;
+CREATE TABLE stock_depositos (
+  deposito_id    INT           NOT NULL,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  stock          INT UNSIGNED  NOT NULL DEFAULT 0,
+  PRIMARY KEY (deposito_id, insumo_codigo),
+  KEY ix_sd_insumo (insumo_codigo),
+  CONSTRAINT fk_sd_deposito FOREIGN KEY (deposito_id)
+      REFERENCES depositos(id)
+      ON UPDATE CASCADE ON DELETE RESTRICT,
+  CONSTRAINT fk_sd_insumo   FOREIGN KEY (insumo_codigo)
+      REFERENCES insumos(codigo)
+      ON UPDATE CASCADE ON DELETE CASCADE,
+  CHECK (stock >= 0)
+) ENGINE=InnoDB;
+
 DROP TABLE IF EXISTS movimientos;
 CREATE TABLE movimientos (
   id             BIGINT        NOT NULL AUTO_INCREMENT,
@@ -70,32 +101,291 @@ CREATE TABLE movimientos (
        OR (tipo='EGRESO'  AND servicio_id IS NOT NULL) )
 ) ENGINE=InnoDB;
 
+-- cuotas de escrow de los insumos más demandados (-Dclinica.escrow.insumos): parte del stock
+-- de un depósito repartida en filas para que los egresos concurrentes no esperen el bloqueo de
+-- la misma fila de stock_depositos. El stock del depósito es el de stock_depositos más la suma
+-- de sus cuotas; se recargan desde stock_depositos y se devuelven a él cuando no alcanzan
+DROP TABLE IF EXISTS stock_escrow;
+CREATE TABLE stock_escrow (
+  deposito_id    INT           NOT NULL,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  cuota          TINYINT UNSIGNED NOT NULL,
+  stock          INT UNSIGNED  NOT NULL DEFAULT 0,
+  PRIMARY KEY (deposito_id, insumo_codigo, cuota),
+  KEY ix_se_insumo (insumo_codigo),
+  CONSTRAINT fk_se_deposito FOREIGN KEY (deposito_id)
+      REFERENCES depositos(id)
+      ON UPDATE CASCADE ON DELETE RESTRICT,
+  CONSTRAINT fk_se_insumo   FOREIGN KEY (insumo_codigo)
+      REFERENCES insumos(codigo)
+      ON UPDATE CASCADE ON DELETE CASCADE,
+  CHECK (stock >= 0)
+) ENGINE=InnoDB;
+
+-- lotes de cada insumo por depósito, con su vencimiento. Los egresos los consumen por FEFO
+-- (primero el que vence antes). El stock del depósito que no está en ningún lote vence con
+-- la fecha del insumo. Los lotes agotados quedan con cantidad 0 para el historial
+DROP TABLE IF EXISTS lotes;
+CREATE TABLE lotes (
+  id             BIGINT        NOT NULL AUTO_INCREMENT,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  deposito_id    INT           NOT NULL,
+  numero         VARCHAR(40)   NOT NULL,
+  vencimiento    DATE          NOT NULL,
+  cantidad       INT UNSIGNED  NOT NULL DEFAULT 0,
+  PRIMARY KEY (id),
+  UNIQUE KEY ux_lote_numero (insumo_codigo, deposito_id, numero),
+  KEY ix_lote_fefo (insumo_codigo, deposito_id, vencimiento),
+  CONSTRAINT fk_lote_insumo   FOREIGN KEY (insumo_codigo)
+      REFERENCES insumos(codigo)
+      ON UPDATE CASCADE ON DELETE CASCADE,
+  CONSTRAINT fk_lote_deposito FOREIGN KEY (deposito_id)
+      REFERENCES depositos(id)
+      ON UPDATE CASCADE ON DELETE RESTRICT,
+  CHECK (cantidad >= 0)
+) ENGINE=InnoDB;
+
+-- de qué lotes salió (o a qué lote entró) la cantidad de cada movimiento; la parte sin
+-- lote no se registra. Sin clave foránea a movimientos porque está particionada
+DROP TABLE IF EXISTS movimiento_lotes;
+CREATE TABLE movimiento_lotes (
+  movimiento_id  BIGINT        NOT NULL,
+  fecha          DATETIME      NOT NULL,
+  lote_id        BIGINT        NOT NULL,
+  cantidad       INT UNSIGNED  NOT NULL,
+  PRIMARY KEY (movimiento_id, lote_id),
+  KEY ix_ml_lote (lote_id),
+  CONSTRAINT fk_ml_lote FOREIGN KEY (lote_id)
+      REFERENCES lotes(id)
+      ON UPDATE CASCADE ON DELETE CASCADE,
+  CHECK (cantidad > 0)
+) ENGINE=InnoDB;
+
 -- tabla movimientos para compatibilidad con beekeeper
+-- particionada por mes sobre fecha: las consultas por período solo leen los meses
+-- pedidos y los meses viejos se pasan a movimientos_archivo con DROP PARTITION.
+-- MySQL no admite claves foráneas en tablas particionadas y exige que la clave
+-- primaria incluya la columna de partición: la integridad referencial la valida
+-- StockService antes de registrar (insumo, servicio y usuario existentes).
+-- MantenimientoParticiones crea los meses siguientes y archiva los viejos al arrancar
 DROP TABLE IF EXISTS movimientos;
 CREATE TABLE movimientos (
   id             BIGINT        NOT NULL AUTO_INCREMENT,
-  tipo           ENUM('INGRESO','EGRESO') NOT NULL,
+  tipo           ENUM('INGRESO','EGRESO','TRANSFERENCIA','AJUSTE') NOT NULL,
   fecha          DATETIME      NOT NULL DEFAULT CURRENT_TIMESTAMP,
-  cantidad       INT UNSIGNED  NOT NULL,
+  -- negativa solo en AJUSTE (diferencia de inventario: contado - sistema)
+  cantidad       INT           NOT NULL,
   usuario_legajo INT           NOT NULL,
   insumo_codigo  VARCHAR(30)   NOT NULL,
   servicio_id    INT           NULL,
-  PRIMARY KEY (id),
+  -- depósito del movimiento (origen en TRANSFERENCIA) y destino de la transferencia
+  deposito_id         INT      NOT NULL DEFAULT 1,
+  deposito_destino_id INT      NULL,
+  -- costo de compra por unidad, solo en INGRESO (NULL si no se informó: entra al costo promedio)
+  costo_unitario DECIMAL(12,4) NULL,
+  PRIMARY KEY (id, fecha),
   KEY ix_mov_fecha    (fecha),
-  KEY ix_mov_insumo   (insumo_codigo),
-  KEY ix_mov_serv     (servicio_id),
-  CONSTRAINT fk_mov_usuario  FOREIGN KEY (usuario_legajo)
-      REFERENCES usuarios(legajo)
+  KEY ix_mov_insumo   (insumo_codigo, fecha),
+  KEY ix_mov_serv     (servicio_id, fecha),
+  KEY ix_mov_dep      (deposito_id, fecha),
+  KEY ix_mov_dep_dest (deposito_destino_id, fecha),
+  CHECK (cantidad > 0 OR (tipo='AJUSTE' AND cantidad <> 0)),
+  CHECK ( (tipo='TRANSFERENCIA' AND deposito_destino_id IS NOT NULL
+           AND deposito_destino_id <> deposito_id AND servicio_id IS NULL)
+       OR (tipo<>'TRANSFERENCIA' AND deposito_destino_id IS NULL) )
+) ENGINE=InnoDB
+PARTITION BY RANGE COLUMNS (fecha) (
+  PARTITION p202609 VALUES LESS THAN ('2026-10-01'),
+  PARTITION p202610 VALUES LESS THAN ('2026-11-01'),
+  PARTITION p202611 VALUES LESS THAN ('2026-12-01'),
+  PARTITION p202612 VALUES LESS THAN ('2027-01-01'),
+  PARTITION p_max   VALUES LESS THAN (MAXVALUE)
+);
+
+-- movimientos de meses archivados (misma estructura, sin particionar)
+DROP TABLE IF EXISTS movimientos_archivo;
+CREATE TABLE movimientos_archivo (
+  id             BIGINT        NOT NULL,
+  tipo           ENUM('INGRESO','EGRESO','TRANSFERENCIA','AJUSTE') NOT NULL,
+  fecha          DATETIME      NOT NULL,
+  cantidad       INT           NOT NULL,
+  usuario_legajo INT           NOT NULL,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  servicio_id    INT           NULL,
+  deposito_id         INT      NOT NULL DEFAULT 1,
+  deposito_destino_id INT      NULL,
+  costo_unitario DECIMAL(12,4) NULL,
+  PRIMARY KEY (id, fecha),
+  KEY ix_arch_fecha    (fecha),
+  KEY ix_arch_insumo   (insumo_codigo, fecha),
+  KEY ix_arch_serv     (servicio_id, fecha),
+  KEY ix_arch_dep      (deposito_id, fecha),
+  KEY ix_arch_dep_dest (deposito_destino_id, fecha)
+) ENGINE=InnoDB;
+
+-- claves de idempotencia de ingresos y egresos: un reintento con la misma clave devuelve
+-- el movimiento original en lugar de registrar otro. Va en tabla aparte porque movimientos
+-- está particionada y un índice único ahí tendría que incluir fecha (dos reintentos en
+-- segundos distintos no chocarían). MantenimientoParticiones borra las claves viejas
+DROP TABLE IF EXISTS claves_idempotencia;
+CREATE TABLE claves_idempotencia (
+  clave          VARCHAR(64)   NOT NULL,
+  movimiento_id  BIGINT        NOT NULL,
+  fecha          DATETIME      NOT NULL,
+  creada         DATETIME      NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (clave),
+  KEY ix_ci_creada (creada)
+) ENGINE=InnoDB;
+
+-- saldos de cierre: stock total de cada insumo al terminar el día. El stock a una fecha
+-- pasada es el saldo más cercano corregido con los movimientos entre ambas fechas, sin
+-- recorrer el historial. StockService.cerrarSaldos los registra para los días ya cerrados
+DROP TABLE IF EXISTS saldos_insumo;
+CREATE TABLE saldos_insumo (
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  fecha          DATE          NOT NULL,
+  saldo          INT           NOT NULL,
+  PRIMARY KEY (insumo_codigo, fecha),
+  CONSTRAINT fk_saldo_insumo FOREIGN KEY (insumo_codigo)
+      REFERENCES insumos(codigo)
+      ON UPDATE CASCADE ON DELETE RESTRICT
+) ENGINE=InnoDB;
+
+-- valuación del stock: cada entrada (ingreso o sobrante de inventario) es una capa con su
+-- costo unitario y las salidas consumen las capas más viejas primero (FIFO). La valuación por
+-- insumo guarda la cantidad valuada (igual al stock total), el valor FIFO y el costo promedio
+-- ponderado: el valor del inventario se lee de esta tabla sin recorrer movimientos. Las capas
+-- agotadas se borran. Cada movimiento solo anota una fila en valuacion_pendiente en su
+-- transacción; las capas y la valuación se actualizan al aplicar los pendientes en orden de id
+DROP TABLE IF EXISTS valuacion_pendiente;
+CREATE TABLE valuacion_pendiente (
+  id             BIGINT        NOT NULL AUTO_INCREMENT,
+  movimiento_id  BIGINT        NOT NULL,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  tipo           ENUM('INGRESO','EGRESO','AJUSTE') NOT NULL,
+  cantidad       INT           NOT NULL,
+  costo_unitario DECIMAL(12,4) NULL,
+  servicio_id    INT           NOT NULL,
+  fecha          DATETIME      NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+DROP TABLE IF EXISTS capas_costo;
+CREATE TABLE capas_costo (
+  id             BIGINT        NOT NULL AUTO_INCREMENT,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  cantidad       INT UNSIGNED  NOT NULL,
+  costo_unitario DECIMAL(12,4) NOT NULL,
+  movimiento_id  BIGINT        NULL,
+  fecha          DATETIME      NOT NULL,
+  PRIMARY KEY (id),
+  KEY ix_capas_insumo (insumo_codigo, id),
+  CONSTRAINT fk_capa_insumo FOREIGN KEY (insumo_codigo)
+      REFERENCES insumos(codigo)
       ON UPDATE CASCADE ON DELETE RESTRICT,
-  CONSTRAINT fk_mov_insumo   FOREIGN KEY (insumo_codigo)
+  CHECK (cantidad > 0)
+) ENGINE=InnoDB;
+
+DROP TABLE IF EXISTS valuacion_insumo;
+CREATE TABLE valuacion_insumo (
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  cantidad       INT           NOT NULL DEFAULT 0,
+  valor_fifo     DECIMAL(18,4) NOT NULL DEFAULT 0,
+  costo_promedio DECIMAL(16,6) NOT NULL DEFAULT 0,
+  PRIMARY KEY (insumo_codigo),
+  CONSTRAINT fk_valuacion_insumo FOREIGN KEY (insumo_codigo)
+      REFERENCES insumos(codigo)
+      ON UPDATE CASCADE ON DELETE RESTRICT
+) ENGINE=InnoDB;
+
+-- costo de lo consumido por día, servicio e insumo con los dos métodos, acumulado con cada
+-- egreso; servicio_id 0 son los faltantes de inventario (AJUSTE negativos). El costo de un
+-- período sale de sumar sus días, sin recorrer movimientos ni archivo
+DROP TABLE IF EXISTS consumo_valorizado;
+CREATE TABLE consumo_valorizado (
+  dia            DATE          NOT NULL,
+  servicio_id    INT           NOT NULL,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  cantidad       INT           NOT NULL,
+  costo_fifo     DECIMAL(18,4) NOT NULL,
+  costo_promedio DECIMAL(18,4) NOT NULL,
+  PRIMARY KEY (dia, servicio_id, insumo_codigo)
+) ENGINE=InnoDB;
+
+-- reservas de stock (por ejemplo, para cirugías programadas): no retiran stock pero lo
+-- descuentan del disponible hasta que se confirman, se liberan o vencen
+DROP TABLE IF EXISTS reservas;
+CREATE TABLE reservas (
+  id             BIGINT        NOT NULL AUTO_INCREMENT,
+  insumo_codigo  VARCHAR(30)   NOT NULL,
+  deposito_id    INT           NOT NULL,
+  servicio_id    INT           NOT NULL,
+  cantidad       INT UNSIGNED  NOT NULL,
+  usuario_legajo INT           NOT NULL,
+  creada         DATETIME      NOT NULL,
+  vence          DATETIME      NOT NULL,
+  estado         ENUM('ACTIVA','CONFIRMADA','LIBERADA','VENCIDA') NOT NULL DEFAULT 'ACTIVA',
+  cerrada        DATETIME      NULL,
+  PRIMARY KEY (id),
+  KEY ix_res_estado (estado, vence),
+  CONSTRAINT fk_res_insumo   FOREIGN KEY (insumo_codigo)
       REFERENCES insumos(codigo)
       ON UPDATE CASCADE ON DELETE RESTRICT,
-  CONSTRAINT fk_mov_servicio FOREIGN KEY (servicio_id)
+  CONSTRAINT fk_res_deposito FOREIGN KEY (deposito_id)
+      REFERENCES depositos(id)
+      ON UPDATE CASCADE ON DELETE RESTRICT,
+  CONSTRAINT fk_res_servicio FOREIGN KEY (servicio_id)
       REFERENCES servicios(id)
       ON UPDATE CASCADE ON DELETE RESTRICT,
-  CHECK (cantidad > 0)
+  CONSTRAINT fk_res_usuario  FOREIGN KEY (usuario_legajo)
+      REFERENCES usuarios(legajo)
+      ON UPDATE CASCADE ON DELETE RESTRICT,
+  CHECK (cantidad > 0),
+  CHECK (vence > creada)
 ) ENGINE=InnoDB;
 
+-- migración de una base existente (sin perder datos):
+--   ALTER TABLE movimientos DROP FOREIGN KEY fk_mov_usuario,
+--     DROP FOREIGN KEY fk_mov_insumo, DROP FOREIGN KEY fk_mov_servicio;
+--   ALTER TABLE movimientos DROP PRIMARY KEY, ADD PRIMARY KEY (id, fecha),
+--     DROP KEY ix_mov_serv, ADD KEY ix_mov_serv (servicio_id, fecha);
+--   ALTER TABLE movimientos PARTITION BY RANGE COLUMNS (fecha) (
+--     PARTITION p202609 VALUES LESS THAN ('2026-10-01'),
+--     PARTITION p_max   VALUES LESS THAN (MAXVALUE));
+--   (y crear movimientos_archivo como arriba)
+-- migración a stock por depósito (el stock actual queda en la farmacia central):
+--   (crear depositos y stock_depositos como arriba e insertar los depósitos)
+--   INSERT INTO stock_depositos (deposito_id, insumo_codigo, stock)
+--     SELECT 1, codigo, stock FROM insumos;
+--   ALTER TABLE insumos DROP CHECK <nombre del check de stock>, DROP COLUMN stock;
+--   ALTER TABLE movimientos MODIFY tipo ENUM('INGRESO','EGRESO','TRANSFERENCIA') NOT NULL,
+--     ADD COLUMN deposito_id INT NOT NULL DEFAULT 1, ADD COLUMN deposito_destino_id INT NULL,
+--     ADD KEY ix_mov_dep (deposito_id, fecha), ADD KEY ix_mov_dep_dest (deposito_destino_id, fecha);
+--   (lo mismo en movimientos_archivo)
+-- migración a cuotas de escrow: crear stock_escrow como arriba (empieza vacía y las cuotas
+-- se cargan desde stock_depositos con los primeros egresos)
+-- migración a lotes: crear lotes y movimiento_lotes como arriba; el stock existente queda
+-- sin lote y sale con el vencimiento del insumo hasta que se agote
+-- migración a saldos de cierre: crear saldos_insumo como arriba y cambiar el índice por insumo
+--   ALTER TABLE movimientos DROP KEY ix_mov_insumo, ADD KEY ix_mov_insumo (insumo_codigo, fecha);
+--   ALTER TABLE movimientos_archivo DROP KEY ix_arch_insumo, ADD KEY ix_arch_insumo (insumo_codigo, fecha);
+-- migración al bloqueo de vencidos:
+--   ALTER TABLE insumos ADD KEY ix_insumos_venc (estado, fecha_vencimiento);
+-- migración a ajustes de inventario:
+--   ALTER TABLE movimientos MODIFY tipo ENUM('INGRESO','EGRESO','TRANSFERENCIA','AJUSTE') NOT NULL,
+--     MODIFY cantidad INT NOT NULL, DROP CHECK <nombre del check de cantidad>,
+--     ADD CHECK (cantidad > 0 OR (tipo='AJUSTE' AND cantidad <> 0));
+--   ALTER TABLE movimientos_archivo MODIFY tipo ENUM('INGRESO','EGRESO','TRANSFERENCIA','AJUSTE') NOT NULL,
+--     MODIFY cantidad INT NOT NULL;
+-- migración a la valuación de stock: crear valuacion_pendiente, capas_costo, valuacion_insumo y consumo_valorizado
+-- como arriba y cargar el stock existente como una capa inicial con su costo (0 si no se conoce)
+--   ALTER TABLE movimientos ADD COLUMN costo_unitario DECIMAL(12,4) NULL;
+--   ALTER TABLE movimientos_archivo ADD COLUMN costo_unitario DECIMAL(12,4) NULL;
+--   INSERT INTO capas_costo (insumo_codigo, cantidad, costo_unitario, fecha)
+--     SELECT insumo_codigo, SUM(stock), 0, NOW() FROM stock_depositos GROUP BY insumo_codigo HAVING SUM(stock) > 0;
+--   INSERT INTO valuacion_insumo (insumo_codigo, cantidad, valor_fifo, costo_promedio)
+--     SELECT insumo_codigo, cantidad, cantidad * costo_unitario, costo_unitario FROM capas_costo;
+
 -- inserciones
 
 INSERT INTO usuarios (legajo, password, nombre, apellido, rol, activo)
@@ -110,13 +400,40 @@ VALUES
   ('Quirófano'),
   ('Consultorios');
 
-INSERT INTO insumos (codigo, nombre, unidad, stock, stock_minimo, estado, fecha_vencimiento)
+INSERT INTO depositos (id, nombre, central)
+VALUES
+  (1, 'Farmacia central', 1),
+  (2, 'Guardia',          0),
+  (3, 'Internación',      0),
+  (4, 'Quirófano',        0);
+
+INSERT INTO insumos (codigo, nombre, unidad, stock_minimo, estado, fecha_vencimiento)
 VALUES
-  ('GUA-01', 'Guantes de látex',   'caja',    50, 10, 'ACTIVO',    NULL),
-  ('GAS-01', 'Gasas estériles',    'pack',    12, 10, 'ACTIVO',    NULL),
-  ('ALC-70', 'Alcohol 70%',        'botella',  5,  5, 'ACTIVO',    '2026-06-30'),
-  ('JER-05', 'Jeringas 5 ml',      'unidad', 100, 40, 'ACTIVO',    NULL),
-  ('BAR-01', 'Barbijo quirúrgico', 'caja',    25, 20, 'ACTIVO',    NULL);
+  ('GUA-01', 'Guantes de látex',   'caja',    10, 'ACTIVO',    NULL),
+  ('GAS-01', 'Gasas estériles',    'pack',    10, 'ACTIVO',    NULL),
+  ('ALC-70', 'Alcohol 70%',        'botella',  5, 'ACTIVO',    '2026-06-30'),
+  ('JER-05', 'Jeringas 5 ml',      'unidad',  40, 'ACTIVO',    NULL),
+  ('BAR-01', 'Barbijo quirúrgico', 'caja',    20, 'ACTIVO',    NULL);
+
+INSERT INTO stock_depositos (deposito_id, insumo_codigo, stock)
+VALUES
+  (1, 'GUA-01',  50),
+  (1, 'GAS-01',  12),
+  (1, 'ALC-70',   5),
+  (1, 'JER-05', 100),
+  (1, 'BAR-01',  25);
+
+-- stock inicial valuado: una capa por insumo con su costo de compra
+INSERT INTO capas_costo (insumo_codigo, cantidad, costo_unitario, fecha)
+VALUES
+  ('GUA-01',  50, 4500.0000, NOW()),
+  ('GAS-01',  12, 1200.0000, NOW()),
+  ('ALC-70',   5, 2300.0000, NOW()),
+  ('JER-05', 100,  150.0000, NOW()),
+  ('BAR-01',  25, 3800.0000, NOW());
+
+INSERT INTO valuacion_insumo (insumo_codigo, cantidad, valor_fifo, costo_promedio)
+  SELECT insumo_codigo, cantidad, cantidad * costo_unitario, costo_unitario FROM capas_costo;
 
 INSERT INTO movimientos (tipo, cantidad, usuario_legajo, insumo_codigo, servicio_id)
 VALUES ('INGRESO', 10, 1000, 'GAS-01', NULL);
@@ -148,10 +465,22 @@ ORDER BY m.fecha DESC, m.id DESC;
 
 -- borrado de registro
 
+DELETE FROM claves_idempotencia;
+DELETE FROM consumo_valorizado;
+DELETE FROM capas_costo;
+DELETE FROM valuacion_insumo;
+DELETE FROM movimiento_lotes;
+DELETE FROM lotes;
 DELETE FROM movimientos;
+DELETE FROM movimientos_archivo;
+DELETE FROM reservas;
+DELETE FROM saldos_insumo;
+DELETE FROM stock_escrow;
+DELETE FROM stock_depositos;
 DELETE FROM insumos;
 DELETE FROM servicios;
 DELETE FROM usuarios;
+DELETE FROM depositos;
 
 SELECT 
   (SELECT COUNT(*) FROM usuarios)    AS usuarios,
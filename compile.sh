@@ -18,7 +18,7 @@ fi
 
 # Encontrar todos los archivos .java
 echo "Buscando archivos fuente..."
-find . -name "*.java" -not -path "*/bin/*" > sources.txt
+find . -name "*.java" -not -path "*/bin/*" -not -path "./bin-test/*" -not -path "./test/*" > sources.txt
 
 # Contar archivos
 NUM_FILES=$(wc -l < sources.txt)
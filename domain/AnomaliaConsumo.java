@@ -0,0 +1,73 @@
+package domain;
+
+import java.time.LocalDateTime;
+
+import domain.enums.AmbitoAnomalia;
+
+/**
+ * Egreso fuera de lo habitual detectado por DetectorAnomalias
+ * En INSUMO_SERVICIO el valor es la cantidad del egreso comparada con los egresos anteriores del
+ * insumo en ese servicio; en USUARIO es la cantidad de egresos del usuario en el día comparada con
+ * sus días anteriores (el código es el del egreso que cruzó el umbral)
+ */
+public class AnomaliaConsumo {
+  private final AmbitoAnomalia ambito;
+  private final String codigo;
+  private final int servicioId;
+  private final int legajo;
+  private final LocalDateTime fecha;
+  private final double valor;
+  private final double media;
+  private final double desvio;
+
+  public AnomaliaConsumo(AmbitoAnomalia ambito, String codigo, int servicioId, int legajo, LocalDateTime fecha,
+      double valor, double media, double desvio) {
+    this.ambito = ambito;
+    this.codigo = codigo;
+    this.servicioId = servicioId;
+    this.legajo = legajo;
+    this.fecha = fecha;
+    this.valor = valor;
+    this.media = media;
+    this.desvio = desvio;
+  }
+
+  public AmbitoAnomalia getAmbito() {
+    return ambito;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public int getServicioId() {
+    return servicioId;
+  }
+
+  public int getLegajo() {
+    return legajo;
+  }
+
+  public LocalDateTime getFecha() {
+    return fecha;
+  }
+
+  public double getValor() {
+    return valor;
+  }
+
+  public double getMedia() {
+    return media;
+  }
+
+  public double getDesvio() {
+    return desvio;
+  }
+
+  /**
+   * Desvíos por encima de la media (z-score)
+   */
+  public double getPuntaje() {
+    return (valor - media) / desvio;
+  }
+}
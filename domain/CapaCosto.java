@@ -0,0 +1,43 @@
+package domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Capa de costo de un insumo: cantidad que entró junto con su costo unitario y que todavía no salió
+ * Las salidas consumen las capas más viejas primero (FIFO)
+ */
+public class CapaCosto {
+  private final long id;
+  private final String codigo;
+  private final int cantidad;
+  private final BigDecimal costoUnitario;
+
+  public CapaCosto(long id, String codigo, int cantidad, BigDecimal costoUnitario) {
+    if (cantidad <= 0) {
+      throw new IllegalArgumentException("La cantidad de la capa debe ser positiva");
+    }
+    if (costoUnitario == null || costoUnitario.signum() < 0) {
+      throw new IllegalArgumentException("El costo unitario no puede ser negativo");
+    }
+    this.id = id;
+    this.codigo = codigo;
+    this.cantidad = cantidad;
+    this.costoUnitario = costoUnitario;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  public BigDecimal getCostoUnitario() {
+    return costoUnitario;
+  }
+}
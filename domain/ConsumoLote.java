@@ -0,0 +1,50 @@
+package domain;
+
+import java.time.LocalDate;
+
+/**
+ * Cantidad de un movimiento que salió de (o entró a) un lote
+ * Sin lote (loteId 0) es la parte tomada del stock que no está en ningún lote
+ */
+public class ConsumoLote {
+  private final long loteId;
+  private final String numero;
+  private final LocalDate vencimiento;
+  private final int cantidad;
+
+  public ConsumoLote(long loteId, String numero, LocalDate vencimiento, int cantidad) {
+    this.loteId = loteId;
+    this.numero = numero;
+    this.vencimiento = vencimiento;
+    this.cantidad = cantidad;
+  }
+
+  public long getLoteId() {
+    return loteId;
+  }
+
+  public String getNumero() {
+    return numero;
+  }
+
+  /**
+   * Vencimiento del lote; sin lote es el del insumo y puede ser null
+   */
+  public LocalDate getVencimiento() {
+    return vencimiento;
+  }
+
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  public boolean esSinLote() {
+    return loteId == 0;
+  }
+
+  @Override
+  public String toString() {
+    return (esSinLote() ? "sin lote" : "lote " + numero) + " x" + cantidad
+        + (vencimiento != null ? " (vence " + vencimiento + ")" : "");
+  }
+}
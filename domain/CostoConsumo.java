@@ -0,0 +1,39 @@
+package domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Costo de lo consumido por un servicio en un período, valuado por FIFO y por costo promedio
+ */
+public class CostoConsumo {
+  // Servicio con el que se informan los faltantes de inventario (AJUSTE negativos)
+  public static final int FALTANTES_INVENTARIO = 0;
+
+  private final int servicioId;
+  private final long cantidad;
+  private final BigDecimal costoFifo;
+  private final BigDecimal costoPromedio;
+
+  public CostoConsumo(int servicioId, long cantidad, BigDecimal costoFifo, BigDecimal costoPromedio) {
+    this.servicioId = servicioId;
+    this.cantidad = cantidad;
+    this.costoFifo = costoFifo;
+    this.costoPromedio = costoPromedio;
+  }
+
+  public int getServicioId() {
+    return servicioId;
+  }
+
+  public long getCantidad() {
+    return cantidad;
+  }
+
+  public BigDecimal getCostoFifo() {
+    return costoFifo;
+  }
+
+  public BigDecimal getCostoPromedio() {
+    return costoPromedio;
+  }
+}
@@ -0,0 +1,34 @@
+package domain;
+
+/**
+ * Depósito donde se guarda stock: la farmacia central o un subdepósito de sala
+ */
+public class Deposito {
+  // Id de la farmacia central (creada por el script de base de datos)
+  public static final int CENTRAL = 1;
+
+  private int id;
+  private String nombre;
+  private boolean central;
+
+  public Deposito(int id, String nombre, boolean central) {
+    if (nombre == null || nombre.trim().isEmpty()) {
+      throw new IllegalArgumentException("El nombre del depósito no puede estar vacío");
+    }
+    this.id = id;
+    this.nombre = nombre.trim();
+    this.central = central;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getNombre() {
+    return nombre;
+  }
+
+  public boolean esCentral() {
+    return central;
+  }
+}
@@ -0,0 +1,50 @@
+package domain;
+
+/**
+ * Diferencia entre lo contado en un inventario físico y el stock del sistema para un insumo en un depósito
+ */
+public class DiferenciaInventario {
+  private final String codigo;
+  private final int depositoId;
+  private final int sistema;
+  private final int contado;
+  private final int movimientoId;
+
+  public DiferenciaInventario(String codigo, int depositoId, int sistema, int contado, int movimientoId) {
+    this.codigo = codigo;
+    this.depositoId = depositoId;
+    this.sistema = sistema;
+    this.contado = contado;
+    this.movimientoId = movimientoId;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public int getDepositoId() {
+    return depositoId;
+  }
+
+  public int getSistema() {
+    return sistema;
+  }
+
+  public int getContado() {
+    return contado;
+  }
+
+  /**
+   * Contado - sistema: positiva si sobra, negativa si falta
+   */
+  public int getDiferencia() {
+    return contado - sistema;
+  }
+
+  /**
+   * Id del movimiento AJUSTE que la corrigió, 0 si no se aplicó
+   */
+  public int getMovimientoId() {
+    return movimientoId;
+  }
+}
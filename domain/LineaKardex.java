@@ -0,0 +1,49 @@
+package domain;
+
+/**
+ * Línea del kardex de un insumo: un movimiento con su entrada o salida y el saldo total
+ * del insumo (todos los depósitos) después de aplicarlo
+ * Las transferencias entre depósitos figuran sin entrada ni salida: no cambian el total.
+ * Los ajustes de inventario son entrada o salida según el signo de la diferencia
+ */
+public class LineaKardex {
+  private final Movimiento movimiento;
+  private final int entrada;
+  private final int salida;
+  private final int saldo;
+
+  public LineaKardex(Movimiento movimiento, int saldoAnterior) {
+    this.movimiento = movimiento;
+    int delta;
+    switch (movimiento.getTipo()) {
+      case INGRESO:
+      case AJUSTE:
+        delta = movimiento.getCantidad();
+        break;
+      case EGRESO:
+        delta = -movimiento.getCantidad();
+        break;
+      default:
+        delta = 0;
+    }
+    this.entrada = Math.max(delta, 0);
+    this.salida = Math.max(-delta, 0);
+    this.saldo = saldoAnterior + entrada - salida;
+  }
+
+  public Movimiento getMovimiento() {
+    return movimiento;
+  }
+
+  public int getEntrada() {
+    return entrada;
+  }
+
+  public int getSalida() {
+    return salida;
+  }
+
+  public int getSaldo() {
+    return saldo;
+  }
+}
@@ -0,0 +1,66 @@
+package domain;
+
+import java.time.LocalDate;
+
+/**
+ * Lote de un insumo en un depósito: número del fabricante, vencimiento y cantidad disponible
+ * El stock del depósito que no está en ningún lote vence con la fecha del insumo
+ */
+public class Lote {
+  private long id;
+  private String codigo;
+  private int depositoId;
+  private String numero;
+  private LocalDate vencimiento;
+  private int cantidad;
+
+  public Lote(long id, String codigo, int depositoId, String numero, LocalDate vencimiento, int cantidad) {
+    if (codigo == null || codigo.trim().isEmpty()) {
+      throw new IllegalArgumentException("El código no puede estar vacío");
+    }
+    if (numero == null || numero.trim().isEmpty()) {
+      throw new IllegalArgumentException("El número de lote no puede estar vacío");
+    }
+    if (vencimiento == null) {
+      throw new IllegalArgumentException("El vencimiento del lote es requerido");
+    }
+    if (cantidad < 0) {
+      throw new IllegalArgumentException("La cantidad no puede ser negativa");
+    }
+    this.id = id;
+    this.codigo = codigo.trim();
+    this.depositoId = depositoId;
+    this.numero = numero.trim();
+    this.vencimiento = vencimiento;
+    this.cantidad = cantidad;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public int getDepositoId() {
+    return depositoId;
+  }
+
+  public String getNumero() {
+    return numero;
+  }
+
+  public LocalDate getVencimiento() {
+    return vencimiento;
+  }
+
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Lote %s (%s) dep. %d - vence %s - %d", numero, codigo, depositoId, vencimiento, cantidad);
+  }
+}
@@ -1,6 +1,8 @@
 package domain;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import domain.enums.TipoMovimiento;
 
 public class Movimiento {
@@ -11,15 +13,30 @@ public class Movimiento {
   private Usuario usuario;
   private Insumo insumo;
   private Servicio servicio; // null si INGRESO
+  private int depositoId; // origen en TRANSFERENCIA
+  private Integer depositoDestinoId; // solo en TRANSFERENCIA
+  private String claveIdempotencia; // opcional, la envía el cliente para poder reintentar
+  private BigDecimal costoUnitario; // costo de compra por unidad, solo en INGRESO (opcional)
+  private List<ConsumoLote> lotes = List.of(); // lotes de los que salió o a los que entró la cantidad
 
+  /**
+   * Movimiento en el depósito central
+   */
   public Movimiento(int id, TipoMovimiento tipo, LocalDateTime fecha, int cantidad,
       Usuario usuario, Insumo insumo, Servicio servicio) {
+    this(id, tipo, fecha, cantidad, usuario, insumo, servicio, Deposito.CENTRAL, null);
+  }
+
+  public Movimiento(int id, TipoMovimiento tipo, LocalDateTime fecha, int cantidad,
+      Usuario usuario, Insumo insumo, Servicio servicio, int depositoId, Integer depositoDestinoId) {
   
   if (tipo == null) {
     throw new IllegalArgumentException("El tipo de movimiento es requerido");
   }
-  if (cantidad <= 0) {
-    throw new IllegalArgumentException("La cantidad debe ser positiva");
+  // AJUSTE lleva la diferencia de inventario con su signo; el resto, cantidades positivas
+  if (tipo == TipoMovimiento.AJUSTE ? cantidad == 0 : cantidad <= 0) {
+    throw new IllegalArgumentException(tipo == TipoMovimiento.AJUSTE
+        ? "El ajuste no puede ser cero" : "La cantidad debe ser positiva");
   }
   if (usuario == null) {
     throw new IllegalArgumentException("El usuario es requerido");
@@ -29,12 +46,20 @@ public class Movimiento {
   }
   
   // Regla de negocio: INGRESO sin servicio, EGRESO con servicio
-  if (tipo == TipoMovimiento.INGRESO && servicio != null) {
-    throw new IllegalArgumentException("Los movimientos de tipo INGRESO no pueden tener servicio");
+  if ((tipo == TipoMovimiento.INGRESO || tipo == TipoMovimiento.AJUSTE) && servicio != null) {
+    throw new IllegalArgumentException("Los movimientos de tipo " + tipo + " no pueden tener servicio");
   }
   if (tipo == TipoMovimiento.EGRESO && servicio == null) {
     throw new IllegalArgumentException("Los movimientos de tipo EGRESO deben tener un servicio");
   }
+  // TRANSFERENCIA: sin servicio y con un depósito destino distinto del origen
+  if (tipo == TipoMovimiento.TRANSFERENCIA
+      && (servicio != null || depositoDestinoId == null || depositoDestinoId == depositoId)) {
+    throw new IllegalArgumentException("Las transferencias requieren un depósito destino distinto del origen y sin servicio");
+  }
+  if (tipo != TipoMovimiento.TRANSFERENCIA && depositoDestinoId != null) {
+    throw new IllegalArgumentException("Solo las transferencias tienen depósito destino");
+  }
   
   this.id = id;
   this.tipo = tipo;
@@ -43,6 +68,8 @@ public class Movimiento {
   this.usuario = usuario;
   this.insumo = insumo;
   this.servicio = servicio;
+  this.depositoId = depositoId;
+  this.depositoDestinoId = depositoDestinoId;
 }
 
   public int getId() {
@@ -72,4 +99,39 @@ public class Movimiento {
   public Servicio getServicio() {
     return servicio;
   }
-}
\ No newline at end of file
+
+  public int getDepositoId() {
+    return depositoId;
+  }
+
+  public Integer getDepositoDestinoId() {
+    return depositoDestinoId;
+  }
+
+  public String getClaveIdempotencia() {
+    return claveIdempotencia;
+  }
+
+  public void setClaveIdempotencia(String claveIdempotencia) {
+    this.claveIdempotencia = claveIdempotencia;
+  }
+
+  public BigDecimal getCostoUnitario() {
+    return costoUnitario;
+  }
+
+  public void setCostoUnitario(BigDecimal costoUnitario) {
+    if (costoUnitario != null && (tipo != TipoMovimiento.INGRESO || costoUnitario.signum() < 0)) {
+      throw new IllegalArgumentException("Solo los ingresos llevan costo unitario y no puede ser negativo");
+    }
+    this.costoUnitario = costoUnitario;
+  }
+
+  public List<ConsumoLote> getLotes() {
+    return lotes;
+  }
+
+  public void setLotes(List<ConsumoLote> lotes) {
+    this.lotes = List.copyOf(lotes);
+  }
+}
@@ -0,0 +1,93 @@
+package domain;
+
+import java.time.LocalDateTime;
+
+import domain.enums.EstadoReserva;
+
+/**
+ * Reserva de stock de un insumo en un depósito para un servicio (por ejemplo, una cirugía
+ * programada): no retira el stock pero lo descuenta del disponible hasta que se confirma,
+ * se libera o vence
+ */
+public class Reserva {
+  private long id;
+  private String codigo;
+  private int depositoId;
+  private int servicioId;
+  private int cantidad;
+  private int legajo;
+  private LocalDateTime creada;
+  private LocalDateTime vence;
+  private EstadoReserva estado;
+
+  public Reserva(long id, String codigo, int depositoId, int servicioId, int cantidad, int legajo,
+      LocalDateTime creada, LocalDateTime vence, EstadoReserva estado) {
+    if (codigo == null || codigo.trim().isEmpty()) {
+      throw new IllegalArgumentException("El código no puede estar vacío");
+    }
+    if (cantidad <= 0) {
+      throw new IllegalArgumentException("La cantidad debe ser positiva");
+    }
+    if (creada == null || vence == null || !vence.isAfter(creada)) {
+      throw new IllegalArgumentException("El vencimiento de la reserva debe ser posterior a su creación");
+    }
+    if (estado == null) {
+      throw new IllegalArgumentException("El estado no puede ser nulo");
+    }
+    this.id = id;
+    this.codigo = codigo.trim();
+    this.depositoId = depositoId;
+    this.servicioId = servicioId;
+    this.cantidad = cantidad;
+    this.legajo = legajo;
+    this.creada = creada;
+    this.vence = vence;
+    this.estado = estado;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public int getDepositoId() {
+    return depositoId;
+  }
+
+  public int getServicioId() {
+    return servicioId;
+  }
+
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  public int getLegajo() {
+    return legajo;
+  }
+
+  public LocalDateTime getCreada() {
+    return creada;
+  }
+
+  public LocalDateTime getVence() {
+    return vence;
+  }
+
+  public EstadoReserva getEstado() {
+    return estado;
+  }
+
+  public void setEstado(EstadoReserva estado) {
+    this.estado = estado;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("#%d %s x%d (depósito %d, servicio %d) vence %s [%s]",
+        id, codigo, cantidad, depositoId, servicioId, vence.withNano(0), estado);
+  }
+}
@@ -0,0 +1,113 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Resumen de la conciliación de un inventario físico: filas contadas, diferencias con el sistema
+ * (ajustadas o no) y detalle de las filas rechazadas y los tramos que no se pudieron aplicar
+ */
+public class ResultadoConteo {
+  // Se guarda el detalle de los primeros errores; del resto solo se cuentan
+  private static final int MAX_ERRORES_DETALLADOS = 50;
+
+  private final int depositoId;
+  private final boolean aplicado;
+  private int contados;
+  private int rechazados;
+  private int noAplicados;
+  private int tramosFallidos;
+  private long duracionMs;
+  private final List<DiferenciaInventario> diferencias = new ArrayList<>();
+  private final List<String> errores = new ArrayList<>();
+
+  public ResultadoConteo(int depositoId, boolean aplicado) {
+    this.depositoId = depositoId;
+    this.aplicado = aplicado;
+  }
+
+  public void sumarContados(int cantidad) {
+    contados += cantidad;
+  }
+
+  public void agregarDiferencias(List<DiferenciaInventario> nuevas) {
+    diferencias.addAll(nuevas);
+  }
+
+  public void rechazar(int linea, String motivo) {
+    rechazados++;
+    detallar("Línea " + linea + ": " + motivo);
+  }
+
+  /**
+   * Registra un tramo de filas que no se pudo conciliar (su transacción se deshizo)
+   */
+  public void fallarTramo(int desdeLinea, int hastaLinea, int filas, String motivo) {
+    noAplicados += filas;
+    tramosFallidos++;
+    detallar("Líneas " + desdeLinea + " a " + hastaLinea + " sin conciliar: " + motivo);
+  }
+
+  public void setDuracionMs(long duracionMs) {
+    this.duracionMs = duracionMs;
+  }
+
+  public int getDepositoId() {
+    return depositoId;
+  }
+
+  /**
+   * Indica si las diferencias se ajustaron o solo se calcularon
+   */
+  public boolean isAplicado() {
+    return aplicado;
+  }
+
+  public int getContados() {
+    return contados;
+  }
+
+  public int getRechazados() {
+    return rechazados;
+  }
+
+  /**
+   * Filas válidas de tramos que fallaron: no se conciliaron y se pueden volver a procesar
+   */
+  public int getNoAplicados() {
+    return noAplicados;
+  }
+
+  public long getDuracionMs() {
+    return duracionMs;
+  }
+
+  /**
+   * Diferencias de mayor a menor en valor absoluto
+   */
+  public List<DiferenciaInventario> getDiferencias() {
+    List<DiferenciaInventario> ordenadas = new ArrayList<>(diferencias);
+    ordenadas.sort(Comparator.comparingInt((DiferenciaInventario d) -> -Math.abs(d.getDiferencia()))
+        .thenComparing(DiferenciaInventario::getCodigo));
+    return ordenadas;
+  }
+
+  public List<String> getErrores() {
+    return Collections.unmodifiableList(errores);
+  }
+
+  /**
+   * Cantidad total de errores (filas rechazadas y tramos fallidos), incluidos los no detallados
+   */
+  public int getCantidadErrores() {
+    return rechazados + tramosFallidos;
+  }
+
+  private void detallar(String error) {
+    if (errores.size() < MAX_ERRORES_DETALLADOS) {
+      errores.add(error);
+    }
+  }
+}
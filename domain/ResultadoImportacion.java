@@ -0,0 +1,58 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resumen de una importación de catálogo: cantidades por resultado y detalle de las filas rechazadas
+ */
+public class ResultadoImportacion {
+  // Se guarda el detalle de las primeras filas rechazadas; del resto solo se cuentan
+  private static final int MAX_ERRORES_DETALLADOS = 50;
+
+  private int insertados;
+  private int actualizados;
+  private int rechazados;
+  private long duracionMs;
+  private final List<String> errores = new ArrayList<>();
+
+  public void sumarInsertados(int cantidad) {
+    insertados += cantidad;
+  }
+
+  public void sumarActualizados(int cantidad) {
+    actualizados += cantidad;
+  }
+
+  public void rechazar(int linea, String motivo) {
+    rechazados++;
+    if (errores.size() < MAX_ERRORES_DETALLADOS) {
+      errores.add("Línea " + linea + ": " + motivo);
+    }
+  }
+
+  public void setDuracionMs(long duracionMs) {
+    this.duracionMs = duracionMs;
+  }
+
+  public int getInsertados() {
+    return insertados;
+  }
+
+  public int getActualizados() {
+    return actualizados;
+  }
+
+  public int getRechazados() {
+    return rechazados;
+  }
+
+  public long getDuracionMs() {
+    return duracionMs;
+  }
+
+  public List<String> getErrores() {
+    return Collections.unmodifiableList(errores);
+  }
+}
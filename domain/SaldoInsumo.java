@@ -0,0 +1,36 @@
+package domain;
+
+import java.time.LocalDate;
+
+/**
+ * Saldo de cierre de un insumo: su stock total (todos los depósitos) al terminar el día indicado
+ */
+public class SaldoInsumo {
+  private final String codigo;
+  private final LocalDate fecha;
+  private final int saldo;
+
+  public SaldoInsumo(String codigo, LocalDate fecha, int saldo) {
+    if (codigo == null || codigo.trim().isEmpty()) {
+      throw new IllegalArgumentException("El código no puede estar vacío");
+    }
+    if (fecha == null) {
+      throw new IllegalArgumentException("La fecha del saldo es requerida");
+    }
+    this.codigo = codigo.trim();
+    this.fecha = fecha;
+    this.saldo = saldo;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public LocalDate getFecha() {
+    return fecha;
+  }
+
+  public int getSaldo() {
+    return saldo;
+  }
+}
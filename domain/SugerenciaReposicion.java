@@ -0,0 +1,64 @@
+package domain;
+
+/**
+ * Resultado del motor de pronóstico para un insumo: consumo estimado,
+ * días de cobertura y punto/cantidad de reposición sugeridos
+ */
+public class SugerenciaReposicion {
+  private final String codigo;
+  private final int stock;
+  private final double consumoDiario;
+  private final double desvioDiario;
+  private final double diasDeCobertura;
+  private final int puntoDeReposicion;
+  private final int cantidadSugerida;
+
+  public SugerenciaReposicion(String codigo, int stock, double consumoDiario, double desvioDiario,
+      double diasDeCobertura, int puntoDeReposicion, int cantidadSugerida) {
+    this.codigo = codigo;
+    this.stock = stock;
+    this.consumoDiario = consumoDiario;
+    this.desvioDiario = desvioDiario;
+    this.diasDeCobertura = diasDeCobertura;
+    this.puntoDeReposicion = puntoDeReposicion;
+    this.cantidadSugerida = cantidadSugerida;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public int getStock() {
+    return stock;
+  }
+
+  public double getConsumoDiario() {
+    return consumoDiario;
+  }
+
+  public double getDesvioDiario() {
+    return desvioDiario;
+  }
+
+  /**
+   * Días que dura el stock actual al ritmo estimado (infinito si no hay consumo)
+   */
+  public double getDiasDeCobertura() {
+    return diasDeCobertura;
+  }
+
+  public int getPuntoDeReposicion() {
+    return puntoDeReposicion;
+  }
+
+  public int getCantidadSugerida() {
+    return cantidadSugerida;
+  }
+
+  /**
+   * Indica si el stock ya está en o por debajo del punto de reposición
+   */
+  public boolean debeReponer() {
+    return stock <= puntoDeReposicion && cantidadSugerida > 0;
+  }
+}
@@ -0,0 +1,40 @@
+package domain;
+
+import domain.enums.AgrupacionConsumo;
+
+/**
+ * Cantidad total consumida (egresos) por un insumo, servicio o usuario en un ranking
+ * La clave es el código del insumo, el id del servicio o el legajo según la agrupación
+ */
+public class TotalConsumo {
+  private final AgrupacionConsumo agrupacion;
+  private final String clave;
+  private final long cantidad;
+  private final boolean aproximado;
+
+  public TotalConsumo(AgrupacionConsumo agrupacion, String clave, long cantidad, boolean aproximado) {
+    this.agrupacion = agrupacion;
+    this.clave = clave;
+    this.cantidad = cantidad;
+    this.aproximado = aproximado;
+  }
+
+  public AgrupacionConsumo getAgrupacion() {
+    return agrupacion;
+  }
+
+  public String getClave() {
+    return clave;
+  }
+
+  public long getCantidad() {
+    return cantidad;
+  }
+
+  /**
+   * Indica si la cantidad es una estimación del ranking en vivo (puede superar a la real, nunca ser menor)
+   */
+  public boolean isAproximado() {
+    return aproximado;
+  }
+}
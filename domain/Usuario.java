@@ -5,7 +5,7 @@ import java.time.LocalDateTime;
 
 public class Usuario extends Persona {
   private int legajo;
-  private String password; // por ahora texto plano
+  private String password; // hash PBKDF2 (los valores en texto plano heredados se migran en el login)
   private Rol rol;
   private boolean activo = true;
   private LocalDateTime creadoEn; // para coincidir con la base de datos en la proxima entrega, ya que en el diagrama de clases no lo tenia pero si lo agregue en el diagrama de entidad-relacion
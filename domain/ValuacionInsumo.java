@@ -0,0 +1,48 @@
+package domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Valuación del stock total de un insumo: la cantidad valuada, su valor según las capas FIFO
+ * y el costo promedio ponderado de lo que entró
+ */
+public class ValuacionInsumo {
+  private final String codigo;
+  private final int cantidad;
+  private final BigDecimal valorFifo;
+  private final BigDecimal costoPromedio;
+
+  public ValuacionInsumo(String codigo, int cantidad, BigDecimal valorFifo, BigDecimal costoPromedio) {
+    if (codigo == null || codigo.trim().isEmpty()) {
+      throw new IllegalArgumentException("El código no puede estar vacío");
+    }
+    this.codigo = codigo.trim();
+    this.cantidad = cantidad;
+    this.valorFifo = valorFifo;
+    this.costoPromedio = costoPromedio;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  public BigDecimal getValorFifo() {
+    return valorFifo;
+  }
+
+  public BigDecimal getCostoPromedio() {
+    return costoPromedio;
+  }
+
+  /**
+   * Valor del stock al costo promedio ponderado
+   */
+  public BigDecimal getValorPromedio() {
+    return costoPromedio.multiply(BigDecimal.valueOf(cantidad)).setScale(valorFifo.scale(), RoundingMode.HALF_EVEN);
+  }
+}
@@ -0,0 +1,86 @@
+package domain;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import domain.enums.TipoMovimiento;
+
+/**
+ * Movimiento guardado que todavía no se aplicó a la valuación de su insumo
+ * Se anota en la transacción del movimiento y se aplica después, en orden, fuera del camino de
+ * los egresos
+ */
+public class ValuacionPendiente {
+  private final long id;
+  private final long movimientoId;
+  private final String codigo;
+  private final TipoMovimiento tipo;
+  private final int cantidad;
+  private final BigDecimal costoUnitario;
+  private final int servicioId;
+  private final LocalDateTime fecha;
+
+  /**
+   * @param costoUnitario costo informado en el ingreso (null si no hay)
+   * @param servicioId    servicio del egreso; CostoConsumo.FALTANTES_INVENTARIO si no tiene
+   */
+  public ValuacionPendiente(long id, long movimientoId, String codigo, TipoMovimiento tipo, int cantidad,
+      BigDecimal costoUnitario, int servicioId, LocalDateTime fecha) {
+    if (codigo == null || codigo.trim().isEmpty()) {
+      throw new IllegalArgumentException("El código no puede estar vacío");
+    }
+    if (tipo == null || tipo == TipoMovimiento.TRANSFERENCIA) {
+      throw new IllegalArgumentException("Las transferencias no cambian la valuación");
+    }
+    this.id = id;
+    this.movimientoId = movimientoId;
+    this.codigo = codigo.trim();
+    this.tipo = tipo;
+    this.cantidad = cantidad;
+    this.costoUnitario = costoUnitario;
+    this.servicioId = servicioId;
+    this.fecha = fecha;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public long getMovimientoId() {
+    return movimientoId;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public TipoMovimiento getTipo() {
+    return tipo;
+  }
+
+  /**
+   * Negativa solo en los AJUSTE por faltante
+   */
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  public BigDecimal getCostoUnitario() {
+    return costoUnitario;
+  }
+
+  public int getServicioId() {
+    return servicioId;
+  }
+
+  public LocalDateTime getFecha() {
+    return fecha;
+  }
+
+  /**
+   * Ingresos y sobrantes de inventario
+   */
+  public boolean esEntrada() {
+    return tipo == TipoMovimiento.INGRESO || (tipo == TipoMovimiento.AJUSTE && cantidad > 0);
+  }
+}
@@ -0,0 +1,5 @@
+package domain.enums;
+
+public enum AgrupacionConsumo {
+  INSUMO, SERVICIO, USUARIO
+}
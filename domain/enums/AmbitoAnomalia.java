@@ -0,0 +1,5 @@
+package domain.enums;
+
+public enum AmbitoAnomalia {
+  INSUMO_SERVICIO, USUARIO
+}
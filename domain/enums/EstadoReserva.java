@@ -0,0 +1,5 @@
+package domain.enums;
+
+public enum EstadoReserva {
+  ACTIVA, CONFIRMADA, LIBERADA, VENCIDA
+}
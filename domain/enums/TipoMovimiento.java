@@ -1,5 +1,5 @@
 package domain.enums;
 
 public enum TipoMovimiento {
-  INGRESO, EGRESO
+  INGRESO, EGRESO, TRANSFERENCIA, AJUSTE
 }
\ No newline at end of file
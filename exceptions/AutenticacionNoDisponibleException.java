@@ -0,0 +1,15 @@
+package exceptions;
+
+/**
+ * Se lanza cuando el servicio de autenticación está saturado y no puede
+ * verificar las credenciales en este momento
+ */
+public class AutenticacionNoDisponibleException extends RuntimeException {
+  public AutenticacionNoDisponibleException(String message) {
+    super(message);
+  }
+
+  public AutenticacionNoDisponibleException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
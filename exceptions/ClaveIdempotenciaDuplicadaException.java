@@ -0,0 +1,10 @@
+package exceptions;
+
+/**
+ * Se intentó registrar un segundo movimiento con una clave de idempotencia ya usada
+ */
+public class ClaveIdempotenciaDuplicadaException extends RuntimeException {
+  public ClaveIdempotenciaDuplicadaException(String clave, Throwable cause) {
+    super("Clave de idempotencia ya registrada: " + clave, cause);
+  }
+}
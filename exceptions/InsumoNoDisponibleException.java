@@ -0,0 +1,7 @@
+package exceptions;
+
+public class InsumoNoDisponibleException extends RuntimeException {
+  public InsumoNoDisponibleException(String message) {
+    super(message);
+  }
+}
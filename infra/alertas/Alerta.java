@@ -0,0 +1,53 @@
+package infra.alertas;
+
+import java.time.LocalDateTime;
+
+/**
+ * Alerta operativa sobre un insumo
+ * Cuando varias alertas iguales se agrupan en una ventana, ocurrencias indica cuántas representa
+ */
+public class Alerta {
+  private final TipoAlerta tipo;
+  private final String codigo;
+  private final String mensaje;
+  private final LocalDateTime fecha;
+  private final int ocurrencias;
+
+  public Alerta(TipoAlerta tipo, String codigo, String mensaje) {
+    this(tipo, codigo, mensaje, LocalDateTime.now(), 1);
+  }
+
+  public Alerta(TipoAlerta tipo, String codigo, String mensaje, LocalDateTime fecha, int ocurrencias) {
+    this.tipo = tipo;
+    this.codigo = codigo;
+    this.mensaje = mensaje;
+    this.fecha = fecha;
+    this.ocurrencias = ocurrencias;
+  }
+
+  public TipoAlerta getTipo() {
+    return tipo;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public String getMensaje() {
+    return mensaje;
+  }
+
+  public LocalDateTime getFecha() {
+    return fecha;
+  }
+
+  public int getOcurrencias() {
+    return ocurrencias;
+  }
+
+  @Override
+  public String toString() {
+    String base = fecha.withNano(0) + " [" + tipo + "] " + codigo + ": " + mensaje;
+    return ocurrencias > 1 ? base + " (x" + ocurrencias + ")" : base;
+  }
+}
@@ -0,0 +1,20 @@
+package infra.alertas;
+
+import java.io.IOException;
+
+/**
+ * Destino de entrega de alertas (archivo, socket, consola...)
+ * Lo invoca únicamente el hilo de GestorAlertas, por lo que no necesita ser seguro para concurrencia
+ */
+public interface AlertaSink {
+  void entregar(Alerta alerta) throws IOException;
+
+  /**
+   * Se llama al final de cada lote de entregas
+   */
+  default void vaciar() throws IOException {
+  }
+
+  default void cerrar() throws IOException {
+  }
+}
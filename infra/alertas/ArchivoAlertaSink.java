@@ -0,0 +1,32 @@
+package infra.alertas;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Agrega cada alerta como una línea de texto al final de un archivo
+ */
+public class ArchivoAlertaSink implements AlertaSink {
+  private final BufferedWriter out;
+
+  public ArchivoAlertaSink(String archivo) throws IOException {
+    this.out = new BufferedWriter(new FileWriter(archivo, true));
+  }
+
+  @Override
+  public void entregar(Alerta alerta) throws IOException {
+    out.write(alerta.toString());
+    out.newLine();
+  }
+
+  @Override
+  public void vaciar() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void cerrar() throws IOException {
+    out.close();
+  }
+}
@@ -0,0 +1,11 @@
+package infra.alertas;
+
+/**
+ * Muestra las alertas por la salida estándar
+ */
+public class ConsolaAlertaSink implements AlertaSink {
+  @Override
+  public void entregar(Alerta alerta) {
+    System.out.println("¡ALERTA! " + alerta);
+  }
+}
@@ -0,0 +1,222 @@
+package infra.alertas;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import infra.metricas.Contador;
+import infra.metricas.Metricas;
+
+/**
+ * Canal asíncrono de alertas
+ * emitir() solo encola (sin bloquear; si la cola está llena la alerta se descarta y se cuenta).
+ * Un hilo en segundo plano agrupa las alertas iguales (mismo tipo e insumo): la primera se entrega
+ * enseguida y las repeticiones dentro de la ventana se resumen en una sola alerta al cerrarla
+ *
+ * Configuración:
+ *   -Dclinica.alertas.capacidad=1024     tamaño de la cola
+ *   -Dclinica.alertas.ventanaSeg=300     ventana de agrupamiento por tipo e insumo
+ *   -Dclinica.alertas.archivo=alertas.log (vacío desactiva)
+ *   -Dclinica.alertas.puerto=0           puerto UDP local al que enviar las alertas (0 desactiva)
+ *   -Dclinica.alertas.consola=true
+ */
+public final class GestorAlertas {
+  private static final int CAPACIDAD = Integer.getInteger("clinica.alertas.capacidad", 1024);
+  private static final long VENTANA_MS = Long.getLong("clinica.alertas.ventanaSeg", 300) * 1_000;
+  private static final int TAMANIO_LOTE = 256;
+
+  private static final BlockingQueue<Alerta> pendientes = new ArrayBlockingQueue<>(CAPACIDAD);
+  private static final List<AlertaSink> sinks = new CopyOnWriteArrayList<>();
+  private static final Contador DESCARTADAS = Metricas.contador("alertas.descartadas");
+  private static final Contador AGRUPADAS = Metricas.contador("alertas.agrupadas");
+  private static final Contador ENTREGADAS = Metricas.contador("alertas.entregadas");
+  private static final Contador ERRORES = Metricas.contador("alertas.erroresEntrega");
+
+  private static Thread trabajador;
+  private static volatile boolean activo;
+
+  private GestorAlertas() {
+  }
+
+  /**
+   * Encola una alerta sin bloquear; no hace nada si el gestor no está iniciado
+   */
+  public static void emitir(TipoAlerta tipo, String codigo, String mensaje) {
+    if (!activo) {
+      return;
+    }
+    if (!pendientes.offer(new Alerta(tipo, codigo, mensaje))) {
+      DESCARTADAS.incrementar();
+    }
+  }
+
+  /**
+   * Agrega un destino de entrega; se puede llamar antes o después de iniciar
+   */
+  public static void agregarSink(AlertaSink sink) {
+    sinks.add(sink);
+  }
+
+  /**
+   * Arranca el hilo de entrega; si no se agregó ningún destino usa los configurados por propiedades
+   */
+  public static synchronized void iniciar() {
+    if (trabajador != null) {
+      return;
+    }
+    if (sinks.isEmpty()) {
+      configurarSinks();
+    }
+    activo = true;
+    trabajador = new Thread(GestorAlertas::procesar, "alertas");
+    trabajador.setDaemon(true);
+    trabajador.start();
+  }
+
+  /**
+   * Entrega lo pendiente (incluidos los resúmenes de ventanas abiertas) y cierra los destinos
+   */
+  public static synchronized void detener() {
+    if (trabajador == null) {
+      return;
+    }
+    activo = false;
+    try {
+      trabajador.join(5_000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    trabajador = null;
+    for (AlertaSink sink : sinks) {
+      try {
+        sink.cerrar();
+      } catch (IOException e) {
+        System.err.println("Error al cerrar destino de alertas: " + e.getMessage());
+      }
+    }
+    sinks.clear();
+  }
+
+  private static void configurarSinks() {
+    if (Boolean.parseBoolean(System.getProperty("clinica.alertas.consola", "true"))) {
+      sinks.add(new ConsolaAlertaSink());
+    }
+    String archivo = System.getProperty("clinica.alertas.archivo", "alertas.log");
+    if (!archivo.isEmpty()) {
+      try {
+        sinks.add(new ArchivoAlertaSink(archivo));
+      } catch (IOException e) {
+        System.err.println("No se pudo abrir el archivo de alertas " + archivo + ": " + e.getMessage());
+      }
+    }
+    int puerto = Integer.getInteger("clinica.alertas.puerto", 0);
+    if (puerto > 0) {
+      try {
+        sinks.add(new SocketAlertaSink("127.0.0.1", puerto));
+      } catch (IOException e) {
+        System.err.println("No se pudo abrir el socket de alertas: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Bucle del hilo de entrega; el estado de las ventanas solo lo toca este hilo
+   */
+  private static void procesar() {
+    Map<String, Ventana> ventanas = new HashMap<>();
+    List<Alerta> lote = new ArrayList<>(TAMANIO_LOTE);
+    List<Alerta> aEntregar = new ArrayList<>();
+    try {
+      while (activo || !pendientes.isEmpty()) {
+        Alerta primera = pendientes.poll(1, TimeUnit.SECONDS);
+        if (primera != null) {
+          lote.add(primera);
+          pendientes.drainTo(lote, TAMANIO_LOTE - 1);
+        }
+        long ahora = System.currentTimeMillis();
+        for (Alerta a : lote) {
+          agrupar(ventanas, a, ahora, aEntregar);
+        }
+        lote.clear();
+        cerrarVentanas(ventanas, ahora, false, aEntregar);
+        entregar(aEntregar);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    cerrarVentanas(ventanas, System.currentTimeMillis(), true, aEntregar);
+    entregar(aEntregar);
+  }
+
+  private static void agrupar(Map<String, Ventana> ventanas, Alerta alerta, long ahora, List<Alerta> aEntregar) {
+    String clave = alerta.getTipo() + ":" + alerta.getCodigo();
+    Ventana v = ventanas.get(clave);
+    if (v == null) {
+      ventanas.put(clave, new Ventana(ahora));
+      aEntregar.add(alerta);
+      return;
+    }
+    v.repeticiones++;
+    v.ultima = alerta;
+    AGRUPADAS.incrementar();
+  }
+
+  /**
+   * Cierra las ventanas vencidas (o todas): las que acumularon repeticiones generan una
+   * alerta resumen y abren una ventana nueva; las demás se descartan
+   */
+  private static void cerrarVentanas(Map<String, Ventana> ventanas, long ahora, boolean todas, List<Alerta> aEntregar) {
+    Iterator<Ventana> it = ventanas.values().iterator();
+    while (it.hasNext()) {
+      Ventana v = it.next();
+      if (!todas && ahora - v.apertura < VENTANA_MS) {
+        continue;
+      }
+      if (v.repeticiones == 0) {
+        it.remove();
+        continue;
+      }
+      Alerta u = v.ultima;
+      aEntregar.add(new Alerta(u.getTipo(), u.getCodigo(), u.getMensaje(), u.getFecha(), v.repeticiones));
+      v.apertura = ahora;
+      v.repeticiones = 0;
+      v.ultima = null;
+    }
+  }
+
+  private static void entregar(List<Alerta> alertas) {
+    if (alertas.isEmpty()) {
+      return;
+    }
+    for (AlertaSink sink : sinks) {
+      try {
+        for (Alerta a : alertas) {
+          sink.entregar(a);
+        }
+        sink.vaciar();
+      } catch (IOException | RuntimeException e) {
+        ERRORES.incrementar();
+        System.err.println("Error al entregar alertas: " + e.getMessage());
+      }
+    }
+    ENTREGADAS.sumar(alertas.size());
+    alertas.clear();
+  }
+
+  private static final class Ventana {
+    long apertura;
+    int repeticiones;
+    Alerta ultima;
+
+    Ventana(long apertura) {
+      this.apertura = apertura;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package infra.alertas;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Envía cada alerta como un datagrama UDP a un puerto local (por ejemplo, un agente de monitoreo)
+ * UDP no bloquea si no hay nadie escuchando
+ */
+public class SocketAlertaSink implements AlertaSink {
+  private final DatagramSocket socket;
+  private final InetAddress destino;
+  private final int puerto;
+
+  public SocketAlertaSink(String host, int puerto) throws IOException {
+    this.socket = new DatagramSocket();
+    this.destino = InetAddress.getByName(host);
+    this.puerto = puerto;
+  }
+
+  @Override
+  public void entregar(Alerta alerta) throws IOException {
+    byte[] datos = alerta.toString().getBytes(StandardCharsets.UTF_8);
+    socket.send(new DatagramPacket(datos, datos.length, destino, puerto));
+  }
+
+  @Override
+  public void cerrar() {
+    socket.close();
+  }
+}
@@ -0,0 +1,7 @@
+package infra.alertas;
+
+public enum TipoAlerta {
+  STOCK_CRITICO,
+  VENCIMIENTO,
+  ANOMALIA
+}
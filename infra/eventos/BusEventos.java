@@ -0,0 +1,175 @@
+package infra.eventos;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import domain.Movimiento;
+import infra.metricas.Contador;
+import infra.metricas.Metricas;
+
+/**
+ * Bus de eventos de movimientos sobre un anillo de tamaño fijo con eventos reservados de antemano
+ * Publicar nunca bloquea ni espera a los suscriptores: cada uno avanza con su propia secuencia en
+ * su propio hilo y procesa por lotes. Si un suscriptor queda una vuelta completa atrás, salta al
+ * evento más antiguo que sigue en el anillo y cuenta los perdidos, de modo que un consumidor lento
+ * nunca hace crecer la memoria
+ *
+ * Configuración:
+ *   -Dclinica.eventos.capacidad=4096   eventos del anillo (se redondea a potencia de 2)
+ *   -Dclinica.eventos.espera=bloqueante  bloqueante | durmiente | activa
+ */
+public class BusEventos {
+  private final Ranura[] anillo;
+  private final int mascara;
+  private final AtomicLong cursor = new AtomicLong(-1);
+  private final EstrategiaEspera espera;
+  private final List<Procesador> procesadores = new CopyOnWriteArrayList<>();
+  private final Contador publicados = Metricas.contador("eventos.publicados");
+
+  public BusEventos() {
+    this(Integer.getInteger("clinica.eventos.capacidad", 4096), EstrategiaEspera.desdeConfiguracion());
+  }
+
+  public BusEventos(int capacidad, EstrategiaEspera espera) {
+    if (capacidad <= 0) {
+      throw new IllegalArgumentException("La capacidad debe ser positiva");
+    }
+    int tamanio = Integer.highestOneBit(capacidad);
+    if (tamanio < capacidad) {
+      tamanio <<= 1;
+    }
+    this.anillo = new Ranura[tamanio];
+    for (int i = 0; i < tamanio; i++) {
+      anillo[i] = new Ranura();
+    }
+    this.mascara = tamanio - 1;
+    this.espera = espera;
+  }
+
+  /**
+   * Publica un movimiento confirmado; copia sus datos en la ranura siguiente del anillo
+   */
+  public void publicar(Movimiento mov) {
+    // La sección crítica entre productores es solo la copia de unos pocos campos
+    synchronized (this) {
+      long secuencia = cursor.get() + 1;
+      Ranura r = anillo[(int) (secuencia & mascara)];
+      r.secuencia = -1;
+      VarHandle.storeStoreFence();
+      r.evento.copiarDe(mov);
+      r.secuencia = secuencia;
+      cursor.set(secuencia);
+    }
+    espera.senalar();
+    publicados.incrementar();
+  }
+
+  /**
+   * Registra un suscriptor y arranca su hilo; recibe solo los eventos publicados desde ahora
+   */
+  public void suscribir(String nombre, SuscriptorMovimientos suscriptor) {
+    Procesador p = new Procesador(nombre, suscriptor, cursor.get() + 1);
+    procesadores.add(p);
+    p.start();
+  }
+
+  /**
+   * Detiene los suscriptores después de que procesen lo ya publicado
+   */
+  public void detener() {
+    for (Procesador p : procesadores) {
+      p.activo = false;
+    }
+    for (Procesador p : procesadores) {
+      try {
+        p.join(5_000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    procesadores.clear();
+  }
+
+  public int getCapacidad() {
+    return anillo.length;
+  }
+
+  private static final class Ranura {
+    final MovimientoRegistrado evento = new MovimientoRegistrado();
+    volatile long secuencia = -1;
+  }
+
+  /**
+   * Hilo de un suscriptor: lee cada ranura con un control de versión (la secuencia antes y después
+   * de copiar) para detectar si el productor la sobrescribió mientras la leía
+   */
+  private final class Procesador extends Thread {
+    private final SuscriptorMovimientos suscriptor;
+    private final MovimientoRegistrado copia = new MovimientoRegistrado();
+    private final Contador perdidos;
+    private final Contador errores;
+    private long siguiente;
+    private volatile boolean activo = true;
+
+    Procesador(String nombre, SuscriptorMovimientos suscriptor, long desde) {
+      super("eventos-" + nombre);
+      setDaemon(true);
+      this.suscriptor = suscriptor;
+      this.siguiente = desde;
+      this.perdidos = Metricas.contador("eventos." + nombre + ".perdidos");
+      this.errores = Metricas.contador("eventos." + nombre + ".errores");
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (activo || siguiente <= cursor.get()) {
+          long disponible = espera.esperar(siguiente, cursor);
+          while (siguiente <= disponible) {
+            long sec = siguiente;
+            if (!leer(sec)) {
+              saltar(disponible);
+              continue;
+            }
+            entregar(sec, sec == disponible);
+            siguiente = sec + 1;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private boolean leer(long secuencia) {
+      Ranura r = anillo[(int) (secuencia & mascara)];
+      if (r.secuencia != secuencia) {
+        return false;
+      }
+      copia.copiarDe(r.evento);
+      VarHandle.loadLoadFence();
+      return r.secuencia == secuencia;
+    }
+
+    /**
+     * El productor dio la vuelta: se saltea hasta el evento más antiguo que todavía no puede ser pisado
+     */
+    private void saltar(long disponible) {
+      long masAntiguo = Math.max(siguiente + 1, cursor.get() - anillo.length + 2);
+      long nuevo = Math.min(masAntiguo, disponible + 1);
+      perdidos.sumar(nuevo - siguiente);
+      siguiente = nuevo;
+    }
+
+    private void entregar(long secuencia, boolean finDeLote) {
+      try {
+        suscriptor.alRecibir(copia, secuencia, finDeLote);
+      } catch (RuntimeException e) {
+        errores.incrementar();
+        System.err.println("Error en suscriptor " + getName() + ": " + e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package infra.eventos;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cómo espera un suscriptor a que se publiquen eventos nuevos
+ * esperar devuelve el último número de secuencia publicado; si es menor que el pedido,
+ * venció la espera y el suscriptor vuelve a verificar si debe terminar
+ */
+public interface EstrategiaEspera {
+  long esperar(long secuencia, AtomicLong cursor) throws InterruptedException;
+
+  /**
+   * Lo llama el productor después de publicar
+   */
+  default void senalar() {
+  }
+
+  /**
+   * Estrategia según -Dclinica.eventos.espera (bloqueante, durmiente o activa)
+   */
+  static EstrategiaEspera desdeConfiguracion() {
+    String nombre = System.getProperty("clinica.eventos.espera", "bloqueante");
+    switch (nombre) {
+      case "bloqueante":
+        return new Bloqueante();
+      case "durmiente":
+        return new Durmiente();
+      case "activa":
+        return new Activa();
+      default:
+        throw new IllegalArgumentException("Estrategia de espera desconocida: " + nombre);
+    }
+  }
+
+  /**
+   * Duerme en una condición hasta que el productor señala: mínimo uso de CPU, mayor latencia
+   */
+  final class Bloqueante implements EstrategiaEspera {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition publicado = lock.newCondition();
+
+    @Override
+    public long esperar(long secuencia, AtomicLong cursor) throws InterruptedException {
+      long disponible = cursor.get();
+      if (disponible >= secuencia) {
+        return disponible;
+      }
+      lock.lock();
+      try {
+        while ((disponible = cursor.get()) < secuencia) {
+          if (!publicado.await(100, TimeUnit.MILLISECONDS)) {
+            return cursor.get();
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+      return disponible;
+    }
+
+    @Override
+    public void senalar() {
+      lock.lock();
+      try {
+        publicado.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Gira un poco, cede el procesador y luego duerme intervalos cortos; el productor no paga señalización
+   */
+  final class Durmiente implements EstrategiaEspera {
+    private static final int GIROS = 100;
+    private static final int CESIONES = 100;
+    private static final long SIESTA_NANOS = 100_000;
+    private static final int SIESTAS_POR_ESPERA = 1_000;
+
+    @Override
+    public long esperar(long secuencia, AtomicLong cursor) {
+      long disponible;
+      int intentos = 0;
+      while ((disponible = cursor.get()) < secuencia) {
+        if (intentos < GIROS) {
+          Thread.onSpinWait();
+        } else if (intentos < GIROS + CESIONES) {
+          Thread.yield();
+        } else if (intentos < GIROS + CESIONES + SIESTAS_POR_ESPERA) {
+          LockSupport.parkNanos(SIESTA_NANOS);
+        } else {
+          return disponible;
+        }
+        intentos++;
+      }
+      return disponible;
+    }
+  }
+
+  /**
+   * Giro activo permanente: la menor latencia a costa de un núcleo por suscriptor
+   */
+  final class Activa implements EstrategiaEspera {
+    private static final int GIROS_POR_ESPERA = 10_000_000;
+
+    @Override
+    public long esperar(long secuencia, AtomicLong cursor) {
+      long disponible;
+      int giros = 0;
+      while ((disponible = cursor.get()) < secuencia && giros++ < GIROS_POR_ESPERA) {
+        Thread.onSpinWait();
+      }
+      return disponible;
+    }
+  }
+}
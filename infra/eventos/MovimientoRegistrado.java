@@ -0,0 +1,124 @@
+package infra.eventos;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import domain.Movimiento;
+import domain.enums.TipoMovimiento;
+
+/**
+ * Evento publicado después de confirmar un movimiento de stock
+ * Las instancias se reservan una sola vez en el anillo y se reutilizan: los suscriptores
+ * no deben guardar la referencia más allá de la llamada
+ */
+public final class MovimientoRegistrado {
+  private int movimientoId;
+  private TipoMovimiento tipo;
+  private LocalDateTime fecha;
+  private String codigo;
+  private String nombre;
+  private int cantidad;
+  private int servicioId;
+  private int depositoId;
+  private int depositoDestinoId;
+  private int legajo;
+  private int stockResultante;
+  private int stockMinimo;
+  private LocalDate fechaVencimiento;
+
+  MovimientoRegistrado() {
+  }
+
+  void copiarDe(Movimiento mov) {
+    movimientoId = mov.getId();
+    tipo = mov.getTipo();
+    fecha = mov.getFecha();
+    codigo = mov.getInsumo().getCodigo();
+    nombre = mov.getInsumo().getNombre();
+    cantidad = mov.getCantidad();
+    servicioId = mov.getServicio() != null ? mov.getServicio().getId() : 0;
+    depositoId = mov.getDepositoId();
+    depositoDestinoId = mov.getDepositoDestinoId() != null ? mov.getDepositoDestinoId() : 0;
+    legajo = mov.getUsuario().getLegajo();
+    stockResultante = mov.getInsumo().getStock();
+    stockMinimo = mov.getInsumo().getStockMinimo();
+    fechaVencimiento = mov.getInsumo().getFechaVencimiento();
+  }
+
+  void copiarDe(MovimientoRegistrado otro) {
+    movimientoId = otro.movimientoId;
+    tipo = otro.tipo;
+    fecha = otro.fecha;
+    codigo = otro.codigo;
+    nombre = otro.nombre;
+    cantidad = otro.cantidad;
+    servicioId = otro.servicioId;
+    depositoId = otro.depositoId;
+    depositoDestinoId = otro.depositoDestinoId;
+    legajo = otro.legajo;
+    stockResultante = otro.stockResultante;
+    stockMinimo = otro.stockMinimo;
+    fechaVencimiento = otro.fechaVencimiento;
+  }
+
+  public int getMovimientoId() {
+    return movimientoId;
+  }
+
+  public TipoMovimiento getTipo() {
+    return tipo;
+  }
+
+  public LocalDateTime getFecha() {
+    return fecha;
+  }
+
+  public String getCodigo() {
+    return codigo;
+  }
+
+  public String getNombre() {
+    return nombre;
+  }
+
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  /**
+   * Servicio del egreso (0 para ingresos)
+   */
+  public int getServicioId() {
+    return servicioId;
+  }
+
+  /**
+   * Depósito del movimiento (origen en las transferencias)
+   */
+  public int getDepositoId() {
+    return depositoId;
+  }
+
+  /**
+   * Depósito destino de una transferencia (0 en los demás movimientos)
+   */
+  public int getDepositoDestinoId() {
+    return depositoDestinoId;
+  }
+
+  public int getLegajo() {
+    return legajo;
+  }
+
+  public int getStockResultante() {
+    return stockResultante;
+  }
+
+  public int getStockMinimo() {
+    return stockMinimo;
+  }
+
+  public LocalDate getFechaVencimiento() {
+    return fechaVencimiento;
+  }
+}
@@ -0,0 +1,12 @@
+package infra.eventos;
+
+/**
+ * Consumidor de eventos del bus; cada suscriptor corre en su propio hilo
+ */
+@FunctionalInterface
+public interface SuscriptorMovimientos {
+  /**
+   * @param finDeLote true en el último evento disponible, útil para vaciar buffers una vez por lote
+   */
+  void alRecibir(MovimientoRegistrado evento, long secuencia, boolean finDeLote);
+}
@@ -0,0 +1,85 @@
+package infra.frecuencias;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch: estima la frecuencia acumulada de cada clave con profundidad x ancho contadores,
+ * sin importar cuántas claves distintas lleguen. La estimación nunca es menor que el valor real y,
+ * con probabilidad 1 - e^-profundidad, lo supera en a lo sumo e/ancho del total sumado
+ * No es seguro para hilos
+ */
+public final class CountMinSketch {
+  private final long[][] contadores;
+  private final int mascara;
+  private long total;
+
+  /**
+   * @param ancho       contadores por fila (se redondea a potencia de dos)
+   * @param profundidad filas, cada una con su propia función de hash
+   */
+  public CountMinSketch(int ancho, int profundidad) {
+    if (ancho <= 0 || profundidad <= 0) {
+      throw new IllegalArgumentException("El ancho y la profundidad deben ser positivos");
+    }
+    int n = ancho == 1 ? 1 : Integer.highestOneBit(ancho - 1) << 1;
+    this.contadores = new long[profundidad][n];
+    this.mascara = n - 1;
+  }
+
+  /**
+   * Suma la cantidad a la clave
+   *
+   * @return frecuencia estimada de la clave después de sumar
+   */
+  public long sumar(Object clave, long cantidad) {
+    int h = clave.hashCode();
+    long estimada = Long.MAX_VALUE;
+    for (int fila = 0; fila < contadores.length; fila++) {
+      long[] c = contadores[fila];
+      int i = indice(h, fila);
+      c[i] += cantidad;
+      estimada = Math.min(estimada, c[i]);
+    }
+    total += cantidad;
+    return estimada;
+  }
+
+  /**
+   * Frecuencia estimada de la clave (cota superior de la real)
+   */
+  public long estimar(Object clave) {
+    int h = clave.hashCode();
+    long estimada = Long.MAX_VALUE;
+    for (int fila = 0; fila < contadores.length; fila++) {
+      estimada = Math.min(estimada, contadores[fila][indice(h, fila)]);
+    }
+    return estimada;
+  }
+
+  /**
+   * Suma de todas las cantidades registradas
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  public void reiniciar() {
+    for (long[] fila : contadores) {
+      Arrays.fill(fila, 0);
+    }
+    total = 0;
+  }
+
+  /**
+   * Mezcla el hash con una semilla distinta por fila (finalizador de MurmurHash3)
+   */
+  private int indice(int hash, int fila) {
+    int h = hash ^ (0x9E3779B9 * (fila + 1));
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h & mascara;
+  }
+}
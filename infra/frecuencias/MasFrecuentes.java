@@ -0,0 +1,98 @@
+package infra.frecuencias;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Las claves más frecuentes de un flujo (heavy hitters) en memoria constante
+ * Un count-min sketch estima la frecuencia de cada clave y un montículo de mínimos (ordenado por
+ * estimación) guarda solo las candidatas con mayor estimación: cada suma cuesta O(profundidad + log
+ * candidatas) y una clave nueva entra si su estimación supera a la menor del montículo
+ * Las frecuencias son cotas superiores; el orden entre claves muy parecidas puede no ser exacto
+ */
+public final class MasFrecuentes<K> {
+  private final CountMinSketch sketch;
+  private final int capacidad;
+  private final Map<K, Candidata<K>> candidatas = new HashMap<>();
+  private final TreeSet<Candidata<K>> monticulo = new TreeSet<>((a, b) -> a.estimada != b.estimada
+      ? Long.compare(a.estimada, b.estimada)
+      : Long.compare(a.orden, b.orden));
+  private long siguienteOrden;
+
+  /**
+   * @param capacidad cantidad de candidatas que se siguen (el máximo top que se puede pedir)
+   */
+  public MasFrecuentes(int capacidad, int ancho, int profundidad) {
+    if (capacidad <= 0) {
+      throw new IllegalArgumentException("La capacidad debe ser positiva");
+    }
+    this.sketch = new CountMinSketch(ancho, profundidad);
+    this.capacidad = capacidad;
+  }
+
+  public synchronized void sumar(K clave, long cantidad) {
+    long estimada = sketch.sumar(clave, cantidad);
+    Candidata<K> c = candidatas.get(clave);
+    if (c != null) {
+      monticulo.remove(c);
+      c.estimada = estimada;
+      monticulo.add(c);
+      return;
+    }
+    if (candidatas.size() >= capacidad) {
+      Candidata<K> menor = monticulo.first();
+      if (estimada <= menor.estimada) {
+        return;
+      }
+      monticulo.pollFirst();
+      candidatas.remove(menor.clave);
+    }
+    c = new Candidata<>(clave, estimada, siguienteOrden++);
+    candidatas.put(clave, c);
+    monticulo.add(c);
+  }
+
+  /**
+   * Las n claves con mayor frecuencia estimada, de mayor a menor (n se limita a la capacidad)
+   */
+  public synchronized List<Map.Entry<K, Long>> top(int n) {
+    List<Map.Entry<K, Long>> out = new ArrayList<>(Math.min(n, candidatas.size()));
+    Iterator<Candidata<K>> it = monticulo.descendingIterator();
+    while (it.hasNext() && out.size() < n) {
+      Candidata<K> c = it.next();
+      out.add(new AbstractMap.SimpleImmutableEntry<>(c.clave, c.estimada));
+    }
+    return out;
+  }
+
+  public synchronized long getTotal() {
+    return sketch.getTotal();
+  }
+
+  public synchronized void reiniciar() {
+    sketch.reiniciar();
+    candidatas.clear();
+    monticulo.clear();
+  }
+
+  public int getCapacidad() {
+    return capacidad;
+  }
+
+  private static final class Candidata<K> {
+    final K clave;
+    final long orden;
+    long estimada;
+
+    Candidata(K clave, long estimada, long orden) {
+      this.clave = clave;
+      this.estimada = estimada;
+      this.orden = orden;
+    }
+  }
+}
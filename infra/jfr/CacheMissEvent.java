@@ -0,0 +1,22 @@
+package infra.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de un fallo de caché (duración = tiempo de carga del valor)
+ */
+@Name("clinica.CacheMiss")
+@Label("Fallo de caché")
+@Category({ "Clínica Horizonte", "Caché" })
+@Description("Consulta que no encontró el valor en caché y tuvo que calcularlo")
+public class CacheMissEvent extends Event {
+  @Label("Caché")
+  public String cache;
+
+  @Label("Clave")
+  public String clave;
+}
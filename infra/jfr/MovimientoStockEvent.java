@@ -0,0 +1,34 @@
+package infra.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de un movimiento de stock confirmado (duración = operación completa)
+ */
+@Name("clinica.MovimientoStock")
+@Label("Movimiento de stock")
+@Category({ "Clínica Horizonte", "Stock" })
+@Description("Ingreso o egreso de un insumo registrado por StockService")
+public class MovimientoStockEvent extends Event {
+  @Label("Tipo")
+  public String tipo;
+
+  @Label("Código de insumo")
+  public String codigo;
+
+  @Label("Cantidad")
+  public int cantidad;
+
+  @Label("Servicio")
+  public int servicioId;
+
+  @Label("Legajo")
+  public int legajo;
+
+  @Label("Stock resultante")
+  public int stockResultante;
+}
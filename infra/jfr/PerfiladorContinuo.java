@@ -0,0 +1,149 @@
+package infra.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Perfilado continuo con JFR: graba con un buffer rotativo y, mediante event streaming,
+ * acumula los puntos calientes de CPU (muestras de ejecución) y de asignación de memoria
+ * para imprimirlos periódicamente y al salir
+ *
+ * Se activa al arrancar con -Dclinica.jfr.continuo=true
+ *   -Dclinica.jfr.intervaloSeg=0      cada cuánto imprimir el resumen (0 = solo al salir)
+ *   -Dclinica.jfr.retencionMin=30     antigüedad máxima del buffer rotativo
+ *   -Dclinica.jfr.top=10              cantidad de métodos a mostrar
+ * Al salir se vuelca el buffer en perfil-AAAAMMDD-HHMMSS.jfr para analizarlo con JDK Mission Control
+ */
+public final class PerfiladorContinuo {
+  private static final long TAMANIO_MAXIMO_BYTES = 100L * 1024 * 1024;
+
+  private static RecordingStream stream;
+  private static ScheduledExecutorService impresor;
+  private static final Map<String, LongAdder> muestrasCpu = new ConcurrentHashMap<>();
+  private static final Map<String, LongAdder> bytesAsignados = new ConcurrentHashMap<>();
+
+  private PerfiladorContinuo() {
+  }
+
+  /**
+   * Arranca el perfilado si está habilitado por configuración
+   */
+  public static synchronized void iniciarSiCorresponde() {
+    if (Boolean.getBoolean("clinica.jfr.continuo")) {
+      iniciar();
+    }
+  }
+
+  public static synchronized void iniciar() {
+    if (stream != null) {
+      return;
+    }
+    try {
+      stream = new RecordingStream(Configuration.getConfiguration("default"));
+    } catch (IOException | ParseException e) {
+      System.err.println("No se pudo cargar la configuración JFR: " + e.getMessage());
+      stream = new RecordingStream();
+    }
+
+    stream.setMaxAge(Duration.ofMinutes(Long.getLong("clinica.jfr.retencionMin", 30)));
+    stream.setMaxSize(TAMANIO_MAXIMO_BYTES);
+    stream.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(20));
+    stream.enable("jdk.ObjectAllocationSample").withStackTrace();
+
+    stream.onEvent("jdk.ExecutionSample", e -> acumular(muestrasCpu, e, 1));
+    stream.onEvent("jdk.ObjectAllocationSample", e -> acumular(bytesAsignados, e, e.getLong("weight")));
+    stream.startAsync();
+
+    long intervalo = Long.getLong("clinica.jfr.intervaloSeg", 0);
+    if (intervalo > 0) {
+      impresor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "jfr-resumen");
+        t.setDaemon(true);
+        return t;
+      });
+      impresor.scheduleWithFixedDelay(() -> System.out.print(resumen()), intervalo, intervalo, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Detiene el perfilado, imprime el resumen final y vuelca el buffer a un archivo .jfr
+   */
+  public static synchronized void detener() {
+    if (stream == null) {
+      return;
+    }
+    if (impresor != null) {
+      impresor.shutdownNow();
+      impresor = null;
+    }
+    Path destino = Paths.get("perfil-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr");
+    try {
+      stream.dump(destino);
+      System.out.println("Grabación JFR guardada en " + destino.toAbsolutePath());
+    } catch (IOException e) {
+      System.err.println("No se pudo volcar la grabación JFR: " + e.getMessage());
+    }
+    stream.close();
+    stream = null;
+    System.out.print(resumen());
+  }
+
+  /**
+   * Resumen de los métodos con más muestras de CPU y más bytes asignados
+   */
+  public static String resumen() {
+    int top = Integer.getInteger("clinica.jfr.top", 10);
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%n== Perfil continuo %s ==%n", LocalDateTime.now().withNano(0)));
+    sb.append("CPU (muestras de ejecución):").append(System.lineSeparator());
+    for (Map.Entry<String, Long> e : ordenar(muestrasCpu, top)) {
+      sb.append(String.format("  %8d  %s%n", e.getValue(), e.getKey()));
+    }
+    sb.append("Asignación de memoria (MB estimados):").append(System.lineSeparator());
+    for (Map.Entry<String, Long> e : ordenar(bytesAsignados, top)) {
+      sb.append(String.format("  %8.1f  %s%n", e.getValue() / (1024.0 * 1024.0), e.getKey()));
+    }
+    return sb.toString();
+  }
+
+  private static void acumular(Map<String, LongAdder> destino, RecordedEvent evento, long valor) {
+    RecordedStackTrace pila = evento.getStackTrace();
+    if (pila == null || pila.getFrames().isEmpty()) {
+      return;
+    }
+    RecordedFrame frame = pila.getFrames().get(0);
+    if (!frame.isJavaFrame()) {
+      return;
+    }
+    String metodo = frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    destino.computeIfAbsent(metodo, k -> new LongAdder()).add(valor);
+  }
+
+  private static List<Map.Entry<String, Long>> ordenar(Map<String, LongAdder> datos, int top) {
+    List<Map.Entry<String, Long>> lista = new ArrayList<>();
+    for (Map.Entry<String, LongAdder> e : datos.entrySet()) {
+      lista.add(Map.entry(e.getKey(), e.getValue().sum()));
+    }
+    lista.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+    return lista.size() > top ? lista.subList(0, top) : lista;
+  }
+}
@@ -0,0 +1,32 @@
+package infra.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de la generación de un reporte
+ */
+@Name("clinica.Reporte")
+@Label("Reporte")
+@Category({ "Clínica Horizonte", "Reportes" })
+@Description("Ejecución de un reporte de ReportesService")
+public class ReporteEvent extends Event {
+  @Label("Reporte")
+  public String reporte;
+
+  @Label("Desde")
+  public String desde;
+
+  @Label("Hasta")
+  public String hasta;
+
+  @Label("Servicio")
+  @Description("0 si no se filtró por servicio")
+  public int servicioId;
+
+  @Label("Filas")
+  public int filas;
+}
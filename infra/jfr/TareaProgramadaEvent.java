@@ -0,0 +1,27 @@
+package infra.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de la corrida de una tarea programada
+ */
+@Name("clinica.TareaProgramada")
+@Label("Tarea programada")
+@Category({ "Clínica Horizonte", "Planificador" })
+@Description("Corrida de una tarea del planificador")
+public class TareaProgramadaEvent extends Event {
+  @Label("Tarea")
+  public String tarea;
+
+  @Label("Manual")
+  @Description("true si se pidió fuera de su programación")
+  public boolean manual;
+
+  @Label("Error")
+  @Description("Mensaje de la excepción, vacío si terminó bien")
+  public String error;
+}
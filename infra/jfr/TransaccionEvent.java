@@ -0,0 +1,20 @@
+package infra.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de una transacción, desde beginTransaction hasta commit o rollback
+ */
+@Name("clinica.Transaccion")
+@Label("Transacción")
+@Category({ "Clínica Horizonte", "Base de datos" })
+@Description("Transacción gestionada por TransactionManager")
+public class TransaccionEvent extends Event {
+  @Label("Resultado")
+  @Description("COMMIT, COMMIT_FALLIDO o ROLLBACK")
+  public String resultado;
+}
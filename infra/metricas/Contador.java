@@ -0,0 +1,38 @@
+package infra.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contador monotónico seguro para concurrencia y sin asignaciones al incrementar
+ */
+public class Contador implements ContadorMXBean {
+  private final String nombre;
+  private final AtomicLong valor = new AtomicLong();
+
+  Contador(String nombre) {
+    this.nombre = nombre;
+  }
+
+  public void incrementar() {
+    valor.incrementAndGet();
+  }
+
+  public void sumar(long delta) {
+    valor.addAndGet(delta);
+  }
+
+  @Override
+  public String getNombre() {
+    return nombre;
+  }
+
+  @Override
+  public long getValor() {
+    return valor.get();
+  }
+
+  @Override
+  public void reiniciar() {
+    valor.set(0);
+  }
+}
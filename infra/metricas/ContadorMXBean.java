@@ -0,0 +1,12 @@
+package infra.metricas;
+
+/**
+ * Vista JMX de un contador
+ */
+public interface ContadorMXBean {
+  String getNombre();
+
+  long getValor();
+
+  void reiniciar();
+}
@@ -0,0 +1,151 @@
+package infra.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias log-lineal en nanosegundos
+ * Cada potencia de dos se divide en 16 sub-buckets (error relativo menor al 6,25%)
+ * Registrar un valor no asigna memoria: solo incrementa contadores atómicos
+ */
+public class Histograma implements HistogramaMXBean {
+  private static final int BITS_SUB_BUCKET = 4;
+  private static final int SUB_BUCKETS = 1 << BITS_SUB_BUCKET;
+  private static final int CANTIDAD_BUCKETS = SUB_BUCKETS + (63 - BITS_SUB_BUCKET) * SUB_BUCKETS;
+
+  private final String nombre;
+  private final AtomicLongArray buckets = new AtomicLongArray(CANTIDAD_BUCKETS);
+  private final AtomicLong cantidad = new AtomicLong();
+  private final AtomicLong errores = new AtomicLong();
+  private final AtomicLong suma = new AtomicLong();
+  private final AtomicLong maximo = new AtomicLong();
+
+  Histograma(String nombre) {
+    this.nombre = nombre;
+  }
+
+  /**
+   * Registra una duración en nanosegundos
+   */
+  public void registrar(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets.incrementAndGet(indice(nanos));
+    cantidad.incrementAndGet();
+    suma.addAndGet(nanos);
+    long actual = maximo.get();
+    while (nanos > actual && !maximo.compareAndSet(actual, nanos)) {
+      actual = maximo.get();
+    }
+  }
+
+  /**
+   * Registra una operación que terminó con excepción
+   */
+  public void registrarError() {
+    errores.incrementAndGet();
+  }
+
+  /**
+   * Obtiene el valor (en nanosegundos) del percentil indicado, entre 0 y 1
+   */
+  public long percentil(double q) {
+    long total = 0;
+    long[] copia = new long[CANTIDAD_BUCKETS];
+    for (int i = 0; i < CANTIDAD_BUCKETS; i++) {
+      copia[i] = buckets.get(i);
+      total += copia[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rango = Math.max(1, (long) Math.ceil(q * total));
+    long acumulado = 0;
+    for (int i = 0; i < CANTIDAD_BUCKETS; i++) {
+      acumulado += copia[i];
+      if (acumulado >= rango) {
+        return Math.min(valorRepresentativo(i), maximo.get());
+      }
+    }
+    return maximo.get();
+  }
+
+  @Override
+  public String getNombre() {
+    return nombre;
+  }
+
+  @Override
+  public long getCantidad() {
+    return cantidad.get();
+  }
+
+  @Override
+  public long getErrores() {
+    return errores.get();
+  }
+
+  @Override
+  public double getPromedioMicros() {
+    long n = cantidad.get();
+    return n == 0 ? 0 : suma.get() / (double) n / 1_000;
+  }
+
+  @Override
+  public double getP50Micros() {
+    return percentil(0.50) / 1_000.0;
+  }
+
+  @Override
+  public double getP99Micros() {
+    return percentil(0.99) / 1_000.0;
+  }
+
+  @Override
+  public double getP999Micros() {
+    return percentil(0.999) / 1_000.0;
+  }
+
+  @Override
+  public double getMaximoMicros() {
+    return maximo.get() / 1_000.0;
+  }
+
+  @Override
+  public void reiniciar() {
+    for (int i = 0; i < CANTIDAD_BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+    cantidad.set(0);
+    errores.set(0);
+    suma.set(0);
+    maximo.set(0);
+  }
+
+  /**
+   * Calcula el bucket de un valor: lineal hasta 16 y log-lineal desde ahí
+   */
+  private static int indice(long valor) {
+    if (valor < SUB_BUCKETS) {
+      return (int) valor;
+    }
+    int exponente = 63 - Long.numberOfLeadingZeros(valor);
+    int sub = (int) ((valor >>> (exponente - BITS_SUB_BUCKET)) & (SUB_BUCKETS - 1));
+    return SUB_BUCKETS + (exponente - BITS_SUB_BUCKET) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Punto medio del rango de valores que cae en el bucket
+   */
+  private static long valorRepresentativo(int indice) {
+    if (indice < SUB_BUCKETS) {
+      return indice;
+    }
+    int exponente = (indice - SUB_BUCKETS) / SUB_BUCKETS + BITS_SUB_BUCKET;
+    int sub = (indice - SUB_BUCKETS) % SUB_BUCKETS;
+    long ancho = 1L << (exponente - BITS_SUB_BUCKET);
+    long inferior = (SUB_BUCKETS + sub) * ancho;
+    return inferior + ancho / 2;
+  }
+}
@@ -0,0 +1,24 @@
+package infra.metricas;
+
+/**
+ * Vista JMX de un histograma de latencias (valores en microsegundos)
+ */
+public interface HistogramaMXBean {
+  String getNombre();
+
+  long getCantidad();
+
+  long getErrores();
+
+  double getPromedioMicros();
+
+  double getP50Micros();
+
+  double getP99Micros();
+
+  double getP999Micros();
+
+  double getMaximoMicros();
+
+  void reiniciar();
+}
@@ -0,0 +1,148 @@
+package infra.metricas;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro central de métricas de la aplicación
+ * Los histogramas y contadores se publican como MBeans de plataforma bajo el dominio
+ * clinica.horizonte y pueden volcarse periódicamente en texto
+ *
+ * Uso: obtener la métrica una sola vez (campo static final) y registrar en el camino caliente
+ */
+public final class Metricas {
+  private static final String DOMINIO_JMX = "clinica.horizonte";
+
+  private static final Map<String, Histograma> histogramas = new ConcurrentHashMap<>();
+  private static final Map<String, Contador> contadores = new ConcurrentHashMap<>();
+  private static ScheduledExecutorService volcador;
+
+  private Metricas() {
+  }
+
+  /**
+   * Obtiene (o crea y publica en JMX) el histograma con el nombre dado
+   */
+  public static Histograma histograma(String nombre) {
+    return histogramas.computeIfAbsent(nombre, n -> {
+      Histograma h = new Histograma(n);
+      registrarMBean("Histograma", n, h);
+      return h;
+    });
+  }
+
+  /**
+   * Obtiene (o crea y publica en JMX) el contador con el nombre dado
+   */
+  public static Contador contador(String nombre) {
+    return contadores.computeIfAbsent(nombre, n -> {
+      Contador c = new Contador(n);
+      registrarMBean("Contador", n, c);
+      return c;
+    });
+  }
+
+  /**
+   * Genera un volcado en texto de todas las métricas registradas
+   */
+  public static String volcado() {
+    StringWriter sw = new StringWriter();
+    PrintWriter out = new PrintWriter(sw);
+
+    out.printf("# Métricas %s%n", LocalDateTime.now().withNano(0));
+    out.printf("%-45s %10s %8s %10s %10s %10s %10s %10s%n",
+        "histograma", "cantidad", "errores", "prom(us)", "p50(us)", "p99(us)", "p999(us)", "max(us)");
+
+    List<Histograma> hs = new ArrayList<>(histogramas.values());
+    hs.sort(Comparator.comparing(Histograma::getNombre));
+    for (Histograma h : hs) {
+      if (h.getCantidad() == 0 && h.getErrores() == 0) {
+        continue;
+      }
+      out.printf("%-45s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+          h.getNombre(), h.getCantidad(), h.getErrores(), h.getPromedioMicros(),
+          h.getP50Micros(), h.getP99Micros(), h.getP999Micros(), h.getMaximoMicros());
+    }
+
+    List<Contador> cs = new ArrayList<>(contadores.values());
+    cs.sort(Comparator.comparing(Contador::getNombre));
+    if (!cs.isEmpty()) {
+      out.printf("%-45s %10s%n", "contador", "valor");
+      for (Contador c : cs) {
+        out.printf("%-45s %10d%n", c.getNombre(), c.getValor());
+      }
+    }
+
+    out.flush();
+    return sw.toString();
+  }
+
+  /**
+   * Inicia el volcado periódico de métricas agregando al archivo indicado
+   * Se configura con -Dclinica.metricas.volcadoSeg (0 = desactivado) y -Dclinica.metricas.archivo
+   */
+  public static synchronized void iniciarVolcadoPeriodico() {
+    long periodoSeg = Long.getLong("clinica.metricas.volcadoSeg", 60);
+    String archivo = System.getProperty("clinica.metricas.archivo", "metricas.log");
+    if (periodoSeg <= 0 || volcador != null) {
+      return;
+    }
+
+    volcador = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "metricas-volcado");
+      t.setDaemon(true);
+      return t;
+    });
+    volcador.scheduleWithFixedDelay(() -> volcarEnArchivo(archivo), periodoSeg, periodoSeg, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Detiene el volcado periódico y escribe un último volcado
+   */
+  public static synchronized void detenerVolcadoPeriodico() {
+    if (volcador == null) {
+      return;
+    }
+    volcador.shutdownNow();
+    volcador = null;
+    volcarEnArchivo(System.getProperty("clinica.metricas.archivo", "metricas.log"));
+  }
+
+  private static void volcarEnArchivo(String archivo) {
+    try (FileWriter fw = new FileWriter(archivo, true)) {
+      fw.write(volcado());
+      fw.write(System.lineSeparator());
+    } catch (IOException e) {
+      System.err.println("Error al volcar métricas en " + archivo + ": " + e.getMessage());
+    }
+  }
+
+  private static void registrarMBean(String tipo, String nombre, Object mbean) {
+    try {
+      MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+      ObjectName on = new ObjectName(DOMINIO_JMX + ":type=" + tipo + ",name=" + ObjectName.quote(nombre));
+      if (!servidor.isRegistered(on)) {
+        servidor.registerMBean(mbean, on);
+      }
+    } catch (JMException e) {
+      // Las métricas siguen funcionando aunque no se publiquen por JMX
+      System.err.println("No se pudo registrar la métrica " + nombre + " en JMX: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package infra.planificador;
+
+import java.time.LocalDateTime;
+
+/**
+ * Una corrida de una tarea programada
+ */
+public class EjecucionTarea {
+  private final LocalDateTime inicio;
+  private final long duracionMs;
+  private final String error;
+
+  public EjecucionTarea(LocalDateTime inicio, long duracionMs, String error) {
+    this.inicio = inicio;
+    this.duracionMs = duracionMs;
+    this.error = error;
+  }
+
+  public LocalDateTime getInicio() {
+    return inicio;
+  }
+
+  public long getDuracionMs() {
+    return duracionMs;
+  }
+
+  /**
+   * Mensaje de la excepción si la corrida falló, null si terminó bien
+   */
+  public String getError() {
+    return error;
+  }
+
+  public boolean isExitosa() {
+    return error == null;
+  }
+}
@@ -0,0 +1,62 @@
+package infra.planificador;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Foto del estado de una tarea programada: programación, próxima corrida y últimas corridas
+ */
+public class EstadoTarea {
+  private final String nombre;
+  private final String programacion;
+  private final LocalDateTime proxima;
+  private final boolean enEjecucion;
+  private final long salteadas;
+  private final List<EjecucionTarea> historial;
+
+  public EstadoTarea(String nombre, String programacion, LocalDateTime proxima, boolean enEjecucion,
+      long salteadas, List<EjecucionTarea> historial) {
+    this.nombre = nombre;
+    this.programacion = programacion;
+    this.proxima = proxima;
+    this.enEjecucion = enEjecucion;
+    this.salteadas = salteadas;
+    this.historial = historial;
+  }
+
+  public String getNombre() {
+    return nombre;
+  }
+
+  /**
+   * Expresión cron o "cada <duración>"
+   */
+  public String getProgramacion() {
+    return programacion;
+  }
+
+  /**
+   * null mientras una tarea de demora fija está corriendo (se programa al terminar)
+   */
+  public LocalDateTime getProxima() {
+    return proxima;
+  }
+
+  public boolean isEnEjecucion() {
+    return enEjecucion;
+  }
+
+  /**
+   * Corridas que no se hicieron porque la anterior seguía en curso o no había hilos libres
+   */
+  public long getSalteadas() {
+    return salteadas;
+  }
+
+  /**
+   * Últimas corridas, de la más reciente a la más vieja
+   */
+  public List<EjecucionTarea> getHistorial() {
+    return historial;
+  }
+}
@@ -0,0 +1,132 @@
+package infra.planificador;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * Expresión cron de cinco campos: minuto hora día-del-mes mes día-de-la-semana
+ * Cada campo admite *, valores, rangos (a-b), listas (a,b) y pasos (*&#47;n, a-b/n).
+ * El día de la semana va de 0 a 7 (0 y 7 son domingo). Como en cron, si se restringen el día
+ * del mes y el de la semana alcanza con que coincida uno de los dos
+ */
+public final class ExpresionCron {
+  // Cuatro años cubren cualquier expresión válida (incluido el 29 de febrero)
+  private static final int MAX_DIAS_BUSQUEDA = 4 * 366;
+
+  private final String expresion;
+  private final BitSet minutos;
+  private final BitSet horas;
+  private final BitSet diasMes;
+  private final BitSet meses;
+  private final BitSet diasSemana;
+  private final boolean diaMesLibre;
+  private final boolean diaSemanaLibre;
+
+  /**
+   * @throws IllegalArgumentException si la expresión no tiene cinco campos válidos
+   */
+  public ExpresionCron(String expresion) {
+    String[] campos = expresion == null ? new String[0] : expresion.trim().split("\\s+");
+    if (campos.length != 5) {
+      throw new IllegalArgumentException("La expresión cron debe tener 5 campos: " + expresion);
+    }
+    this.expresion = expresion.trim();
+    this.minutos = campo(campos[0], 0, 59);
+    this.horas = campo(campos[1], 0, 23);
+    this.diasMes = campo(campos[2], 1, 31);
+    this.meses = campo(campos[3], 1, 12);
+    this.diasSemana = campo(campos[4], 0, 7);
+    if (diasSemana.get(7)) {
+      diasSemana.set(0);
+    }
+    this.diaMesLibre = campos[2].startsWith("*");
+    this.diaSemanaLibre = campos[4].startsWith("*");
+  }
+
+  /**
+   * Primer minuto posterior a la fecha indicada que cumple la expresión
+   *
+   * @throws IllegalStateException si la expresión no se cumple nunca (por ejemplo, 30 de febrero)
+   */
+  public LocalDateTime siguiente(LocalDateTime desde) {
+    LocalDateTime t = desde.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+    LocalDateTime limite = t.plusDays(MAX_DIAS_BUSQUEDA);
+    while (t.isBefore(limite)) {
+      if (!meses.get(t.getMonthValue())) {
+        t = t.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+      } else if (!coincideDia(t)) {
+        t = t.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+      } else if (!horas.get(t.getHour())) {
+        t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+      } else if (!minutos.get(t.getMinute())) {
+        t = t.plusMinutes(1);
+      } else {
+        return t;
+      }
+    }
+    throw new IllegalStateException("La expresión cron no se cumple nunca: " + expresion);
+  }
+
+  @Override
+  public String toString() {
+    return expresion;
+  }
+
+  private boolean coincideDia(LocalDateTime t) {
+    boolean mes = diasMes.get(t.getDayOfMonth());
+    boolean semana = diasSemana.get(t.getDayOfWeek().getValue() % 7);
+    if (diaMesLibre || diaSemanaLibre) {
+      return mes && semana;
+    }
+    return mes || semana;
+  }
+
+  private static BitSet campo(String texto, int min, int max) {
+    BitSet valores = new BitSet(max + 1);
+    for (String parte : texto.split(",")) {
+      int paso = 1;
+      int barra = parte.indexOf('/');
+      if (barra >= 0) {
+        paso = numero(parte.substring(barra + 1), 1, max, texto);
+        parte = parte.substring(0, barra);
+      }
+      int desde;
+      int hasta;
+      if (parte.equals("*")) {
+        desde = min;
+        hasta = max;
+      } else {
+        int guion = parte.indexOf('-');
+        if (guion >= 0) {
+          desde = numero(parte.substring(0, guion), min, max, texto);
+          hasta = numero(parte.substring(guion + 1), min, max, texto);
+        } else {
+          desde = numero(parte, min, max, texto);
+          // "5/15" significa desde 5 hasta el final con paso 15
+          hasta = barra >= 0 ? max : desde;
+        }
+      }
+      if (desde > hasta) {
+        throw new IllegalArgumentException("Rango inválido en la expresión cron: " + texto);
+      }
+      for (int v = desde; v <= hasta; v += paso) {
+        valores.set(v);
+      }
+    }
+    return valores;
+  }
+
+  private static int numero(String texto, int min, int max, String campo) {
+    try {
+      int v = Integer.parseInt(texto);
+      if (v < min || v > max) {
+        throw new IllegalArgumentException("Valor fuera de rango (" + min + "-" + max + ") en la expresión cron: "
+            + campo);
+      }
+      return v;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Valor inválido en la expresión cron: " + campo);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package infra.planificador;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import exceptions.EntidadNoEncontradaException;
+import infra.jfr.TareaProgramadaEvent;
+import infra.metricas.Contador;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.temporizador.RuedaTemporizadora;
+
+/**
+ * Planificador de tareas de mantenimiento fuera del camino de las operaciones
+ * Las tareas se programan con una expresión cron (en horario de poca actividad) o con una demora
+ * fija entre el fin de una corrida y el inicio de la siguiente. Los vencimientos los lleva una rueda
+ * de temporizadores y las corridas se hacen en un grupo acotado de hilos; una tarea nunca corre
+ * dos veces a la vez (si le toca mientras sigue corriendo, esa corrida se saltea y se cuenta).
+ * Guarda las últimas corridas de cada tarea con su duración y su error, si lo hubo
+ *
+ * Configuración:
+ *   -Dclinica.planificador.hilos=2              corridas simultáneas de tareas distintas
+ *   -Dclinica.planificador.historial=20         corridas que se conservan por tarea
+ *   -Dclinica.planificador.esperaCierreSeg=30   espera a las corridas en curso al detener
+ */
+public final class Planificador implements AutoCloseable {
+  private static final int HILOS = Integer.getInteger("clinica.planificador.hilos", 2);
+  private static final int HISTORIAL = Integer.getInteger("clinica.planificador.historial", 20);
+  private static final long ESPERA_CIERRE_SEG = Long.getLong("clinica.planificador.esperaCierreSeg", 30);
+  // Una vuelta de la rueda cubre algo más de una hora; las tareas diarias dan varias vueltas
+  private static final int RANURAS = 4096;
+
+  private final RuedaTemporizadora rueda;
+  private final ThreadPoolExecutor hilos;
+  private final Map<String, Tarea> tareas = new ConcurrentHashMap<>();
+  private volatile boolean activo = true;
+
+  public Planificador() {
+    this.rueda = new RuedaTemporizadora("planificador", 1, TimeUnit.SECONDS, RANURAS);
+    AtomicInteger numero = new AtomicInteger();
+    // Cada tarea ocupa a lo sumo un lugar en la cola, porque no se superpone consigo misma
+    this.hilos = new ThreadPoolExecutor(HILOS, HILOS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(256), r -> {
+      Thread t = new Thread(r, "planificador-" + numero.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Programa una tarea según una expresión cron de cinco campos (por ejemplo "30 3 * * *")
+   *
+   * @throws IllegalArgumentException si la expresión es inválida o ya hay una tarea con ese nombre
+   */
+  public void segunCron(String nombre, String expresion, Runnable accion) {
+    ExpresionCron cron = new ExpresionCron(expresion);
+    agregar(new Tarea(nombre, cron.toString(), accion) {
+      @Override
+      LocalDateTime siguiente(LocalDateTime ahora) {
+        return cron.siguiente(ahora);
+      }
+    }).programar();
+  }
+
+  /**
+   * Programa una tarea que corre cada vez que pasa la demora desde el fin de la corrida anterior;
+   * la primera corre después de una demora
+   *
+   * @throws IllegalArgumentException si la demora no es positiva o ya hay una tarea con ese nombre
+   */
+  public void cadaIntervalo(String nombre, Duration demora, Runnable accion) {
+    if (demora == null || demora.isNegative() || demora.isZero()) {
+      throw new IllegalArgumentException("La demora de la tarea debe ser positiva");
+    }
+    agregar(new Tarea(nombre, "cada " + demora, accion) {
+      @Override
+      LocalDateTime siguiente(LocalDateTime ahora) {
+        return ahora.plus(demora);
+      }
+
+      @Override
+      boolean demoraFija() {
+        return true;
+      }
+    }).programar();
+  }
+
+  /**
+   * Corre la tarea ahora, fuera de su programación (no la cambia)
+   *
+   * @return false si ya estaba corriendo
+   * @throws EntidadNoEncontradaException si no hay una tarea con ese nombre
+   */
+  public boolean ejecutarAhora(String nombre) {
+    Tarea t = tareas.get(nombre);
+    if (t == null) {
+      throw new EntidadNoEncontradaException("Tarea no programada: " + nombre);
+    }
+    return lanzar(t, true);
+  }
+
+  /**
+   * Estado de todas las tareas, ordenadas por nombre
+   */
+  public List<EstadoTarea> estado() {
+    List<EstadoTarea> out = new ArrayList<>();
+    for (Tarea t : tareas.values()) {
+      out.add(t.estado());
+    }
+    out.sort((a, b) -> a.getNombre().compareTo(b.getNombre()));
+    return out;
+  }
+
+  /**
+   * Deja de programar corridas y espera a las que están en curso; las que no terminan a tiempo se interrumpen
+   */
+  @Override
+  public void close() {
+    activo = false;
+    rueda.close();
+    hilos.shutdown();
+    try {
+      if (!hilos.awaitTermination(ESPERA_CIERRE_SEG, TimeUnit.SECONDS)) {
+        hilos.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      hilos.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Tarea agregar(Tarea t) {
+    if (!activo) {
+      throw new IllegalStateException("El planificador está detenido");
+    }
+    if (tareas.putIfAbsent(t.nombre, t) != null) {
+      throw new IllegalArgumentException("Ya hay una tarea programada con el nombre " + t.nombre);
+    }
+    return t;
+  }
+
+  /**
+   * Pasa la corrida al grupo de hilos si la tarea no está corriendo
+   */
+  private boolean lanzar(Tarea t, boolean manual) {
+    if (!activo) {
+      return false;
+    }
+    if (!manual) {
+      if (t.demoraFija()) {
+        // La próxima se programa al terminar esta
+        t.proxima = null;
+      } else {
+        // La próxima corrida cron se programa ya, sin importar cuánto tarde esta
+        t.programar();
+      }
+    }
+    if (!t.enEjecucion.compareAndSet(false, true)) {
+      saltear(t, manual);
+      return false;
+    }
+    try {
+      hilos.execute(() -> correr(t, manual));
+      return true;
+    } catch (RejectedExecutionException e) {
+      t.enEjecucion.set(false);
+      saltear(t, manual);
+      return false;
+    }
+  }
+
+  private void saltear(Tarea t, boolean manual) {
+    t.salteadas.incrementar();
+    if (!manual && t.demoraFija()) {
+      // Sin corrida no hay fin que la vuelva a programar
+      t.programar();
+    }
+  }
+
+  private void correr(Tarea t, boolean manual) {
+    TareaProgramadaEvent evento = new TareaProgramadaEvent();
+    LocalDateTime inicio = LocalDateTime.now();
+    long t0 = System.nanoTime();
+    String error = null;
+    evento.begin();
+    try {
+      t.accion.run();
+    } catch (RuntimeException e) {
+      error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+      System.err.println("Error en la tarea programada " + t.nombre + ": " + error);
+    } finally {
+      long nanos = System.nanoTime() - t0;
+      evento.end();
+      if (evento.shouldCommit()) {
+        evento.tarea = t.nombre;
+        evento.manual = manual;
+        evento.error = error != null ? error : "";
+        evento.commit();
+      }
+      if (error != null) {
+        t.duracion.registrarError();
+      } else {
+        t.duracion.registrar(nanos);
+      }
+      t.registrar(new EjecucionTarea(inicio, TimeUnit.NANOSECONDS.toMillis(nanos), error));
+      t.enEjecucion.set(false);
+      if (!manual && t.demoraFija()) {
+        t.programar();
+      }
+    }
+  }
+
+  private abstract class Tarea {
+    final String nombre;
+    final String programacion;
+    final Runnable accion;
+    final AtomicBoolean enEjecucion = new AtomicBoolean();
+    final Histograma duracion;
+    final Contador salteadas;
+    private final ArrayDeque<EjecucionTarea> historial = new ArrayDeque<>();
+    private volatile LocalDateTime proxima;
+
+    Tarea(String nombre, String programacion, Runnable accion) {
+      if (nombre == null || nombre.trim().isEmpty()) {
+        throw new IllegalArgumentException("El nombre de la tarea no puede estar vacío");
+      }
+      this.nombre = nombre;
+      this.programacion = programacion;
+      this.accion = accion;
+      this.duracion = Metricas.histograma("planificador." + nombre);
+      this.salteadas = Metricas.contador("planificador." + nombre + ".salteadas");
+    }
+
+    /**
+     * Próxima corrida después del momento indicado
+     */
+    abstract LocalDateTime siguiente(LocalDateTime ahora);
+
+    /**
+     * Las tareas de demora fija se vuelven a programar al terminar cada corrida
+     */
+    boolean demoraFija() {
+      return false;
+    }
+
+    void programar() {
+      if (!activo) {
+        return;
+      }
+      LocalDateTime ahora = LocalDateTime.now();
+      LocalDateTime cuando = siguiente(ahora);
+      proxima = cuando;
+      rueda.programar(() -> lanzar(this, false), Duration.between(ahora, cuando).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void registrar(EjecucionTarea e) {
+      if (historial.size() >= HISTORIAL) {
+        historial.pollFirst();
+      }
+      historial.addLast(e);
+    }
+
+    synchronized EstadoTarea estado() {
+      List<EjecucionTarea> ultimas = new ArrayList<>(historial.size());
+      Iterator<EjecucionTarea> it = historial.descendingIterator();
+      while (it.hasNext()) {
+        ultimas.add(it.next());
+      }
+      return new EstadoTarea(nombre, programacion, proxima, enEjecucion.get(), salteadas.getValor(), ultimas);
+    }
+  }
+}
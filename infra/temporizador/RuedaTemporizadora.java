@@ -0,0 +1,195 @@
+package infra.temporizador;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import infra.metricas.Contador;
+import infra.metricas.Metricas;
+
+/**
+ * Rueda de temporizadores con hash (hashed timing wheel)
+ * El tiempo avanza en ticks fijos; cada tarea cae en la ranura (vencimiento en ticks) mod ranuras y
+ * guarda cuántas vueltas le faltan. Programar y cancelar son O(1) y en cada tick solo se recorre una
+ * ranura, así miles de vencimientos pendientes no cuestan nada mientras no vencen. La precisión es
+ * de un tick: una tarea corre entre su vencimiento y un tick después
+ *
+ * Las tareas corren en el hilo de la rueda y deben ser breves
+ */
+public final class RuedaTemporizadora implements AutoCloseable {
+  private final String nombre;
+  private final long tickNanos;
+  private final ArrayDeque<Tarea>[] ranuras;
+  private final int mascara;
+  private final Queue<Tarea> nuevas = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendientes = new AtomicInteger();
+  private final Contador ejecutadas;
+  private final Contador errores;
+  private final long inicio = System.nanoTime();
+  private final Thread hilo;
+  private volatile boolean activa = true;
+  // Solo lo usa el hilo de la rueda
+  private long tick;
+
+  /**
+   * @param tick     duración de un tick (precisión de la rueda)
+   * @param ranuras  cantidad de ranuras (se redondea a potencia de dos); una vuelta dura tick * ranuras
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public RuedaTemporizadora(String nombre, long tick, TimeUnit unidad, int ranuras) {
+    if (tick <= 0 || ranuras <= 0) {
+      throw new IllegalArgumentException("El tick y la cantidad de ranuras deben ser positivos");
+    }
+    int n = Integer.highestOneBit(ranuras - 1) << 1;
+    if (n <= 0) {
+      n = 1;
+    }
+    this.nombre = nombre;
+    this.tickNanos = unidad.toNanos(tick);
+    this.ranuras = new ArrayDeque[n];
+    for (int i = 0; i < n; i++) {
+      this.ranuras[i] = new ArrayDeque<>();
+    }
+    this.mascara = n - 1;
+    this.ejecutadas = Metricas.contador("temporizador." + nombre + ".ejecutadas");
+    this.errores = Metricas.contador("temporizador." + nombre + ".errores");
+    this.hilo = new Thread(this::girar, "temporizador-" + nombre);
+    this.hilo.setDaemon(true);
+    this.hilo.start();
+  }
+
+  /**
+   * Programa la acción para dentro de la demora indicada (0 o negativa: en el próximo tick)
+   */
+  public Tarea programar(Runnable accion, long demora, TimeUnit unidad) {
+    if (!activa) {
+      throw new IllegalStateException("La rueda " + nombre + " está detenida");
+    }
+    long vencimiento = System.nanoTime() - inicio + Math.max(0, unidad.toNanos(demora));
+    Tarea t = new Tarea(this, accion, vencimiento);
+    pendientes.incrementAndGet();
+    nuevas.add(t);
+    return t;
+  }
+
+  /**
+   * Tareas programadas que todavía no corrieron ni se cancelaron
+   */
+  public int getPendientes() {
+    return pendientes.get();
+  }
+
+  /**
+   * Detiene la rueda; las tareas pendientes no se ejecutan
+   */
+  @Override
+  public void close() {
+    activa = false;
+    LockSupport.unpark(hilo);
+    try {
+      hilo.join(2_000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void girar() {
+    while (activa) {
+      long proximo = (tick + 1) * tickNanos;
+      long espera;
+      while (activa && (espera = proximo - (System.nanoTime() - inicio)) > 0) {
+        LockSupport.parkNanos(this, espera);
+      }
+      if (!activa) {
+        return;
+      }
+      ubicarNuevas();
+      vencerRanura(ranuras[(int) (tick & mascara)]);
+      tick++;
+    }
+  }
+
+  /**
+   * Pasa las tareas recién programadas a su ranura; solo lo hace el hilo de la rueda,
+   * así las ranuras no necesitan sincronización
+   */
+  private void ubicarNuevas() {
+    Tarea t;
+    while ((t = nuevas.poll()) != null) {
+      if (t.estado.get() != Tarea.PENDIENTE) {
+        continue;
+      }
+      // Ticks que faltan contando el actual; lo que ya venció va a la ranura en curso
+      long ticks = Math.max(t.vencimiento / tickNanos, tick);
+      t.vueltas = (ticks - tick) / ranuras.length;
+      ranuras[(int) (ticks & mascara)].add(t);
+    }
+  }
+
+  private void vencerRanura(ArrayDeque<Tarea> ranura) {
+    Iterator<Tarea> it = ranura.iterator();
+    while (it.hasNext()) {
+      Tarea t = it.next();
+      if (t.estado.get() != Tarea.PENDIENTE) {
+        it.remove();
+      } else if (t.vueltas > 0) {
+        t.vueltas--;
+      } else {
+        it.remove();
+        if (t.estado.compareAndSet(Tarea.PENDIENTE, Tarea.EJECUTADA)) {
+          pendientes.decrementAndGet();
+          ejecutar(t);
+        }
+      }
+    }
+  }
+
+  private void ejecutar(Tarea t) {
+    try {
+      t.accion.run();
+      ejecutadas.incrementar();
+    } catch (RuntimeException e) {
+      errores.incrementar();
+      System.err.println("Error en tarea del temporizador " + nombre + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Tarea programada; se puede cancelar hasta el momento en que empieza a correr
+   */
+  public static final class Tarea {
+    static final int PENDIENTE = 0;
+    static final int EJECUTADA = 1;
+    static final int CANCELADA = 2;
+
+    private final RuedaTemporizadora rueda;
+    private final Runnable accion;
+    private final long vencimiento;
+    private final AtomicInteger estado = new AtomicInteger(PENDIENTE);
+    // Solo lo usa el hilo de la rueda
+    private long vueltas;
+
+    private Tarea(RuedaTemporizadora rueda, Runnable accion, long vencimiento) {
+      this.rueda = rueda;
+      this.accion = accion;
+      this.vencimiento = vencimiento;
+    }
+
+    /**
+     * Cancela la tarea en O(1); se quita de su ranura la próxima vez que la rueda pase por ella
+     *
+     * @return false si ya corrió o ya estaba cancelada
+     */
+    public boolean cancelar() {
+      if (estado.compareAndSet(PENDIENTE, CANCELADA)) {
+        rueda.pendientes.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+}
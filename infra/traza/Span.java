@@ -0,0 +1,83 @@
+package infra.traza;
+
+/**
+ * Tramo de una traza: mide una operación y sus operaciones hijas
+ * Se cierra con try-with-resources; los tramos no muestreados son la instancia NOOP
+ */
+public class Span implements AutoCloseable {
+  /** Tramo vacío que se devuelve cuando la traza no se muestrea */
+  public static final Span NOOP = new Span();
+
+  private final String nombre;
+  private final long trazaId;
+  private final long spanId;
+  private final Span padre;
+  private final long inicioNanos;
+  private final long hiloId;
+  private String error;
+  private boolean cerrado;
+
+  private Span() {
+    this.nombre = null;
+    this.trazaId = 0;
+    this.spanId = 0;
+    this.padre = null;
+    this.inicioNanos = 0;
+    this.hiloId = 0;
+  }
+
+  Span(String nombre, long trazaId, long spanId, Span padre) {
+    this.nombre = nombre;
+    this.trazaId = trazaId;
+    this.spanId = spanId;
+    this.padre = padre;
+    this.hiloId = Thread.currentThread().getId();
+    this.inicioNanos = System.nanoTime();
+  }
+
+  /**
+   * Marca el tramo como fallido con la excepción indicada
+   */
+  public void marcarError(Throwable t) {
+    if (this != NOOP) {
+      error = t.getClass().getSimpleName() + ": " + t.getMessage();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (this == NOOP || cerrado) {
+      return;
+    }
+    cerrado = true;
+    Trazador.finalizar(this, System.nanoTime() - inicioNanos);
+  }
+
+  String getNombre() {
+    return nombre;
+  }
+
+  long getTrazaId() {
+    return trazaId;
+  }
+
+  long getSpanId() {
+    return spanId;
+  }
+
+  Span getPadre() {
+    return padre;
+  }
+
+  long getInicioNanos() {
+    return inicioNanos;
+  }
+
+  long getHiloId() {
+    return hiloId;
+  }
+
+  String getError() {
+    return error;
+  }
+}
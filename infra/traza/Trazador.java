@@ -0,0 +1,203 @@
+package infra.traza;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import infra.metricas.Contador;
+import infra.metricas.Metricas;
+
+/**
+ * Trazado liviano de operaciones
+ * Las operaciones de servicio abren tramos raíz (iniciarRaiz) y los repositorios y
+ * transacciones abren tramos hijos (iniciar). Los tramos se escriben en segundo plano
+ * en formato Trace Event de Chrome (JSON), que se abre offline con chrome://tracing o
+ * https://ui.perfetto.dev
+ *
+ * Configuración:
+ *   -Dclinica.traza.muestreo=0.0   fracción de operaciones raíz que se trazan (0 desactiva, 1 traza todo)
+ *   -Dclinica.traza.archivo=trazas.json
+ */
+public final class Trazador {
+  private static final int CAPACIDAD_COLA = 10_000;
+
+  private static volatile double muestreo = parsearMuestreo(System.getProperty("clinica.traza.muestreo", "0"));
+  private static final ThreadLocal<Span> actual = new ThreadLocal<>();
+  private static final AtomicLong secuencia = new AtomicLong(1);
+  private static final BlockingQueue<String> pendientes = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+  private static final Contador DESCARTADOS = Metricas.contador("traza.tramosDescartados");
+  private static final long PID = ProcessHandle.current().pid();
+
+  private static Thread escritor;
+  private static volatile boolean activo;
+
+  private Trazador() {
+  }
+
+  /**
+   * Abre un tramo raíz aplicando el muestreo, o un hijo si ya hay una traza en curso
+   */
+  public static Span iniciarRaiz(String nombre) {
+    Span padre = actual.get();
+    if (padre != null) {
+      return abrir(nombre, padre.getTrazaId(), padre);
+    }
+    double m = muestreo;
+    if (m <= 0 || (m < 1 && ThreadLocalRandom.current().nextDouble() >= m)) {
+      return Span.NOOP;
+    }
+    return abrir(nombre, secuencia.getAndIncrement(), null);
+  }
+
+  /**
+   * Abre un tramo hijo del tramo actual; si no hay traza en curso no hace nada
+   */
+  public static Span iniciar(String nombre) {
+    Span padre = actual.get();
+    if (padre == null) {
+      return Span.NOOP;
+    }
+    return abrir(nombre, padre.getTrazaId(), padre);
+  }
+
+  /**
+   * Cambia la fracción de muestreo en caliente
+   */
+  public static void setMuestreo(double fraccion) {
+    if (fraccion < 0 || fraccion > 1) {
+      throw new IllegalArgumentException("El muestreo debe estar entre 0 y 1");
+    }
+    muestreo = fraccion;
+    if (fraccion > 0) {
+      iniciarEscritor();
+    }
+  }
+
+  public static double getMuestreo() {
+    return muestreo;
+  }
+
+  /**
+   * Arranca el hilo que escribe los tramos en el archivo si el muestreo está activo
+   */
+  public static synchronized void iniciarEscritor() {
+    if (escritor != null || muestreo <= 0) {
+      return;
+    }
+    String archivo = System.getProperty("clinica.traza.archivo", "trazas.json");
+    activo = true;
+    escritor = new Thread(() -> escribir(archivo), "traza-escritor");
+    escritor.setDaemon(true);
+    escritor.start();
+  }
+
+  /**
+   * Detiene el escritor vaciando los tramos pendientes y cerrando el JSON
+   */
+  public static synchronized void detener() {
+    if (escritor == null) {
+      return;
+    }
+    activo = false;
+    try {
+      escritor.join(5_000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    escritor = null;
+  }
+
+  private static Span abrir(String nombre, long trazaId, Span padre) {
+    Span span = new Span(nombre, trazaId, secuencia.getAndIncrement(), padre);
+    actual.set(span);
+    return span;
+  }
+
+  /**
+   * Llamado al cerrar un tramo: restaura el padre como actual y encola el evento
+   */
+  static void finalizar(Span span, long duracionNanos) {
+    Span padre = span.getPadre();
+    if (padre != null) {
+      actual.set(padre);
+    } else {
+      actual.remove();
+    }
+    if (!pendientes.offer(aEvento(span, duracionNanos))) {
+      DESCARTADOS.incrementar();
+    }
+  }
+
+  /**
+   * Evento completo ("ph":"X") del formato Trace Event; tiempos en microsegundos
+   */
+  private static String aEvento(Span span, long duracionNanos) {
+    StringBuilder sb = new StringBuilder(192);
+    sb.append("{\"name\":\"").append(escapar(span.getNombre())).append('"')
+        .append(",\"cat\":\"clinica\",\"ph\":\"X\"")
+        .append(",\"ts\":").append(span.getInicioNanos() / 1_000)
+        .append(",\"dur\":").append(Math.max(1, duracionNanos / 1_000))
+        .append(",\"pid\":").append(PID)
+        .append(",\"tid\":").append(span.getHiloId())
+        .append(",\"args\":{\"traza\":").append(span.getTrazaId())
+        .append(",\"span\":").append(span.getSpanId());
+    if (span.getPadre() != null) {
+      sb.append(",\"padre\":").append(span.getPadre().getSpanId());
+    }
+    if (span.getError() != null) {
+      sb.append(",\"error\":\"").append(escapar(span.getError())).append('"');
+    }
+    sb.append("}}");
+    return sb.toString();
+  }
+
+  private static void escribir(String archivo) {
+    try (BufferedWriter out = new BufferedWriter(new FileWriter(archivo, false))) {
+      out.write("[");
+      out.newLine();
+      boolean primero = true;
+      while (activo || !pendientes.isEmpty()) {
+        String evento = pendientes.poll(200, TimeUnit.MILLISECONDS);
+        if (evento == null) {
+          out.flush();
+          continue;
+        }
+        if (!primero) {
+          out.write(",");
+          out.newLine();
+        }
+        out.write(evento);
+        primero = false;
+      }
+      out.newLine();
+      out.write("]");
+      out.newLine();
+    } catch (IOException e) {
+      System.err.println("Error al escribir trazas en " + archivo + ": " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static String escapar(String s) {
+    if (s == null) {
+      return "";
+    }
+    return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", " ").replace("\r", " ");
+  }
+
+  private static double parsearMuestreo(String valor) {
+    try {
+      double m = Double.parseDouble(valor);
+      return Math.max(0, Math.min(1, m));
+    } catch (NumberFormatException e) {
+      System.err.println("Valor de clinica.traza.muestreo inválido: " + valor);
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package repo;
+
+import java.util.*;
+import domain.Deposito;
+
+public interface DepositoRepository {
+  Optional<Deposito> findById(int id);
+
+  List<Deposito> findAll();
+}
@@ -0,0 +1,38 @@
+package repo;
+
+import java.util.Map;
+
+/**
+ * Cuotas de escrow: parte del stock de un insumo en un depósito repartida en filas separadas
+ * para que los egresos concurrentes no se bloqueen en la misma fila. El stock del depósito es
+ * el stock común más la suma de sus cuotas. Las operaciones que mueven stock entre el común y
+ * las cuotas deben correr dentro de una transacción
+ */
+public interface EscrowRepository {
+  /**
+   * Descuenta de una cuota en una sola sentencia, solo si alcanza
+   *
+   * @return false si la cuota no tiene suficiente stock (no se modifica nada)
+   */
+  boolean descontar(String codigo, int depositoId, int cuota, int cantidad);
+
+  /**
+   * Pasa cantidad del stock común del depósito a una cuota, dejando en el común al menos
+   * minimoRestante unidades
+   *
+   * @return false si el stock común no alcanza (no se modifica nada)
+   */
+  boolean recargar(String codigo, int depositoId, int cuota, int cantidad, int minimoRestante);
+
+  /**
+   * Devuelve al stock común todo lo que está en las cuotas del insumo en el depósito
+   *
+   * @return cantidad devuelta
+   */
+  int consolidar(String codigo, int depositoId);
+
+  /**
+   * Stock de cada cuota del insumo en el depósito
+   */
+  Map<Integer, Integer> cuotas(String codigo, int depositoId);
+}
@@ -1,5 +1,6 @@
 package repo;
 
+import java.time.LocalDate;
 import java.util.*;
 import domain.Insumo;
 
@@ -14,5 +15,56 @@ public interface InsumoRepository {
 
   void save(Insumo i);
 
+  /**
+   * Actualiza los datos de catálogo; el stock se modifica solo con ajustarStock
+   */
   void update(Insumo i);
+
+  /**
+   * Inserta los insumos nuevos y actualiza los datos de catálogo (nombre, unidad, stock mínimo y
+   * vencimiento) de los existentes; el estado de los existentes y el stock no se modifican
+   *
+   * @return cantidad de insumos insertados (el resto ya existía y se actualizó)
+   */
+  int upsertAll(List<Insumo> insumos);
+
+  /**
+   * Stock del insumo en un depósito (0 si nunca tuvo), incluidas sus cuotas de escrow
+   */
+  int stockEnDeposito(String codigo, int depositoId);
+
+  /**
+   * Stock del insumo en cada depósito que tuvo existencias, incluidas sus cuotas de escrow
+   */
+  Map<Integer, Integer> stockPorDeposito(String codigo);
+
+  /**
+   * Stock de cada código en el depósito (0 si nunca tuvo), incluidas sus cuotas de escrow, en una
+   * sola ida a la base. Con bloquear, dentro de una transacción las filas leídas quedan bloqueadas
+   * hasta el final, así se puede ajustar contra lo leído
+   */
+  Map<String, Integer> stockEnDeposito(int depositoId, Collection<String> codigos, boolean bloquear);
+
+  /**
+   * Suma delta al stock común del insumo en el depósito (sin contar las cuotas de escrow) en una
+   * sola operación atómica, sin leer antes
+   *
+   * @return false si delta es negativo y el depósito no tiene stock suficiente (no se modifica nada)
+   */
+  default boolean ajustarStock(String codigo, int depositoId, int delta) {
+    return ajustarStock(codigo, depositoId, delta, 0);
+  }
+
+  /**
+   * Igual que ajustarStock, pero un delta negativo solo se aplica si en el depósito quedan al
+   * menos minimoRestante unidades (por ejemplo, las reservadas)
+   */
+  boolean ajustarStock(String codigo, int depositoId, int delta, int minimoRestante);
+
+  /**
+   * Pasa a BLOQUEADO, en una sola sentencia, los insumos ACTIVO con vencimiento anterior a hoy
+   *
+   * @return códigos de los insumos bloqueados en esta llamada (los ya bloqueados no se repiten)
+   */
+  List<String> bloquearVencidos(LocalDate hoy);
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package repo;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import domain.ConsumoLote;
+import domain.Lote;
+import domain.Movimiento;
+
+public interface LoteRepository {
+  /**
+   * Suma la cantidad al lote del insumo en el depósito, creándolo si no existe
+   *
+   * @return el lote con su id y el vencimiento con el que quedó registrado
+   */
+  Lote sumar(String codigo, int depositoId, String numero, LocalDate vencimiento, int cantidad);
+
+  /**
+   * Suma o resta cantidad a un lote en una sola sentencia
+   *
+   * @return false (sin modificar nada) si el lote no existe o no tiene suficiente cantidad
+   */
+  boolean ajustar(long loteId, int delta);
+
+  /**
+   * Lotes con cantidad del insumo en el depósito, del más próximo a vencer al más lejano
+   */
+  List<Lote> findConStock(String codigo, int depositoId);
+
+  /**
+   * Lotes con cantidad del insumo en todos los depósitos, del más próximo a vencer al más lejano
+   */
+  List<Lote> findByInsumo(String codigo);
+
+  /**
+   * Registra de qué lotes salió o a qué lotes entró la cantidad de un movimiento ya guardado
+   * La parte sin lote no se registra
+   */
+  void registrarConsumos(Movimiento m, List<ConsumoLote> consumos);
+
+  /**
+   * Lotes registrados para un movimiento
+   */
+  List<ConsumoLote> findConsumos(long movimientoId);
+}
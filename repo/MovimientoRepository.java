@@ -1,13 +1,55 @@
 package repo;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.time.LocalDate;
 import domain.Movimiento;
+import domain.TotalConsumo;
+import domain.enums.AgrupacionConsumo;
 
 public interface MovimientoRepository {
+  /**
+   * Guarda el movimiento y, si tiene clave de idempotencia, la registra en la misma operación
+   *
+   * @throws exceptions.ClaveIdempotenciaDuplicadaException si la clave ya estaba registrada
+   */
   void save(Movimiento m);
 
+  /**
+   * Movimiento registrado con la clave de idempotencia indicada
+   */
+  Optional<Movimiento> findByClaveIdempotencia(String clave);
+
   List<Movimiento> findAll();
 
   List<Movimiento> findByPeriodoYServicio(LocalDate desde, LocalDate hasta, Integer servicioId);
+
+  /**
+   * Movimientos del período que afectan al depósito: los propios y las transferencias
+   * que salen de él o llegan a él
+   */
+  List<Movimiento> findByPeriodoYDeposito(LocalDate desde, LocalDate hasta, int depositoId);
+
+  /**
+   * Recorre los movimientos del insumo en el período (ambas fechas inclusive) en orden cronológico
+   * (fecha, id) sin cargarlos todos en memoria
+   */
+  void recorrerPorInsumo(String codigo, LocalDate desde, LocalDate hasta, Consumer<Movimiento> accion);
+
+  /**
+   * Cantidad egresada en el período agrupada por insumo, servicio o usuario, de mayor a menor
+   *
+   * @param servicioId solo los egresos de este servicio (opcional)
+   * @param limite     máximo de posiciones
+   */
+  List<TotalConsumo> topConsumo(AgrupacionConsumo por, LocalDate desde, LocalDate hasta, Integer servicioId,
+      int limite);
+
+  /**
+   * Elimina los movimientos del período (ambas fechas inclusive); lo usa el compactador de segmentos
+   *
+   * @return cantidad de movimientos eliminados
+   */
+  int deleteByPeriodo(LocalDate desde, LocalDate hasta);
 }
\ No newline at end of file
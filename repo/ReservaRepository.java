@@ -0,0 +1,25 @@
+package repo;
+
+import java.util.List;
+
+import domain.Reserva;
+import domain.enums.EstadoReserva;
+
+public interface ReservaRepository {
+  /**
+   * Guarda una reserva nueva y le asigna el id generado
+   */
+  void save(Reserva r);
+
+  /**
+   * Reservas en estado ACTIVA (incluidas las ya vencidas que todavía no se marcaron)
+   */
+  List<Reserva> findActivas();
+
+  /**
+   * Pasa una reserva ACTIVA al estado indicado
+   *
+   * @return false si la reserva no existe o ya no estaba activa
+   */
+  boolean cerrar(long id, EstadoReserva estado);
+}
@@ -0,0 +1,39 @@
+package repo;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import domain.SaldoInsumo;
+
+/**
+ * Saldos de cierre por insumo (puntos de control) y variación del stock entre fechas
+ * El stock de un insumo en una fecha es el saldo de cierre más cercano corregido con los
+ * movimientos entre ambas fechas
+ */
+public interface SaldoRepository {
+  /**
+   * Último saldo de cierre del insumo en la fecha indicada o antes
+   */
+  Optional<SaldoInsumo> findUltimoHasta(String codigo, LocalDate fecha);
+
+  /**
+   * Primer saldo de cierre del insumo en la fecha indicada o después
+   */
+  Optional<SaldoInsumo> findPrimeroDesde(String codigo, LocalDate fecha);
+
+  /**
+   * Variación neta del stock total del insumo por los movimientos de los días indicados (ambos
+   * inclusive): ingresos suman, egresos restan y las transferencias no cambian el total.
+   * La implementación JDBC cuenta los movimientos que siguen en la base (tabla viva y archivo);
+   * SaldoSegmentado le suma los de los meses compactados
+   */
+  int variacion(String codigo, LocalDate desde, LocalDate hasta);
+
+  /**
+   * Registra el saldo de cierre del día de todos los insumos a partir del stock actual y los
+   * movimientos posteriores al día. Es seguro repetirlo: no pisa los saldos ya registrados
+   *
+   * @return cantidad de saldos registrados
+   */
+  int registrarCierre(LocalDate dia);
+}
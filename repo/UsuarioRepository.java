@@ -6,8 +6,6 @@ import domain.Usuario;
 public interface UsuarioRepository {
   Optional<Usuario> findByLegajo(int legajo);
 
-  Optional<Usuario> findByLegajoAndPassword(int legajo, String password);
-
   List<Usuario> findAllActivos();
 
   void save(Usuario u);
@@ -0,0 +1,85 @@
+package repo;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import domain.CapaCosto;
+import domain.CostoConsumo;
+import domain.ValuacionInsumo;
+import domain.ValuacionPendiente;
+
+/**
+ * Capas de costo FIFO y valuación por insumo, y costo de lo consumido por día y servicio
+ * Cada movimiento solo anota su pendiente en su transacción (una inserción, sin bloquear nada
+ * compartido); las capas, la valuación y el consumo se actualizan después al aplicar los pendientes
+ */
+public interface ValuacionRepository {
+  /**
+   * Anota un movimiento para valuarlo después, en la transacción del movimiento
+   */
+  void encolar(ValuacionPendiente pendiente);
+
+  /**
+   * Pendientes más viejos, en el orden en que se anotaron (lectura sin bloqueo)
+   */
+  List<ValuacionPendiente> pendientes(int limite);
+
+  /**
+   * Borra el pendiente para aplicarlo en la transacción en curso
+   *
+   * @return false si otra aplicación concurrente ya lo tomó
+   */
+  boolean tomarPendiente(long id);
+
+  /**
+   * Valuación del insumo bloqueada hasta el fin de la transacción (la crea en cero si no existe)
+   * Solo la toma quien aplica los pendientes: serializa las valuaciones del mismo insumo sin
+   * frenar los movimientos
+   */
+  ValuacionInsumo bloquear(String codigo);
+
+  /**
+   * Guarda la cantidad, el valor FIFO y el costo promedio del insumo
+   */
+  void guardar(ValuacionInsumo valuacion);
+
+  /**
+   * Capas del insumo de la más vieja a la más nueva, las necesarias para cubrir la cantidad
+   * (todas si no alcanzan)
+   */
+  List<CapaCosto> capasParaSalida(String codigo, int cantidad);
+
+  /**
+   * Agrega una capa al final de la cola del insumo
+   *
+   * @param movimientoId movimiento que la originó
+   */
+  void agregarCapa(String codigo, int cantidad, BigDecimal costoUnitario, long movimientoId, LocalDateTime fecha);
+
+  /**
+   * Deja la capa con la cantidad que le resta; la borra si no le queda nada
+   */
+  void consumirCapa(long capaId, int restante);
+
+  /**
+   * Suma una salida al costo consumido del día por el servicio
+   *
+   * @param servicioId CostoConsumo.FALTANTES_INVENTARIO para los faltantes de un inventario
+   */
+  void sumarConsumo(LocalDate dia, int servicioId, String codigo, int cantidad, BigDecimal costoFifo,
+      BigDecimal costoPromedio);
+
+  /**
+   * Valuación de todos los insumos
+   */
+  List<ValuacionInsumo> findAll();
+
+  /**
+   * Costo de lo consumido entre las fechas indicadas (ambas inclusive), por servicio
+   *
+   * @param servicioId null para todos los servicios
+   */
+  List<CostoConsumo> consumoPorServicio(LocalDate desde, LocalDate hasta, Integer servicioId);
+}
@@ -0,0 +1,57 @@
+package repo.instrumentado;
+
+import java.util.List;
+import java.util.Optional;
+
+import domain.Deposito;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.DepositoRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de depósitos
+ */
+public class DepositoInstrumentado implements DepositoRepository {
+  private static final Histograma FIND_BY_ID = Metricas.histograma("repo.depositos.findById");
+  private static final Histograma FIND_ALL = Metricas.histograma("repo.depositos.findAll");
+
+  private final DepositoRepository delegado;
+
+  public DepositoInstrumentado(DepositoRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public Optional<Deposito> findById(int id) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.depositos.findById");
+    try {
+      return delegado.findById(id);
+    } catch (RuntimeException e) {
+      FIND_BY_ID.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_ID.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Deposito> findAll() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.depositos.findAll");
+    try {
+      return delegado.findAll();
+    } catch (RuntimeException e) {
+      FIND_ALL.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ALL.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
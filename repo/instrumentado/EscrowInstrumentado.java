@@ -0,0 +1,89 @@
+package repo.instrumentado;
+
+import java.util.Map;
+
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.EscrowRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de cuotas de escrow
+ */
+public class EscrowInstrumentado implements EscrowRepository {
+  private static final Histograma DESCONTAR = Metricas.histograma("repo.escrow.descontar");
+  private static final Histograma RECARGAR = Metricas.histograma("repo.escrow.recargar");
+  private static final Histograma CONSOLIDAR = Metricas.histograma("repo.escrow.consolidar");
+  private static final Histograma CUOTAS = Metricas.histograma("repo.escrow.cuotas");
+
+  private final EscrowRepository delegado;
+
+  public EscrowInstrumentado(EscrowRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public boolean descontar(String codigo, int depositoId, int cuota, int cantidad) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.escrow.descontar");
+    try {
+      return delegado.descontar(codigo, depositoId, cuota, cantidad);
+    } catch (RuntimeException e) {
+      DESCONTAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      DESCONTAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public boolean recargar(String codigo, int depositoId, int cuota, int cantidad, int minimoRestante) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.escrow.recargar");
+    try {
+      return delegado.recargar(codigo, depositoId, cuota, cantidad, minimoRestante);
+    } catch (RuntimeException e) {
+      RECARGAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      RECARGAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int consolidar(String codigo, int depositoId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.escrow.consolidar");
+    try {
+      return delegado.consolidar(codigo, depositoId);
+    } catch (RuntimeException e) {
+      CONSOLIDAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      CONSOLIDAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Map<Integer, Integer> cuotas(String codigo, int depositoId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.escrow.cuotas");
+    try {
+      return delegado.cuotas(codigo, depositoId);
+    } catch (RuntimeException e) {
+      CUOTAS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      CUOTAS.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
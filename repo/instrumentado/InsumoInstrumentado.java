@@ -0,0 +1,230 @@
+package repo.instrumentado;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import domain.Insumo;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.InsumoRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de insumos
+ */
+public class InsumoInstrumentado implements InsumoRepository {
+  private static final Histograma FIND_BY_CODIGO = Metricas.histograma("repo.insumos.findByCodigo");
+  private static final Histograma SEARCH_BY_NOMBRE = Metricas.histograma("repo.insumos.searchByNombre");
+  private static final Histograma FIND_CRITICOS = Metricas.histograma("repo.insumos.findCriticos");
+  private static final Histograma FIND_ALL = Metricas.histograma("repo.insumos.findAll");
+  private static final Histograma SAVE = Metricas.histograma("repo.insumos.save");
+  private static final Histograma UPDATE = Metricas.histograma("repo.insumos.update");
+  private static final Histograma UPSERT_ALL = Metricas.histograma("repo.insumos.upsertAll");
+  private static final Histograma STOCK_EN_DEPOSITO = Metricas.histograma("repo.insumos.stockEnDeposito");
+  private static final Histograma STOCK_POR_DEPOSITO = Metricas.histograma("repo.insumos.stockPorDeposito");
+  private static final Histograma STOCK_EN_DEPOSITO_VARIOS = Metricas.histograma("repo.insumos.stockEnDepositoVarios");
+  private static final Histograma AJUSTAR_STOCK = Metricas.histograma("repo.insumos.ajustarStock");
+  private static final Histograma BLOQUEAR_VENCIDOS = Metricas.histograma("repo.insumos.bloquearVencidos");
+
+  private final InsumoRepository delegado;
+
+  public InsumoInstrumentado(InsumoRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public Optional<Insumo> findByCodigo(String codigo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.findByCodigo");
+    try {
+      return delegado.findByCodigo(codigo);
+    } catch (RuntimeException e) {
+      FIND_BY_CODIGO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_CODIGO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Insumo> searchByNombre(String nombreParcial) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.searchByNombre");
+    try {
+      return delegado.searchByNombre(nombreParcial);
+    } catch (RuntimeException e) {
+      SEARCH_BY_NOMBRE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SEARCH_BY_NOMBRE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Insumo> findCriticos() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.findCriticos");
+    try {
+      return delegado.findCriticos();
+    } catch (RuntimeException e) {
+      FIND_CRITICOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_CRITICOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Insumo> findAll() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.findAll");
+    try {
+      return delegado.findAll();
+    } catch (RuntimeException e) {
+      FIND_ALL.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ALL.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void save(Insumo i) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.save");
+    try {
+      delegado.save(i);
+    } catch (RuntimeException e) {
+      SAVE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SAVE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void update(Insumo i) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.update");
+    try {
+      delegado.update(i);
+    } catch (RuntimeException e) {
+      UPDATE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      UPDATE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int upsertAll(List<Insumo> insumos) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.upsertAll");
+    try {
+      return delegado.upsertAll(insumos);
+    } catch (RuntimeException e) {
+      UPSERT_ALL.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      UPSERT_ALL.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int stockEnDeposito(String codigo, int depositoId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.stockEnDeposito");
+    try {
+      return delegado.stockEnDeposito(codigo, depositoId);
+    } catch (RuntimeException e) {
+      STOCK_EN_DEPOSITO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      STOCK_EN_DEPOSITO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Map<Integer, Integer> stockPorDeposito(String codigo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.stockPorDeposito");
+    try {
+      return delegado.stockPorDeposito(codigo);
+    } catch (RuntimeException e) {
+      STOCK_POR_DEPOSITO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      STOCK_POR_DEPOSITO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Map<String, Integer> stockEnDeposito(int depositoId, Collection<String> codigos, boolean bloquear) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.stockEnDepositoVarios");
+    try {
+      return delegado.stockEnDeposito(depositoId, codigos, bloquear);
+    } catch (RuntimeException e) {
+      STOCK_EN_DEPOSITO_VARIOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      STOCK_EN_DEPOSITO_VARIOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public boolean ajustarStock(String codigo, int depositoId, int delta, int minimoRestante) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.ajustarStock");
+    try {
+      return delegado.ajustarStock(codigo, depositoId, delta, minimoRestante);
+    } catch (RuntimeException e) {
+      AJUSTAR_STOCK.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      AJUSTAR_STOCK.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<String> bloquearVencidos(LocalDate hoy) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.insumos.bloquearVencidos");
+    try {
+      return delegado.bloquearVencidos(hoy);
+    } catch (RuntimeException e) {
+      BLOQUEAR_VENCIDOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      BLOQUEAR_VENCIDOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
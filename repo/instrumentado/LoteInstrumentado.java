@@ -0,0 +1,127 @@
+package repo.instrumentado;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import domain.ConsumoLote;
+import domain.Lote;
+import domain.Movimiento;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.LoteRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de lotes
+ */
+public class LoteInstrumentado implements LoteRepository {
+  private static final Histograma SUMAR = Metricas.histograma("repo.lotes.sumar");
+  private static final Histograma AJUSTAR = Metricas.histograma("repo.lotes.ajustar");
+  private static final Histograma FIND_CON_STOCK = Metricas.histograma("repo.lotes.findConStock");
+  private static final Histograma FIND_BY_INSUMO = Metricas.histograma("repo.lotes.findByInsumo");
+  private static final Histograma REGISTRAR_CONSUMOS = Metricas.histograma("repo.lotes.registrarConsumos");
+  private static final Histograma FIND_CONSUMOS = Metricas.histograma("repo.lotes.findConsumos");
+
+  private final LoteRepository delegado;
+
+  public LoteInstrumentado(LoteRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public Lote sumar(String codigo, int depositoId, String numero, LocalDate vencimiento, int cantidad) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.lotes.sumar");
+    try {
+      return delegado.sumar(codigo, depositoId, numero, vencimiento, cantidad);
+    } catch (RuntimeException e) {
+      SUMAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SUMAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public boolean ajustar(long loteId, int delta) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.lotes.ajustar");
+    try {
+      return delegado.ajustar(loteId, delta);
+    } catch (RuntimeException e) {
+      AJUSTAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      AJUSTAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Lote> findConStock(String codigo, int depositoId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.lotes.findConStock");
+    try {
+      return delegado.findConStock(codigo, depositoId);
+    } catch (RuntimeException e) {
+      FIND_CON_STOCK.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_CON_STOCK.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Lote> findByInsumo(String codigo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.lotes.findByInsumo");
+    try {
+      return delegado.findByInsumo(codigo);
+    } catch (RuntimeException e) {
+      FIND_BY_INSUMO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_INSUMO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void registrarConsumos(Movimiento m, List<ConsumoLote> consumos) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.lotes.registrarConsumos");
+    try {
+      delegado.registrarConsumos(m, consumos);
+    } catch (RuntimeException e) {
+      REGISTRAR_CONSUMOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      REGISTRAR_CONSUMOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<ConsumoLote> findConsumos(long movimientoId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.lotes.findConsumos");
+    try {
+      return delegado.findConsumos(movimientoId);
+    } catch (RuntimeException e) {
+      FIND_CONSUMOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_CONSUMOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
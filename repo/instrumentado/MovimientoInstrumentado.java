@@ -0,0 +1,166 @@
+package repo.instrumentado;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import domain.Movimiento;
+import domain.TotalConsumo;
+import domain.enums.AgrupacionConsumo;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.MovimientoRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de movimientos
+ */
+public class MovimientoInstrumentado implements MovimientoRepository {
+  private static final Histograma SAVE = Metricas.histograma("repo.movimientos.save");
+  private static final Histograma FIND_BY_CLAVE = Metricas.histograma("repo.movimientos.findByClaveIdempotencia");
+  private static final Histograma FIND_ALL = Metricas.histograma("repo.movimientos.findAll");
+  private static final Histograma FIND_BY_PERIODO_Y_SERVICIO =
+      Metricas.histograma("repo.movimientos.findByPeriodoYServicio");
+  private static final Histograma FIND_BY_PERIODO_Y_DEPOSITO =
+      Metricas.histograma("repo.movimientos.findByPeriodoYDeposito");
+  private static final Histograma RECORRER_POR_INSUMO = Metricas.histograma("repo.movimientos.recorrerPorInsumo");
+  private static final Histograma TOP_CONSUMO = Metricas.histograma("repo.movimientos.topConsumo");
+  private static final Histograma DELETE_BY_PERIODO = Metricas.histograma("repo.movimientos.deleteByPeriodo");
+
+  private final MovimientoRepository delegado;
+
+  public MovimientoInstrumentado(MovimientoRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public void save(Movimiento m) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.save");
+    try {
+      delegado.save(m);
+    } catch (RuntimeException e) {
+      SAVE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SAVE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Optional<Movimiento> findByClaveIdempotencia(String clave) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.findByClaveIdempotencia");
+    try {
+      return delegado.findByClaveIdempotencia(clave);
+    } catch (RuntimeException e) {
+      FIND_BY_CLAVE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_CLAVE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Movimiento> findAll() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.findAll");
+    try {
+      return delegado.findAll();
+    } catch (RuntimeException e) {
+      FIND_ALL.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ALL.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Movimiento> findByPeriodoYServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.findByPeriodoYServicio");
+    try {
+      return delegado.findByPeriodoYServicio(desde, hasta, servicioId);
+    } catch (RuntimeException e) {
+      FIND_BY_PERIODO_Y_SERVICIO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_PERIODO_Y_SERVICIO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Movimiento> findByPeriodoYDeposito(LocalDate desde, LocalDate hasta, int depositoId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.findByPeriodoYDeposito");
+    try {
+      return delegado.findByPeriodoYDeposito(desde, hasta, depositoId);
+    } catch (RuntimeException e) {
+      FIND_BY_PERIODO_Y_DEPOSITO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_PERIODO_Y_DEPOSITO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void recorrerPorInsumo(String codigo, LocalDate desde, LocalDate hasta, Consumer<Movimiento> accion) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.recorrerPorInsumo");
+    try {
+      delegado.recorrerPorInsumo(codigo, desde, hasta, accion);
+    } catch (RuntimeException e) {
+      RECORRER_POR_INSUMO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      RECORRER_POR_INSUMO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<TotalConsumo> topConsumo(AgrupacionConsumo por, LocalDate desde, LocalDate hasta, Integer servicioId,
+      int limite) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.topConsumo");
+    try {
+      return delegado.topConsumo(por, desde, hasta, servicioId, limite);
+    } catch (RuntimeException e) {
+      TOP_CONSUMO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      TOP_CONSUMO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int deleteByPeriodo(LocalDate desde, LocalDate hasta) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.movimientos.deleteByPeriodo");
+    try {
+      return delegado.deleteByPeriodo(desde, hasta);
+    } catch (RuntimeException e) {
+      DELETE_BY_PERIODO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      DELETE_BY_PERIODO.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package repo.instrumentado;
+
+import java.util.List;
+
+import domain.Reserva;
+import domain.enums.EstadoReserva;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.ReservaRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de reservas
+ */
+public class ReservaInstrumentado implements ReservaRepository {
+  private static final Histograma SAVE = Metricas.histograma("repo.reservas.save");
+  private static final Histograma FIND_ACTIVAS = Metricas.histograma("repo.reservas.findActivas");
+  private static final Histograma CERRAR = Metricas.histograma("repo.reservas.cerrar");
+
+  private final ReservaRepository delegado;
+
+  public ReservaInstrumentado(ReservaRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public void save(Reserva r) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.reservas.save");
+    try {
+      delegado.save(r);
+    } catch (RuntimeException e) {
+      SAVE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SAVE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Reserva> findActivas() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.reservas.findActivas");
+    try {
+      return delegado.findActivas();
+    } catch (RuntimeException e) {
+      FIND_ACTIVAS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ACTIVAS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public boolean cerrar(long id, EstadoReserva estado) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.reservas.cerrar");
+    try {
+      return delegado.cerrar(id, estado);
+    } catch (RuntimeException e) {
+      CERRAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      CERRAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package repo.instrumentado;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import domain.SaldoInsumo;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.SaldoRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de saldos de cierre
+ */
+public class SaldoInstrumentado implements SaldoRepository {
+  private static final Histograma FIND_ULTIMO_HASTA = Metricas.histograma("repo.saldos.findUltimoHasta");
+  private static final Histograma FIND_PRIMERO_DESDE = Metricas.histograma("repo.saldos.findPrimeroDesde");
+  private static final Histograma VARIACION = Metricas.histograma("repo.saldos.variacion");
+  private static final Histograma REGISTRAR_CIERRE = Metricas.histograma("repo.saldos.registrarCierre");
+
+  private final SaldoRepository delegado;
+
+  public SaldoInstrumentado(SaldoRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public Optional<SaldoInsumo> findUltimoHasta(String codigo, LocalDate fecha) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.saldos.findUltimoHasta");
+    try {
+      return delegado.findUltimoHasta(codigo, fecha);
+    } catch (RuntimeException e) {
+      FIND_ULTIMO_HASTA.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ULTIMO_HASTA.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Optional<SaldoInsumo> findPrimeroDesde(String codigo, LocalDate fecha) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.saldos.findPrimeroDesde");
+    try {
+      return delegado.findPrimeroDesde(codigo, fecha);
+    } catch (RuntimeException e) {
+      FIND_PRIMERO_DESDE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_PRIMERO_DESDE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int variacion(String codigo, LocalDate desde, LocalDate hasta) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.saldos.variacion");
+    try {
+      return delegado.variacion(codigo, desde, hasta);
+    } catch (RuntimeException e) {
+      VARIACION.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      VARIACION.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int registrarCierre(LocalDate dia) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.saldos.registrarCierre");
+    try {
+      return delegado.registrarCierre(dia);
+    } catch (RuntimeException e) {
+      REGISTRAR_CIERRE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      REGISTRAR_CIERRE.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package repo.instrumentado;
+
+import java.util.List;
+import java.util.Optional;
+
+import domain.Servicio;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.ServicioRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de servicios
+ */
+public class ServicioInstrumentado implements ServicioRepository {
+  private static final Histograma FIND_BY_ID = Metricas.histograma("repo.servicios.findById");
+  private static final Histograma FIND_BY_NOMBRE = Metricas.histograma("repo.servicios.findByNombre");
+  private static final Histograma FIND_ALL = Metricas.histograma("repo.servicios.findAll");
+  private static final Histograma SAVE = Metricas.histograma("repo.servicios.save");
+
+  private final ServicioRepository delegado;
+
+  public ServicioInstrumentado(ServicioRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public Optional<Servicio> findById(int id) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.servicios.findById");
+    try {
+      return delegado.findById(id);
+    } catch (RuntimeException e) {
+      FIND_BY_ID.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_ID.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Optional<Servicio> findByNombre(String nombre) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.servicios.findByNombre");
+    try {
+      return delegado.findByNombre(nombre);
+    } catch (RuntimeException e) {
+      FIND_BY_NOMBRE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_NOMBRE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Servicio> findAll() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.servicios.findAll");
+    try {
+      return delegado.findAll();
+    } catch (RuntimeException e) {
+      FIND_ALL.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ALL.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void save(Servicio s) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.servicios.save");
+    try {
+      delegado.save(s);
+    } catch (RuntimeException e) {
+      SAVE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SAVE.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package repo.instrumentado;
+
+import java.util.List;
+import java.util.Optional;
+
+import domain.Usuario;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.UsuarioRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de usuarios
+ */
+public class UsuarioInstrumentado implements UsuarioRepository {
+  private static final Histograma FIND_BY_LEGAJO = Metricas.histograma("repo.usuarios.findByLegajo");
+  private static final Histograma FIND_ALL_ACTIVOS = Metricas.histograma("repo.usuarios.findAllActivos");
+  private static final Histograma SAVE = Metricas.histograma("repo.usuarios.save");
+  private static final Histograma UPDATE = Metricas.histograma("repo.usuarios.update");
+  private static final Histograma DELETE_LOGICO = Metricas.histograma("repo.usuarios.deleteLogico");
+
+  private final UsuarioRepository delegado;
+
+  public UsuarioInstrumentado(UsuarioRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public Optional<Usuario> findByLegajo(int legajo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.usuarios.findByLegajo");
+    try {
+      return delegado.findByLegajo(legajo);
+    } catch (RuntimeException e) {
+      FIND_BY_LEGAJO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_BY_LEGAJO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Usuario> findAllActivos() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.usuarios.findAllActivos");
+    try {
+      return delegado.findAllActivos();
+    } catch (RuntimeException e) {
+      FIND_ALL_ACTIVOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ALL_ACTIVOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void save(Usuario u) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.usuarios.save");
+    try {
+      delegado.save(u);
+    } catch (RuntimeException e) {
+      SAVE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SAVE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void update(Usuario u) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.usuarios.update");
+    try {
+      delegado.update(u);
+    } catch (RuntimeException e) {
+      UPDATE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      UPDATE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void deleteLogico(int legajo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.usuarios.deleteLogico");
+    try {
+      delegado.deleteLogico(legajo);
+    } catch (RuntimeException e) {
+      DELETE_LOGICO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      DELETE_LOGICO.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
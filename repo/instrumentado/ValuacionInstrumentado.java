@@ -0,0 +1,217 @@
+package repo.instrumentado;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import domain.CapaCosto;
+import domain.CostoConsumo;
+import domain.ValuacionInsumo;
+import domain.ValuacionPendiente;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.ValuacionRepository;
+
+/**
+ * Decorador que mide la latencia y traza cada operación del repositorio de valuación de stock
+ */
+public class ValuacionInstrumentado implements ValuacionRepository {
+  private static final Histograma ENCOLAR = Metricas.histograma("repo.valuacion.encolar");
+  private static final Histograma PENDIENTES = Metricas.histograma("repo.valuacion.pendientes");
+  private static final Histograma TOMAR_PENDIENTE = Metricas.histograma("repo.valuacion.tomarPendiente");
+  private static final Histograma BLOQUEAR = Metricas.histograma("repo.valuacion.bloquear");
+  private static final Histograma GUARDAR = Metricas.histograma("repo.valuacion.guardar");
+  private static final Histograma CAPAS_PARA_SALIDA = Metricas.histograma("repo.valuacion.capasParaSalida");
+  private static final Histograma AGREGAR_CAPA = Metricas.histograma("repo.valuacion.agregarCapa");
+  private static final Histograma CONSUMIR_CAPA = Metricas.histograma("repo.valuacion.consumirCapa");
+  private static final Histograma SUMAR_CONSUMO = Metricas.histograma("repo.valuacion.sumarConsumo");
+  private static final Histograma FIND_ALL = Metricas.histograma("repo.valuacion.findAll");
+  private static final Histograma CONSUMO_POR_SERVICIO = Metricas.histograma("repo.valuacion.consumoPorServicio");
+
+  private final ValuacionRepository delegado;
+
+  public ValuacionInstrumentado(ValuacionRepository delegado) {
+    this.delegado = delegado;
+  }
+
+  @Override
+  public void encolar(ValuacionPendiente pendiente) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.encolar");
+    try {
+      delegado.encolar(pendiente);
+    } catch (RuntimeException e) {
+      ENCOLAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      ENCOLAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<ValuacionPendiente> pendientes(int limite) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.pendientes");
+    try {
+      return delegado.pendientes(limite);
+    } catch (RuntimeException e) {
+      PENDIENTES.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      PENDIENTES.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public boolean tomarPendiente(long id) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.tomarPendiente");
+    try {
+      return delegado.tomarPendiente(id);
+    } catch (RuntimeException e) {
+      TOMAR_PENDIENTE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      TOMAR_PENDIENTE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public ValuacionInsumo bloquear(String codigo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.bloquear");
+    try {
+      return delegado.bloquear(codigo);
+    } catch (RuntimeException e) {
+      BLOQUEAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      BLOQUEAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void guardar(ValuacionInsumo valuacion) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.guardar");
+    try {
+      delegado.guardar(valuacion);
+    } catch (RuntimeException e) {
+      GUARDAR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      GUARDAR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<CapaCosto> capasParaSalida(String codigo, int cantidad) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.capasParaSalida");
+    try {
+      return delegado.capasParaSalida(codigo, cantidad);
+    } catch (RuntimeException e) {
+      CAPAS_PARA_SALIDA.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      CAPAS_PARA_SALIDA.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void agregarCapa(String codigo, int cantidad, BigDecimal costoUnitario, long movimientoId,
+      LocalDateTime fecha) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.agregarCapa");
+    try {
+      delegado.agregarCapa(codigo, cantidad, costoUnitario, movimientoId, fecha);
+    } catch (RuntimeException e) {
+      AGREGAR_CAPA.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      AGREGAR_CAPA.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void consumirCapa(long capaId, int restante) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.consumirCapa");
+    try {
+      delegado.consumirCapa(capaId, restante);
+    } catch (RuntimeException e) {
+      CONSUMIR_CAPA.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      CONSUMIR_CAPA.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void sumarConsumo(LocalDate dia, int servicioId, String codigo, int cantidad, BigDecimal costoFifo,
+      BigDecimal costoPromedio) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.sumarConsumo");
+    try {
+      delegado.sumarConsumo(dia, servicioId, codigo, cantidad, costoFifo, costoPromedio);
+    } catch (RuntimeException e) {
+      SUMAR_CONSUMO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      SUMAR_CONSUMO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<ValuacionInsumo> findAll() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.findAll");
+    try {
+      return delegado.findAll();
+    } catch (RuntimeException e) {
+      FIND_ALL.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      FIND_ALL.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<CostoConsumo> consumoPorServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciar("repo.valuacion.consumoPorServicio");
+    try {
+      return delegado.consumoPorServicio(desde, hasta, servicioId);
+    } catch (RuntimeException e) {
+      CONSUMO_POR_SERVICIO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      CONSUMO_POR_SERVICIO.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package repo.jdbc;
+
+/**
+ * Configuración en caliente del registro de consultas lentas vía JMX
+ */
+public interface ConsultasLentasMXBean {
+  long getUmbralMs();
+
+  void setUmbralMs(long umbralMs);
+
+  boolean isExplicar();
+
+  void setExplicar(boolean explicar);
+
+  long getConsultasLentas();
+}
@@ -4,6 +4,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+
 /**
  * Clase para gestionar la conexión a la base de datos MySQL
  */
@@ -11,6 +14,9 @@ public class DatabaseConnection {
   private static final String URL = "jdbc:mysql://localhost:3306/clinica_horizonte";
   private static final String USER = "root";
   private static final String PASSWORD = "admin1234";
+
+  // Tiempo de obtención de conexiones
+  private static final Histograma OBTENER_CONEXION = Metricas.histograma("db.conexion.obtener");
   
   static {
     try {
@@ -23,12 +29,21 @@ public class DatabaseConnection {
 
   /**
    * Obtiene una conexión a la base de datos
+   * La conexión se envuelve con el interceptor de consultas lentas
    * 
    * @return Connection a la base de datos
    * @throws SQLException si hay un error al conectar
    */
   public static Connection getConnection() throws SQLException {
-    return DriverManager.getConnection(URL, USER, PASSWORD);
+    long inicio = System.nanoTime();
+    try {
+      return InterceptorSql.envolver(DriverManager.getConnection(URL, USER, PASSWORD));
+    } catch (SQLException e) {
+      OBTENER_CONEXION.registrarError();
+      throw e;
+    } finally {
+      OBTENER_CONEXION.registrar(System.nanoTime() - inicio);
+    }
   }
 
   /**
@@ -0,0 +1,100 @@
+package repo.jdbc;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import domain.Deposito;
+import exceptions.DatabaseException;
+import repo.DepositoRepository;
+
+/**
+ * Implementación JDBC del repositorio de depósitos
+ */
+public class DepositoJDBC implements DepositoRepository {
+
+  @Override
+  public Optional<Deposito> findById(int id) {
+    String sql = "SELECT id, nombre, central FROM depositos WHERE id = ?";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = DatabaseConnection.getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setInt(1, id);
+      
+      rs = stmt.executeQuery();
+      
+      if (rs.next()) {
+        return Optional.of(mapResultSetToDeposito(rs));
+      }
+      
+      return Optional.empty();
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al buscar depósito por id: " + id, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public List<Deposito> findAll() {
+    String sql = "SELECT id, nombre, central FROM depositos ORDER BY id";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = DatabaseConnection.getConnection();
+      stmt = conn.prepareStatement(sql);
+      rs = stmt.executeQuery();
+      
+      List<Deposito> depositos = new ArrayList<>();
+      
+      while (rs.next()) {
+        depositos.add(mapResultSetToDeposito(rs));
+      }
+      
+      return depositos;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al obtener todos los depósitos", e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  /**
+   * Mapea un ResultSet a un objeto Deposito
+   */
+  private Deposito mapResultSetToDeposito(ResultSet rs) throws SQLException {
+    return new Deposito(rs.getInt("id"), rs.getString("nombre"), rs.getBoolean("central"));
+  }
+
+  /**
+   * Cierra los recursos de forma segura
+   */
+  private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
+    if (rs != null) {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar ResultSet: " + e.getMessage());
+      }
+    }
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar Statement: " + e.getMessage());
+      }
+    }
+    DatabaseConnection.closeConnection(conn);
+  }
+}
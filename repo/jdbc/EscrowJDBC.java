@@ -0,0 +1,202 @@
+package repo.jdbc;
+
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import exceptions.DatabaseException;
+import repo.EscrowRepository;
+
+/**
+ * Implementación JDBC de las cuotas de escrow (tabla stock_escrow)
+ * Las filas se bloquean siempre en el mismo orden, primero la fila común de stock_depositos y
+ * después las cuotas (de menor a mayor), así recargar y consolidar no se bloquean mutuamente
+ */
+public class EscrowJDBC implements EscrowRepository {
+
+  @Override
+  public boolean descontar(String codigo, int depositoId, int cuota, int cantidad) {
+    String sql = "UPDATE stock_escrow SET stock = stock - ? " +
+                 "WHERE deposito_id = ? AND insumo_codigo = ? AND cuota = ? AND stock >= ?";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setInt(1, cantidad);
+      stmt.setInt(2, depositoId);
+      stmt.setString(3, codigo);
+      stmt.setInt(4, cuota);
+      stmt.setInt(5, cantidad);
+      return stmt.executeUpdate() > 0;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al descontar de la cuota " + cuota + " de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public boolean recargar(String codigo, int depositoId, int cuota, int cantidad, int minimoRestante) {
+    // Primero el común y después la cuota (crea la fila si no existe), en el orden de bloqueo
+    String restarComun = "UPDATE stock_depositos SET stock = stock - ? " +
+                         "WHERE deposito_id = ? AND insumo_codigo = ? AND stock >= ?";
+    String sumarCuota = "INSERT INTO stock_escrow (deposito_id, insumo_codigo, cuota, stock) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE stock = stock + VALUES(stock)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(restarComun);
+      stmt.setInt(1, cantidad);
+      stmt.setInt(2, depositoId);
+      stmt.setString(3, codigo);
+      stmt.setInt(4, cantidad + Math.max(0, minimoRestante));
+      if (stmt.executeUpdate() == 0) {
+        return false;
+      }
+      stmt.close();
+      
+      stmt = conn.prepareStatement(sumarCuota);
+      stmt.setInt(1, depositoId);
+      stmt.setString(2, codigo);
+      stmt.setInt(3, cuota);
+      stmt.setInt(4, cantidad);
+      stmt.executeUpdate();
+      return true;
+      
+    } catch (SQLException e) {
+      if (e.getSQLState().equals("23000")) { // Violación de foreign key
+        throw new IllegalArgumentException("Depósito o insumo inexistente: " + depositoId + "/" + codigo, e);
+      }
+      throw new DatabaseException("Error al recargar la cuota " + cuota + " de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public int consolidar(String codigo, int depositoId) {
+    String bloquearComun = "SELECT stock FROM stock_depositos WHERE deposito_id = ? AND insumo_codigo = ? FOR UPDATE";
+    String bloquear = "SELECT cuota, stock FROM stock_escrow WHERE deposito_id = ? AND insumo_codigo = ? " +
+                      "ORDER BY cuota FOR UPDATE";
+    String vaciar = "UPDATE stock_escrow SET stock = 0 WHERE deposito_id = ? AND insumo_codigo = ?";
+    String sumarComun = "INSERT INTO stock_depositos (deposito_id, insumo_codigo, stock) VALUES (?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE stock = stock + VALUES(stock)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(bloquearComun);
+      stmt.setInt(1, depositoId);
+      stmt.setString(2, codigo);
+      stmt.executeQuery().close();
+      stmt.close();
+      
+      stmt = conn.prepareStatement(bloquear);
+      stmt.setInt(1, depositoId);
+      stmt.setString(2, codigo);
+      rs = stmt.executeQuery();
+      int total = 0;
+      while (rs.next()) {
+        total += rs.getInt("stock");
+      }
+      rs.close();
+      stmt.close();
+      rs = null;
+      if (total == 0) {
+        return 0;
+      }
+      
+      stmt = conn.prepareStatement(vaciar);
+      stmt.setInt(1, depositoId);
+      stmt.setString(2, codigo);
+      stmt.executeUpdate();
+      stmt.close();
+      
+      stmt = conn.prepareStatement(sumarComun);
+      stmt.setInt(1, depositoId);
+      stmt.setString(2, codigo);
+      stmt.setInt(3, total);
+      stmt.executeUpdate();
+      return total;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consolidar las cuotas de " + codigo + " en el depósito " + depositoId, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public Map<Integer, Integer> cuotas(String codigo, int depositoId) {
+    String sql = "SELECT cuota, stock FROM stock_escrow WHERE deposito_id = ? AND insumo_codigo = ? ORDER BY cuota";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setInt(1, depositoId);
+      stmt.setString(2, codigo);
+      rs = stmt.executeQuery();
+      
+      Map<Integer, Integer> cuotas = new LinkedHashMap<>();
+      while (rs.next()) {
+        cuotas.put(rs.getInt("cuota"), rs.getInt("stock"));
+      }
+      return cuotas;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consultar las cuotas de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  /**
+   * Obtiene una conexión: usa la de transacción si existe, sino crea una nueva
+   */
+  private Connection getConnection() throws SQLException {
+    Connection transConn = TransactionManager.getCurrentConnection();
+    if (transConn != null) {
+      return transConn; // Usar conexión de transacción
+    }
+    return DatabaseConnection.getConnection(); // Crear nueva conexión
+  }
+
+  /**
+   * Cierra los recursos de forma segura
+   * NO cierra la conexión si está en una transacción
+   */
+  private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
+    if (rs != null) {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar ResultSet: " + e.getMessage());
+      }
+    }
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar Statement: " + e.getMessage());
+      }
+    }
+    // Solo cerrar la conexión si NO está en una transacción
+    if (!TransactionManager.isTransactionActive()) {
+      DatabaseConnection.closeConnection(conn);
+    }
+  }
+}
@@ -3,9 +3,15 @@ package repo.jdbc;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import domain.Deposito;
 import domain.Insumo;
 import domain.enums.EstadoInsumo;
 import exceptions.DatabaseException;
@@ -17,11 +23,18 @@ import repo.jdbc.TransactionManager;
  * Utiliza ArrayList para almacenar resultados y arreglos para parámetros
  */
 public class InsumoJDBC implements InsumoRepository {
+  // El stock de cada insumo es la suma de su stock en todos los depósitos
+  private static final String SELECT_INSUMO =
+      "SELECT i.codigo, i.nombre, i.unidad, i.stock_minimo, i.estado, i.fecha_vencimiento, " +
+      "((SELECT COALESCE(SUM(sd.stock), 0) FROM stock_depositos sd WHERE sd.insumo_codigo = i.codigo) + " +
+      "(SELECT COALESCE(SUM(se.stock), 0) FROM stock_escrow se WHERE se.insumo_codigo = i.codigo)) AS stock " +
+      "FROM insumos i ";
+  // Filas por sentencia INSERT multi-fila en upsertAll (6 parámetros por fila)
+  private static final int FILAS_POR_SENTENCIA = Integer.getInteger("clinica.insumos.filasPorUpsert", 500);
   
   @Override
   public Optional<Insumo> findByCodigo(String codigo) {
-    String sql = "SELECT codigo, nombre, unidad, stock, stock_minimo, estado, fecha_vencimiento " +
-                 "FROM insumos WHERE codigo = ?";
+    String sql = SELECT_INSUMO + "WHERE i.codigo = ?";
     
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -50,8 +63,7 @@ public class InsumoJDBC implements InsumoRepository {
 
   @Override
   public List<Insumo> searchByNombre(String nombreParcial) {
-    String sql = "SELECT codigo, nombre, unidad, stock, stock_minimo, estado, fecha_vencimiento " +
-                 "FROM insumos WHERE nombre LIKE ? ORDER BY nombre";
+    String sql = SELECT_INSUMO + "WHERE i.nombre LIKE ? ORDER BY i.nombre";
     
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -84,8 +96,7 @@ public class InsumoJDBC implements InsumoRepository {
 
   @Override
   public List<Insumo> findCriticos() {
-    String sql = "SELECT codigo, nombre, unidad, stock, stock_minimo, estado, fecha_vencimiento " +
-                 "FROM insumos WHERE stock <= stock_minimo ORDER BY (stock - stock_minimo) ASC";
+    String sql = SELECT_INSUMO + "HAVING stock <= i.stock_minimo ORDER BY (stock - i.stock_minimo) ASC";
     
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -115,8 +126,7 @@ public class InsumoJDBC implements InsumoRepository {
 
   @Override
   public List<Insumo> findAll() {
-    String sql = "SELECT codigo, nombre, unidad, stock, stock_minimo, estado, fecha_vencimiento " +
-                 "FROM insumos ORDER BY codigo";
+    String sql = SELECT_INSUMO + "ORDER BY i.codigo";
     
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -146,8 +156,8 @@ public class InsumoJDBC implements InsumoRepository {
 
   @Override
   public void save(Insumo i) {
-    String sql = "INSERT INTO insumos (codigo, nombre, unidad, stock, stock_minimo, estado, fecha_vencimiento) " +
-                 "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    String sql = "INSERT INTO insumos (codigo, nombre, unidad, stock_minimo, estado, fecha_vencimiento) " +
+                 "VALUES (?, ?, ?, ?, ?, ?)";
     
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -160,15 +170,14 @@ public class InsumoJDBC implements InsumoRepository {
       stmt.setString(1, i.getCodigo());
       stmt.setString(2, i.getNombre());
       stmt.setString(3, i.getUnidad());
-      stmt.setInt(4, i.getStock());
-      stmt.setInt(5, i.getStockMinimo());
-      stmt.setString(6, i.getEstado().name());
+      stmt.setInt(4, i.getStockMinimo());
+      stmt.setString(5, i.getEstado().name());
       
       // Manejar fecha_vencimiento que puede ser NULL
       if (i.getFechaVencimiento() != null) {
-        stmt.setDate(7, Date.valueOf(i.getFechaVencimiento()));
+        stmt.setDate(6, Date.valueOf(i.getFechaVencimiento()));
       } else {
-        stmt.setNull(7, Types.DATE);
+        stmt.setNull(6, Types.DATE);
       }
       
       int rowsAffected = stmt.executeUpdate();
@@ -185,11 +194,16 @@ public class InsumoJDBC implements InsumoRepository {
     } finally {
       closeResources(conn, stmt, null);
     }
+
+    // El stock inicial queda en la farmacia central
+    if (i.getStock() > 0) {
+      ajustarStock(i.getCodigo(), Deposito.CENTRAL, i.getStock());
+    }
   }
 
   @Override
   public void update(Insumo i) {
-    String sql = "UPDATE insumos SET nombre = ?, unidad = ?, stock = ?, stock_minimo = ?, " +
+    String sql = "UPDATE insumos SET nombre = ?, unidad = ?, stock_minimo = ?, " +
                  "estado = ?, fecha_vencimiento = ? WHERE codigo = ?";
     
     Connection conn = null;
@@ -202,18 +216,17 @@ public class InsumoJDBC implements InsumoRepository {
       // Usar arreglo de parámetros
       stmt.setString(1, i.getNombre());
       stmt.setString(2, i.getUnidad());
-      stmt.setInt(3, i.getStock());
-      stmt.setInt(4, i.getStockMinimo());
-      stmt.setString(5, i.getEstado().name());
+      stmt.setInt(3, i.getStockMinimo());
+      stmt.setString(4, i.getEstado().name());
       
       // Manejar fecha_vencimiento que puede ser NULL
       if (i.getFechaVencimiento() != null) {
-        stmt.setDate(6, Date.valueOf(i.getFechaVencimiento()));
+        stmt.setDate(5, Date.valueOf(i.getFechaVencimiento()));
       } else {
-        stmt.setNull(6, Types.DATE);
+        stmt.setNull(5, Types.DATE);
       }
       
-      stmt.setString(7, i.getCodigo());
+      stmt.setString(6, i.getCodigo());
       
       int rowsAffected = stmt.executeUpdate();
       
@@ -228,6 +241,259 @@ public class InsumoJDBC implements InsumoRepository {
     }
   }
 
+  @Override
+  public int upsertAll(List<Insumo> insumos) {
+    if (insumos.isEmpty()) {
+      return 0;
+    }
+
+    Connection conn = null;
+    try {
+      conn = getConnection();
+      int insertados = 0;
+      // Una sentencia multi-fila por tramo: un solo viaje a la base cada FILAS_POR_SENTENCIA insumos
+      for (int desde = 0; desde < insumos.size(); desde += FILAS_POR_SENTENCIA) {
+        List<Insumo> tramo = insumos.subList(desde, Math.min(desde + FILAS_POR_SENTENCIA, insumos.size()));
+        int existentes = contarExistentes(conn, tramo);
+        upsertTramo(conn, tramo);
+        insertados += tramo.size() - existentes;
+      }
+      return insertados;
+
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al importar insumos", e);
+    } finally {
+      closeResources(conn, null, null);
+    }
+  }
+
+  /**
+   * Cuenta cuántos códigos del tramo ya existen, para distinguir inserciones de actualizaciones
+   */
+  private int contarExistentes(Connection conn, List<Insumo> tramo) throws SQLException {
+    StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM insumos WHERE codigo IN (");
+    for (int i = 0; i < tramo.size(); i++) {
+      sql.append(i == 0 ? "?" : ", ?");
+    }
+    sql.append(")");
+
+    try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+      for (int i = 0; i < tramo.size(); i++) {
+        stmt.setString(i + 1, tramo.get(i).getCodigo());
+      }
+      try (ResultSet rs = stmt.executeQuery()) {
+        return rs.next() ? rs.getInt(1) : 0;
+      }
+    }
+  }
+
+  private void upsertTramo(Connection conn, List<Insumo> tramo) throws SQLException {
+    StringBuilder sql = new StringBuilder(
+        "INSERT INTO insumos (codigo, nombre, unidad, stock_minimo, estado, fecha_vencimiento) VALUES ");
+    for (int i = 0; i < tramo.size(); i++) {
+      sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+    }
+    // Solo se refrescan los datos de catálogo: el estado se mantiene
+    sql.append(" ON DUPLICATE KEY UPDATE nombre = VALUES(nombre), unidad = VALUES(unidad), " +
+               "stock_minimo = VALUES(stock_minimo), fecha_vencimiento = VALUES(fecha_vencimiento)");
+
+    try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+      int p = 1;
+      for (Insumo i : tramo) {
+        stmt.setString(p++, i.getCodigo());
+        stmt.setString(p++, i.getNombre());
+        stmt.setString(p++, i.getUnidad());
+        stmt.setInt(p++, i.getStockMinimo());
+        stmt.setString(p++, i.getEstado().name());
+        if (i.getFechaVencimiento() != null) {
+          stmt.setDate(p++, Date.valueOf(i.getFechaVencimiento()));
+        } else {
+          stmt.setNull(p++, Types.DATE);
+        }
+      }
+      stmt.executeUpdate();
+    }
+  }
+
+  @Override
+  public int stockEnDeposito(String codigo, int depositoId) {
+    String sql = "SELECT (SELECT COALESCE(SUM(stock), 0) FROM stock_depositos WHERE deposito_id = ? AND insumo_codigo = ?) + " +
+                 "(SELECT COALESCE(SUM(stock), 0) FROM stock_escrow WHERE deposito_id = ? AND insumo_codigo = ?)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setInt(1, depositoId);
+      stmt.setString(2, codigo);
+      stmt.setInt(3, depositoId);
+      stmt.setString(4, codigo);
+      rs = stmt.executeQuery();
+      return rs.next() ? rs.getInt(1) : 0;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consultar el stock del depósito " + depositoId, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public Map<Integer, Integer> stockPorDeposito(String codigo) {
+    String sql = "SELECT deposito_id, SUM(stock) AS stock FROM (" +
+                 "SELECT deposito_id, stock FROM stock_depositos WHERE insumo_codigo = ? " +
+                 "UNION ALL SELECT deposito_id, stock FROM stock_escrow WHERE insumo_codigo = ?) t " +
+                 "GROUP BY deposito_id ORDER BY deposito_id";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setString(1, codigo);
+      stmt.setString(2, codigo);
+      rs = stmt.executeQuery();
+      
+      Map<Integer, Integer> stock = new LinkedHashMap<>();
+      while (rs.next()) {
+        stock.put(rs.getInt("deposito_id"), rs.getInt("stock"));
+      }
+      return stock;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consultar el stock por depósito de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public Map<String, Integer> stockEnDeposito(int depositoId, Collection<String> codigos, boolean bloquear) {
+    Map<String, Integer> stock = new HashMap<>();
+    for (String codigo : codigos) {
+      stock.put(codigo, 0);
+    }
+    if (codigos.isEmpty()) {
+      return stock;
+    }
+    // Filas sin agregar: MySQL no bloquea filas de una consulta agrupada ni de una subconsulta
+    String filtro = " WHERE deposito_id = ? AND insumo_codigo IN (" +
+                    String.join(",", Collections.nCopies(codigos.size(), "?")) + ")" +
+                    (bloquear ? " FOR UPDATE" : "");
+
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+
+    try {
+      conn = getConnection();
+      for (String tabla : new String[] { "stock_depositos", "stock_escrow" }) {
+        stmt = conn.prepareStatement("SELECT insumo_codigo, stock FROM " + tabla + filtro);
+        int p = 1;
+        stmt.setInt(p++, depositoId);
+        for (String codigo : codigos) {
+          stmt.setString(p++, codigo);
+        }
+        rs = stmt.executeQuery();
+        while (rs.next()) {
+          stock.merge(rs.getString("insumo_codigo"), rs.getInt("stock"), Integer::sum);
+        }
+        rs.close();
+        rs = null;
+        stmt.close();
+        stmt = null;
+      }
+      return stock;
+
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consultar el stock del depósito " + depositoId, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public boolean ajustarStock(String codigo, int depositoId, int delta, int minimoRestante) {
+    // Los ingresos crean la fila si el depósito nunca tuvo el insumo; los egresos solo
+    // descuentan si alcanza (la condición y la resta son una única sentencia atómica)
+    String sql = delta >= 0
+        ? "INSERT INTO stock_depositos (deposito_id, insumo_codigo, stock) VALUES (?, ?, ?) " +
+          "ON DUPLICATE KEY UPDATE stock = stock + VALUES(stock)"
+        : "UPDATE stock_depositos SET stock = stock - ? " +
+          "WHERE deposito_id = ? AND insumo_codigo = ? AND stock >= ?";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      if (delta >= 0) {
+        stmt.setInt(1, depositoId);
+        stmt.setString(2, codigo);
+        stmt.setInt(3, delta);
+      } else {
+        stmt.setInt(1, -delta);
+        stmt.setInt(2, depositoId);
+        stmt.setString(3, codigo);
+        stmt.setInt(4, -delta + Math.max(0, minimoRestante));
+      }
+      return stmt.executeUpdate() > 0 || delta == 0;
+      
+    } catch (SQLException e) {
+      if (e.getSQLState().equals("23000")) { // Violación de foreign key
+        throw new IllegalArgumentException("Depósito o insumo inexistente: " + depositoId + "/" + codigo, e);
+      }
+      throw new DatabaseException("Error al ajustar el stock de " + codigo + " en el depósito " + depositoId, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public List<String> bloquearVencidos(LocalDate hoy) {
+    // Los códigos se leen con bloqueo y se actualizan con la misma condición: dentro de una
+    // transacción, los que devuelve son exactamente los que cambió el UPDATE
+    String condicion = " WHERE estado = 'ACTIVO' AND fecha_vencimiento < ?";
+    List<String> bloqueados = new ArrayList<>();
+
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement("SELECT codigo FROM insumos" + condicion + " FOR UPDATE");
+      stmt.setDate(1, Date.valueOf(hoy));
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        bloqueados.add(rs.getString("codigo"));
+      }
+      rs.close();
+      rs = null;
+      stmt.close();
+      stmt = null;
+      if (bloqueados.isEmpty()) {
+        return bloqueados;
+      }
+
+      stmt = conn.prepareStatement("UPDATE insumos SET estado = 'BLOQUEADO'" + condicion);
+      stmt.setDate(1, Date.valueOf(hoy));
+      stmt.executeUpdate();
+      return bloqueados;
+
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al bloquear los insumos vencidos", e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
   /**
    * Mapea un ResultSet a un objeto Insumo
    */
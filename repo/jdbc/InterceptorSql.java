@@ -0,0 +1,428 @@
+package repo.jdbc;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+
+/**
+ * Capa de intercepción JDBC: envuelve las conexiones con proxies que miden cada
+ * sentencia y registran en un archivo rotativo las que superan el umbral, junto con
+ * su SQL, los valores de los parámetros y la cantidad de filas
+ * Los parámetros de las sentencias que tocan la columna password no se registran (solo si son NULL)
+ * De un lote (addBatch/executeBatch) se registran la cantidad de filas del lote y los parámetros de
+ * la primera, sin EXPLAIN
+ *
+ * Configuración:
+ *   -Dclinica.sql.umbralMs=200       umbral de consulta lenta (0 registra todas)
+ *   -Dclinica.sql.explain=false      adjuntar EXPLAIN a las SELECT lentas
+ *   -Dclinica.sql.archivo=consultas-lentas.%g.log  patrón de archivo (rota cada 5 MB, 5 archivos)
+ * El umbral y el EXPLAIN también pueden cambiarse en caliente por JMX (clinica.horizonte:type=ConsultasLentas)
+ */
+public final class InterceptorSql implements ConsultasLentasMXBean {
+  private static final int LIMITE_ARCHIVO_BYTES = 5 * 1024 * 1024;
+  private static final int CANTIDAD_ARCHIVOS = 5;
+  private static final int LARGO_MAXIMO_VALOR = 100;
+  private static final Pattern COLUMNA_SENSIBLE = Pattern.compile("\\bpassword\\b", Pattern.CASE_INSENSITIVE);
+
+  private static final InterceptorSql INSTANCIA = new InterceptorSql();
+  private static final Logger LOG = crearLogger();
+  private static final Histograma SENTENCIAS = Metricas.histograma("db.sentencias");
+
+  private volatile long umbralNanos = Long.getLong("clinica.sql.umbralMs", 200) * 1_000_000;
+  private volatile boolean explicar = Boolean.getBoolean("clinica.sql.explain");
+  private final AtomicLong consultasLentas = new AtomicLong();
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(INSTANCIA, new ObjectName("clinica.horizonte:type=ConsultasLentas"));
+    } catch (JMException e) {
+      System.err.println("No se pudo registrar ConsultasLentas en JMX: " + e.getMessage());
+    }
+  }
+
+  private InterceptorSql() {
+  }
+
+  public static InterceptorSql getInstancia() {
+    return INSTANCIA;
+  }
+
+  /**
+   * Envuelve una conexión para interceptar las sentencias creadas a partir de ella
+   */
+  public static Connection envolver(Connection conn) {
+    return (Connection) Proxy.newProxyInstance(InterceptorSql.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, new ConexionHandler(conn));
+  }
+
+  @Override
+  public long getUmbralMs() {
+    return umbralNanos / 1_000_000;
+  }
+
+  @Override
+  public void setUmbralMs(long umbralMs) {
+    if (umbralMs < 0) {
+      throw new IllegalArgumentException("El umbral no puede ser negativo");
+    }
+    this.umbralNanos = umbralMs * 1_000_000;
+  }
+
+  @Override
+  public boolean isExplicar() {
+    return explicar;
+  }
+
+  @Override
+  public void setExplicar(boolean explicar) {
+    this.explicar = explicar;
+  }
+
+  @Override
+  public long getConsultasLentas() {
+    return consultasLentas.get();
+  }
+
+  /**
+   * Registra la sentencia si superó el umbral
+   *
+   * @param lote filas del lote ejecutado (0 si no es un lote); los parámetros son los de la primera
+   */
+  private void finalizar(Connection real, String sql, Object[] parametros, long nanos, long filas, int lote) {
+    SENTENCIAS.registrar(nanos);
+    if (nanos < umbralNanos || sql == null) {
+      return;
+    }
+    consultasLentas.incrementAndGet();
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("LENTA %.1f ms | filas=%d | ", nanos / 1_000_000.0, filas));
+    if (lote > 0) {
+      sb.append("lote=").append(lote).append(" | ");
+    }
+    sb.append(String.format("sql=%s | %s=%s", sql.replaceAll("\\s+", " "),
+        lote > 0 ? "parametros primera fila" : "parametros",
+        formatearParametros(parametros, COLUMNA_SENSIBLE.matcher(sql).find())));
+
+    if (explicar && lote == 0 && sql.trim().toUpperCase().startsWith("SELECT")) {
+      sb.append(System.lineSeparator()).append(explicar(real, sql, parametros));
+    }
+    LOG.warning(sb.toString());
+  }
+
+  /**
+   * Ejecuta EXPLAIN sobre la conexión real (sin interceptar) con los mismos parámetros
+   */
+  private static String explicar(Connection real, String sql, Object[] parametros) {
+    StringBuilder sb = new StringBuilder("  EXPLAIN:");
+    try (PreparedStatement stmt = real.prepareStatement("EXPLAIN " + sql)) {
+      for (int i = 1; i < parametros.length; i++) {
+        stmt.setObject(i, parametros[i]);
+      }
+      try (ResultSet rs = stmt.executeQuery()) {
+        ResultSetMetaData md = rs.getMetaData();
+        while (rs.next()) {
+          sb.append(System.lineSeparator()).append("   ");
+          for (int c = 1; c <= md.getColumnCount(); c++) {
+            sb.append(' ').append(md.getColumnLabel(c)).append('=').append(rs.getString(c));
+          }
+          // Un acceso de tipo ALL es un recorrido completo de la tabla
+          if ("ALL".equalsIgnoreCase(rs.getString("type"))) {
+            sb.append("  <-- RECORRIDO COMPLETO");
+          }
+        }
+      }
+    } catch (SQLException e) {
+      sb.append(" no disponible (").append(e.getMessage()).append(')');
+    }
+    return sb.toString();
+  }
+
+  private static String formatearParametros(Object[] parametros, boolean ocultar) {
+    List<String> valores = new ArrayList<>();
+    for (int i = 1; i < parametros.length; i++) {
+      Object v = parametros[i];
+      String texto;
+      if (v == null) {
+        texto = "NULL";
+      } else if (ocultar) {
+        // La sentencia lee o escribe hashes de contraseñas: no se registra ningún valor
+        texto = "<oculto>";
+      } else if (v instanceof Number || v instanceof Boolean) {
+        texto = v.toString();
+      } else {
+        texto = v.toString();
+        if (texto.length() > LARGO_MAXIMO_VALOR) {
+          texto = texto.substring(0, LARGO_MAXIMO_VALOR) + "...";
+        }
+        texto = "'" + texto + "'";
+      }
+      valores.add(i + "=" + texto);
+    }
+    return valores.toString();
+  }
+
+  private static Logger crearLogger() {
+    Logger logger = Logger.getLogger("clinica.sql.lentas");
+    logger.setUseParentHandlers(false);
+    try {
+      String patron = System.getProperty("clinica.sql.archivo", "consultas-lentas.%g.log");
+      FileHandler handler = new FileHandler(patron, LIMITE_ARCHIVO_BYTES, CANTIDAD_ARCHIVOS, true);
+      handler.setFormatter(new Formatter() {
+        @Override
+        public String format(LogRecord r) {
+          return String.format("%1$tF %1$tT %2$s%n", r.getMillis(), r.getMessage());
+        }
+      });
+      logger.addHandler(handler);
+    } catch (IOException e) {
+      System.err.println("No se pudo abrir el archivo de consultas lentas: " + e.getMessage());
+      logger.setLevel(Level.OFF);
+    }
+    return logger;
+  }
+
+  private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+    try {
+      return metodo.invoke(destino, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Proxy de Connection: envuelve los Statement y PreparedStatement creados
+   */
+  private static final class ConexionHandler implements InvocationHandler {
+    private final Connection real;
+
+    ConexionHandler(Connection real) {
+      this.real = real;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+      Object resultado = invocar(real, metodo, args);
+      String nombre = metodo.getName();
+
+      if (nombre.equals("prepareStatement")) {
+        return crearSentencia(PreparedStatement.class, (Statement) resultado, (String) args[0]);
+      }
+      if (nombre.equals("createStatement")) {
+        return crearSentencia(Statement.class, (Statement) resultado, null);
+      }
+      return resultado;
+    }
+
+    private Object crearSentencia(Class<?> tipo, Statement stmt, String sql) {
+      return Proxy.newProxyInstance(InterceptorSql.class.getClassLoader(),
+          new Class<?>[] { tipo }, new SentenciaHandler(real, stmt, sql));
+    }
+  }
+
+  /**
+   * Proxy de Statement/PreparedStatement: guarda los parámetros y mide la ejecución
+   * Para las consultas el tiempo incluye la lectura de filas y se registra al cerrar el ResultSet
+   * De los lotes guarda los parámetros de la primera fila al agregarla y cuenta las demás
+   */
+  private static final class SentenciaHandler implements InvocationHandler {
+    private final Connection real;
+    private final Statement stmt;
+    private String sql;
+    private Object[] parametros = new Object[1];
+    private int ultimoParametro;
+
+    // Lote en armado: filas agregadas y parámetros de la primera
+    private int lote;
+    private Object[] primeraFila = new Object[1];
+
+    // Consulta con ResultSet abierto, pendiente de registrar
+    private boolean consultaPendiente;
+    private long nanosConsulta;
+    private long filasConsulta;
+
+    SentenciaHandler(Connection real, Statement stmt, String sql) {
+      this.real = real;
+      this.stmt = stmt;
+      this.sql = sql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+      String nombre = metodo.getName();
+
+      if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+        guardarParametro((Integer) args[0], nombre.equals("setNull") ? null : args[1]);
+        return invocar(stmt, metodo, args);
+      }
+      if (nombre.equals("clearParameters")) {
+        parametros = new Object[1];
+        ultimoParametro = 0;
+        return invocar(stmt, metodo, args);
+      }
+      if (nombre.equals("addBatch")) {
+        if (lote++ == 0) {
+          // Statement.addBatch(String sql) no tiene parámetros: se registra la primera sentencia
+          if (args != null && args.length > 0 && args[0] instanceof String) {
+            sql = (String) args[0];
+          }
+          primeraFila = copiarParametros();
+        }
+        return invocar(stmt, metodo, args);
+      }
+      if (nombre.equals("clearBatch")) {
+        vaciarLote();
+        return invocar(stmt, metodo, args);
+      }
+      if (nombre.equals("close")) {
+        cerrarConsultaPendiente();
+        return invocar(stmt, metodo, args);
+      }
+      if (!nombre.startsWith("execute")) {
+        return invocar(stmt, metodo, args);
+      }
+
+      // Statement.execute*(String sql, ...)
+      if (args != null && args.length > 0 && args[0] instanceof String) {
+        sql = (String) args[0];
+      }
+
+      long inicio = System.nanoTime();
+      if (nombre.equals("executeBatch") || nombre.equals("executeLargeBatch")) {
+        int filasLote = lote;
+        Object[] parametrosLote = primeraFila;
+        // El driver vacía el lote al ejecutarlo, aunque falle
+        vaciarLote();
+        Object resultado = invocar(stmt, metodo, args);
+        INSTANCIA.finalizar(real, sql, parametrosLote, System.nanoTime() - inicio, contarFilas(resultado), filasLote);
+        return resultado;
+      }
+      Object resultado = invocar(stmt, metodo, args);
+      long nanos = System.nanoTime() - inicio;
+
+      if (resultado instanceof ResultSet) {
+        cerrarConsultaPendiente();
+        consultaPendiente = true;
+        nanosConsulta = nanos;
+        filasConsulta = 0;
+        return Proxy.newProxyInstance(InterceptorSql.class.getClassLoader(),
+            new Class<?>[] { ResultSet.class }, new ResultadoHandler((ResultSet) resultado, this));
+      }
+
+      INSTANCIA.finalizar(real, sql, copiarParametros(), nanos, contarFilas(resultado), 0);
+      return resultado;
+    }
+
+    private void guardarParametro(int indice, Object valor) {
+      if (indice >= parametros.length) {
+        Object[] nuevo = new Object[Math.max(indice + 1, parametros.length * 2)];
+        System.arraycopy(parametros, 0, nuevo, 0, parametros.length);
+        parametros = nuevo;
+      }
+      parametros[indice] = valor;
+      ultimoParametro = Math.max(ultimoParametro, indice);
+    }
+
+    private Object[] copiarParametros() {
+      return Arrays.copyOf(parametros, ultimoParametro + 1);
+    }
+
+    private void vaciarLote() {
+      lote = 0;
+      primeraFila = new Object[1];
+    }
+
+    private long contarFilas(Object resultado) {
+      if (resultado instanceof Integer || resultado instanceof Long) {
+        return ((Number) resultado).longValue();
+      }
+      if (resultado instanceof int[]) {
+        long total = 0;
+        for (int n : (int[]) resultado) {
+          total += Math.max(n, 0);
+        }
+        return total;
+      }
+      if (resultado instanceof long[]) {
+        long total = 0;
+        for (long n : (long[]) resultado) {
+          total += Math.max(n, 0);
+        }
+        return total;
+      }
+      return -1;
+    }
+
+    void acumularLectura(long nanos, boolean hayFila) {
+      nanosConsulta += nanos;
+      if (hayFila) {
+        filasConsulta++;
+      }
+    }
+
+    void cerrarConsultaPendiente() {
+      if (consultaPendiente) {
+        consultaPendiente = false;
+        INSTANCIA.finalizar(real, sql, copiarParametros(), nanosConsulta, filasConsulta, 0);
+      }
+    }
+  }
+
+  /**
+   * Proxy de ResultSet: cuenta filas y suma el tiempo de lectura
+   */
+  private static final class ResultadoHandler implements InvocationHandler {
+    private final ResultSet rs;
+    private final SentenciaHandler sentencia;
+
+    ResultadoHandler(ResultSet rs, SentenciaHandler sentencia) {
+      this.rs = rs;
+      this.sentencia = sentencia;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+      String nombre = metodo.getName();
+      if (nombre.equals("next")) {
+        long inicio = System.nanoTime();
+        Object hayFila = invocar(rs, metodo, args);
+        sentencia.acumularLectura(System.nanoTime() - inicio, Boolean.TRUE.equals(hayFila));
+        return hayFila;
+      }
+      if (nombre.equals("close")) {
+        try {
+          return invocar(rs, metodo, args);
+        } finally {
+          sentencia.cerrarConsultaPendiente();
+        }
+      }
+      return invocar(rs, metodo, args);
+    }
+  }
+}
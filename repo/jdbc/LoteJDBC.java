@@ -0,0 +1,237 @@
+package repo.jdbc;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import domain.ConsumoLote;
+import domain.Lote;
+import domain.Movimiento;
+import exceptions.DatabaseException;
+import repo.LoteRepository;
+
+/**
+ * Implementación JDBC del repositorio de lotes
+ */
+public class LoteJDBC implements LoteRepository {
+  private static final String SELECT_LOTE =
+      "SELECT id, insumo_codigo, deposito_id, numero, vencimiento, cantidad FROM lotes ";
+
+  @Override
+  public Lote sumar(String codigo, int depositoId, String numero, LocalDate vencimiento, int cantidad) {
+    // LAST_INSERT_ID(id) hace que un lote existente también devuelva su id como clave generada
+    String sql = "INSERT INTO lotes (insumo_codigo, deposito_id, numero, vencimiento, cantidad) VALUES (?, ?, ?, ?, ?) " +
+                 "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id), cantidad = cantidad + VALUES(cantidad)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet generatedKeys = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+      stmt.setString(1, codigo);
+      stmt.setInt(2, depositoId);
+      stmt.setString(3, numero);
+      stmt.setDate(4, Date.valueOf(vencimiento));
+      stmt.setInt(5, cantidad);
+      stmt.executeUpdate();
+      
+      generatedKeys = stmt.getGeneratedKeys();
+      if (!generatedKeys.next()) {
+        throw new DatabaseException("No se pudo registrar el lote " + numero);
+      }
+      long id = generatedKeys.getLong(1);
+      
+      try (PreparedStatement buscar = conn.prepareStatement(SELECT_LOTE + "WHERE id = ?")) {
+        buscar.setLong(1, id);
+        try (ResultSet rs = buscar.executeQuery()) {
+          if (!rs.next()) {
+            throw new DatabaseException("No se encontró el lote " + id);
+          }
+          return mapResultSetToLote(rs);
+        }
+      }
+      
+    } catch (SQLException e) {
+      if (e.getSQLState().equals("23000")) { // Violación de foreign key
+        throw new IllegalArgumentException("Error de integridad referencial: " + e.getMessage(), e);
+      }
+      throw new DatabaseException("Error al registrar el lote " + numero + " de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, generatedKeys);
+    }
+  }
+
+  @Override
+  public boolean ajustar(long loteId, int delta) {
+    String sql = "UPDATE lotes SET cantidad = cantidad + ? WHERE id = ? AND cantidad + ? >= 0";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setInt(1, delta);
+      stmt.setLong(2, loteId);
+      stmt.setInt(3, delta);
+      return stmt.executeUpdate() > 0;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al ajustar el lote " + loteId, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public List<Lote> findConStock(String codigo, int depositoId) {
+    return buscar(SELECT_LOTE + "WHERE insumo_codigo = ? AND deposito_id = ? AND cantidad > 0 " +
+                  "ORDER BY vencimiento, id", codigo, depositoId);
+  }
+
+  @Override
+  public List<Lote> findByInsumo(String codigo) {
+    return buscar(SELECT_LOTE + "WHERE insumo_codigo = ? AND cantidad > 0 ORDER BY vencimiento, id", codigo, null);
+  }
+
+  @Override
+  public void registrarConsumos(Movimiento m, List<ConsumoLote> consumos) {
+    String sql = "INSERT INTO movimiento_lotes (movimiento_id, fecha, lote_id, cantidad) VALUES (?, ?, ?, ?)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      int filas = 0;
+      for (ConsumoLote c : consumos) {
+        if (c.esSinLote()) {
+          continue;
+        }
+        stmt.setLong(1, m.getId());
+        stmt.setTimestamp(2, Timestamp.valueOf(m.getFecha()));
+        stmt.setLong(3, c.getLoteId());
+        stmt.setInt(4, c.getCantidad());
+        stmt.addBatch();
+        filas++;
+      }
+      if (filas > 0) {
+        stmt.executeBatch();
+      }
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al registrar los lotes del movimiento " + m.getId(), e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public List<ConsumoLote> findConsumos(long movimientoId) {
+    String sql = "SELECT ml.lote_id, l.numero, l.vencimiento, ml.cantidad FROM movimiento_lotes ml " +
+                 "JOIN lotes l ON l.id = ml.lote_id WHERE ml.movimiento_id = ? ORDER BY l.vencimiento, l.id";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setLong(1, movimientoId);
+      rs = stmt.executeQuery();
+      
+      List<ConsumoLote> consumos = new ArrayList<>();
+      while (rs.next()) {
+        consumos.add(new ConsumoLote(rs.getLong("lote_id"), rs.getString("numero"),
+            rs.getDate("vencimiento").toLocalDate(), rs.getInt("cantidad")));
+      }
+      return consumos;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al obtener los lotes del movimiento " + movimientoId, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  private List<Lote> buscar(String sql, String codigo, Integer depositoId) {
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setString(1, codigo);
+      if (depositoId != null) {
+        stmt.setInt(2, depositoId);
+      }
+      rs = stmt.executeQuery();
+      
+      List<Lote> lotes = new ArrayList<>();
+      while (rs.next()) {
+        lotes.add(mapResultSetToLote(rs));
+      }
+      return lotes;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al obtener los lotes de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  /**
+   * Mapea un ResultSet a un objeto Lote
+   */
+  private Lote mapResultSetToLote(ResultSet rs) throws SQLException {
+    return new Lote(
+        rs.getLong("id"),
+        rs.getString("insumo_codigo"),
+        rs.getInt("deposito_id"),
+        rs.getString("numero"),
+        rs.getDate("vencimiento").toLocalDate(),
+        rs.getInt("cantidad"));
+  }
+
+  /**
+   * Obtiene una conexión: usa la de transacción si existe, sino crea una nueva
+   */
+  private Connection getConnection() throws SQLException {
+    Connection transConn = TransactionManager.getCurrentConnection();
+    if (transConn != null) {
+      return transConn; // Usar conexión de transacción
+    }
+    return DatabaseConnection.getConnection(); // Crear nueva conexión
+  }
+
+  /**
+   * Cierra los recursos de forma segura
+   * NO cierra la conexión si está en una transacción
+   */
+  private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
+    if (rs != null) {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar ResultSet: " + e.getMessage());
+      }
+    }
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar Statement: " + e.getMessage());
+      }
+    }
+    // Solo cerrar la conexión si NO está en una transacción
+    if (!TransactionManager.isTransactionActive()) {
+      DatabaseConnection.closeConnection(conn);
+    }
+  }
+}
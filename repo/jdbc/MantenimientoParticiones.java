@@ -0,0 +1,181 @@
+package repo.jdbc;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import exceptions.DatabaseException;
+
+/**
+ * Mantenimiento de las particiones mensuales de movimientos
+ * - Crea por adelantado las particiones de los próximos meses partiendo p_max
+ * - Copia los meses más viejos que el horizonte a movimientos_archivo y elimina su partición
+ *   (DROP PARTITION es instantáneo, a diferencia de un DELETE masivo)
+ * - Borra las claves de idempotencia más viejas que la retención (un reintento llega en segundos o minutos)
+ * También conoce el límite de archivo: la fecha desde la cual los movimientos están en la tabla viva
+ *
+ * Configuración:
+ *   -Dclinica.particiones.mesesFuturos=3     meses a crear por adelantado
+ *   -Dclinica.particiones.mesesVivos=12      meses completos que quedan en la tabla viva además del actual
+ *   -Dclinica.idempotencia.diasRetencion=7   días que se conserva cada clave de idempotencia
+ */
+public final class MantenimientoParticiones {
+  private static final String PARTICION_MAXIMA = "p_max";
+  private static final DateTimeFormatter FORMATO_NOMBRE = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+  private MantenimientoParticiones() {
+  }
+
+  /**
+   * Ejecuta el mantenimiento completo con la configuración por propiedades
+   */
+  public static void ejecutar() {
+    crearParticionesFuturas(Integer.getInteger("clinica.particiones.mesesFuturos", 3));
+    archivarAnterioresA(YearMonth.now().minusMonths(Integer.getInteger("clinica.particiones.mesesVivos", 12)));
+    purgarClavesIdempotencia(Integer.getInteger("clinica.idempotencia.diasRetencion", 7));
+  }
+
+  /**
+   * Borra las claves de idempotencia creadas hace más de los días indicados; un reintento con
+   * una clave borrada se registra como un movimiento nuevo
+   *
+   * @return cantidad de claves borradas
+   */
+  public static int purgarClavesIdempotencia(int dias) {
+    try (Connection conn = DatabaseConnection.getConnection();
+         PreparedStatement stmt = conn.prepareStatement(
+             "DELETE FROM claves_idempotencia WHERE creada < NOW() - INTERVAL ? DAY")) {
+      stmt.setInt(1, dias);
+      return stmt.executeUpdate();
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al purgar claves de idempotencia", e);
+    }
+  }
+
+  /**
+   * Asegura que existan particiones propias hasta el mes actual más los meses indicados
+   */
+  public static void crearParticionesFuturas(int meses) {
+    try (Connection conn = DatabaseConnection.getConnection();
+         Statement stmt = conn.createStatement()) {
+      List<Particion> particiones = listarParticiones(conn);
+      if (particiones.isEmpty()) {
+        throw new DatabaseException("La tabla movimientos no está particionada");
+      }
+      // El mes siguiente al último con partición propia (la anterior a p_max)
+      YearMonth siguiente = particiones.size() > 1
+          ? YearMonth.from(particiones.get(particiones.size() - 2).limite)
+          : YearMonth.now();
+      YearMonth hasta = YearMonth.now().plusMonths(meses);
+
+      for (YearMonth mes = siguiente; !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+        stmt.executeUpdate("ALTER TABLE movimientos REORGANIZE PARTITION " + PARTICION_MAXIMA + " INTO (" +
+            "PARTITION " + nombre(mes) + " VALUES LESS THAN ('" + mes.plusMonths(1).atDay(1) + "'), " +
+            "PARTITION " + PARTICION_MAXIMA + " VALUES LESS THAN (MAXVALUE))");
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al crear particiones de movimientos", e);
+    }
+  }
+
+  /**
+   * Pasa a movimientos_archivo los meses anteriores al indicado y elimina sus particiones
+   * Es seguro reintentar: la copia usa INSERT IGNORE sobre la clave (id, fecha)
+   *
+   * @return cantidad de particiones archivadas
+   */
+  public static int archivarAnterioresA(YearMonth primerMesVivo) {
+    LocalDate corte = primerMesVivo.atDay(1);
+    int archivadas = 0;
+    try (Connection conn = DatabaseConnection.getConnection()) {
+      for (Particion p : listarParticiones(conn)) {
+        if (p.limite == null || p.limite.isAfter(corte)) {
+          break;
+        }
+        archivar(conn, p);
+        archivadas++;
+      }
+      return archivadas;
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al archivar particiones de movimientos", e);
+    }
+  }
+
+  /**
+   * Fecha desde la cual los movimientos están en la tabla viva; los anteriores están en
+   * movimientos_archivo. Devuelve null si nunca se archivó nada
+   * Se lee en cada consulta con la conexión de la consulta (un MAX resuelto en el índice de fecha):
+   * otro proceso puede archivar un mes en cualquier momento
+   */
+  public static LocalDate getLimiteArchivo(Connection conn) throws SQLException {
+    // Se archivan meses completos: el límite es el primer día del mes siguiente al último archivado
+    try (PreparedStatement stmt = conn.prepareStatement("SELECT MAX(fecha) FROM movimientos_archivo");
+         ResultSet rs = stmt.executeQuery()) {
+      Date ultimo = rs.next() ? rs.getDate(1) : null;
+      return ultimo != null ? YearMonth.from(ultimo.toLocalDate()).plusMonths(1).atDay(1) : null;
+    }
+  }
+
+  private static void archivar(Connection conn, Particion p) throws SQLException {
+    boolean autoCommit = conn.getAutoCommit();
+    try (Statement stmt = conn.createStatement()) {
+      conn.setAutoCommit(false);
+      stmt.executeUpdate("INSERT IGNORE INTO movimientos_archivo " +
+          "(id, tipo, fecha, cantidad, usuario_legajo, insumo_codigo, servicio_id, deposito_id, deposito_destino_id, " +
+          "costo_unitario) " +
+          "SELECT id, tipo, fecha, cantidad, usuario_legajo, insumo_codigo, servicio_id, deposito_id, deposito_destino_id, " +
+          "costo_unitario " +
+          "FROM movimientos PARTITION (" + p.nombre + ")");
+      conn.commit();
+      // DDL: confirma implícitamente; si falla, el próximo mantenimiento reintenta sin duplicar
+      stmt.executeUpdate("ALTER TABLE movimientos DROP PARTITION " + p.nombre);
+    } catch (SQLException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(autoCommit);
+    }
+  }
+
+  /**
+   * Particiones de movimientos en orden; p_max queda última con límite null
+   */
+  private static List<Particion> listarParticiones(Connection conn) throws SQLException {
+    String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                 "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'movimientos' " +
+                 "AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION";
+    List<Particion> particiones = new ArrayList<>();
+    try (PreparedStatement stmt = conn.prepareStatement(sql);
+         ResultSet rs = stmt.executeQuery()) {
+      while (rs.next()) {
+        String descripcion = rs.getString("PARTITION_DESCRIPTION").replace("'", "").trim();
+        LocalDate limite = "MAXVALUE".equalsIgnoreCase(descripcion) ? null : LocalDate.parse(descripcion.substring(0, 10));
+        particiones.add(new Particion(rs.getString("PARTITION_NAME"), limite));
+      }
+    }
+    return particiones;
+  }
+
+  private static String nombre(YearMonth mes) {
+    return mes.format(FORMATO_NOMBRE);
+  }
+
+  private static final class Particion {
+    final String nombre;
+    // Valor de VALUES LESS THAN (exclusivo)
+    final LocalDate limite;
+
+    Particion(String nombre, LocalDate limite) {
+      this.nombre = nombre;
+      this.limite = limite;
+    }
+  }
+}
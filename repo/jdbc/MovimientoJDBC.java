@@ -4,15 +4,22 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import domain.Insumo;
 import domain.Movimiento;
 import domain.Servicio;
+import domain.TotalConsumo;
 import domain.Usuario;
+import domain.enums.AgrupacionConsumo;
 import domain.enums.EstadoInsumo;
 import domain.enums.Rol;
 import domain.enums.TipoMovimiento;
+import exceptions.ClaveIdempotenciaDuplicadaException;
 import exceptions.DatabaseException;
 import repo.MovimientoRepository;
 import repo.jdbc.TransactionManager;
@@ -20,6 +27,8 @@ import repo.jdbc.TransactionManager;
 /**
  * Implementación JDBC del repositorio de movimientos
  * Utiliza ArrayList para almacenar resultados y arreglos para parámetros
+ * Las consultas van a la tabla viva (particionada por mes), a movimientos_archivo o a ambas
+ * según el período pedido y el límite de archivo de MantenimientoParticiones
  */
 public class MovimientoJDBC implements MovimientoRepository {
   
@@ -38,8 +47,8 @@ public class MovimientoJDBC implements MovimientoRepository {
   
   @Override
   public void save(Movimiento m) {
-    String sql = "INSERT INTO movimientos (tipo, fecha, cantidad, usuario_legajo, insumo_codigo, servicio_id) " +
-                 "VALUES (?, ?, ?, ?, ?, ?)";
+    String sql = "INSERT INTO movimientos (tipo, fecha, cantidad, usuario_legajo, insumo_codigo, servicio_id, " +
+                 "deposito_id, deposito_destino_id, costo_unitario) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
     
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -64,6 +73,15 @@ public class MovimientoJDBC implements MovimientoRepository {
         stmt.setNull(6, Types.INTEGER);
       }
       
+      stmt.setInt(7, m.getDepositoId());
+      if (m.getDepositoDestinoId() != null) {
+        stmt.setInt(8, m.getDepositoDestinoId());
+      } else {
+        stmt.setNull(8, Types.INTEGER);
+      }
+      // Costo de compra: solo en INGRESO y opcional
+      stmt.setBigDecimal(9, m.getCostoUnitario());
+      
       int rowsAffected = stmt.executeUpdate();
       
       if (rowsAffected == 0) {
@@ -84,6 +102,10 @@ public class MovimientoJDBC implements MovimientoRepository {
         }
       }
       
+      if (m.getClaveIdempotencia() != null) {
+        registrarClave(conn, m);
+      }
+      
     } catch (SQLException e) {
       if (e.getSQLState().equals("23000")) { // Violación de foreign key
         throw new IllegalArgumentException("Error de integridad referencial: " + e.getMessage(), e);
@@ -94,12 +116,34 @@ public class MovimientoJDBC implements MovimientoRepository {
     }
   }
 
+  /**
+   * Registra la clave de idempotencia del movimiento con la misma conexión, así queda en la
+   * transacción del movimiento. La unicidad la garantiza la clave primaria de claves_idempotencia
+   * (movimientos está particionada y no admite índices únicos sin la fecha)
+   */
+  private void registrarClave(Connection conn, Movimiento m) throws SQLException {
+    String sql = "INSERT INTO claves_idempotencia (clave, movimiento_id, fecha) VALUES (?, ?, ?)";
+    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+      stmt.setString(1, m.getClaveIdempotencia());
+      stmt.setInt(2, m.getId());
+      stmt.setTimestamp(3, Timestamp.valueOf(m.getFecha()));
+      stmt.executeUpdate();
+    } catch (SQLException e) {
+      if ("23000".equals(e.getSQLState())) {
+        throw new ClaveIdempotenciaDuplicadaException(m.getClaveIdempotencia(), e);
+      }
+      throw e;
+    }
+  }
+
   @Override
-  public List<Movimiento> findAll() {
-    String sql = "SELECT m.id, m.tipo, m.fecha, m.cantidad, " +
-                 "m.usuario_legajo, m.insumo_codigo, m.servicio_id " +
-                 "FROM movimientos m " +
-                 "ORDER BY m.fecha DESC, m.id DESC";
+  public Optional<Movimiento> findByClaveIdempotencia(String clave) {
+    // La fecha guardada con la clave ubica la partición del movimiento
+    String columnas = "SELECT m.id, m.tipo, m.fecha, m.cantidad, m.usuario_legajo, m.insumo_codigo, " +
+                      "m.servicio_id, m.deposito_id, m.deposito_destino_id, m.costo_unitario FROM claves_idempotencia c JOIN ";
+    String sql = "(" + columnas + "movimientos m ON m.id = c.movimiento_id AND m.fecha = c.fecha WHERE c.clave = ?)" +
+                 " UNION ALL (" + columnas +
+                 "movimientos_archivo m ON m.id = c.movimiento_id AND m.fecha = c.fecha WHERE c.clave = ?)";
     
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -108,69 +152,207 @@ public class MovimientoJDBC implements MovimientoRepository {
     try {
       conn = getConnection();
       stmt = conn.prepareStatement(sql);
+      stmt.setString(1, clave);
+      stmt.setString(2, clave);
       rs = stmt.executeQuery();
       
-      // Usar ArrayList para almacenar resultados
-      List<Movimiento> movimientos = new ArrayList<>();
-      
-      while (rs.next()) {
-        Movimiento movimiento = mapResultSetToMovimiento(rs);
-        movimientos.add(movimiento);
+      if (rs.next()) {
+        Movimiento m = mapResultSetToMovimiento(rs);
+        m.setClaveIdempotencia(clave);
+        return Optional.of(m);
       }
-      
-      return movimientos;
+      return Optional.empty();
       
     } catch (SQLException e) {
-      throw new DatabaseException("Error al obtener todos los movimientos", e);
+      throw new DatabaseException("Error al buscar el movimiento de la clave " + clave, e);
     } finally {
       closeResources(conn, stmt, rs);
     }
   }
 
+  @Override
+  public List<Movimiento> findAll() {
+    return buscar(null, null, null, null, "Error al obtener todos los movimientos");
+  }
+
   @Override
   public List<Movimiento> findByPeriodoYServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
-    // Construir la consulta dinámicamente según los parámetros
-    StringBuilder sqlBuilder = new StringBuilder(
-        "SELECT m.id, m.tipo, m.fecha, m.cantidad, " +
-        "m.usuario_legajo, m.insumo_codigo, m.servicio_id " +
-        "FROM movimientos m WHERE 1=1"
-    );
-    
-    // Usar ArrayList para almacenar los parámetros dinámicos
-    List<Object> params = new ArrayList<>();
-    
-    if (desde != null) {
-      sqlBuilder.append(" AND DATE(m.fecha) >= ?");
-      params.add(desde);
+    return buscar(desde, hasta, servicioId, null, "Error al buscar movimientos por período y servicio");
+  }
+
+  @Override
+  public List<Movimiento> findByPeriodoYDeposito(LocalDate desde, LocalDate hasta, int depositoId) {
+    return buscar(desde, hasta, null, depositoId, "Error al buscar movimientos por período y depósito");
+  }
+
+  @Override
+  public int deleteByPeriodo(LocalDate desde, LocalDate hasta) {
+    int eliminados = 0;
+    for (String tabla : new String[] { "movimientos", "movimientos_archivo" }) {
+      String sql = "DELETE FROM " + tabla + " WHERE fecha >= ? AND fecha < ?";
+      
+      Connection conn = null;
+      PreparedStatement stmt = null;
+      
+      try {
+        conn = getConnection();
+        stmt = conn.prepareStatement(sql);
+        stmt.setTimestamp(1, Timestamp.valueOf(desde.atStartOfDay()));
+        stmt.setTimestamp(2, Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+        eliminados += stmt.executeUpdate();
+        
+      } catch (SQLException e) {
+        throw new DatabaseException("Error al eliminar movimientos del período", e);
+      } finally {
+        closeResources(conn, stmt, null);
+      }
     }
-    
-    if (hasta != null) {
-      sqlBuilder.append(" AND DATE(m.fecha) <= ?");
-      params.add(hasta);
+    return eliminados;
+  }
+
+  /**
+   * Lee las filas en streaming (fetch size Integer.MIN_VALUE en MySQL): llegan de a una y no se
+   * acumulan en memoria. El índice (insumo_codigo, fecha) ya las devuelve en orden, y el archivo
+   * se lee antes que la tabla viva porque todos sus meses son anteriores. Usa una conexión propia,
+   * ya que mientras dura el streaming la conexión no admite otras sentencias
+   */
+  @Override
+  public void recorrerPorInsumo(String codigo, LocalDate desde, LocalDate hasta, Consumer<Movimiento> accion) {
+    // Las entidades relacionadas se buscan una sola vez por recorrido
+    Map<String, Insumo> cacheInsumos = new HashMap<>();
+    Map<Integer, Usuario> cacheUsuarios = new HashMap<>();
+    Map<Integer, Servicio> cacheServicios = new HashMap<>();
+
+    try (Connection conn = DatabaseConnection.getConnection()) {
+      LocalDate limite = MantenimientoParticiones.getLimiteArchivo(conn);
+      List<String> tablas = new ArrayList<>();
+      if (limite != null && desde.isBefore(limite)) {
+        tablas.add("movimientos_archivo");
+      }
+      if (limite == null || !hasta.isBefore(limite)) {
+        tablas.add("movimientos");
+      }
+      for (String tabla : tablas) {
+        String sql = "SELECT m.id, m.tipo, m.fecha, m.cantidad, m.usuario_legajo, m.insumo_codigo, " +
+                     "m.servicio_id, m.deposito_id, m.deposito_destino_id, m.costo_unitario FROM " + tabla + " m " +
+                     "WHERE m.insumo_codigo = ? AND m.fecha >= ? AND m.fecha < ? ORDER BY m.fecha, m.id";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY)) {
+          stmt.setFetchSize(Integer.MIN_VALUE);
+          stmt.setString(1, codigo);
+          stmt.setTimestamp(2, Timestamp.valueOf(desde.atStartOfDay()));
+          stmt.setTimestamp(3, Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+          try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+              accion.accept(mapResultSetToMovimiento(rs, cacheInsumos, cacheUsuarios, cacheServicios));
+            }
+          }
+        }
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al recorrer los movimientos de " + codigo, e);
     }
+  }
+
+  /**
+   * Agrupa en la base: cada tabla suma sus egresos por clave y el total combina ambas
+   */
+  @Override
+  public List<TotalConsumo> topConsumo(AgrupacionConsumo por, LocalDate desde, LocalDate hasta, Integer servicioId,
+      int limite) {
+    String columna = por == AgrupacionConsumo.INSUMO ? "m.insumo_codigo"
+        : por == AgrupacionConsumo.SERVICIO ? "m.servicio_id"
+        : "m.usuario_legajo";
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
     
-    if (servicioId != null) {
-      sqlBuilder.append(" AND m.servicio_id = ?");
-      params.add(servicioId);
+    try {
+      conn = getConnection();
+      LocalDate limiteArchivo = MantenimientoParticiones.getLimiteArchivo(conn);
+      List<String> tablas = new ArrayList<>();
+      if (limiteArchivo == null || !hasta.isBefore(limiteArchivo)) {
+        tablas.add("movimientos");
+      }
+      if (limiteArchivo != null && desde.isBefore(limiteArchivo)) {
+        tablas.add("movimientos_archivo");
+      }
+
+      StringBuilder sql = new StringBuilder("SELECT clave, SUM(total) AS total FROM (");
+      for (int t = 0; t < tablas.size(); t++) {
+        if (t > 0) {
+          sql.append(" UNION ALL ");
+        }
+        sql.append("SELECT ").append(columna).append(" AS clave, SUM(m.cantidad) AS total FROM ").append(tablas.get(t))
+           .append(" m WHERE m.tipo = 'EGRESO' AND m.fecha >= ? AND m.fecha < ?");
+        if (servicioId != null) {
+          sql.append(" AND m.servicio_id = ?");
+        }
+        sql.append(" GROUP BY ").append(columna);
+      }
+      sql.append(") t GROUP BY clave ORDER BY total DESC, clave LIMIT ?");
+      stmt = conn.prepareStatement(sql.toString());
+      int p = 1;
+      for (int t = 0; t < tablas.size(); t++) {
+        stmt.setTimestamp(p++, Timestamp.valueOf(desde.atStartOfDay()));
+        stmt.setTimestamp(p++, Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+        if (servicioId != null) {
+          stmt.setInt(p++, servicioId);
+        }
+      }
+      stmt.setInt(p, limite);
+      rs = stmt.executeQuery();
+      
+      List<TotalConsumo> ranking = new ArrayList<>();
+      while (rs.next()) {
+        ranking.add(new TotalConsumo(por, rs.getString("clave"), rs.getLong("total"), false));
+      }
+      return ranking;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al calcular el ranking de consumo", e);
+    } finally {
+      closeResources(conn, stmt, rs);
     }
-    
-    sqlBuilder.append(" ORDER BY m.fecha DESC, m.id DESC");
-    
-    String sql = sqlBuilder.toString();
-    
+  }
+
+  /**
+   * Consulta la tabla viva, el archivo o ambos según el período pedido y el límite de archivo
+   */
+  private List<Movimiento> buscar(LocalDate desde, LocalDate hasta, Integer servicioId, Integer depositoId,
+                                  String mensajeError) {
     Connection conn = null;
     PreparedStatement stmt = null;
     ResultSet rs = null;
     
     try {
       conn = getConnection();
+      LocalDate limite = MantenimientoParticiones.getLimiteArchivo(conn);
+      boolean usaVivos = limite == null || hasta == null || !hasta.isBefore(limite);
+      boolean usaArchivo = limite != null && (desde == null || desde.isBefore(limite));
+
+      // Usar ArrayList para almacenar los parámetros dinámicos
+      List<Object> params = new ArrayList<>();
+      StringBuilder sqlBuilder = new StringBuilder();
+      if (usaVivos && usaArchivo) {
+        sqlBuilder.append("(");
+        agregarSelect(sqlBuilder, params, "movimientos", desde, hasta, servicioId, depositoId);
+        sqlBuilder.append(") UNION ALL (");
+        agregarSelect(sqlBuilder, params, "movimientos_archivo", desde, hasta, servicioId, depositoId);
+        sqlBuilder.append(")");
+      } else {
+        agregarSelect(sqlBuilder, params, usaVivos ? "movimientos" : "movimientos_archivo", desde, hasta, servicioId, depositoId);
+      }
+      sqlBuilder.append(" ORDER BY fecha DESC, id DESC");
+      
+      String sql = sqlBuilder.toString();
       stmt = conn.prepareStatement(sql);
       
       // Establecer parámetros usando el ArrayList
       for (int i = 0; i < params.size(); i++) {
         Object param = params.get(i);
         if (param instanceof LocalDate) {
-          stmt.setDate(i + 1, Date.valueOf((LocalDate) param));
+          stmt.setTimestamp(i + 1, Timestamp.valueOf(((LocalDate) param).atStartOfDay()));
         } else if (param instanceof Integer) {
           stmt.setInt(i + 1, (Integer) param);
         }
@@ -189,17 +371,60 @@ public class MovimientoJDBC implements MovimientoRepository {
       return movimientos;
       
     } catch (SQLException e) {
-      throw new DatabaseException("Error al buscar movimientos por período y servicio", e);
+      throw new DatabaseException(mensajeError, e);
     } finally {
       closeResources(conn, stmt, rs);
     }
   }
 
+  /**
+   * Agrega el SELECT sobre una tabla con los filtros indicados
+   * El período se compara sobre la columna sin funciones (fecha >= desde AND fecha < hasta + 1 día)
+   * para que MySQL pueda usar el índice y descartar particiones
+   */
+  private void agregarSelect(StringBuilder sql, List<Object> params, String tabla,
+                             LocalDate desde, LocalDate hasta, Integer servicioId, Integer depositoId) {
+    sql.append("SELECT m.id, m.tipo, m.fecha, m.cantidad, ")
+       .append("m.usuario_legajo, m.insumo_codigo, m.servicio_id, m.deposito_id, m.deposito_destino_id, ")
+       .append("m.costo_unitario ")
+       .append("FROM ").append(tabla).append(" m WHERE 1=1");
+    
+    if (desde != null) {
+      sql.append(" AND m.fecha >= ?");
+      params.add(desde);
+    }
+    
+    if (hasta != null) {
+      sql.append(" AND m.fecha < ?");
+      params.add(hasta.plusDays(1));
+    }
+    
+    if (servicioId != null) {
+      sql.append(" AND m.servicio_id = ?");
+      params.add(servicioId);
+    }
+    
+    if (depositoId != null) {
+      // Las transferencias afectan al origen y al destino
+      sql.append(" AND (m.deposito_id = ? OR m.deposito_destino_id = ?)");
+      params.add(depositoId);
+      params.add(depositoId);
+    }
+  }
+
   /**
    * Mapea un ResultSet a un objeto Movimiento
    * Carga las entidades relacionadas desde los repositorios
    */
   private Movimiento mapResultSetToMovimiento(ResultSet rs) throws SQLException {
+    return mapResultSetToMovimiento(rs, new HashMap<>(), new HashMap<>(), new HashMap<>());
+  }
+
+  /**
+   * Mapea un ResultSet a un objeto Movimiento reusando las entidades relacionadas ya cargadas
+   */
+  private Movimiento mapResultSetToMovimiento(ResultSet rs, Map<String, Insumo> cacheInsumos,
+      Map<Integer, Usuario> cacheUsuarios, Map<Integer, Servicio> cacheServicios) throws SQLException {
     int id = rs.getInt("id");
     TipoMovimiento tipo = TipoMovimiento.valueOf(rs.getString("tipo"));
     Timestamp fechaTimestamp = rs.getTimestamp("fecha");
@@ -208,22 +433,30 @@ public class MovimientoJDBC implements MovimientoRepository {
     
     // Cargar entidades relacionadas
     int usuarioLegajo = rs.getInt("usuario_legajo");
-    Usuario usuario = usuarios.findByLegajo(usuarioLegajo)
-        .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + usuarioLegajo));
+    Usuario usuario = cacheUsuarios.computeIfAbsent(usuarioLegajo, k -> usuarios.findByLegajo(k)
+        .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + k)));
     
     String insumoCodigo = rs.getString("insumo_codigo");
-    Insumo insumo = insumos.findByCodigo(insumoCodigo)
-        .orElseThrow(() -> new RuntimeException("Insumo no encontrado: " + insumoCodigo));
+    Insumo insumo = cacheInsumos.computeIfAbsent(insumoCodigo, k -> insumos.findByCodigo(k)
+        .orElseThrow(() -> new RuntimeException("Insumo no encontrado: " + k)));
     
     // Servicio puede ser NULL
     Servicio servicio = null;
     int servicioId = rs.getInt("servicio_id");
     if (!rs.wasNull()) {
-      servicio = servicios.findById(servicioId)
-          .orElseThrow(() -> new RuntimeException("Servicio no encontrado: " + servicioId));
+      servicio = cacheServicios.computeIfAbsent(servicioId, k -> servicios.findById(k)
+          .orElseThrow(() -> new RuntimeException("Servicio no encontrado: " + k)));
+    }
+    
+    int depositoId = rs.getInt("deposito_id");
+    Integer depositoDestinoId = rs.getInt("deposito_destino_id");
+    if (rs.wasNull()) {
+      depositoDestinoId = null;
     }
     
-    return new Movimiento(id, tipo, fecha, cantidad, usuario, insumo, servicio);
+    Movimiento m = new Movimiento(id, tipo, fecha, cantidad, usuario, insumo, servicio, depositoId, depositoDestinoId);
+    m.setCostoUnitario(rs.getBigDecimal("costo_unitario"));
+    return m;
   }
 
   /**
@@ -0,0 +1,156 @@
+package repo.jdbc;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import domain.Reserva;
+import domain.enums.EstadoReserva;
+import exceptions.DatabaseException;
+import repo.ReservaRepository;
+
+/**
+ * Implementación JDBC del repositorio de reservas de stock
+ */
+public class ReservaJDBC implements ReservaRepository {
+
+  @Override
+  public void save(Reserva r) {
+    String sql = "INSERT INTO reservas (insumo_codigo, deposito_id, servicio_id, cantidad, usuario_legajo, " +
+                 "creada, vence, estado) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet generatedKeys = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+      stmt.setString(1, r.getCodigo());
+      stmt.setInt(2, r.getDepositoId());
+      stmt.setInt(3, r.getServicioId());
+      stmt.setInt(4, r.getCantidad());
+      stmt.setInt(5, r.getLegajo());
+      stmt.setTimestamp(6, Timestamp.valueOf(r.getCreada()));
+      stmt.setTimestamp(7, Timestamp.valueOf(r.getVence()));
+      stmt.setString(8, r.getEstado().name());
+      
+      if (stmt.executeUpdate() == 0) {
+        throw new DatabaseException("No se pudo insertar la reserva");
+      }
+      
+      generatedKeys = stmt.getGeneratedKeys();
+      if (generatedKeys.next()) {
+        try {
+          java.lang.reflect.Field idField = Reserva.class.getDeclaredField("id");
+          idField.setAccessible(true);
+          idField.set(r, generatedKeys.getLong(1));
+        } catch (Exception e) {
+          System.err.println("No se pudo establecer el ID generado: " + e.getMessage());
+        }
+      }
+      
+    } catch (SQLException e) {
+      if (e.getSQLState().equals("23000")) { // Violación de foreign key
+        throw new IllegalArgumentException("Error de integridad referencial: " + e.getMessage(), e);
+      }
+      throw new DatabaseException("Error al guardar la reserva", e);
+    } finally {
+      closeResources(conn, stmt, generatedKeys);
+    }
+  }
+
+  @Override
+  public List<Reserva> findActivas() {
+    String sql = "SELECT id, insumo_codigo, deposito_id, servicio_id, cantidad, usuario_legajo, creada, vence, estado " +
+                 "FROM reservas WHERE estado = 'ACTIVA' ORDER BY vence";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      rs = stmt.executeQuery();
+      
+      List<Reserva> reservas = new ArrayList<>();
+      while (rs.next()) {
+        reservas.add(new Reserva(
+            rs.getLong("id"),
+            rs.getString("insumo_codigo"),
+            rs.getInt("deposito_id"),
+            rs.getInt("servicio_id"),
+            rs.getInt("cantidad"),
+            rs.getInt("usuario_legajo"),
+            rs.getTimestamp("creada").toLocalDateTime(),
+            rs.getTimestamp("vence").toLocalDateTime(),
+            EstadoReserva.valueOf(rs.getString("estado"))));
+      }
+      return reservas;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al obtener las reservas activas", e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public boolean cerrar(long id, EstadoReserva estado) {
+    String sql = "UPDATE reservas SET estado = ?, cerrada = ? WHERE id = ? AND estado = 'ACTIVA'";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setString(1, estado.name());
+      stmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+      stmt.setLong(3, id);
+      return stmt.executeUpdate() > 0;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al cerrar la reserva " + id, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  /**
+   * Obtiene una conexión: usa la de transacción si existe, sino crea una nueva
+   */
+  private Connection getConnection() throws SQLException {
+    Connection transConn = TransactionManager.getCurrentConnection();
+    if (transConn != null) {
+      return transConn; // Usar conexión de transacción
+    }
+    return DatabaseConnection.getConnection(); // Crear nueva conexión
+  }
+
+  /**
+   * Cierra los recursos de forma segura
+   * NO cierra la conexión si está en una transacción
+   */
+  private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
+    if (rs != null) {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar ResultSet: " + e.getMessage());
+      }
+    }
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar Statement: " + e.getMessage());
+      }
+    }
+    // Solo cerrar la conexión si NO está en una transacción
+    if (!TransactionManager.isTransactionActive()) {
+      DatabaseConnection.closeConnection(conn);
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package repo.jdbc;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import domain.SaldoInsumo;
+import exceptions.DatabaseException;
+import repo.SaldoRepository;
+
+/**
+ * Implementación JDBC de los saldos de cierre (tabla saldos_insumo)
+ * La clave primaria (insumo_codigo, fecha) resuelve el saldo más cercano a una fecha con una
+ * sola búsqueda en el índice, y el índice (insumo_codigo, fecha) de movimientos limita la
+ * variación a los movimientos del insumo entre ambas fechas
+ */
+public class SaldoJDBC implements SaldoRepository {
+  private static final String DELTA = "CASE m.tipo WHEN 'INGRESO' THEN m.cantidad " +
+                                      "WHEN 'EGRESO' THEN -m.cantidad " +
+                                      "WHEN 'AJUSTE' THEN m.cantidad ELSE 0 END";
+
+  @Override
+  public Optional<SaldoInsumo> findUltimoHasta(String codigo, LocalDate fecha) {
+    return buscar("SELECT insumo_codigo, fecha, saldo FROM saldos_insumo WHERE insumo_codigo = ? AND fecha <= ? " +
+                  "ORDER BY fecha DESC LIMIT 1", codigo, fecha);
+  }
+
+  @Override
+  public Optional<SaldoInsumo> findPrimeroDesde(String codigo, LocalDate fecha) {
+    return buscar("SELECT insumo_codigo, fecha, saldo FROM saldos_insumo WHERE insumo_codigo = ? AND fecha >= ? " +
+                  "ORDER BY fecha LIMIT 1", codigo, fecha);
+  }
+
+  @Override
+  public int variacion(String codigo, LocalDate desde, LocalDate hasta) {
+    if (hasta.isBefore(desde)) {
+      return 0;
+    }
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      List<String> tablas = tablas(conn, desde, hasta);
+      StringBuilder sql = new StringBuilder("SELECT COALESCE(SUM(d), 0) FROM (");
+      for (int t = 0; t < tablas.size(); t++) {
+        if (t > 0) {
+          sql.append(" UNION ALL ");
+        }
+        sql.append("SELECT ").append(DELTA).append(" AS d FROM ").append(tablas.get(t))
+           .append(" m WHERE m.insumo_codigo = ? AND m.fecha >= ? AND m.fecha < ?");
+      }
+      sql.append(") v");
+      stmt = conn.prepareStatement(sql.toString());
+      int p = 1;
+      for (int t = 0; t < tablas.size(); t++) {
+        stmt.setString(p++, codigo);
+        stmt.setTimestamp(p++, Timestamp.valueOf(desde.atStartOfDay()));
+        stmt.setTimestamp(p++, Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+      }
+      rs = stmt.executeQuery();
+      return rs.next() ? rs.getInt(1) : 0;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al calcular la variación de stock de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public int registrarCierre(LocalDate dia) {
+    String insertar = "INSERT IGNORE INTO saldos_insumo (insumo_codigo, fecha, saldo) VALUES (?, ?, ?)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      List<String> tablas = tablas(conn, dia.plusDays(1), null);
+      // Una sola sentencia: el stock y los movimientos posteriores salen de la misma foto de la base
+      StringBuilder consulta = new StringBuilder("SELECT i.codigo, " +
+          "(SELECT COALESCE(SUM(sd.stock), 0) FROM stock_depositos sd WHERE sd.insumo_codigo = i.codigo) + " +
+          "(SELECT COALESCE(SUM(se.stock), 0) FROM stock_escrow se WHERE se.insumo_codigo = i.codigo)");
+      for (String tabla : tablas) {
+        consulta.append(" - (SELECT COALESCE(SUM(").append(DELTA).append("), 0) FROM ").append(tabla)
+                .append(" m WHERE m.insumo_codigo = i.codigo AND m.fecha >= ?)");
+      }
+      consulta.append(" AS saldo FROM insumos i");
+      stmt = conn.prepareStatement(consulta.toString());
+      for (int t = 0; t < tablas.size(); t++) {
+        stmt.setTimestamp(t + 1, Timestamp.valueOf(dia.plusDays(1).atStartOfDay()));
+      }
+      rs = stmt.executeQuery();
+      Map<String, Integer> saldos = new LinkedHashMap<>();
+      while (rs.next()) {
+        saldos.put(rs.getString("codigo"), rs.getInt("saldo"));
+      }
+      rs.close();
+      stmt.close();
+      rs = null;
+      if (saldos.isEmpty()) {
+        return 0;
+      }
+      
+      stmt = conn.prepareStatement(insertar);
+      for (Map.Entry<String, Integer> s : saldos.entrySet()) {
+        stmt.setString(1, s.getKey());
+        stmt.setDate(2, Date.valueOf(dia));
+        stmt.setInt(3, s.getValue());
+        stmt.addBatch();
+      }
+      int registrados = 0;
+      for (int filas : stmt.executeBatch()) {
+        if (filas > 0) {
+          registrados++;
+        }
+      }
+      return registrados;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al registrar los saldos de cierre del " + dia, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  private Optional<SaldoInsumo> buscar(String sql, String codigo, LocalDate fecha) {
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setString(1, codigo);
+      stmt.setDate(2, Date.valueOf(fecha));
+      rs = stmt.executeQuery();
+      if (rs.next()) {
+        return Optional.of(new SaldoInsumo(rs.getString("insumo_codigo"), rs.getDate("fecha").toLocalDate(),
+            rs.getInt("saldo")));
+      }
+      return Optional.empty();
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al buscar el saldo de cierre de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  /**
+   * Tablas de movimientos que cubren el período según el límite de archivo (hasta null: sin fin)
+   */
+  private List<String> tablas(Connection conn, LocalDate desde, LocalDate hasta) throws SQLException {
+    LocalDate limite = MantenimientoParticiones.getLimiteArchivo(conn);
+    List<String> tablas = new ArrayList<>();
+    if (limite == null || hasta == null || !hasta.isBefore(limite)) {
+      tablas.add("movimientos");
+    }
+    if (limite != null && desde.isBefore(limite)) {
+      tablas.add("movimientos_archivo");
+    }
+    return tablas;
+  }
+
+  /**
+   * Obtiene una conexión: usa la de transacción si existe, sino crea una nueva
+   */
+  private Connection getConnection() throws SQLException {
+    Connection transConn = TransactionManager.getCurrentConnection();
+    if (transConn != null) {
+      return transConn; // Usar conexión de transacción
+    }
+    return DatabaseConnection.getConnection(); // Crear nueva conexión
+  }
+
+  /**
+   * Cierra los recursos de forma segura
+   * NO cierra la conexión si está en una transacción
+   */
+  private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
+    if (rs != null) {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar ResultSet: " + e.getMessage());
+      }
+    }
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar Statement: " + e.getMessage());
+      }
+    }
+    // Solo cerrar la conexión si NO está en una transacción
+    if (!TransactionManager.isTransactionActive()) {
+      DatabaseConnection.closeConnection(conn);
+    }
+  }
+}
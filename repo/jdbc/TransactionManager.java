@@ -3,6 +3,10 @@ package repo.jdbc;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import infra.jfr.TransaccionEvent;
+import infra.traza.Span;
+import infra.traza.Trazador;
+
 /**
  * Gestor de transacciones para operaciones que requieren múltiples queries atómicas
  * Utiliza ThreadLocal para mantener la conexión por hilo
@@ -10,6 +14,8 @@ import java.sql.SQLException;
 public class TransactionManager {
   // ThreadLocal para mantener la conexión de transacción por hilo
   private static final ThreadLocal<Connection> transactionConnection = new ThreadLocal<>();
+  // Evento JFR de la transacción en curso (mide desde el begin hasta el commit/rollback)
+  private static final ThreadLocal<TransaccionEvent> transactionEvent = new ThreadLocal<>();
   
   /**
    * Inicia una nueva transacción
@@ -18,10 +24,22 @@ public class TransactionManager {
    * @throws SQLException si hay error al obtener la conexión
    */
   public static Connection beginTransaction() throws SQLException {
-    Connection conn = DatabaseConnection.getConnection();
-    conn.setAutoCommit(false); // Desactivar auto-commit para control manual
-    transactionConnection.set(conn);
-    return conn;
+    Span span = Trazador.iniciar("tx.begin");
+    try {
+      Connection conn = DatabaseConnection.getConnection();
+      conn.setAutoCommit(false); // Desactivar auto-commit para control manual
+      transactionConnection.set(conn);
+
+      TransaccionEvent evento = new TransaccionEvent();
+      evento.begin();
+      transactionEvent.set(evento);
+      return conn;
+    } catch (SQLException | RuntimeException e) {
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+    }
   }
   
   /**
@@ -32,11 +50,18 @@ public class TransactionManager {
   public static void commit() throws SQLException {
     Connection conn = transactionConnection.get();
     if (conn != null) {
+      boolean confirmada = false;
+      Span span = Trazador.iniciar("tx.commit");
       try {
         if (!conn.isClosed()) {
           conn.commit();
         }
+        confirmada = true;
+      } catch (SQLException | RuntimeException e) {
+        span.marcarError(e);
+        throw e;
       } finally {
+        span.close();
         try {
           conn.setAutoCommit(true); // Restaurar auto-commit
         } catch (SQLException e) {
@@ -44,6 +69,7 @@ public class TransactionManager {
         }
         DatabaseConnection.closeConnection(conn);
         transactionConnection.remove();
+        registrarEvento(confirmada ? "COMMIT" : "COMMIT_FALLIDO");
       }
     }
   }
@@ -54,13 +80,16 @@ public class TransactionManager {
   public static void rollback() {
     Connection conn = transactionConnection.get();
     if (conn != null) {
+      Span span = Trazador.iniciar("tx.rollback");
       try {
         if (!conn.isClosed()) {
           conn.rollback();
         }
       } catch (SQLException e) {
+        span.marcarError(e);
         System.err.println("Error al hacer rollback: " + e.getMessage());
       } finally {
+        span.close();
         try {
           conn.setAutoCommit(true); // Restaurar auto-commit
         } catch (SQLException e) {
@@ -68,6 +97,7 @@ public class TransactionManager {
         }
         DatabaseConnection.closeConnection(conn);
         transactionConnection.remove();
+        registrarEvento("ROLLBACK");
       }
     }
   }
@@ -98,5 +128,16 @@ public class TransactionManager {
       return false;
     }
   }
-}
 
+  /**
+   * Emite el evento JFR de la transacción que termina
+   */
+  private static void registrarEvento(String resultado) {
+    TransaccionEvent evento = transactionEvent.get();
+    if (evento != null) {
+      transactionEvent.remove();
+      evento.resultado = resultado;
+      evento.commit();
+    }
+  }
+}
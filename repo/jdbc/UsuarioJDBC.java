@@ -49,38 +49,6 @@ public class UsuarioJDBC implements UsuarioRepository {
     }
   }
 
-  @Override
-  public Optional<Usuario> findByLegajoAndPassword(int legajo, String password) {
-    String sql = "SELECT legajo, password, nombre, apellido, rol, activo, creado_en " +
-                 "FROM usuarios WHERE legajo = ? AND password = ? AND activo = 1";
-    
-    Connection conn = null;
-    PreparedStatement stmt = null;
-    ResultSet rs = null;
-    
-    try {
-      conn = DatabaseConnection.getConnection();
-      stmt = conn.prepareStatement(sql);
-      // Usar arreglo para múltiples parámetros
-      stmt.setInt(1, legajo);
-      stmt.setString(2, password);
-      
-      rs = stmt.executeQuery();
-      
-      if (rs.next()) {
-        Usuario usuario = mapResultSetToUsuario(rs);
-        return Optional.of(usuario);
-      }
-      
-      return Optional.empty();
-      
-    } catch (SQLException e) {
-      throw new DatabaseException("Error al buscar usuario por legajo y password", e);
-    } finally {
-      closeResources(conn, stmt, rs);
-    }
-  }
-
   @Override
   public List<Usuario> findAllActivos() {
     String sql = "SELECT legajo, password, nombre, apellido, rol, activo, creado_en " +
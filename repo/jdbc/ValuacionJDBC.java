@@ -0,0 +1,391 @@
+package repo.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import domain.CapaCosto;
+import domain.CostoConsumo;
+import domain.ValuacionInsumo;
+import domain.ValuacionPendiente;
+import domain.enums.TipoMovimiento;
+import exceptions.DatabaseException;
+import repo.ValuacionRepository;
+
+/**
+ * Implementación JDBC de la valuación de stock (tablas valuacion_pendiente, capas_costo, valuacion_insumo
+ * y consumo_valorizado)
+ * Anotar un pendiente es una inserción con clave autoincremental, que no espera a otros movimientos.
+ * Los pendientes se toman borrándolos por clave primaria: solo se bloquea la fila tomada, sin huecos,
+ * así aplicar no frena las inserciones de los movimientos nuevos.
+ * Las capas se leen con bloqueo en tramos cortos por el índice (insumo_codigo, id): una salida
+ * normal toca una o dos capas sin recorrer la cola completa del insumo
+ */
+public class ValuacionJDBC implements ValuacionRepository {
+  // Capas que se leen por consulta al cubrir una salida
+  private static final int CAPAS_POR_LECTURA = 8;
+
+  @Override
+  public void encolar(ValuacionPendiente p) {
+    String sql = "INSERT INTO valuacion_pendiente (movimiento_id, insumo_codigo, tipo, cantidad, costo_unitario, " +
+                 "servicio_id, fecha) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setLong(1, p.getMovimientoId());
+      stmt.setString(2, p.getCodigo());
+      stmt.setString(3, p.getTipo().name());
+      stmt.setInt(4, p.getCantidad());
+      stmt.setBigDecimal(5, p.getCostoUnitario());
+      stmt.setInt(6, p.getServicioId());
+      stmt.setTimestamp(7, Timestamp.valueOf(p.getFecha()));
+      stmt.executeUpdate();
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al anotar la valuación del movimiento " + p.getMovimientoId(), e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public List<ValuacionPendiente> pendientes(int limite) {
+    String sql = "SELECT id, movimiento_id, insumo_codigo, tipo, cantidad, costo_unitario, servicio_id, fecha " +
+                 "FROM valuacion_pendiente ORDER BY id LIMIT ?";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    List<ValuacionPendiente> out = new ArrayList<>();
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setInt(1, limite);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        out.add(new ValuacionPendiente(rs.getLong("id"), rs.getLong("movimiento_id"), rs.getString("insumo_codigo"),
+            TipoMovimiento.valueOf(rs.getString("tipo")), rs.getInt("cantidad"), rs.getBigDecimal("costo_unitario"),
+            rs.getInt("servicio_id"), rs.getTimestamp("fecha").toLocalDateTime()));
+      }
+      return out;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al leer las valuaciones pendientes", e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public boolean tomarPendiente(long id) {
+    String sql = "DELETE FROM valuacion_pendiente WHERE id = ?";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setLong(1, id);
+      return stmt.executeUpdate() > 0;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al tomar la valuación pendiente " + id, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public ValuacionInsumo bloquear(String codigo) {
+    String crear = "INSERT IGNORE INTO valuacion_insumo (insumo_codigo) VALUES (?)";
+    String leer = "SELECT insumo_codigo, cantidad, valor_fifo, costo_promedio FROM valuacion_insumo " +
+                  "WHERE insumo_codigo = ? FOR UPDATE";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(crear);
+      stmt.setString(1, codigo);
+      stmt.executeUpdate();
+      stmt.close();
+      stmt = null;
+      
+      stmt = conn.prepareStatement(leer);
+      stmt.setString(1, codigo);
+      rs = stmt.executeQuery();
+      if (!rs.next()) {
+        throw new DatabaseException("No se encontró la valuación de " + codigo);
+      }
+      return new ValuacionInsumo(rs.getString("insumo_codigo"), rs.getInt("cantidad"),
+          rs.getBigDecimal("valor_fifo"), rs.getBigDecimal("costo_promedio"));
+      
+    } catch (SQLException e) {
+      if (e.getSQLState().equals("23000")) { // Violación de foreign key
+        throw new IllegalArgumentException("Error de integridad referencial: " + e.getMessage(), e);
+      }
+      throw new DatabaseException("Error al bloquear la valuación de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public void guardar(ValuacionInsumo v) {
+    String sql = "UPDATE valuacion_insumo SET cantidad = ?, valor_fifo = ?, costo_promedio = ? WHERE insumo_codigo = ?";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setInt(1, v.getCantidad());
+      stmt.setBigDecimal(2, v.getValorFifo());
+      stmt.setBigDecimal(3, v.getCostoPromedio());
+      stmt.setString(4, v.getCodigo());
+      if (stmt.executeUpdate() == 0) {
+        throw new DatabaseException("No se encontró la valuación de " + v.getCodigo());
+      }
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al guardar la valuación de " + v.getCodigo(), e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public List<CapaCosto> capasParaSalida(String codigo, int cantidad) {
+    String sql = "SELECT id, insumo_codigo, cantidad, costo_unitario FROM capas_costo " +
+                 "WHERE insumo_codigo = ? AND id > ? ORDER BY id LIMIT " + CAPAS_POR_LECTURA + " FOR UPDATE";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    List<CapaCosto> capas = new ArrayList<>();
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      long ultima = 0;
+      int cubierto = 0;
+      boolean hayMas = true;
+      while (cubierto < cantidad && hayMas) {
+        stmt.setString(1, codigo);
+        stmt.setLong(2, ultima);
+        rs = stmt.executeQuery();
+        int leidas = 0;
+        while (rs.next() && cubierto < cantidad) {
+          CapaCosto c = new CapaCosto(rs.getLong("id"), rs.getString("insumo_codigo"), rs.getInt("cantidad"),
+              rs.getBigDecimal("costo_unitario"));
+          capas.add(c);
+          cubierto += c.getCantidad();
+          ultima = c.getId();
+          leidas++;
+        }
+        rs.close();
+        rs = null;
+        hayMas = leidas == CAPAS_POR_LECTURA;
+      }
+      return capas;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al leer las capas de costo de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public void agregarCapa(String codigo, int cantidad, BigDecimal costoUnitario, long movimientoId,
+      LocalDateTime fecha) {
+    String sql = "INSERT INTO capas_costo (insumo_codigo, cantidad, costo_unitario, movimiento_id, fecha) " +
+                 "VALUES (?, ?, ?, ?, ?)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setString(1, codigo);
+      stmt.setInt(2, cantidad);
+      stmt.setBigDecimal(3, costoUnitario);
+      stmt.setLong(4, movimientoId);
+      stmt.setTimestamp(5, Timestamp.valueOf(fecha));
+      stmt.executeUpdate();
+      
+    } catch (SQLException e) {
+      if (e.getSQLState().equals("23000")) { // Violación de foreign key
+        throw new IllegalArgumentException("Error de integridad referencial: " + e.getMessage(), e);
+      }
+      throw new DatabaseException("Error al agregar la capa de costo de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public void consumirCapa(long capaId, int restante) {
+    String sql = restante > 0
+        ? "UPDATE capas_costo SET cantidad = ? WHERE id = ?"
+        : "DELETE FROM capas_costo WHERE id = ?";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      int p = 1;
+      if (restante > 0) {
+        stmt.setInt(p++, restante);
+      }
+      stmt.setLong(p, capaId);
+      stmt.executeUpdate();
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consumir la capa de costo " + capaId, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public void sumarConsumo(LocalDate dia, int servicioId, String codigo, int cantidad, BigDecimal costoFifo,
+      BigDecimal costoPromedio) {
+    String sql = "INSERT INTO consumo_valorizado (dia, servicio_id, insumo_codigo, cantidad, costo_fifo, costo_promedio) " +
+                 "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE cantidad = cantidad + VALUES(cantidad), " +
+                 "costo_fifo = costo_fifo + VALUES(costo_fifo), costo_promedio = costo_promedio + VALUES(costo_promedio)";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      stmt.setDate(1, Date.valueOf(dia));
+      stmt.setInt(2, servicioId);
+      stmt.setString(3, codigo);
+      stmt.setInt(4, cantidad);
+      stmt.setBigDecimal(5, costoFifo);
+      stmt.setBigDecimal(6, costoPromedio);
+      stmt.executeUpdate();
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al registrar el costo consumido de " + codigo, e);
+    } finally {
+      closeResources(conn, stmt, null);
+    }
+  }
+
+  @Override
+  public List<ValuacionInsumo> findAll() {
+    String sql = "SELECT insumo_codigo, cantidad, valor_fifo, costo_promedio FROM valuacion_insumo ORDER BY insumo_codigo";
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    List<ValuacionInsumo> out = new ArrayList<>();
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        out.add(new ValuacionInsumo(rs.getString("insumo_codigo"), rs.getInt("cantidad"),
+            rs.getBigDecimal("valor_fifo"), rs.getBigDecimal("costo_promedio")));
+      }
+      return out;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consultar la valuación del stock", e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  @Override
+  public List<CostoConsumo> consumoPorServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    StringBuilder sql = new StringBuilder("SELECT servicio_id, SUM(cantidad) AS cantidad, SUM(costo_fifo) AS costo_fifo, " +
+        "SUM(costo_promedio) AS costo_promedio FROM consumo_valorizado WHERE dia >= ? AND dia <= ?");
+    if (servicioId != null) {
+      sql.append(" AND servicio_id = ?");
+    }
+    sql.append(" GROUP BY servicio_id ORDER BY costo_fifo DESC");
+    
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    List<CostoConsumo> out = new ArrayList<>();
+    
+    try {
+      conn = getConnection();
+      stmt = conn.prepareStatement(sql.toString());
+      stmt.setDate(1, Date.valueOf(desde));
+      stmt.setDate(2, Date.valueOf(hasta));
+      if (servicioId != null) {
+        stmt.setInt(3, servicioId);
+      }
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        out.add(new CostoConsumo(rs.getInt("servicio_id"), rs.getLong("cantidad"), rs.getBigDecimal("costo_fifo"),
+            rs.getBigDecimal("costo_promedio")));
+      }
+      return out;
+      
+    } catch (SQLException e) {
+      throw new DatabaseException("Error al consultar el costo consumido entre " + desde + " y " + hasta, e);
+    } finally {
+      closeResources(conn, stmt, rs);
+    }
+  }
+
+  /**
+   * Obtiene una conexión: usa la de transacción si existe, sino crea una nueva
+   */
+  private Connection getConnection() throws SQLException {
+    Connection transConn = TransactionManager.getCurrentConnection();
+    if (transConn != null) {
+      return transConn; // Usar conexión de transacción
+    }
+    return DatabaseConnection.getConnection(); // Crear nueva conexión
+  }
+
+  /**
+   * Cierra los recursos de forma segura
+   * NO cierra la conexión si está en una transacción
+   */
+  private void closeResources(Connection conn, Statement stmt, ResultSet rs) {
+    if (rs != null) {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar ResultSet: " + e.getMessage());
+      }
+    }
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        System.err.println("Error al cerrar Statement: " + e.getMessage());
+      }
+    }
+    // Solo cerrar la conexión si NO está en una transacción
+    if (!TransactionManager.isTransactionActive()) {
+      DatabaseConnection.closeConnection(conn);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package repo.memory;
+
+import java.util.*;
+import domain.Deposito;
+import repo.DepositoRepository;
+
+public class DepositoInMemory implements DepositoRepository {
+  private final Map<Integer, Deposito> data = new HashMap<>();
+
+  public DepositoInMemory() {
+    // Datos semilla
+    data.put(Deposito.CENTRAL, new Deposito(Deposito.CENTRAL, "Farmacia central", true));
+    data.put(2, new Deposito(2, "Guardia", false));
+    data.put(3, new Deposito(3, "Internación", false));
+    data.put(4, new Deposito(4, "Quirófano", false));
+  }
+
+  @Override
+  public Optional<Deposito> findById(int id) {
+    return Optional.ofNullable(data.get(id));
+  }
+
+  @Override
+  public List<Deposito> findAll() {
+    ArrayList<Deposito> out = new ArrayList<>(data.values());
+    out.sort(Comparator.comparingInt(Deposito::getId));
+    return out;
+  }
+}
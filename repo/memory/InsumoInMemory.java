@@ -2,12 +2,15 @@ package repo.memory;
 
 import java.time.LocalDate;
 import java.util.*;
+import domain.Deposito;
 import domain.Insumo;
 import domain.enums.EstadoInsumo;
 import repo.InsumoRepository;
 
 public class InsumoInMemory implements InsumoRepository {
   private final Map<String, Insumo> data = new HashMap<>();
+  // Stock por insumo y depósito; el stock de cada Insumo es la suma de sus depósitos
+  private final Map<String, Map<Integer, Integer>> porDeposito = new HashMap<>();
 
   public InsumoInMemory() {
     // Datos semilla (código, nombre, unidad, stock, stockMinimo)
@@ -16,6 +19,9 @@ public class InsumoInMemory implements InsumoRepository {
     data.put("BAR-01", new Insumo("BAR-01", "Barbijos quirúrgicos", "caja", 25, 20, EstadoInsumo.ACTIVO, null));
     // Ejemplo con fecha de vencimiento (opcional)
     data.get("GAS-01").setFechaVencimiento(LocalDate.now().plusMonths(12));
+    // Todo el stock inicial está en la farmacia central
+    for (Insumo i : data.values())
+      porDeposito.computeIfAbsent(i.getCodigo(), k -> new TreeMap<>()).put(Deposito.CENTRAL, i.getStock());
   }
 
   @Override
@@ -58,10 +64,84 @@ public class InsumoInMemory implements InsumoRepository {
     if (data.containsKey(i.getCodigo()))
       throw new IllegalArgumentException("Código de insumo duplicado: " + i.getCodigo());
     data.put(i.getCodigo(), i);
+    if (i.getStock() > 0)
+      porDeposito.computeIfAbsent(i.getCodigo(), k -> new TreeMap<>()).put(Deposito.CENTRAL, i.getStock());
   }
 
   @Override
   public void update(Insumo i) {
-    data.put(i.getCodigo(), i);
+    Insumo existente = data.get(i.getCodigo());
+    if (existente == null)
+      throw new IllegalArgumentException("Insumo no encontrado: " + i.getCodigo());
+    // El stock solo cambia con ajustarStock
+    data.put(i.getCodigo(), new Insumo(i.getCodigo(), i.getNombre(), i.getUnidad(), existente.getStock(),
+        i.getStockMinimo(), i.getEstado(), i.getFechaVencimiento()));
+  }
+
+  @Override
+  public int upsertAll(List<Insumo> insumos) {
+    int insertados = 0;
+    for (Insumo i : insumos) {
+      Insumo existente = data.get(i.getCodigo());
+      if (existente == null) {
+        data.put(i.getCodigo(), new Insumo(i.getCodigo(), i.getNombre(), i.getUnidad(), 0,
+            i.getStockMinimo(), i.getEstado(), i.getFechaVencimiento()));
+        insertados++;
+      } else {
+        data.put(i.getCodigo(), new Insumo(i.getCodigo(), i.getNombre(), i.getUnidad(), existente.getStock(),
+            i.getStockMinimo(), existente.getEstado(), i.getFechaVencimiento()));
+      }
+    }
+    return insertados;
+  }
+
+  @Override
+  public int stockEnDeposito(String codigo, int depositoId) {
+    return porDeposito.getOrDefault(codigo, Map.of()).getOrDefault(depositoId, 0);
+  }
+
+  @Override
+  public Map<Integer, Integer> stockPorDeposito(String codigo) {
+    return new TreeMap<>(porDeposito.getOrDefault(codigo, Map.of()));
+  }
+
+  @Override
+  public synchronized Map<String, Integer> stockEnDeposito(int depositoId, Collection<String> codigos,
+      boolean bloquear) {
+    Map<String, Integer> stock = new HashMap<>();
+    for (String codigo : codigos) {
+      stock.put(codigo, stockEnDeposito(codigo, depositoId));
+    }
+    return stock;
+  }
+
+  @Override
+  public synchronized boolean ajustarStock(String codigo, int depositoId, int delta, int minimoRestante) {
+    Insumo ins = data.get(codigo);
+    if (ins == null)
+      throw new IllegalArgumentException("Depósito o insumo inexistente: " + depositoId + "/" + codigo);
+    Map<Integer, Integer> stock = porDeposito.computeIfAbsent(codigo, k -> new TreeMap<>());
+    int actual = stock.getOrDefault(depositoId, 0);
+    if (actual + delta < 0 || (delta < 0 && actual + delta < minimoRestante))
+      return false;
+    stock.put(depositoId, actual + delta);
+    // Se reemplaza la instancia en lugar de modificarla: quien la leyó antes conserva su copia
+    data.put(codigo, new Insumo(ins.getCodigo(), ins.getNombre(), ins.getUnidad(), ins.getStock() + delta,
+        ins.getStockMinimo(), ins.getEstado(), ins.getFechaVencimiento()));
+    return true;
+  }
+
+  @Override
+  public synchronized List<String> bloquearVencidos(LocalDate hoy) {
+    List<String> bloqueados = new ArrayList<>();
+    for (Insumo ins : new ArrayList<>(data.values())) {
+      if (ins.getEstado() == EstadoInsumo.ACTIVO && ins.getFechaVencimiento() != null
+          && ins.getFechaVencimiento().isBefore(hoy)) {
+        data.put(ins.getCodigo(), new Insumo(ins.getCodigo(), ins.getNombre(), ins.getUnidad(), ins.getStock(),
+            ins.getStockMinimo(), EstadoInsumo.BLOQUEADO, ins.getFechaVencimiento()));
+        bloqueados.add(ins.getCodigo());
+      }
+    }
+    return bloqueados;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package repo.memory;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import domain.ConsumoLote;
+import domain.Lote;
+import domain.Movimiento;
+import repo.LoteRepository;
+
+public class LoteInMemory implements LoteRepository {
+  private static final Comparator<Lote> FEFO = Comparator.comparing(Lote::getVencimiento).thenComparing(Lote::getId);
+
+  private final Map<Long, Lote> data = new HashMap<>();
+  private final Map<Long, List<ConsumoLote>> consumos = new HashMap<>();
+  private final AtomicLong secuencia = new AtomicLong(1);
+
+  @Override
+  public synchronized Lote sumar(String codigo, int depositoId, String numero, LocalDate vencimiento, int cantidad) {
+    for (Lote l : data.values()) {
+      if (l.getCodigo().equals(codigo) && l.getDepositoId() == depositoId && l.getNumero().equals(numero)) {
+        Lote actualizado = new Lote(l.getId(), codigo, depositoId, numero, l.getVencimiento(), l.getCantidad() + cantidad);
+        data.put(l.getId(), actualizado);
+        return actualizado;
+      }
+    }
+    Lote nuevo = new Lote(secuencia.getAndIncrement(), codigo, depositoId, numero, vencimiento, cantidad);
+    data.put(nuevo.getId(), nuevo);
+    return nuevo;
+  }
+
+  @Override
+  public synchronized boolean ajustar(long loteId, int delta) {
+    Lote l = data.get(loteId);
+    if (l == null || l.getCantidad() + delta < 0)
+      return false;
+    data.put(loteId, new Lote(loteId, l.getCodigo(), l.getDepositoId(), l.getNumero(), l.getVencimiento(),
+        l.getCantidad() + delta));
+    return true;
+  }
+
+  @Override
+  public synchronized List<Lote> findConStock(String codigo, int depositoId) {
+    List<Lote> out = new ArrayList<>();
+    for (Lote l : data.values())
+      if (l.getCodigo().equals(codigo) && l.getDepositoId() == depositoId && l.getCantidad() > 0)
+        out.add(l);
+    out.sort(FEFO);
+    return out;
+  }
+
+  @Override
+  public synchronized List<Lote> findByInsumo(String codigo) {
+    List<Lote> out = new ArrayList<>();
+    for (Lote l : data.values())
+      if (l.getCodigo().equals(codigo) && l.getCantidad() > 0)
+        out.add(l);
+    out.sort(FEFO);
+    return out;
+  }
+
+  @Override
+  public synchronized void registrarConsumos(Movimiento m, List<ConsumoLote> lista) {
+    List<ConsumoLote> conLote = new ArrayList<>();
+    for (ConsumoLote c : lista)
+      if (!c.esSinLote())
+        conLote.add(c);
+    if (!conLote.isEmpty())
+      consumos.put((long) m.getId(), conLote);
+  }
+
+  @Override
+  public synchronized List<ConsumoLote> findConsumos(long movimientoId) {
+    return new ArrayList<>(consumos.getOrDefault(movimientoId, List.of()));
+  }
+}
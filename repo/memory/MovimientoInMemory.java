@@ -5,7 +5,12 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import domain.Movimiento;
+import domain.TotalConsumo;
+import domain.enums.AgrupacionConsumo;
+import domain.enums.TipoMovimiento;
+import exceptions.ClaveIdempotenciaDuplicadaException;
 import repo.MovimientoRepository;
 
 public class MovimientoInMemory implements MovimientoRepository {
@@ -50,9 +55,22 @@ public class MovimientoInMemory implements MovimientoRepository {
       throw new RuntimeException("Error al procesar el movimiento", e);
     }
 
+    if (m.getClaveIdempotencia() != null && findByClaveIdempotencia(m.getClaveIdempotencia()).isPresent()) {
+      throw new ClaveIdempotenciaDuplicadaException(m.getClaveIdempotencia(), null);
+    }
     data.add(m);
   }
 
+  @Override
+  public Optional<Movimiento> findByClaveIdempotencia(String clave) {
+    for (Movimiento m : data) {
+      if (clave.equals(m.getClaveIdempotencia())) {
+        return Optional.of(m);
+      }
+    }
+    return Optional.empty();
+  }
+
   @Override
   public List<Movimiento> findAll() {
     ArrayList<Movimiento> out = new ArrayList<>(data);
@@ -84,4 +102,68 @@ public class MovimientoInMemory implements MovimientoRepository {
     out.sort(Comparator.comparing(Movimiento::getFecha).reversed());
     return Collections.unmodifiableList(out); // Retornar lista inmutable
   }
-}
\ No newline at end of file
+
+  @Override
+  public List<Movimiento> findByPeriodoYDeposito(LocalDate desde, LocalDate hasta, int depositoId) {
+    List<Movimiento> out = new ArrayList<>();
+    for (Movimiento m : data) {
+      LocalDate fechaMovimiento = m.getFecha().toLocalDate();
+      boolean enRango = (desde == null || !fechaMovimiento.isBefore(desde)) &&
+          (hasta == null || !fechaMovimiento.isAfter(hasta));
+      boolean coincideDeposito = m.getDepositoId() == depositoId ||
+          (m.getDepositoDestinoId() != null && m.getDepositoDestinoId() == depositoId);
+      if (enRango && coincideDeposito) {
+        out.add(m);
+      }
+    }
+    out.sort(Comparator.comparing(Movimiento::getFecha).reversed());
+    return Collections.unmodifiableList(out);
+  }
+
+  @Override
+  public void recorrerPorInsumo(String codigo, LocalDate desde, LocalDate hasta, Consumer<Movimiento> accion) {
+    List<Movimiento> out = new ArrayList<>();
+    for (Movimiento m : data) {
+      LocalDate fechaMovimiento = m.getFecha().toLocalDate();
+      if (m.getInsumo().getCodigo().equals(codigo)
+          && !fechaMovimiento.isBefore(desde) && !fechaMovimiento.isAfter(hasta)) {
+        out.add(m);
+      }
+    }
+    out.sort(Comparator.comparing(Movimiento::getFecha).thenComparing(Movimiento::getId));
+    out.forEach(accion);
+  }
+
+  @Override
+  public List<TotalConsumo> topConsumo(AgrupacionConsumo por, LocalDate desde, LocalDate hasta, Integer servicioId,
+      int limite) {
+    Map<String, Long> totales = new HashMap<>();
+    for (Movimiento m : data) {
+      LocalDate fechaMovimiento = m.getFecha().toLocalDate();
+      if (m.getTipo() != TipoMovimiento.EGRESO || fechaMovimiento.isBefore(desde) || fechaMovimiento.isAfter(hasta)
+          || (servicioId != null && m.getServicio().getId() != servicioId)) {
+        continue;
+      }
+      String clave = por == AgrupacionConsumo.INSUMO ? m.getInsumo().getCodigo()
+          : por == AgrupacionConsumo.SERVICIO ? String.valueOf(m.getServicio().getId())
+          : String.valueOf(m.getUsuario().getLegajo());
+      totales.merge(clave, (long) m.getCantidad(), Long::sum);
+    }
+    List<TotalConsumo> out = new ArrayList<>();
+    totales.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+        .limit(limite)
+        .forEach(e -> out.add(new TotalConsumo(por, e.getKey(), e.getValue(), false)));
+    return out;
+  }
+
+  @Override
+  public int deleteByPeriodo(LocalDate desde, LocalDate hasta) {
+    int antes = data.size();
+    data.removeIf(m -> {
+      LocalDate fecha = m.getFecha().toLocalDate();
+      return !fecha.isBefore(desde) && !fecha.isAfter(hasta);
+    });
+    return antes - data.size();
+  }
+}
@@ -0,0 +1,45 @@
+package repo.memory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import domain.Reserva;
+import domain.enums.EstadoReserva;
+import repo.ReservaRepository;
+
+public class ReservaInMemory implements ReservaRepository {
+  private final Map<Long, Reserva> data = new HashMap<>();
+  private final AtomicLong secuencia = new AtomicLong(1);
+
+  @Override
+  public synchronized void save(Reserva r) {
+    if (r.getId() == 0) {
+      try {
+        java.lang.reflect.Field idField = Reserva.class.getDeclaredField("id");
+        idField.setAccessible(true);
+        idField.set(r, secuencia.getAndIncrement());
+      } catch (ReflectiveOperationException e) {
+        throw new RuntimeException("Error al procesar la reserva", e);
+      }
+    }
+    data.put(r.getId(), r);
+  }
+
+  @Override
+  public synchronized List<Reserva> findActivas() {
+    List<Reserva> out = new ArrayList<>();
+    for (Reserva r : data.values())
+      if (r.getEstado() == EstadoReserva.ACTIVA)
+        out.add(r);
+    out.sort(Comparator.comparing(Reserva::getVence));
+    return out;
+  }
+
+  @Override
+  public synchronized boolean cerrar(long id, EstadoReserva estado) {
+    Reserva r = data.get(id);
+    if (r == null || r.getEstado() != EstadoReserva.ACTIVA)
+      return false;
+    r.setEstado(estado);
+    return true;
+  }
+}
@@ -17,13 +17,6 @@ public class UsuarioInMemory implements UsuarioRepository {
     return Optional.ofNullable(data.get(legajo));
   }
 
-  public Optional<Usuario> findByLegajoAndPassword(int legajo, String p) {
-    Usuario u = data.get(legajo);
-    return (u != null && u.getPassword().equals(p) && u.isActivo())
-        ? Optional.of(u)
-        : Optional.empty();
-  }
-
   public List<Usuario> findAllActivos() {
     List<Usuario> out = new ArrayList<>();
     for (Usuario u : data.values())
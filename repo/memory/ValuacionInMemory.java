@@ -0,0 +1,133 @@
+package repo.memory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import domain.CapaCosto;
+import domain.CostoConsumo;
+import domain.ValuacionInsumo;
+import domain.ValuacionPendiente;
+import repo.ValuacionRepository;
+
+public class ValuacionInMemory implements ValuacionRepository {
+  private static final BigDecimal CERO_IMPORTE = BigDecimal.ZERO.setScale(4);
+  private static final BigDecimal CERO_PROMEDIO = BigDecimal.ZERO.setScale(6);
+
+  private final SortedMap<Long, ValuacionPendiente> pendientes = new TreeMap<>();
+  private final Map<String, ValuacionInsumo> valuaciones = new TreeMap<>();
+  // Capas por id: el orden de inserción es el orden FIFO
+  private final SortedMap<Long, CapaCosto> capas = new TreeMap<>();
+  private final List<Consumo> consumos = new ArrayList<>();
+  private final AtomicLong secuencia = new AtomicLong(1);
+
+  private static final class Consumo {
+    final LocalDate dia;
+    final int servicioId;
+    final int cantidad;
+    final BigDecimal costoFifo;
+    final BigDecimal costoPromedio;
+
+    Consumo(LocalDate dia, int servicioId, int cantidad, BigDecimal costoFifo, BigDecimal costoPromedio) {
+      this.dia = dia;
+      this.servicioId = servicioId;
+      this.cantidad = cantidad;
+      this.costoFifo = costoFifo;
+      this.costoPromedio = costoPromedio;
+    }
+  }
+
+  @Override
+  public synchronized void encolar(ValuacionPendiente p) {
+    long id = secuencia.getAndIncrement();
+    pendientes.put(id, new ValuacionPendiente(id, p.getMovimientoId(), p.getCodigo(), p.getTipo(), p.getCantidad(),
+        p.getCostoUnitario(), p.getServicioId(), p.getFecha()));
+  }
+
+  @Override
+  public synchronized List<ValuacionPendiente> pendientes(int limite) {
+    List<ValuacionPendiente> out = new ArrayList<>();
+    for (ValuacionPendiente p : pendientes.values()) {
+      if (out.size() == limite)
+        break;
+      out.add(p);
+    }
+    return out;
+  }
+
+  @Override
+  public synchronized boolean tomarPendiente(long id) {
+    return pendientes.remove(id) != null;
+  }
+
+  @Override
+  public synchronized ValuacionInsumo bloquear(String codigo) {
+    return valuaciones.computeIfAbsent(codigo, c -> new ValuacionInsumo(c, 0, CERO_IMPORTE, CERO_PROMEDIO));
+  }
+
+  @Override
+  public synchronized void guardar(ValuacionInsumo valuacion) {
+    valuaciones.put(valuacion.getCodigo(), valuacion);
+  }
+
+  @Override
+  public synchronized List<CapaCosto> capasParaSalida(String codigo, int cantidad) {
+    List<CapaCosto> out = new ArrayList<>();
+    int cubierto = 0;
+    for (CapaCosto c : capas.values()) {
+      if (cubierto >= cantidad)
+        break;
+      if (c.getCodigo().equals(codigo)) {
+        out.add(c);
+        cubierto += c.getCantidad();
+      }
+    }
+    return out;
+  }
+
+  @Override
+  public synchronized void agregarCapa(String codigo, int cantidad, BigDecimal costoUnitario, long movimientoId,
+      LocalDateTime fecha) {
+    long id = secuencia.getAndIncrement();
+    capas.put(id, new CapaCosto(id, codigo, cantidad, costoUnitario));
+  }
+
+  @Override
+  public synchronized void consumirCapa(long capaId, int restante) {
+    CapaCosto c = capas.get(capaId);
+    if (c == null)
+      return;
+    if (restante > 0)
+      capas.put(capaId, new CapaCosto(capaId, c.getCodigo(), restante, c.getCostoUnitario()));
+    else
+      capas.remove(capaId);
+  }
+
+  @Override
+  public synchronized void sumarConsumo(LocalDate dia, int servicioId, String codigo, int cantidad,
+      BigDecimal costoFifo, BigDecimal costoPromedio) {
+    consumos.add(new Consumo(dia, servicioId, cantidad, costoFifo, costoPromedio));
+  }
+
+  @Override
+  public synchronized List<ValuacionInsumo> findAll() {
+    return new ArrayList<>(valuaciones.values());
+  }
+
+  @Override
+  public synchronized List<CostoConsumo> consumoPorServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    Map<Integer, Consumo> porServicio = new HashMap<>();
+    for (Consumo c : consumos) {
+      if (c.dia.isBefore(desde) || c.dia.isAfter(hasta) || (servicioId != null && c.servicioId != servicioId))
+        continue;
+      porServicio.merge(c.servicioId, c, (a, b) -> new Consumo(a.dia, a.servicioId, a.cantidad + b.cantidad,
+          a.costoFifo.add(b.costoFifo), a.costoPromedio.add(b.costoPromedio)));
+    }
+    List<CostoConsumo> out = new ArrayList<>();
+    for (Consumo c : porServicio.values())
+      out.add(new CostoConsumo(c.servicioId, c.cantidad, c.costoFifo, c.costoPromedio));
+    out.sort(Comparator.comparing(CostoConsumo::getCostoFifo).reversed());
+    return out;
+  }
+}
@@ -0,0 +1,144 @@
+package repo.segmentos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import domain.Movimiento;
+import repo.MovimientoRepository;
+
+/**
+ * Pasa los meses más viejos que el horizonte de retención de la base a segmentos comprimidos
+ * Por cada mes: lee sus movimientos, escribe el segmento (escritura atómica), lo relee para
+ * verificar la cantidad de filas y recién entonces borra el mes de la base. Si el segmento del mes
+ * ya existía, solo se borra cuando contiene todas las filas de la base; si no, se reescribe con la unión.
+ * Desde que el segmento se registra, MovimientoSegmentado lee el mes solo de él: si el borrado
+ * falla o el proceso se corta antes, las filas que quedan en la base no se cuentan dos veces
+ *
+ * Configuración:
+ *   -Dclinica.segmentos.mesesRetencion=24   meses completos que quedan en la base además del actual
+ */
+public class CompactadorSegmentos {
+  // Se deja de buscar meses viejos después de esta cantidad de meses vacíos seguidos
+  private static final int MESES_VACIOS_PARA_CORTAR = 12;
+
+  private final MovimientoSegmentado segmentado;
+  private final MovimientoRepository base;
+
+  /**
+   * @param segmentado decorador que publica los segmentos
+   * @param base       repositorio de la base (sin el decorador, para no leer segmentos existentes)
+   */
+  public CompactadorSegmentos(MovimientoSegmentado segmentado, MovimientoRepository base) {
+    this.segmentado = segmentado;
+    this.base = base;
+  }
+
+  /**
+   * Compacta los meses anteriores al horizonte configurado
+   *
+   * @return cantidad de meses compactados
+   */
+  public int compactar() {
+    return compactarAnterioresA(YearMonth.now().minusMonths(Integer.getInteger("clinica.segmentos.mesesRetencion", 24)));
+  }
+
+  public int compactarAnterioresA(YearMonth primerMesEnBase) {
+    try {
+      Files.createDirectories(segmentado.getCarpeta());
+    } catch (IOException e) {
+      throw new UncheckedIOException("No se pudo crear la carpeta de segmentos", e);
+    }
+
+    int compactados = 0;
+    int vaciosSeguidos = 0;
+    for (YearMonth mes = primerMesEnBase.minusMonths(1); vaciosSeguidos < MESES_VACIOS_PARA_CORTAR; mes = mes.minusMonths(1)) {
+      if (compactarMes(mes)) {
+        compactados++;
+        vaciosSeguidos = 0;
+      } else {
+        vaciosSeguidos++;
+      }
+    }
+    return compactados;
+  }
+
+  /**
+   * @return true si el mes tenía movimientos en la base
+   */
+  private boolean compactarMes(YearMonth mes) {
+    LocalDate desde = mes.atDay(1);
+    LocalDate hasta = mes.atEndOfMonth();
+    List<Movimiento> movimientos = base.findByPeriodoYServicio(desde, hasta, null);
+    if (movimientos.isEmpty()) {
+      return false;
+    }
+
+    try {
+      if (segmentado.tieneSegmento(mes)) {
+        // Corte entre la escritura y el borrado, o filas que llegaron al mes después: si la base
+        // tiene filas que el segmento no tiene, se reescribe con la unión antes de borrar
+        if (!contieneTodas(segmentado.segmentoDe(mes), movimientos)) {
+          escribirVerificado(mes, unir(segmentado.findByPeriodoYServicio(desde, hasta, null)));
+        }
+      } else {
+        escribirVerificado(mes, movimientos);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error al escribir el segmento de " + mes, e);
+    }
+    base.deleteByPeriodo(desde, hasta);
+    return true;
+  }
+
+  private void escribirVerificado(YearMonth mes, List<Movimiento> movimientos) throws IOException {
+    Segmento s = FormatoSegmento.escribir(segmentado.archivoDe(mes), mes, movimientos);
+    if (FormatoSegmento.leerColumnas(s).filas != movimientos.size()) {
+      throw new IOException("El segmento de " + mes + " no coincide con la base");
+    }
+    segmentado.registrar(s);
+  }
+
+  /**
+   * Indica si todas las filas de la base del mes ya están en el segmento (por cantidad, rango e id)
+   */
+  private static boolean contieneTodas(Segmento segmento, List<Movimiento> movimientos) throws IOException {
+    FormatoSegmento.Columnas c = FormatoSegmento.leerColumnas(segmento);
+    if (c.filas < movimientos.size()) {
+      return false;
+    }
+    Set<Long> ids = new HashSet<>();
+    long minimo = Long.MAX_VALUE;
+    long maximo = Long.MIN_VALUE;
+    for (int i = 0; i < c.filas; i++) {
+      ids.add(c.ids[i]);
+      minimo = Math.min(minimo, c.ids[i]);
+      maximo = Math.max(maximo, c.ids[i]);
+    }
+    for (Movimiento m : movimientos) {
+      if (m.getId() < minimo || m.getId() > maximo || !ids.contains((long) m.getId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Filas de la base y del segmento sin repetir las que ya estaban en los dos
+   */
+  private static List<Movimiento> unir(List<Movimiento> baseYSegmento) {
+    Map<Integer, Movimiento> porId = new LinkedHashMap<>();
+    for (Movimiento m : baseYSegmento) {
+      porId.putIfAbsent(m.getId(), m);
+    }
+    return new ArrayList<>(porId.values());
+  }
+}
@@ -0,0 +1,300 @@
+package repo.segmentos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import domain.Movimiento;
+import domain.enums.TipoMovimiento;
+
+/**
+ * Lectura y escritura de segmentos de movimientos
+ *
+ * Cabecera (sin comprimir): mágico, versión, mes (AAAAMM), filas, fecha mínima y máxima
+ * (segundos epoch) y lista de servicios presentes.
+ * Cuerpo (GZIP), una columna detrás de otra, filas ordenadas por fecha e id:
+ *   id (delta zigzag), tipo (byte), fecha (delta en segundos), cantidad (negativa solo en AJUSTE), legajo,
+ *   insumo (diccionario de códigos + índice por fila), servicio (0 = sin servicio),
+ *   depósito y depósito destino (0 = sin destino), costo unitario (diezmilésimos + 1, 0 = sin costo)
+ * Los enteros van como varint, así que las deltas chicas ocupan uno o dos bytes.
+ * Las fechas se guardan con precisión de segundos, igual que la columna DATETIME
+ */
+final class FormatoSegmento {
+  private static final int MAGICO = 0x43485347; // "CHSG"
+  private static final short VERSION = 1;
+  // Escala de la columna DECIMAL(12,4) costo_unitario
+  private static final int ESCALA_COSTO = 4;
+
+  private FormatoSegmento() {
+  }
+
+  /**
+   * Filas de un segmento en columnas; los valores de referencia se resuelven al materializar
+   */
+  static final class Columnas {
+    int filas;
+    long[] ids;
+    byte[] tipos;
+    long[] fechas;
+    int[] cantidades;
+    int[] legajos;
+    String[] insumos;
+    int[] servicios;
+    int[] depositos;
+    int[] depositosDestino;
+    BigDecimal[] costos;
+
+    LocalDateTime fecha(int fila) {
+      return LocalDateTime.ofEpochSecond(fechas[fila], 0, ZoneOffset.UTC);
+    }
+
+    TipoMovimiento tipo(int fila) {
+      return TipoMovimiento.values()[tipos[fila]];
+    }
+  }
+
+  /**
+   * Escribe el segmento del mes en un archivo temporal y lo mueve a su nombre definitivo,
+   * de modo que nunca queda un segmento a medio escribir
+   */
+  static Segmento escribir(Path archivo, YearMonth mes, List<Movimiento> movimientos) throws IOException {
+    List<Movimiento> filas = new ArrayList<>(movimientos);
+    filas.sort(Comparator.comparing(Movimiento::getFecha).thenComparing(Movimiento::getId));
+    int n = filas.size();
+
+    TreeSet<Integer> servicios = new TreeSet<>();
+    for (Movimiento m : filas) {
+      if (m.getServicio() != null) {
+        servicios.add(m.getServicio().getId());
+      }
+    }
+    LocalDateTime minima = n > 0 ? filas.get(0).getFecha() : mes.atDay(1).atStartOfDay();
+    LocalDateTime maxima = n > 0 ? filas.get(n - 1).getFecha() : minima;
+
+    Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+      out.writeInt(MAGICO);
+      out.writeShort(VERSION);
+      out.writeInt(mes.getYear() * 100 + mes.getMonthValue());
+      out.writeInt(n);
+      out.writeLong(segundos(minima));
+      out.writeLong(segundos(maxima));
+      out.writeInt(servicios.size());
+      for (int s : servicios) {
+        out.writeInt(s);
+      }
+      out.flush();
+
+      GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+      OutputStream cuerpo = new BufferedOutputStream(gzip, 64 * 1024);
+      long anterior = 0;
+      for (Movimiento m : filas) {
+        escribirVarLong(cuerpo, zigzag(m.getId() - anterior));
+        anterior = m.getId();
+      }
+      for (Movimiento m : filas) {
+        cuerpo.write(m.getTipo().ordinal());
+      }
+      anterior = segundos(minima);
+      for (Movimiento m : filas) {
+        long s = segundos(m.getFecha());
+        escribirVarLong(cuerpo, s - anterior);
+        anterior = s;
+      }
+      for (Movimiento m : filas) {
+        escribirVarLong(cuerpo, m.getCantidad());
+      }
+      for (Movimiento m : filas) {
+        escribirVarLong(cuerpo, m.getUsuario().getLegajo());
+      }
+      Map<String, Integer> diccionario = new HashMap<>();
+      List<String> codigos = new ArrayList<>();
+      for (Movimiento m : filas) {
+        diccionario.computeIfAbsent(m.getInsumo().getCodigo(), c -> {
+          codigos.add(c);
+          return codigos.size() - 1;
+        });
+      }
+      DataOutputStream textos = new DataOutputStream(cuerpo);
+      escribirVarLong(cuerpo, codigos.size());
+      for (String c : codigos) {
+        textos.writeUTF(c);
+      }
+      for (Movimiento m : filas) {
+        escribirVarLong(cuerpo, diccionario.get(m.getInsumo().getCodigo()));
+      }
+      for (Movimiento m : filas) {
+        escribirVarLong(cuerpo, m.getServicio() != null ? m.getServicio().getId() : 0);
+      }
+      for (Movimiento m : filas) {
+        escribirVarLong(cuerpo, m.getDepositoId());
+      }
+      for (Movimiento m : filas) {
+        escribirVarLong(cuerpo, m.getDepositoDestinoId() != null ? m.getDepositoDestinoId() : 0);
+      }
+      for (Movimiento m : filas) {
+        BigDecimal costo = m.getCostoUnitario();
+        escribirVarLong(cuerpo, costo == null ? 0
+            : costo.setScale(ESCALA_COSTO, RoundingMode.HALF_EVEN).unscaledValue().longValueExact() + 1);
+      }
+      cuerpo.flush();
+      gzip.finish();
+    }
+    Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return new Segmento(archivo, mes, n, minima, maxima, servicios.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  /**
+   * Lee solo la cabecera
+   */
+  static Segmento leerMetadatos(Path archivo) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 512))) {
+      return leerCabecera(in, archivo);
+    }
+  }
+
+  /**
+   * Lee todas las columnas del segmento
+   */
+  static Columnas leerColumnas(Segmento segmento) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmento.getArchivo())))) {
+      leerCabecera(in, segmento.getArchivo());
+      InputStream cuerpo = new BufferedInputStream(new GZIPInputStream(in, 64 * 1024), 64 * 1024);
+      int n = segmento.getFilas();
+
+      Columnas c = new Columnas();
+      c.filas = n;
+      c.ids = new long[n];
+      long anterior = 0;
+      for (int i = 0; i < n; i++) {
+        anterior += deszigzag(leerVarLong(cuerpo));
+        c.ids[i] = anterior;
+      }
+      c.tipos = new byte[n];
+      for (int i = 0; i < n; i++) {
+        c.tipos[i] = (byte) leerByte(cuerpo);
+      }
+      c.fechas = new long[n];
+      anterior = segundos(segmento.getFechaMinima());
+      for (int i = 0; i < n; i++) {
+        anterior += leerVarLong(cuerpo);
+        c.fechas[i] = anterior;
+      }
+      c.cantidades = new int[n];
+      for (int i = 0; i < n; i++) {
+        c.cantidades[i] = (int) leerVarLong(cuerpo);
+      }
+      c.legajos = new int[n];
+      for (int i = 0; i < n; i++) {
+        c.legajos[i] = (int) leerVarLong(cuerpo);
+      }
+      DataInputStream textos = new DataInputStream(cuerpo);
+      String[] diccionario = new String[(int) leerVarLong(cuerpo)];
+      for (int i = 0; i < diccionario.length; i++) {
+        diccionario[i] = textos.readUTF();
+      }
+      c.insumos = new String[n];
+      for (int i = 0; i < n; i++) {
+        c.insumos[i] = diccionario[(int) leerVarLong(cuerpo)];
+      }
+      c.servicios = new int[n];
+      for (int i = 0; i < n; i++) {
+        c.servicios[i] = (int) leerVarLong(cuerpo);
+      }
+      c.depositos = new int[n];
+      c.depositosDestino = new int[n];
+      c.costos = new BigDecimal[n];
+      for (int i = 0; i < n; i++) {
+        c.depositos[i] = (int) leerVarLong(cuerpo);
+      }
+      for (int i = 0; i < n; i++) {
+        c.depositosDestino[i] = (int) leerVarLong(cuerpo);
+      }
+      for (int i = 0; i < n; i++) {
+        long costo = leerVarLong(cuerpo);
+        c.costos[i] = costo == 0 ? null : BigDecimal.valueOf(costo - 1, ESCALA_COSTO);
+      }
+      return c;
+    }
+  }
+
+  private static Segmento leerCabecera(DataInputStream in, Path archivo) throws IOException {
+    if (in.readInt() != MAGICO) {
+      throw new IOException("No es un segmento de movimientos: " + archivo);
+    }
+    short version = in.readShort();
+    if (version != VERSION) {
+      throw new IOException("Versión de segmento no soportada (" + version + "): " + archivo);
+    }
+    int mes = in.readInt();
+    int filas = in.readInt();
+    LocalDateTime minima = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+    LocalDateTime maxima = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+    int[] servicios = new int[in.readInt()];
+    for (int i = 0; i < servicios.length; i++) {
+      servicios[i] = in.readInt();
+    }
+    return new Segmento(archivo, YearMonth.of(mes / 100, mes % 100), filas, minima, maxima, servicios);
+  }
+
+  private static long segundos(LocalDateTime fecha) {
+    return fecha.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  private static long zigzag(long v) {
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static long deszigzag(long v) {
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private static void escribirVarLong(OutputStream out, long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  private static long leerVarLong(InputStream in) throws IOException {
+    long v = 0;
+    for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+      int b = leerByte(in);
+      v |= (long) (b & 0x7F) << desplazamiento;
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+    }
+    throw new IOException("Varint demasiado largo");
+  }
+
+  private static int leerByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException("Segmento truncado");
+    }
+    return b;
+  }
+}
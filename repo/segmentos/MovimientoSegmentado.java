@@ -0,0 +1,369 @@
+package repo.segmentos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+import domain.Insumo;
+import domain.Movimiento;
+import domain.Servicio;
+import domain.TotalConsumo;
+import domain.Usuario;
+import domain.enums.AgrupacionConsumo;
+import domain.enums.TipoMovimiento;
+import repo.InsumoRepository;
+import repo.MovimientoRepository;
+import repo.ServicioRepository;
+import repo.UsuarioRepository;
+
+/**
+ * Decorador que suma a la base los movimientos guardados en segmentos comprimidos (un archivo
+ * inmutable por mes, ver CompactadorSegmentos). Solo se abren los segmentos cuyos metadatos
+ * (rango de fechas y servicios presentes) pueden coincidir con la consulta.
+ * Un mes con segmento se lee solo del segmento: sus filas pueden seguir en la base entre la
+ * escritura del segmento y el borrado del mes (o si el borrado falló) y no se cuentan dos veces
+ *
+ * Configuración:
+ *   -Dclinica.segmentos.dir=segmentos   carpeta de los archivos movimientos-AAAAMM.seg
+ */
+public class MovimientoSegmentado implements MovimientoRepository {
+  static final String PREFIJO = "movimientos-";
+  static final String EXTENSION = ".seg";
+
+  private final MovimientoRepository delegado;
+  private final InsumoRepository insumos;
+  private final UsuarioRepository usuarios;
+  private final ServicioRepository servicios;
+  private final Path carpeta;
+  private final NavigableMap<YearMonth, Segmento> segmentos = new ConcurrentSkipListMap<>();
+
+  public MovimientoSegmentado(MovimientoRepository delegado, InsumoRepository insumos,
+      UsuarioRepository usuarios, ServicioRepository servicios) {
+    this(delegado, insumos, usuarios, servicios, Paths.get(System.getProperty("clinica.segmentos.dir", "segmentos")));
+  }
+
+  public MovimientoSegmentado(MovimientoRepository delegado, InsumoRepository insumos,
+      UsuarioRepository usuarios, ServicioRepository servicios, Path carpeta) {
+    this.delegado = delegado;
+    this.insumos = insumos;
+    this.usuarios = usuarios;
+    this.servicios = servicios;
+    this.carpeta = carpeta;
+    cargarMetadatos();
+  }
+
+  @Override
+  public void save(Movimiento m) {
+    delegado.save(m);
+  }
+
+  /**
+   * Las claves de idempotencia solo se guardan en la base (los reintentos son de minutos, no de meses)
+   */
+  @Override
+  public Optional<Movimiento> findByClaveIdempotencia(String clave) {
+    return delegado.findByClaveIdempotencia(clave);
+  }
+
+  @Override
+  public List<Movimiento> findAll() {
+    List<Movimiento> out = new ArrayList<>(delegado.findAll());
+    out.removeIf(this::enSegmento);
+    agregarDeSegmentos(out, segmentos.values(), null, null, null, null, null);
+    return ordenar(out);
+  }
+
+  @Override
+  public List<Movimiento> findByPeriodoYServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    List<Movimiento> out = new ArrayList<>(delegado.findByPeriodoYServicio(desde, hasta, servicioId));
+    out.removeIf(this::enSegmento);
+    return agregarDelPeriodo(out, desde, hasta, servicioId, null);
+  }
+
+  @Override
+  public List<Movimiento> findByPeriodoYDeposito(LocalDate desde, LocalDate hasta, int depositoId) {
+    List<Movimiento> out = new ArrayList<>(delegado.findByPeriodoYDeposito(desde, hasta, depositoId));
+    out.removeIf(this::enSegmento);
+    return agregarDelPeriodo(out, desde, hasta, null, depositoId);
+  }
+
+  private List<Movimiento> agregarDelPeriodo(List<Movimiento> out, LocalDate desde, LocalDate hasta,
+      Integer servicioId, Integer depositoId) {
+    NavigableMap<YearMonth, Segmento> candidatos = segmentos;
+    if (desde != null) {
+      candidatos = candidatos.tailMap(YearMonth.from(desde), true);
+    }
+    if (hasta != null) {
+      candidatos = candidatos.headMap(YearMonth.from(hasta), true);
+    }
+    if (candidatos.isEmpty()) {
+      return out;
+    }
+    LocalDateTime inicio = desde != null ? desde.atStartOfDay() : null;
+    LocalDateTime fin = hasta != null ? hasta.plusDays(1).atStartOfDay() : null;
+    agregarDeSegmentos(out, candidatos.values(), inicio, fin, servicioId, depositoId, null);
+    return ordenar(out);
+  }
+
+  /**
+   * Primero los segmentos del período, de a un mes (son anteriores a todo lo que sigue en la base),
+   * y después la base: en memoria queda como máximo un mes de movimientos del insumo
+   */
+  @Override
+  public void recorrerPorInsumo(String codigo, LocalDate desde, LocalDate hasta, Consumer<Movimiento> accion) {
+    LocalDateTime inicio = desde.atStartOfDay();
+    LocalDateTime fin = hasta.plusDays(1).atStartOfDay();
+    for (Segmento s : segmentos.subMap(YearMonth.from(desde), true, YearMonth.from(hasta), true).values()) {
+      List<Movimiento> delMes = new ArrayList<>();
+      agregarDeSegmentos(delMes, List.of(s), inicio, fin, null, null, codigo);
+      delMes.sort(Comparator.comparing(Movimiento::getFecha).thenComparing(Movimiento::getId));
+      delMes.forEach(accion);
+    }
+    for (LocalDate[] tramo : tramosEnBase(desde, hasta)) {
+      delegado.recorrerPorInsumo(codigo, tramo[0], tramo[1], accion);
+    }
+  }
+
+  /**
+   * Si el período toca meses compactados, la base devuelve el ranking completo de los días sin
+   * segmento y se le suman los egresos de los segmentos antes de cortar; si no, la base resuelve sola
+   */
+  @Override
+  public List<TotalConsumo> topConsumo(AgrupacionConsumo por, LocalDate desde, LocalDate hasta, Integer servicioId,
+      int limite) {
+    NavigableMap<YearMonth, Segmento> candidatos =
+        segmentos.subMap(YearMonth.from(desde), true, YearMonth.from(hasta), true);
+    if (candidatos.isEmpty()) {
+      return delegado.topConsumo(por, desde, hasta, servicioId, limite);
+    }
+    Map<String, Long> totales = new HashMap<>();
+    for (LocalDate[] tramo : tramosEnBase(desde, hasta)) {
+      for (TotalConsumo t : delegado.topConsumo(por, tramo[0], tramo[1], servicioId, Integer.MAX_VALUE)) {
+        totales.merge(t.getClave(), t.getCantidad(), Long::sum);
+      }
+    }
+
+    LocalDateTime inicio = desde.atStartOfDay();
+    LocalDateTime fin = hasta.plusDays(1).atStartOfDay();
+    for (Segmento s : candidatos.values()) {
+      if (!s.puedeContener(inicio, fin, servicioId)) {
+        continue;
+      }
+      FormatoSegmento.Columnas c;
+      try {
+        c = FormatoSegmento.leerColumnas(s);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error al leer el segmento " + s.getArchivo(), e);
+      }
+      for (int i = 0; i < c.filas; i++) {
+        if (c.tipo(i) != TipoMovimiento.EGRESO || (servicioId != null && c.servicios[i] != servicioId)) {
+          continue;
+        }
+        LocalDateTime fecha = c.fecha(i);
+        if (fecha.isBefore(inicio) || !fecha.isBefore(fin)) {
+          continue;
+        }
+        String clave = por == AgrupacionConsumo.INSUMO ? c.insumos[i]
+            : por == AgrupacionConsumo.SERVICIO ? String.valueOf(c.servicios[i])
+            : String.valueOf(c.legajos[i]);
+        totales.merge(clave, (long) c.cantidades[i], Long::sum);
+      }
+    }
+
+    List<TotalConsumo> out = new ArrayList<>();
+    totales.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+        .limit(limite)
+        .forEach(e -> out.add(new TotalConsumo(por, e.getKey(), e.getValue(), false)));
+    return out;
+  }
+
+  /**
+   * Variación neta del stock total del insumo por los movimientos compactados de los días indicados
+   * (ambos inclusive), con el mismo criterio que SaldoRepository.variacion
+   */
+  int variacionEnSegmentos(String codigo, LocalDate desde, LocalDate hasta) {
+    LocalDateTime inicio = desde.atStartOfDay();
+    LocalDateTime fin = hasta.plusDays(1).atStartOfDay();
+    int variacion = 0;
+    for (Segmento s : segmentos.subMap(YearMonth.from(desde), true, YearMonth.from(hasta), true).values()) {
+      if (!s.puedeContener(inicio, fin, null)) {
+        continue;
+      }
+      FormatoSegmento.Columnas c;
+      try {
+        c = FormatoSegmento.leerColumnas(s);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error al leer el segmento " + s.getArchivo(), e);
+      }
+      for (int i = 0; i < c.filas; i++) {
+        if (!codigo.equals(c.insumos[i])) {
+          continue;
+        }
+        LocalDateTime fecha = c.fecha(i);
+        if (fecha.isBefore(inicio) || !fecha.isBefore(fin)) {
+          continue;
+        }
+        switch (c.tipo(i)) {
+          case INGRESO:
+          case AJUSTE:
+            variacion += c.cantidades[i];
+            break;
+          case EGRESO:
+            variacion -= c.cantidades[i];
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    return variacion;
+  }
+
+  /**
+   * Tramos de días entre las fechas indicadas (ambas inclusive) fuera de los meses compactados:
+   * las consultas que la base resuelve agregando solo se le piden en ellos
+   */
+  List<LocalDate[]> tramosEnBase(LocalDate desde, LocalDate hasta) {
+    List<LocalDate[]> tramos = new ArrayList<>();
+    LocalDate cursor = desde;
+    for (YearMonth mes : segmentos.subMap(YearMonth.from(desde), true, YearMonth.from(hasta), true).keySet()) {
+      if (cursor.isBefore(mes.atDay(1))) {
+        tramos.add(new LocalDate[] { cursor, mes.atDay(1).minusDays(1) });
+      }
+      cursor = mes.atEndOfMonth().plusDays(1);
+    }
+    if (!cursor.isAfter(hasta)) {
+      tramos.add(new LocalDate[] { cursor, hasta });
+    }
+    return tramos;
+  }
+
+  private boolean enSegmento(Movimiento m) {
+    return segmentos.containsKey(YearMonth.from(m.getFecha()));
+  }
+
+  /**
+   * Los segmentos son inmutables: solo se borra en la base
+   */
+  @Override
+  public int deleteByPeriodo(LocalDate desde, LocalDate hasta) {
+    return delegado.deleteByPeriodo(desde, hasta);
+  }
+
+  /**
+   * Registra un segmento recién escrito por el compactador
+   */
+  void registrar(Segmento segmento) {
+    segmentos.put(segmento.getMes(), segmento);
+  }
+
+  boolean tieneSegmento(YearMonth mes) {
+    return segmentos.containsKey(mes);
+  }
+
+  Segmento segmentoDe(YearMonth mes) {
+    return segmentos.get(mes);
+  }
+
+  Path archivoDe(YearMonth mes) {
+    return carpeta.resolve(String.format("%s%04d%02d%s", PREFIJO, mes.getYear(), mes.getMonthValue(), EXTENSION));
+  }
+
+  Path getCarpeta() {
+    return carpeta;
+  }
+
+  private void cargarMetadatos() {
+    if (!Files.isDirectory(carpeta)) {
+      return;
+    }
+    try (DirectoryStream<Path> archivos = Files.newDirectoryStream(carpeta, PREFIJO + "*" + EXTENSION)) {
+      for (Path archivo : archivos) {
+        Segmento s = FormatoSegmento.leerMetadatos(archivo);
+        segmentos.put(s.getMes(), s);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error al leer los segmentos de " + carpeta, e);
+    }
+  }
+
+  /**
+   * Lee los segmentos que pasan el filtro de metadatos y materializa solo las filas que coinciden
+   */
+  private void agregarDeSegmentos(List<Movimiento> out, Collection<Segmento> candidatos,
+      LocalDateTime desde, LocalDateTime hastaExclusivo, Integer servicioId, Integer depositoId, String codigo) {
+    // Las entidades relacionadas se buscan una sola vez por consulta
+    Map<String, Insumo> cacheInsumos = new HashMap<>();
+    Map<Integer, Usuario> cacheUsuarios = new HashMap<>();
+    Map<Integer, Servicio> cacheServicios = new HashMap<>();
+
+    for (Segmento s : candidatos) {
+      if (!s.puedeContener(desde, hastaExclusivo, servicioId)) {
+        continue;
+      }
+      FormatoSegmento.Columnas c;
+      try {
+        c = FormatoSegmento.leerColumnas(s);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error al leer el segmento " + s.getArchivo(), e);
+      }
+      for (int i = 0; i < c.filas; i++) {
+        if (codigo != null && !codigo.equals(c.insumos[i])) {
+          continue;
+        }
+        if (servicioId != null && c.servicios[i] != servicioId) {
+          continue;
+        }
+        if (depositoId != null && c.depositos[i] != depositoId && c.depositosDestino[i] != depositoId) {
+          continue;
+        }
+        LocalDateTime fecha = c.fecha(i);
+        if ((desde != null && fecha.isBefore(desde)) || (hastaExclusivo != null && !fecha.isBefore(hastaExclusivo))) {
+          continue;
+        }
+        out.add(materializar(c, i, fecha, cacheInsumos, cacheUsuarios, cacheServicios));
+      }
+    }
+  }
+
+  private Movimiento materializar(FormatoSegmento.Columnas c, int i, LocalDateTime fecha,
+      Map<String, Insumo> cacheInsumos, Map<Integer, Usuario> cacheUsuarios, Map<Integer, Servicio> cacheServicios) {
+    String codigo = c.insumos[i];
+    Insumo insumo = cacheInsumos.computeIfAbsent(codigo, k -> insumos.findByCodigo(k)
+        .orElseThrow(() -> new RuntimeException("Insumo no encontrado: " + k)));
+    Usuario usuario = cacheUsuarios.computeIfAbsent(c.legajos[i], k -> usuarios.findByLegajo(k)
+        .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + k)));
+    Servicio servicio = null;
+    if (c.servicios[i] != 0) {
+      servicio = cacheServicios.computeIfAbsent(c.servicios[i], k -> servicios.findById(k)
+          .orElseThrow(() -> new RuntimeException("Servicio no encontrado: " + k)));
+    }
+    Integer destino = c.depositosDestino[i] != 0 ? c.depositosDestino[i] : null;
+    Movimiento m = new Movimiento((int) c.ids[i], c.tipo(i), fecha, c.cantidades[i], usuario, insumo, servicio,
+        c.depositos[i], destino);
+    m.setCostoUnitario(c.costos[i]);
+    return m;
+  }
+
+  private static List<Movimiento> ordenar(List<Movimiento> movimientos) {
+    movimientos.sort(Comparator.comparing(Movimiento::getFecha).thenComparing(Movimiento::getId).reversed());
+    return movimientos;
+  }
+}
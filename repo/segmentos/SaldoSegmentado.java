@@ -0,0 +1,54 @@
+package repo.segmentos;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import domain.SaldoInsumo;
+import repo.SaldoRepository;
+
+/**
+ * Decorador que suma a la variación de la base la de los meses compactados en segmentos, para que
+ * el stock a una fecha y el saldo inicial del kardex sigan siendo exactos en esos meses. La base
+ * solo se consulta en los días fuera de esos meses
+ * Los saldos de cierre no se compactan: se leen y registran solo en la base
+ */
+public class SaldoSegmentado implements SaldoRepository {
+  private final SaldoRepository delegado;
+  private final MovimientoSegmentado movimientos;
+
+  public SaldoSegmentado(SaldoRepository delegado, MovimientoSegmentado movimientos) {
+    this.delegado = delegado;
+    this.movimientos = movimientos;
+  }
+
+  @Override
+  public Optional<SaldoInsumo> findUltimoHasta(String codigo, LocalDate fecha) {
+    return delegado.findUltimoHasta(codigo, fecha);
+  }
+
+  @Override
+  public Optional<SaldoInsumo> findPrimeroDesde(String codigo, LocalDate fecha) {
+    return delegado.findPrimeroDesde(codigo, fecha);
+  }
+
+  @Override
+  public int variacion(String codigo, LocalDate desde, LocalDate hasta) {
+    if (hasta.isBefore(desde)) {
+      return 0;
+    }
+    int variacion = movimientos.variacionEnSegmentos(codigo, desde, hasta);
+    // Los meses compactados se cuentan solo del segmento, aunque sus filas sigan en la base
+    for (LocalDate[] tramo : movimientos.tramosEnBase(desde, hasta)) {
+      variacion += delegado.variacion(codigo, tramo[0], tramo[1]);
+    }
+    return variacion;
+  }
+
+  /**
+   * El cierre es del día anterior, siempre dentro del horizonte de retención de la base
+   */
+  @Override
+  public int registrarCierre(LocalDate dia) {
+    return delegado.registrarCierre(dia);
+  }
+}
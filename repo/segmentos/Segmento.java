@@ -0,0 +1,67 @@
+package repo.segmentos;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Metadatos de un segmento: se leen de la cabecera sin descomprimir las filas y permiten
+ * descartar el segmento entero cuando no puede tener resultados para una consulta
+ */
+public class Segmento {
+  private final Path archivo;
+  private final YearMonth mes;
+  private final int filas;
+  private final LocalDateTime fechaMinima;
+  private final LocalDateTime fechaMaxima;
+  // Servicios presentes, ordenados
+  private final int[] servicios;
+
+  Segmento(Path archivo, YearMonth mes, int filas, LocalDateTime fechaMinima, LocalDateTime fechaMaxima,
+      int[] servicios) {
+    this.archivo = archivo;
+    this.mes = mes;
+    this.filas = filas;
+    this.fechaMinima = fechaMinima;
+    this.fechaMaxima = fechaMaxima;
+    this.servicios = servicios;
+  }
+
+  /**
+   * Indica si el segmento puede tener movimientos en [desde, hastaExclusivo) del servicio indicado
+   * (null en cualquiera de los parámetros significa sin filtro)
+   */
+  public boolean puedeContener(LocalDateTime desde, LocalDateTime hastaExclusivo, Integer servicioId) {
+    if (filas == 0) {
+      return false;
+    }
+    if (desde != null && fechaMaxima.isBefore(desde)) {
+      return false;
+    }
+    if (hastaExclusivo != null && !fechaMinima.isBefore(hastaExclusivo)) {
+      return false;
+    }
+    return servicioId == null || Arrays.binarySearch(servicios, servicioId) >= 0;
+  }
+
+  public Path getArchivo() {
+    return archivo;
+  }
+
+  public YearMonth getMes() {
+    return mes;
+  }
+
+  public int getFilas() {
+    return filas;
+  }
+
+  public LocalDateTime getFechaMinima() {
+    return fechaMinima;
+  }
+
+  public LocalDateTime getFechaMaxima() {
+    return fechaMaxima;
+  }
+}
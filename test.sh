@@ -0,0 +1,35 @@
+#!/bin/bash
+# Script para compilar y ejecutar las pruebas de Clínica Horizonte
+# Las pruebas no usan base de datos ni dependencias externas: cada una es una clase *Test con main
+
+GREEN='\033[0;32m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+rm -rf bin-test
+mkdir bin-test
+
+# Fuentes del proyecto más las de test/ (que compile.sh deja afuera)
+find . -name "*.java" -not -path "*/bin/*" -not -path "./bin-test/*" > sources-test.txt
+
+echo "Compilando pruebas..."
+javac -d bin-test --release 17 -encoding UTF-8 @sources-test.txt
+if [ $? -ne 0 ]; then
+    echo -e "${RED}✗ Error en la compilación${NC}"
+    rm sources-test.txt
+    exit 1
+fi
+rm sources-test.txt
+
+FALLAS=0
+for prueba in $(cd test && find . -name "*Test.java" | sed 's|^\./||; s|\.java$||; s|/|.|g' | sort); do
+    java -cp bin-test "$prueba" || FALLAS=$((FALLAS + 1))
+done
+
+if [ $FALLAS -eq 0 ]; then
+    echo -e "${GREEN}✓ Todas las pruebas pasaron${NC}"
+    exit 0
+else
+    echo -e "${RED}✗ $FALLAS clase(s) de prueba con fallas${NC}"
+    exit 1
+fi
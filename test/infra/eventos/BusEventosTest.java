@@ -0,0 +1,133 @@
+package infra.eventos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import domain.Insumo;
+import domain.Movimiento;
+import domain.Usuario;
+import domain.enums.EstadoInsumo;
+import domain.enums.Rol;
+import domain.enums.TipoMovimiento;
+import infra.metricas.Metricas;
+import prueba.Verificar;
+
+/**
+ * Anillo del bus: un suscriptor lento que queda más de una vuelta atrás salta al evento más antiguo
+ * que sigue en el anillo, cuenta los perdidos y nunca recibe un evento a medio sobrescribir
+ */
+public class BusEventosTest {
+  private static final Usuario USUARIO = new Usuario(1000, null, "Ana", "Pérez", Rol.ADMIN);
+
+  public static void main(String[] args) throws InterruptedException {
+    vueltaCompleta();
+    productorConcurrente();
+    Verificar.terminar("BusEventosTest");
+  }
+
+  /**
+   * El suscriptor se detiene en el primer evento mientras se publican varias vueltas del anillo
+   */
+  private static void vueltaCompleta() throws InterruptedException {
+    BusEventos bus = new BusEventos(8, new EstrategiaEspera.Bloqueante());
+    int capacidad = bus.getCapacidad();
+    int publicados = 50;
+    CountDownLatch enPrimero = new CountDownLatch(1);
+    CountDownLatch seguir = new CountDownLatch(1);
+    List<Long> secuencias = new ArrayList<>();
+    List<String> errores = new ArrayList<>();
+    bus.suscribir("prueba-vuelta", (e, secuencia, finDeLote) -> {
+      secuencias.add(secuencia);
+      if (e.getMovimientoId() != secuencia + 1 || e.getCantidad() != secuencia + 1) {
+        errores.add("secuencia " + secuencia + " con el evento " + e.getMovimientoId());
+      }
+      if (secuencia == 0) {
+        enPrimero.countDown();
+        esperar(seguir);
+      }
+    });
+
+    for (int i = 1; i <= publicados; i++) {
+      bus.publicar(movimiento(i));
+      if (i == 1) {
+        Verificar.verdadero(enPrimero.await(5, TimeUnit.SECONDS), "el suscriptor recibe el primer evento");
+      }
+    }
+    seguir.countDown();
+    bus.detener();
+
+    long perdidos = Metricas.contador("eventos.prueba-vuelta.perdidos").getValor();
+    Verificar.igual(8, capacidad, "capacidad");
+    Verificar.igual(List.of(), errores, "cada secuencia con su evento");
+    // Con el productor en la secuencia 49 se retoma desde 49 - 8 + 2 = 43: la 42 puede pisarse enseguida
+    Verificar.igual(42L, perdidos, "perdidos al quedar más de una vuelta atrás");
+    Verificar.igual(List.of(0L, 43L, 44L, 45L, 46L, 47L, 48L, 49L), secuencias, "secuencias entregadas");
+    Verificar.igual((long) publicados, secuencias.size() + perdidos, "entregados + perdidos = publicados");
+  }
+
+  /**
+   * Un productor y un suscriptor que se atrasa a ratos: ningún evento entregado está mezclado con
+   * otro y lo entregado más lo perdido cubre todo lo publicado
+   */
+  private static void productorConcurrente() throws InterruptedException {
+    BusEventos bus = new BusEventos(16, new EstrategiaEspera.Bloqueante());
+    int publicados = 20_000;
+    List<Long> secuencias = new ArrayList<>();
+    List<String> errores = new ArrayList<>();
+    bus.suscribir("prueba-concurrente", (e, secuencia, finDeLote) -> {
+      secuencias.add(secuencia);
+      int id = e.getMovimientoId();
+      if (id != secuencia + 1 || e.getCantidad() != id || !e.getCodigo().equals(codigo(id))) {
+        errores.add("secuencia " + secuencia + " mezclada: id " + id + ", cantidad " + e.getCantidad()
+            + ", código " + e.getCodigo());
+      }
+      if (secuencia % 1000 == 0) {
+        dormir();
+      }
+    });
+
+    for (int i = 1; i <= publicados; i++) {
+      bus.publicar(movimiento(i));
+    }
+    bus.detener();
+
+    long perdidos = Metricas.contador("eventos.prueba-concurrente.perdidos").getValor();
+    Verificar.igual(List.of(), errores.size() > 5 ? errores.subList(0, 5) : errores, "eventos sin mezclar");
+    boolean crecientes = true;
+    for (int i = 1; i < secuencias.size(); i++) {
+      crecientes &= secuencias.get(i) > secuencias.get(i - 1);
+    }
+    Verificar.verdadero(crecientes, "secuencias estrictamente crecientes");
+    Verificar.igual((long) publicados - 1, secuencias.get(secuencias.size() - 1), "llega hasta el último");
+    Verificar.verdadero(perdidos > 0, "el atraso hace perder eventos");
+    Verificar.igual((long) publicados, secuencias.size() + perdidos, "entregados + perdidos = publicados");
+  }
+
+  private static Movimiento movimiento(int id) {
+    Insumo insumo = new Insumo(codigo(id), "Insumo " + id, "u", 0, 0, EstadoInsumo.ACTIVO, null);
+    return new Movimiento(id, TipoMovimiento.INGRESO, LocalDateTime.now(), id, USUARIO, insumo, null);
+  }
+
+  private static String codigo(int id) {
+    return "INS-" + (id % 97);
+  }
+
+  private static void esperar(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void dormir() {
+    try {
+      Thread.sleep(5);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package infra.planificador;
+
+import java.time.LocalDateTime;
+
+import prueba.Verificar;
+
+/**
+ * Próxima ejecución de expresiones cron: pasos, rangos, fin de mes, 29 de febrero y la regla
+ * de cron para el día del mes y el de la semana
+ */
+public class ExpresionCronTest {
+
+  public static void main(String[] args) {
+    diaria();
+    pasos();
+    finDeMes();
+    bisiesto();
+    diaSemana();
+    diaMesODiaSemana();
+    invalidas();
+    Verificar.terminar("ExpresionCronTest");
+  }
+
+  private static void diaria() {
+    ExpresionCron cron = new ExpresionCron(" 0 3 * * * ");
+    Verificar.igual("0 3 * * *", cron.toString(), "expresión sin espacios sobrantes");
+    Verificar.igual(t("2024-01-01T03:00"), cron.siguiente(t("2024-01-01T02:59")), "mismo día");
+    Verificar.igual(t("2024-01-01T03:00"), cron.siguiente(LocalDateTime.parse("2024-01-01T02:59:30")),
+        "ignora los segundos");
+    Verificar.igual(t("2024-01-02T03:00"), cron.siguiente(t("2024-01-01T03:00")), "estrictamente posterior");
+    Verificar.igual(t("2025-01-01T00:00"), new ExpresionCron("0 0 1 1 *").siguiente(t("2024-12-31T23:59")),
+        "cambio de año");
+  }
+
+  private static void pasos() {
+    ExpresionCron cada15 = new ExpresionCron("*/15 * * * *");
+    Verificar.igual(t("2024-05-10T10:15"), cada15.siguiente(t("2024-05-10T10:07")), "*/15 dentro de la hora");
+    Verificar.igual(t("2024-05-10T11:00"), cada15.siguiente(t("2024-05-10T10:45")), "*/15 pasa a la hora siguiente");
+    Verificar.igual(t("2024-05-11T00:00"), cada15.siguiente(t("2024-05-10T23:45")), "*/15 pasa al día siguiente");
+
+    ExpresionCron desde5 = new ExpresionCron("5/20 * * * *");
+    Verificar.igual(t("2024-05-10T10:25"), desde5.siguiente(t("2024-05-10T10:05")), "5/20 sigue en 25");
+    Verificar.igual(t("2024-05-10T11:05"), desde5.siguiente(t("2024-05-10T10:45")), "5/20 vuelve a 5");
+
+    ExpresionCron horas = new ExpresionCron("0 8-18/4 * * *");
+    Verificar.igual(t("2024-05-10T12:00"), horas.siguiente(t("2024-05-10T08:00")), "8-18/4 sigue en 12");
+    Verificar.igual(t("2024-05-11T08:00"), horas.siguiente(t("2024-05-10T16:00")), "8-18/4 no llega a 20");
+
+    ExpresionCron lista = new ExpresionCron("0,30 6,18 * * *");
+    Verificar.igual(t("2024-05-10T06:30"), lista.siguiente(t("2024-05-10T06:00")), "lista de minutos");
+    Verificar.igual(t("2024-05-10T18:00"), lista.siguiente(t("2024-05-10T06:30")), "lista de horas");
+  }
+
+  private static void finDeMes() {
+    ExpresionCron dia31 = new ExpresionCron("0 0 31 * *");
+    Verificar.igual(t("2024-05-31T00:00"), dia31.siguiente(t("2024-04-01T00:00")), "saltea abril (30 días)");
+    Verificar.igual(t("2024-07-31T00:00"), dia31.siguiente(t("2024-05-31T00:00")), "saltea junio");
+    Verificar.igual(t("2024-03-01T00:00"), new ExpresionCron("0 0 * 3 *").siguiente(t("2024-02-29T12:00")),
+        "mes restringido empieza el día 1");
+  }
+
+  private static void bisiesto() {
+    ExpresionCron cron = new ExpresionCron("0 0 29 2 *");
+    Verificar.igual(t("2024-02-29T00:00"), cron.siguiente(t("2023-03-01T00:00")), "próximo 29 de febrero");
+    Verificar.igual(t("2028-02-29T00:00"), cron.siguiente(t("2024-02-29T00:00")), "29 de febrero cuatro años después");
+    Verificar.lanza(IllegalStateException.class, () -> new ExpresionCron("0 0 30 2 *").siguiente(t("2024-01-01T00:00")),
+        "30 de febrero no se cumple nunca");
+  }
+
+  private static void diaSemana() {
+    ExpresionCron habiles = new ExpresionCron("0 9 * * 1-5");
+    Verificar.igual(t("2024-10-07T09:00"), habiles.siguiente(t("2024-10-04T09:00")), "de viernes a lunes");
+    Verificar.igual(t("2024-10-08T09:00"), habiles.siguiente(t("2024-10-07T09:00")), "de lunes a martes");
+
+    LocalDateTime desde = t("2024-10-07T00:00");
+    Verificar.igual(t("2024-10-13T02:30"), new ExpresionCron("30 2 * * 0").siguiente(desde), "domingo como 0");
+    Verificar.igual(t("2024-10-13T02:30"), new ExpresionCron("30 2 * * 7").siguiente(desde), "domingo como 7");
+  }
+
+  private static void diaMesODiaSemana() {
+    // Con los dos restringidos alcanza con que coincida uno: el 13 o cualquier viernes
+    ExpresionCron cron = new ExpresionCron("0 0 13 * 5");
+    Verificar.igual(t("2024-10-11T00:00"), cron.siguiente(t("2024-10-05T00:00")), "viernes antes del 13");
+    Verificar.igual(t("2024-10-13T00:00"), cron.siguiente(t("2024-10-11T00:00")), "13 que no es viernes");
+    Verificar.igual(t("2024-10-18T00:00"), cron.siguiente(t("2024-10-13T00:00")), "viernes después del 13");
+
+    // Con el día del mes libre, el de la semana restringe
+    Verificar.igual(t("2024-10-18T00:00"), new ExpresionCron("0 0 */1 * 5").siguiente(t("2024-10-11T00:00")),
+        "día del mes con * y paso no amplía");
+  }
+
+  private static void invalidas() {
+    Verificar.lanza(IllegalArgumentException.class, () -> new ExpresionCron(null), "expresión nula");
+    Verificar.lanza(IllegalArgumentException.class, () -> new ExpresionCron("0 3 * *"), "cuatro campos");
+    Verificar.lanza(IllegalArgumentException.class, () -> new ExpresionCron("60 * * * *"), "minuto fuera de rango");
+    Verificar.lanza(IllegalArgumentException.class, () -> new ExpresionCron("0 0 0 * *"), "día del mes cero");
+    Verificar.lanza(IllegalArgumentException.class, () -> new ExpresionCron("5-2 * * * *"), "rango invertido");
+    Verificar.lanza(IllegalArgumentException.class, () -> new ExpresionCron("*/0 * * * *"), "paso cero");
+    Verificar.lanza(IllegalArgumentException.class, () -> new ExpresionCron("a * * * *"), "valor no numérico");
+  }
+
+  private static LocalDateTime t(String fecha) {
+    return LocalDateTime.parse(fecha);
+  }
+}
@@ -0,0 +1,148 @@
+package infra.temporizador;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import infra.metricas.Metricas;
+import prueba.Verificar;
+
+/**
+ * Rueda con pocas ranuras y tick corto: demoras de varias vueltas, tareas de la misma ranura en
+ * vueltas distintas, demoras cero o negativas, cancelación, errores y cierre
+ */
+public class RuedaTemporizadoraTest {
+  private static final long TICK_MS = 5;
+  // 8 ranuras de 5 ms: una vuelta dura 40 ms
+  private static final int RANURAS = 8;
+  // Margen para la planificación de hilos de la máquina que corre la prueba
+  private static final long TOLERANCIA_MS = 150;
+
+  public static void main(String[] args) throws InterruptedException {
+    variasVueltas();
+    mismaRanura();
+    demoraCeroONegativa();
+    cancelacion();
+    errores();
+    cierre();
+    Verificar.terminar("RuedaTemporizadoraTest");
+  }
+
+  private static void variasVueltas() throws InterruptedException {
+    try (RuedaTemporizadora rueda = rueda("vueltas")) {
+      long[] demoras = { 90, 10, 170, 50, 45 };
+      Map<Long, Long> corridas = new ConcurrentHashMap<>();
+      List<Long> orden = new CopyOnWriteArrayList<>();
+      CountDownLatch todas = new CountDownLatch(demoras.length);
+      long inicio = System.nanoTime();
+      for (long demora : demoras) {
+        rueda.programar(() -> {
+          corridas.put(demora, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+          orden.add(demora);
+          todas.countDown();
+        }, demora, TimeUnit.MILLISECONDS);
+      }
+      Verificar.igual(demoras.length, rueda.getPendientes(), "pendientes al programar");
+      Verificar.verdadero(todas.await(2, TimeUnit.SECONDS), "corren todas");
+      Verificar.igual(List.of(10L, 45L, 50L, 90L, 170L), orden, "corren en orden de vencimiento");
+      for (long demora : demoras) {
+        long corrida = corridas.get(demora);
+        Verificar.verdadero(corrida >= demora, "la tarea de " + demora + " ms no corre antes (" + corrida + " ms)");
+        Verificar.verdadero(corrida < demora + TICK_MS + TOLERANCIA_MS,
+            "la tarea de " + demora + " ms no espera vueltas de más (" + corrida + " ms)");
+      }
+      Verificar.igual(0, rueda.getPendientes(), "sin pendientes al terminar");
+    }
+  }
+
+  /**
+   * Demoras que difieren en vueltas enteras caen en la misma ranura y corren cada una en su vuelta
+   */
+  private static void mismaRanura() throws InterruptedException {
+    try (RuedaTemporizadora rueda = rueda("ranura")) {
+      long vuelta = TICK_MS * RANURAS;
+      List<Long> orden = new CopyOnWriteArrayList<>();
+      Map<Long, Long> corridas = new ConcurrentHashMap<>();
+      CountDownLatch todas = new CountDownLatch(3);
+      long inicio = System.nanoTime();
+      for (long demora : new long[] { 20 + 2 * vuelta, 20, 20 + vuelta }) {
+        rueda.programar(() -> {
+          corridas.put(demora, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+          orden.add(demora);
+          todas.countDown();
+        }, demora, TimeUnit.MILLISECONDS);
+      }
+      Verificar.verdadero(todas.await(2, TimeUnit.SECONDS), "corren las tres de la misma ranura");
+      Verificar.igual(List.of(20L, 20 + vuelta, 20 + 2 * vuelta), orden, "una por vuelta");
+      for (Map.Entry<Long, Long> c : corridas.entrySet()) {
+        Verificar.verdadero(c.getValue() >= c.getKey(), "vuelta de " + c.getKey() + " ms no corre antes ("
+            + c.getValue() + " ms)");
+      }
+    }
+  }
+
+  private static void demoraCeroONegativa() throws InterruptedException {
+    try (RuedaTemporizadora rueda = rueda("cero")) {
+      CountDownLatch corridas = new CountDownLatch(2);
+      long inicio = System.nanoTime();
+      rueda.programar(corridas::countDown, 0, TimeUnit.MILLISECONDS);
+      rueda.programar(corridas::countDown, -1, TimeUnit.SECONDS);
+      Verificar.verdadero(corridas.await(TICK_MS * 2 + TOLERANCIA_MS, TimeUnit.MILLISECONDS),
+          "demora cero o negativa corre en el próximo tick");
+      Verificar.verdadero(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < TICK_MS * 2 + TOLERANCIA_MS,
+          "sin esperar una vuelta");
+    }
+  }
+
+  private static void cancelacion() throws InterruptedException {
+    try (RuedaTemporizadora rueda = rueda("cancelar")) {
+      AtomicBoolean corrio = new AtomicBoolean();
+      RuedaTemporizadora.Tarea lejana = rueda.programar(() -> corrio.set(true), 60, TimeUnit.MILLISECONDS);
+      RuedaTemporizadora.Tarea inmediata = rueda.programar(() -> corrio.set(true), 0, TimeUnit.MILLISECONDS);
+      Verificar.verdadero(inmediata.cancelar(), "cancela antes de que la rueda la ubique");
+      Thread.sleep(20);
+      Verificar.verdadero(lejana.cancelar(), "cancela una tarea ya ubicada en su ranura");
+      Verificar.verdadero(!lejana.cancelar(), "cancelar dos veces devuelve false");
+      Verificar.igual(0, rueda.getPendientes(), "las canceladas no cuentan como pendientes");
+
+      CountDownLatch corrida = new CountDownLatch(1);
+      RuedaTemporizadora.Tarea ejecutada = rueda.programar(corrida::countDown, 0, TimeUnit.MILLISECONDS);
+      Verificar.verdadero(corrida.await(1, TimeUnit.SECONDS), "la tarea no cancelada corre");
+      Thread.sleep(100);
+      Verificar.verdadero(!corrio.get(), "las canceladas no corren (ni después de su vuelta)");
+      Verificar.verdadero(!ejecutada.cancelar(), "no se cancela una tarea que ya corrió");
+      Verificar.igual(0, rueda.getPendientes(), "pendientes después de correr");
+    }
+  }
+
+  private static void errores() throws InterruptedException {
+    try (RuedaTemporizadora rueda = rueda("errores")) {
+      CountDownLatch siguiente = new CountDownLatch(1);
+      rueda.programar(() -> {
+        throw new IllegalStateException("falla a propósito");
+      }, 0, TimeUnit.MILLISECONDS);
+      rueda.programar(siguiente::countDown, 10, TimeUnit.MILLISECONDS);
+      Verificar.verdadero(siguiente.await(1, TimeUnit.SECONDS), "una tarea que falla no detiene la rueda");
+      Verificar.igual(1L, Metricas.contador("temporizador.prueba-errores.errores").getValor(), "cuenta el error");
+    }
+  }
+
+  private static void cierre() throws InterruptedException {
+    RuedaTemporizadora rueda = rueda("cierre");
+    AtomicBoolean corrio = new AtomicBoolean();
+    rueda.programar(() -> corrio.set(true), 30, TimeUnit.MILLISECONDS);
+    rueda.close();
+    Thread.sleep(60);
+    Verificar.verdadero(!corrio.get(), "al cerrar las pendientes no corren");
+    Verificar.lanza(IllegalStateException.class, () -> rueda.programar(() -> { }, 0, TimeUnit.MILLISECONDS),
+        "no se programa en una rueda cerrada");
+  }
+
+  private static RuedaTemporizadora rueda(String nombre) {
+    return new RuedaTemporizadora("prueba-" + nombre, TICK_MS, TimeUnit.MILLISECONDS, RANURAS);
+  }
+}
@@ -0,0 +1,53 @@
+package prueba;
+
+import java.util.Objects;
+
+/**
+ * Verificaciones mínimas para las pruebas, sin dependencias externas
+ * Cada prueba es una clase con main que llama a terminar al final: sale con código 1 si
+ * falló alguna verificación, así test.sh puede cortar en la primera clase con fallas
+ */
+public final class Verificar {
+  private static int verificaciones;
+  private static int fallas;
+
+  private Verificar() {
+  }
+
+  public static void igual(Object esperado, Object actual, String que) {
+    verificaciones++;
+    if (!Objects.equals(esperado, actual)) {
+      fallas++;
+      System.out.println("  ✗ " + que + ": se esperaba <" + esperado + "> pero fue <" + actual + ">");
+    }
+  }
+
+  public static void verdadero(boolean condicion, String que) {
+    igual(true, condicion, que);
+  }
+
+  /**
+   * Verifica que la acción lance una excepción del tipo indicado
+   */
+  public static void lanza(Class<? extends Throwable> tipo, Runnable accion, String que) {
+    verificaciones++;
+    try {
+      accion.run();
+      fallas++;
+      System.out.println("  ✗ " + que + ": se esperaba " + tipo.getSimpleName() + " y no se lanzó nada");
+    } catch (Throwable e) {
+      if (!tipo.isInstance(e)) {
+        fallas++;
+        System.out.println("  ✗ " + que + ": se esperaba " + tipo.getSimpleName() + " pero fue " + e);
+      }
+    }
+  }
+
+  public static void terminar(String prueba) {
+    System.out.println((fallas == 0 ? "✓ " : "✗ ") + prueba + ": " + (verificaciones - fallas) + "/"
+        + verificaciones + " verificaciones");
+    if (fallas > 0) {
+      System.exit(1);
+    }
+  }
+}
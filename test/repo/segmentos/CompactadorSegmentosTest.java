@@ -0,0 +1,163 @@
+package repo.segmentos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import domain.Insumo;
+import domain.Movimiento;
+import domain.SaldoInsumo;
+import domain.TotalConsumo;
+import domain.enums.AgrupacionConsumo;
+import domain.enums.TipoMovimiento;
+import prueba.Verificar;
+import repo.SaldoRepository;
+import repo.memory.InsumoInMemory;
+import repo.memory.MovimientoInMemory;
+import repo.memory.ServicioInMemory;
+import repo.memory.UsuarioInMemory;
+
+/**
+ * Un mes compactado se cuenta una sola vez aunque sus filas sigan en la base: entre la escritura
+ * del segmento y el borrado, si el borrado falla y después de reiniciar
+ */
+public class CompactadorSegmentosTest {
+  private static final LocalDate DESDE = LocalDate.of(2023, 1, 1);
+  private static final LocalDate HASTA = LocalDate.of(2023, 2, 28);
+
+  private static final InsumoInMemory INSUMOS = new InsumoInMemory();
+  private static final UsuarioInMemory USUARIOS = new UsuarioInMemory();
+  private static final ServicioInMemory SERVICIOS = new ServicioInMemory();
+
+  public static void main(String[] args) throws IOException {
+    Path dir = Files.createTempDirectory("compactador-test");
+    try {
+      BaseConBorradoFallido base = new BaseConBorradoFallido();
+      Insumo gasas = INSUMOS.findByCodigo("GAS-01").orElseThrow();
+      base.save(movimiento(1, TipoMovimiento.INGRESO, LocalDateTime.of(2023, 1, 5, 9, 0), 100, gasas));
+      base.save(movimiento(2, TipoMovimiento.EGRESO, LocalDateTime.of(2023, 1, 20, 11, 0), 30, gasas));
+      base.save(movimiento(3, TipoMovimiento.EGRESO, LocalDateTime.of(2023, 2, 3, 8, 0), 10, gasas));
+
+      MovimientoSegmentado segmentado = segmentado(base, dir);
+      CompactadorSegmentos compactador = new CompactadorSegmentos(segmentado, base);
+      base.fallarBorrado = true;
+      Verificar.lanza(IllegalStateException.class, () -> compactador.compactarAnterioresA(YearMonth.of(2023, 2)),
+          "el borrado del mes falla");
+      Verificar.verdadero(segmentado.tieneSegmento(YearMonth.of(2023, 1)), "el segmento quedó registrado");
+      Verificar.igual(3, base.findAll().size(), "las filas siguen en la base");
+      verificarUnaVez(segmentado, base, "con el segmento escrito y el mes en la base");
+
+      // Al reiniciar, el segmento se vuelve a cargar de la carpeta con el mes todavía en la base
+      verificarUnaVez(segmentado(base, dir), base, "después de reiniciar");
+
+      base.fallarBorrado = false;
+      Verificar.igual(1, new CompactadorSegmentos(segmentado, base).compactarAnterioresA(YearMonth.of(2023, 2)),
+          "el reintento compacta el mes");
+      Verificar.igual(1, base.findAll().size(), "solo queda febrero en la base");
+      verificarUnaVez(segmentado, base, "con el mes borrado de la base");
+
+      List<LocalDate[]> tramos = segmentado.tramosEnBase(LocalDate.of(2022, 12, 15), HASTA);
+      Verificar.igual(2, tramos.size(), "tramos alrededor del mes compactado");
+      Verificar.igual(LocalDate.of(2022, 12, 31), tramos.get(0)[1], "el primer tramo termina antes del mes");
+      Verificar.igual(LocalDate.of(2023, 2, 1), tramos.get(1)[0], "el segundo tramo empieza después del mes");
+    } finally {
+      try (Stream<Path> archivos = Files.list(dir)) {
+        for (Path p : archivos.toList()) {
+          Files.delete(p);
+        }
+      }
+      Files.delete(dir);
+    }
+    Verificar.terminar("CompactadorSegmentosTest");
+  }
+
+  private static void verificarUnaVez(MovimientoSegmentado segmentado, MovimientoInMemory base, String cuando) {
+    Verificar.igual(3, segmentado.findAll().size(), "findAll " + cuando);
+    Verificar.igual(3, segmentado.findByPeriodoYServicio(DESDE, HASTA, null).size(),
+        "findByPeriodoYServicio " + cuando);
+    Verificar.igual(3, segmentado.findByPeriodoYDeposito(DESDE, HASTA, 1).size(), "findByPeriodoYDeposito " + cuando);
+
+    AtomicInteger recorridos = new AtomicInteger();
+    segmentado.recorrerPorInsumo("GAS-01", DESDE, HASTA, m -> recorridos.incrementAndGet());
+    Verificar.igual(3, recorridos.get(), "recorrerPorInsumo " + cuando);
+
+    List<TotalConsumo> top = segmentado.topConsumo(AgrupacionConsumo.INSUMO, DESDE, HASTA, null, 10);
+    Verificar.igual(40L, top.get(0).getCantidad(), "topConsumo " + cuando);
+
+    SaldoSegmentado saldos = new SaldoSegmentado(new SaldoDeBase(base), segmentado);
+    Verificar.igual(60, saldos.variacion("GAS-01", DESDE, HASTA), "variación " + cuando);
+  }
+
+  private static MovimientoSegmentado segmentado(MovimientoInMemory base, Path dir) {
+    return new MovimientoSegmentado(base, INSUMOS, USUARIOS, SERVICIOS, dir);
+  }
+
+  private static Movimiento movimiento(int id, TipoMovimiento tipo, LocalDateTime fecha, int cantidad, Insumo insumo) {
+    return new Movimiento(id, tipo, fecha, cantidad, USUARIOS.findByLegajo(2000).orElseThrow(), insumo,
+        tipo == TipoMovimiento.EGRESO ? SERVICIOS.findById(1).orElseThrow() : null);
+  }
+
+  /**
+   * Base en memoria cuyo borrado por período se puede hacer fallar
+   */
+  private static final class BaseConBorradoFallido extends MovimientoInMemory {
+    boolean fallarBorrado;
+
+    @Override
+    public int deleteByPeriodo(LocalDate desde, LocalDate hasta) {
+      if (fallarBorrado) {
+        throw new IllegalStateException("Conexión perdida al borrar " + desde + " - " + hasta);
+      }
+      return super.deleteByPeriodo(desde, hasta);
+    }
+  }
+
+  /**
+   * Variación calculada de los movimientos de la base, como SaldoJDBC
+   */
+  private static final class SaldoDeBase implements SaldoRepository {
+    private final MovimientoInMemory base;
+
+    SaldoDeBase(MovimientoInMemory base) {
+      this.base = base;
+    }
+
+    @Override
+    public Optional<SaldoInsumo> findUltimoHasta(String codigo, LocalDate fecha) {
+      return Optional.empty();
+    }
+
+    @Override
+    public Optional<SaldoInsumo> findPrimeroDesde(String codigo, LocalDate fecha) {
+      return Optional.empty();
+    }
+
+    @Override
+    public int variacion(String codigo, LocalDate desde, LocalDate hasta) {
+      int variacion = 0;
+      for (Movimiento m : base.findByPeriodoYServicio(desde, hasta, null)) {
+        if (!m.getInsumo().getCodigo().equals(codigo)) {
+          continue;
+        }
+        if (m.getTipo() == TipoMovimiento.INGRESO || m.getTipo() == TipoMovimiento.AJUSTE) {
+          variacion += m.getCantidad();
+        } else if (m.getTipo() == TipoMovimiento.EGRESO) {
+          variacion -= m.getCantidad();
+        }
+      }
+      return variacion;
+    }
+
+    @Override
+    public int registrarCierre(LocalDate dia) {
+      return 0;
+    }
+  }
+}
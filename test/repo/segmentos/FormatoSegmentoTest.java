@@ -0,0 +1,159 @@
+package repo.segmentos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import domain.Deposito;
+import domain.Insumo;
+import domain.Movimiento;
+import domain.Servicio;
+import domain.Usuario;
+import domain.enums.EstadoInsumo;
+import domain.enums.Rol;
+import domain.enums.TipoMovimiento;
+import prueba.Verificar;
+
+/**
+ * Ida y vuelta del formato de segmentos: columnas, costo, ajustes negativos y rechazo de archivos
+ * ajenos, de otra versión o truncados
+ */
+public class FormatoSegmentoTest {
+  private static final YearMonth MES = YearMonth.of(2024, 2);
+  private static final Usuario USUARIO = new Usuario(1000, null, "Ana", "Pérez", Rol.AUXILIAR);
+  private static final Insumo GASAS = new Insumo("GAS-01", "Gasas", "paquete", 0, 0, EstadoInsumo.ACTIVO, null);
+  private static final Insumo GUANTES = new Insumo("GUA-01", "Guantes", "caja", 0, 0, EstadoInsumo.ACTIVO, null);
+  private static final Servicio GUARDIA = new Servicio(2, "Guardia");
+
+  public static void main(String[] args) throws IOException {
+    Path dir = Files.createTempDirectory("segmentos-test");
+    try {
+      idaYVuelta(dir);
+      costos(dir);
+      vacio(dir);
+      invalidos(dir);
+    } finally {
+      try (Stream<Path> archivos = Files.list(dir)) {
+        for (Path p : archivos.toList()) {
+          Files.delete(p);
+        }
+      }
+      Files.delete(dir);
+    }
+    Verificar.terminar("FormatoSegmentoTest");
+  }
+
+  private static void idaYVuelta(Path dir) throws IOException {
+    LocalDateTime base = MES.atDay(10).atTime(8, 30);
+    Movimiento ingreso = new Movimiento(40, TipoMovimiento.INGRESO, base, 100, USUARIO, GASAS, null);
+    ingreso.setCostoUnitario(new BigDecimal("123.4567"));
+    Movimiento egreso = new Movimiento(7, TipoMovimiento.EGRESO, base.plusHours(2), 15, USUARIO, GASAS, GUARDIA);
+    Movimiento ajuste = new Movimiento(41, TipoMovimiento.AJUSTE, base.plusDays(3), -3, USUARIO, GUANTES, null);
+    Movimiento transferencia = new Movimiento(42, TipoMovimiento.TRANSFERENCIA, base.plusDays(3), 5, USUARIO,
+        GASAS, null, Deposito.CENTRAL, 3);
+
+    // Desordenados a propósito: el segmento los ordena por fecha e id (el id 7 queda después del 40)
+    Segmento s = FormatoSegmento.escribir(dir.resolve("2024-02.seg"), MES,
+        List.of(transferencia, ajuste, egreso, ingreso));
+    Verificar.igual(4, s.getFilas(), "filas en la cabecera");
+    Verificar.igual(base, s.getFechaMinima(), "fecha mínima");
+    Verificar.igual(base.plusDays(3), s.getFechaMaxima(), "fecha máxima");
+
+    Segmento leido = FormatoSegmento.leerMetadatos(s.getArchivo());
+    Verificar.igual(4, leido.getFilas(), "filas releídas");
+    Verificar.igual(MES, leido.getMes(), "mes releído");
+    Verificar.verdadero(leido.puedeContener(base, base.plusDays(4), GUARDIA.getId()), "contiene el servicio presente");
+    Verificar.verdadero(!leido.puedeContener(base, base.plusDays(4), 99), "descarta un servicio ausente");
+
+    FormatoSegmento.Columnas c = FormatoSegmento.leerColumnas(leido);
+    Verificar.igual("[40, 7, 41, 42]", Arrays.toString(c.ids), "ids en orden de fecha e id");
+    Verificar.igual(TipoMovimiento.INGRESO, c.tipo(0), "tipo ingreso");
+    Verificar.igual(TipoMovimiento.EGRESO, c.tipo(1), "tipo egreso");
+    Verificar.igual(TipoMovimiento.AJUSTE, c.tipo(2), "tipo ajuste");
+    Verificar.igual(TipoMovimiento.TRANSFERENCIA, c.tipo(3), "tipo transferencia");
+    Verificar.igual(base.plusHours(2), c.fecha(1), "fecha del egreso");
+    Verificar.igual("[100, 15, -3, 5]", Arrays.toString(c.cantidades), "cantidades (ajuste negativo)");
+    Verificar.igual("[1000, 1000, 1000, 1000]", Arrays.toString(c.legajos), "legajos");
+    Verificar.igual("[GAS-01, GAS-01, GUA-01, GAS-01]", Arrays.toString(c.insumos), "insumos del diccionario");
+    Verificar.igual("[0, 2, 0, 0]", Arrays.toString(c.servicios), "servicios (0 = sin servicio)");
+    Verificar.igual("[1, 1, 1, 1]", Arrays.toString(c.depositos), "depósitos");
+    Verificar.igual("[0, 0, 0, 3]", Arrays.toString(c.depositosDestino), "depósitos destino");
+    Verificar.igual(new BigDecimal("123.4567"), c.costos[0], "costo del ingreso");
+    Verificar.igual(null, c.costos[1], "egreso sin costo");
+  }
+
+  private static void costos(Path dir) throws IOException {
+    LocalDateTime fecha = MES.atDay(1).atTime(9, 0);
+    Movimiento redondeo = new Movimiento(1, TipoMovimiento.INGRESO, fecha, 1, USUARIO, GASAS, null);
+    redondeo.setCostoUnitario(new BigDecimal("1.23456"));
+    Movimiento cero = new Movimiento(2, TipoMovimiento.INGRESO, fecha, 1, USUARIO, GASAS, null);
+    cero.setCostoUnitario(BigDecimal.ZERO);
+    Movimiento grande = new Movimiento(3, TipoMovimiento.INGRESO, fecha, 1, USUARIO, GASAS, null);
+    grande.setCostoUnitario(new BigDecimal("99999999.9999"));
+
+    Segmento s = FormatoSegmento.escribir(dir.resolve("costos.seg"), MES, List.of(redondeo, cero, grande));
+    FormatoSegmento.Columnas c = FormatoSegmento.leerColumnas(s);
+    Verificar.igual(new BigDecimal("1.2346"), c.costos[0], "costo redondeado a la escala de la columna");
+    Verificar.igual(new BigDecimal("0.0000"), c.costos[1], "costo cero distinto de sin costo");
+    Verificar.igual(new BigDecimal("99999999.9999"), c.costos[2], "costo máximo de DECIMAL(12,4)");
+  }
+
+  private static void vacio(Path dir) throws IOException {
+    Segmento s = FormatoSegmento.escribir(dir.resolve("vacio.seg"), MES, List.of());
+    Segmento leido = FormatoSegmento.leerMetadatos(s.getArchivo());
+    Verificar.igual(0, leido.getFilas(), "segmento vacío");
+    Verificar.igual(MES.atDay(1).atStartOfDay(), leido.getFechaMinima(), "fecha mínima del segmento vacío");
+    Verificar.igual(0, FormatoSegmento.leerColumnas(leido).ids.length, "sin columnas");
+  }
+
+  private static void invalidos(Path dir) throws IOException {
+    Path ajeno = dir.resolve("ajeno.seg");
+    Files.write(ajeno, new byte[] { 1, 2, 3, 4, 0, 1 });
+    Verificar.lanza(UncheckedIOException.class, () -> leerMetadatos(ajeno), "rechaza un archivo sin el mágico");
+
+    LocalDateTime fecha = MES.atDay(5).atStartOfDay();
+    List<Movimiento> movimientos = new ArrayList<>();
+    for (int i = 1; i <= 500; i++) {
+      movimientos.add(new Movimiento(i, TipoMovimiento.EGRESO, fecha.plusMinutes(i * 7L), i, USUARIO,
+          i % 2 == 0 ? GASAS : GUANTES, GUARDIA));
+    }
+    byte[] completo = Files.readAllBytes(FormatoSegmento.escribir(dir.resolve("completo.seg"), MES, movimientos)
+        .getArchivo());
+
+    // La versión es el short que sigue al mágico
+    for (int version : new int[] { 0, 2, 9 }) {
+      Path otra = dir.resolve("version" + version + ".seg");
+      byte[] bytes = completo.clone();
+      bytes[4] = 0;
+      bytes[5] = (byte) version;
+      Files.write(otra, bytes);
+      Verificar.lanza(UncheckedIOException.class, () -> leerMetadatos(otra), "rechaza la versión " + version);
+    }
+
+    Path truncado = dir.resolve("truncado.seg");
+    Files.write(truncado, Arrays.copyOf(completo, completo.length / 2));
+    Verificar.lanza(UncheckedIOException.class, () -> {
+      try {
+        FormatoSegmento.leerColumnas(FormatoSegmento.leerMetadatos(truncado));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, "rechaza un segmento truncado");
+  }
+
+  private static void leerMetadatos(Path archivo) {
+    try {
+      FormatoSegmento.leerMetadatos(archivo);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package usecase;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import domain.ConsumoLote;
+import exceptions.StockInsuficienteException;
+import prueba.Verificar;
+import repo.memory.LoteInMemory;
+
+/**
+ * Elección FEFO: orden por vencimiento, lotes y stock sin lote vencidos salteados, y el stock sin
+ * lote intercalado en su lugar según el vencimiento del insumo
+ */
+public class LotesFefoTest {
+  private static final String CODIGO = "GAS-01";
+  private static final int DEPOSITO = 1;
+  private static final LocalDate HOY = LocalDate.of(2024, 6, 1);
+  // Stock del depósito: 18 en lotes (8 vencidos) y 12 sin lote
+  private static final int STOCK = 30;
+
+  public static void main(String[] args) {
+    ordenFefo();
+    vencidos();
+    sinLoteVencido();
+    sinLoteSinVencimiento();
+    desdeBase();
+    aplicar();
+    Verificar.terminar("LotesFefoTest");
+  }
+
+  private static void ordenFefo() {
+    LotesFefo fefo = fefo();
+    LocalDate sinLote = LocalDate.of(2024, 8, 1);
+    Verificar.igual("[A x3]", plan(fefo, 3, STOCK, sinLote, HOY), "sale del lote vigente que primero vence");
+    Verificar.igual("[A x4, sin lote x6]", plan(fefo, 10, STOCK, sinLote, HOY),
+        "el stock sin lote se intercala por su vencimiento");
+    Verificar.igual("[A x4, sin lote x12, B x6]", plan(fefo, 22, STOCK, sinLote, HOY), "todo lo vigente");
+    Verificar.igual("[A x1]", plan(fefo, 1, STOCK, sinLote, LocalDate.of(2024, 7, 1)),
+        "un lote que vence hoy todavía se puede usar");
+  }
+
+  private static void vencidos() {
+    LotesFefo fefo = fefo();
+    LocalDate sinLote = LocalDate.of(2024, 8, 1);
+    Verificar.igual("null", plan(fefo, 23, STOCK, sinLote, HOY), "lo vigente no alcanza aunque el stock sí");
+    Verificar.igual("[V1 x5, V2 x3, A x2]", plan(fefo, 10, STOCK, sinLote, null),
+        "sin fecha de vigencia (inventario) toma también los vencidos");
+    Verificar.igual("null", plan(fefo, 1, STOCK, sinLote, LocalDate.of(2025, 1, 1)), "todo vencido");
+  }
+
+  private static void sinLoteVencido() {
+    LotesFefo fefo = fefo();
+    LocalDate sinLote = LocalDate.of(2024, 2, 1);
+    Verificar.igual("[A x4, B x6]", plan(fefo, 10, STOCK, sinLote, HOY), "el stock sin lote vencido no se toma");
+    Verificar.igual("null", plan(fefo, 11, STOCK, sinLote, HOY), "sin el stock sin lote no alcanza");
+  }
+
+  private static void sinLoteSinVencimiento() {
+    LotesFefo fefo = fefo();
+    Verificar.igual("[A x4, B x6, sin lote x2]", plan(fefo, 12, STOCK, null, HOY),
+        "el stock sin lote sin vencimiento va al final");
+  }
+
+  private static void desdeBase() {
+    LotesFefo fefo = fefo();
+    LotesFefo.Plan plan = fefo.planificarDesdeBase(CODIGO, DEPOSITO, 22, STOCK, LocalDate.of(2024, 8, 1), HOY);
+    Verificar.igual("[A x4, sin lote x12, B x6]", texto(plan), "desde la base elige igual que en memoria");
+    try {
+      fefo.planificarDesdeBase(CODIGO, DEPOSITO, 23, STOCK, LocalDate.of(2024, 8, 1), HOY);
+      Verificar.verdadero(false, "desde la base falla si lo vigente no alcanza");
+    } catch (StockInsuficienteException e) {
+      Verificar.verdadero(e.getMessage().contains("Disponible: 22 (vencido: 8)"),
+          "el error informa lo vigente y lo vencido: " + e.getMessage());
+    }
+  }
+
+  private static void aplicar() {
+    LotesFefo fefo = fefo();
+    LocalDate sinLote = LocalDate.of(2024, 8, 1);
+    LotesFefo.Plan plan = fefo.planificar(CODIGO, DEPOSITO, 3, STOCK, sinLote, HOY);
+    fefo.aplicar(plan);
+    Verificar.igual("[A x1, sin lote x1]", plan(fefo, 2, STOCK - 3, sinLote, HOY),
+        "después de aplicar sigue por lo que quedó del lote");
+    fefo.aplicar(fefo.planificar(CODIGO, DEPOSITO, 1, STOCK - 3, sinLote, HOY));
+    Verificar.igual("[sin lote x12, B x1]", plan(fefo, 13, STOCK - 4, sinLote, HOY), "el lote agotado sale de la cola");
+  }
+
+  private static LotesFefo fefo() {
+    LoteInMemory lotes = new LoteInMemory();
+    lotes.sumar(CODIGO, DEPOSITO, "V1", LocalDate.of(2024, 1, 10), 5);
+    lotes.sumar(CODIGO, DEPOSITO, "B", LocalDate.of(2024, 9, 1), 6);
+    lotes.sumar(CODIGO, DEPOSITO, "A", LocalDate.of(2024, 7, 1), 4);
+    lotes.sumar(CODIGO, DEPOSITO, "V2", LocalDate.of(2024, 3, 1), 3);
+    lotes.sumar(CODIGO, 2, "OTRO", LocalDate.of(2024, 6, 15), 50);
+    return new LotesFefo(lotes);
+  }
+
+  private static String plan(LotesFefo fefo, int cant, int stockAntes, LocalDate sinLote, LocalDate vigenteDesde) {
+    return texto(fefo.planificar(CODIGO, DEPOSITO, cant, stockAntes, sinLote, vigenteDesde));
+  }
+
+  private static String texto(LotesFefo.Plan plan) {
+    if (plan == null) {
+      return "null";
+    }
+    List<String> partes = new ArrayList<>();
+    for (ConsumoLote c : plan.getConsumos()) {
+      partes.add((c.esSinLote() ? "sin lote" : c.getNumero()) + " x" + c.getCantidad());
+    }
+    return partes.toString();
+  }
+}
@@ -0,0 +1,186 @@
+package usecase;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import domain.CostoConsumo;
+import domain.Insumo;
+import domain.Movimiento;
+import domain.Servicio;
+import domain.Usuario;
+import domain.ValuacionInsumo;
+import domain.enums.TipoMovimiento;
+import prueba.Verificar;
+import repo.memory.InsumoInMemory;
+import repo.memory.ServicioInMemory;
+import repo.memory.UsuarioInMemory;
+import repo.memory.ValuacionInMemory;
+
+/**
+ * Valuación FIFO y promedio ponderado sobre pendientes: costos de salida, redondeo de importes y
+ * promedios, salidas que agotan las capas y entradas sin costo
+ */
+public class ValuacionStockTest {
+  private static final LocalDateTime FECHA = LocalDateTime.of(2024, 6, 3, 10, 0);
+  private static final LocalDate DIA = FECHA.toLocalDate();
+
+  private static final Usuario USUARIO = new UsuarioInMemory().findByLegajo(1000).orElseThrow();
+  private static final Insumo GASAS = new InsumoInMemory().findByCodigo("GAS-01").orElseThrow();
+  private static final Servicio SERVICIO = new ServicioInMemory().findById(1).orElseThrow();
+
+  private static int movimientos;
+
+  public static void main(String[] args) {
+    fifoYPromedio();
+    porTramos();
+    redondeo();
+    capasAgotadas();
+    sinCosto();
+    faltantesYTransferencias();
+    Verificar.terminar("ValuacionStockTest");
+  }
+
+  private static void fifoYPromedio() {
+    ValuacionStock valuacion = new ValuacionStock(new ValuacionInMemory());
+    valuacion.encolar(ingreso(10, "100"));
+    valuacion.encolar(ingreso(10, "130"));
+    valuacion.encolar(egreso(15));
+    valuacion.aplicarPendientes(10);
+
+    CostoConsumo c = unico(valuacion.consumo(DIA, DIA, null));
+    Verificar.igual(1, c.getServicioId(), "consumo del servicio del egreso");
+    Verificar.igual(15L, c.getCantidad(), "cantidad consumida");
+    Verificar.igual(new BigDecimal("1650.0000"), c.getCostoFifo(), "FIFO: 10 a 100 y 5 a 130");
+    Verificar.igual(new BigDecimal("1725.0000"), c.getCostoPromedio(), "promedio: 15 a 115");
+
+    ValuacionInsumo v = valuacion(valuacion);
+    Verificar.igual(5, v.getCantidad(), "cantidad valuada");
+    Verificar.igual(new BigDecimal("650.0000"), v.getValorFifo(), "valor FIFO: lo que queda de la capa a 130");
+    Verificar.igual(new BigDecimal("115.000000"), v.getCostoPromedio(), "la salida no cambia el promedio");
+    Verificar.igual(new BigDecimal("575.0000"), v.getValorPromedio(), "valor al promedio");
+    Verificar.igual(0, valuacion.consumo(DIA.plusDays(1), DIA.plusDays(2), null).size(), "fuera del período");
+  }
+
+  private static void porTramos() {
+    ValuacionStock valuacion = new ValuacionStock(new ValuacionInMemory());
+    valuacion.encolar(ingreso(10, "100"));
+    valuacion.encolar(ingreso(10, "130"));
+    valuacion.encolar(egreso(15));
+    Verificar.igual(2, valuacion.aplicarPendientes(2), "lee hasta el límite");
+    Verificar.igual(1, valuacion.aplicarPendientes(2), "lee lo que queda");
+    Verificar.igual(0, valuacion.aplicarPendientes(2), "sin pendientes");
+    Verificar.igual(new BigDecimal("1650.0000"), unico(valuacion.consumo(DIA, DIA, null)).getCostoFifo(),
+        "aplicar por tramos da lo mismo");
+  }
+
+  private static void redondeo() {
+    ValuacionStock valuacion = new ValuacionStock(new ValuacionInMemory());
+    valuacion.encolar(ingreso(2, "1"));
+    valuacion.encolar(ingreso(1, "2"));
+    valuacion.aplicarPendientes(10);
+    Verificar.igual(new BigDecimal("1.333333"), valuacion(valuacion).getCostoPromedio(),
+        "promedio 4/3 con seis decimales");
+    Verificar.igual(new BigDecimal("4.0000"), valuacion(valuacion).getValorFifo(), "importe con cuatro decimales");
+
+    valuacion.encolar(egreso(2));
+    valuacion.aplicarPendientes(10);
+    CostoConsumo c = unico(valuacion.consumo(DIA, DIA, null));
+    Verificar.igual(new BigDecimal("2.0000"), c.getCostoFifo(), "FIFO: 2 de la capa a 1");
+    Verificar.igual(new BigDecimal("2.6667"), c.getCostoPromedio(), "2 x 1.333333 redondeado a cuatro decimales");
+    Verificar.igual(new BigDecimal("2.0000"), valuacion(valuacion).getValorFifo(), "queda la capa a 2");
+
+    // El costo de la capa se guarda con cuatro decimales y el valor se redondea al final
+    ValuacionStock otra = new ValuacionStock(new ValuacionInMemory());
+    otra.encolar(ingreso(3, "0.33335"));
+    otra.aplicarPendientes(10);
+    Verificar.igual(new BigDecimal("1.0000"), valuacion(otra).getValorFifo(), "1.00005 redondea al par");
+    Verificar.igual(new BigDecimal("0.333350"), valuacion(otra).getCostoPromedio(), "promedio sin perder decimales");
+  }
+
+  private static void capasAgotadas() {
+    ValuacionStock valuacion = new ValuacionStock(new ValuacionInMemory());
+    valuacion.encolar(ingreso(4, "10"));
+    valuacion.encolar(ingreso(4, "20"));
+    valuacion.encolar(egreso(6));
+    valuacion.aplicarPendientes(10);
+    Verificar.igual(new BigDecimal("80.0000"), unico(valuacion.consumo(DIA, DIA, null)).getCostoFifo(),
+        "4 a 10 y 2 a 20");
+
+    // Quedan 2 en capas: los otros 3 son stock anterior a la valuación y salen al promedio (15)
+    valuacion.encolar(egreso(5));
+    valuacion.aplicarPendientes(10);
+    CostoConsumo c = unico(valuacion.consumo(DIA, DIA, null));
+    Verificar.igual(new BigDecimal("165.0000"), c.getCostoFifo(), "80 + 2 a 20 + 3 al promedio");
+    Verificar.igual(new BigDecimal("165.0000"), c.getCostoPromedio(), "11 a 15");
+    ValuacionInsumo v = valuacion(valuacion);
+    Verificar.igual(0, v.getCantidad(), "sin capas no queda cantidad valuada");
+    Verificar.igual(new BigDecimal("0.0000"), v.getValorFifo(), "sin capas no queda valor FIFO");
+    Verificar.igual(new BigDecimal("15.000000"), v.getCostoPromedio(), "el promedio se conserva");
+  }
+
+  private static void sinCosto() {
+    ValuacionStock valuacion = new ValuacionStock(new ValuacionInMemory());
+    valuacion.encolar(ingreso(10, "100"));
+    valuacion.encolar(sobrante(5));
+    valuacion.encolar(ingreso(5, "160"));
+    valuacion.aplicarPendientes(10);
+    ValuacionInsumo v = valuacion(valuacion);
+    Verificar.igual(20, v.getCantidad(), "el sobrante suma cantidad");
+    Verificar.igual(new BigDecimal("115.000000"), v.getCostoPromedio(), "el sobrante entra al promedio (100)");
+    Verificar.igual(new BigDecimal("2300.0000"), v.getValorFifo(), "y como capa a 100");
+
+    // Sale la capa de 10, la del sobrante y 2 de la última
+    valuacion.encolar(egreso(17));
+    valuacion.aplicarPendientes(10);
+    Verificar.igual(new BigDecimal("1820.0000"), unico(valuacion.consumo(DIA, DIA, null)).getCostoFifo(),
+        "10 a 100, 5 a 100 y 2 a 160");
+
+    // Sin valuación previa el promedio es cero: la entrada sin costo no inventa valor
+    ValuacionStock vacia = new ValuacionStock(new ValuacionInMemory());
+    vacia.encolar(ingreso(4, null));
+    vacia.aplicarPendientes(10);
+    Verificar.igual(4, valuacion(vacia).getCantidad(), "entra la cantidad");
+    Verificar.igual(new BigDecimal("0.0000"), valuacion(vacia).getValorFifo(), "a costo cero");
+  }
+
+  private static void faltantesYTransferencias() {
+    ValuacionStock valuacion = new ValuacionStock(new ValuacionInMemory());
+    valuacion.encolar(ingreso(10, "50"));
+    valuacion.encolar(new Movimiento(++movimientos, TipoMovimiento.TRANSFERENCIA, FECHA, 4, USUARIO, GASAS, null, 1, 2));
+    valuacion.encolar(new Movimiento(++movimientos, TipoMovimiento.AJUSTE, FECHA, -3, USUARIO, GASAS, null));
+    Verificar.igual(2, valuacion.aplicarPendientes(10), "la transferencia no se anota");
+
+    CostoConsumo c = unico(valuacion.consumo(DIA, DIA, null));
+    Verificar.igual(CostoConsumo.FALTANTES_INVENTARIO, c.getServicioId(), "el faltante va a su servicio");
+    Verificar.igual(new BigDecimal("150.0000"), c.getCostoFifo(), "3 a 50");
+    Verificar.igual(0, valuacion.consumo(DIA, DIA, 1).size(), "filtra por servicio");
+    Verificar.igual(7, valuacion(valuacion).getCantidad(), "la transferencia no cambia la cantidad");
+  }
+
+  private static Movimiento ingreso(int cantidad, String costo) {
+    Movimiento m = new Movimiento(++movimientos, TipoMovimiento.INGRESO, FECHA, cantidad, USUARIO, GASAS, null);
+    m.setCostoUnitario(costo != null ? new BigDecimal(costo) : null);
+    return m;
+  }
+
+  private static Movimiento sobrante(int cantidad) {
+    return new Movimiento(++movimientos, TipoMovimiento.AJUSTE, FECHA, cantidad, USUARIO, GASAS, null);
+  }
+
+  private static Movimiento egreso(int cantidad) {
+    return new Movimiento(++movimientos, TipoMovimiento.EGRESO, FECHA, cantidad, USUARIO, GASAS, SERVICIO);
+  }
+
+  private static ValuacionInsumo valuacion(ValuacionStock valuacion) {
+    List<ValuacionInsumo> todas = valuacion.valuacion();
+    Verificar.igual(1, todas.size(), "una valuación por insumo");
+    return todas.get(0);
+  }
+
+  private static CostoConsumo unico(List<CostoConsumo> consumo) {
+    Verificar.igual(1, consumo.size(), "un servicio en el consumo");
+    return consumo.get(0);
+  }
+}
@@ -0,0 +1,30 @@
+package usecase;
+
+import java.time.LocalDate;
+
+import infra.alertas.GestorAlertas;
+import infra.alertas.TipoAlerta;
+import infra.eventos.MovimientoRegistrado;
+import infra.eventos.SuscriptorMovimientos;
+
+/**
+ * Suscriptor del bus que emite las alertas de stock crítico y de vencimiento próximo
+ * El gestor de alertas agrupa las repeticiones, por lo que se evalúa en cada movimiento
+ */
+public class AlertasStock implements SuscriptorMovimientos {
+  private static final int DIAS_ALERTA_VENCIMIENTO = Integer.getInteger("clinica.alertas.diasVencimiento", 30);
+
+  @Override
+  public void alRecibir(MovimientoRegistrado e, long secuencia, boolean finDeLote) {
+    if (e.getStockResultante() <= e.getStockMinimo()) {
+      GestorAlertas.emitir(TipoAlerta.STOCK_CRITICO, e.getCodigo(),
+          "Stock crítico en " + e.getNombre() + ": " + e.getStockResultante() + " (mínimo " + e.getStockMinimo() + ")");
+    }
+    LocalDate vencimiento = e.getFechaVencimiento();
+    if (vencimiento != null && vencimiento.isBefore(LocalDate.now().plusDays(DIAS_ALERTA_VENCIMIENTO))) {
+      boolean vencido = vencimiento.isBefore(LocalDate.now());
+      GestorAlertas.emitir(TipoAlerta.VENCIMIENTO, e.getCodigo(),
+          e.getNombre() + (vencido ? " venció el " : " vence el ") + vencimiento);
+    }
+  }
+}
@@ -1,21 +1,64 @@
 package usecase;
 
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import domain.Usuario;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
 import repo.UsuarioRepository;
+import exceptions.AutenticacionNoDisponibleException;
 import exceptions.CredencialesInvalidasException;
 
 public class AutenticacionService {
+  // Límites del pool de verificación: como máximo la mitad de los núcleos para no
+  // quitarle CPU a las transacciones de stock durante un pico de logins
+  private static final int HILOS_VERIFICACION =
+      Integer.getInteger("clinica.auth.hilos", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  private static final int COLA_VERIFICACION = Integer.getInteger("clinica.auth.cola", 32);
+  private static final long TIMEOUT_VERIFICACION_MS = 10_000;
+  private static final Histograma VERIFICACION = Metricas.histograma("auth.verificacion");
+
   private final UsuarioRepository usuarios;
+  private final PasswordHasher hasher;
+  private final ThreadPoolExecutor verificadores;
+  // Hash de referencia para que un legajo inexistente cueste lo mismo que uno válido
+  private final String hashFicticio;
+
+  // Métricas de verificación
+  private final AtomicLong verificaciones = new AtomicLong();
+  private final AtomicLong rechazadasPorSaturacion = new AtomicLong();
+  private final AtomicLong nanosTotales = new AtomicLong();
+  private final AtomicLong nanosMaximo = new AtomicLong();
+  private final AtomicLong rehashes = new AtomicLong();
 
   public AutenticacionService(UsuarioRepository usuarios) {
+    this(usuarios, new PasswordHasher(), HILOS_VERIFICACION, COLA_VERIFICACION);
+  }
+
+  public AutenticacionService(UsuarioRepository usuarios, PasswordHasher hasher, int hilos, int limiteCola) {
     this.usuarios = usuarios;
+    this.hasher = hasher;
+    this.verificadores = crearPool(hilos, limiteCola);
+    this.hashFicticio = hasher.hash("clinica-horizonte");
   }
 
   /**
    * Realiza el login del usuario
-   * 
-   * @throws CredencialesInvalidasException si las credenciales son inválidas
-   * @throws IllegalArgumentException       si los parámetros son inválidos
+   * La verificación del hash corre en un pool acotado; si el hash es de texto
+   * plano o tiene un costo distinto al actual se regenera de forma transparente
+   *
+   * @throws CredencialesInvalidasException     si las credenciales son inválidas
+   * @throws AutenticacionNoDisponibleException si el pool de verificación está saturado
+   * @throws IllegalArgumentException           si los parámetros son inválidos
    */
   public Usuario login(int legajo, String pass) {
     if (legajo <= 0) {
@@ -25,9 +68,115 @@ public class AutenticacionService {
       throw new IllegalArgumentException("Contraseña inválida");
     }
 
-    Usuario usuario = usuarios.findByLegajoAndPassword(legajo, pass)
-        .orElseThrow(() -> new CredencialesInvalidasException("Credenciales inválidas"));
+    Optional<Usuario> encontrado = usuarios.findByLegajo(legajo).filter(Usuario::isActivo);
+    String almacenado = encontrado.map(Usuario::getPassword).orElse(hashFicticio);
 
+    boolean valido = verificar(pass, almacenado) && encontrado.isPresent();
+    if (!valido) {
+      throw new CredencialesInvalidasException("Credenciales inválidas");
+    }
+
+    Usuario usuario = encontrado.get();
+    if (hasher.necesitaRehash(almacenado)) {
+      migrarPassword(usuario, pass);
+    }
     return usuario;
   }
+
+  /**
+   * Detiene el pool de verificación
+   */
+  public void cerrar() {
+    verificadores.shutdown();
+  }
+
+  public long getVerificaciones() {
+    return verificaciones.get();
+  }
+
+  public long getRechazadasPorSaturacion() {
+    return rechazadasPorSaturacion.get();
+  }
+
+  public long getRehashes() {
+    return rehashes.get();
+  }
+
+  /**
+   * Latencia promedio de verificación en milisegundos (incluye la espera en cola)
+   */
+  public double getLatenciaPromedioMs() {
+    long n = verificaciones.get();
+    return n == 0 ? 0 : nanosTotales.get() / (double) n / 1_000_000;
+  }
+
+  public double getLatenciaMaximaMs() {
+    return nanosMaximo.get() / 1_000_000.0;
+  }
+
+  public int getPendientesEnCola() {
+    return verificadores.getQueue().size();
+  }
+
+  /**
+   * Ejecuta la verificación en el pool acotado y registra su latencia
+   */
+  private boolean verificar(String pass, String almacenado) {
+    long inicio = System.nanoTime();
+    Future<Boolean> resultado;
+    try {
+      resultado = verificadores.submit(() -> hasher.verificar(pass, almacenado));
+    } catch (RejectedExecutionException e) {
+      rechazadasPorSaturacion.incrementAndGet();
+      VERIFICACION.registrarError();
+      throw new AutenticacionNoDisponibleException("Demasiados intentos de login simultáneos. Intente nuevamente.", e);
+    }
+
+    try {
+      return resultado.get(TIMEOUT_VERIFICACION_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      resultado.cancel(true);
+      throw new AutenticacionNoDisponibleException("Verificación de credenciales interrumpida", e);
+    } catch (TimeoutException e) {
+      resultado.cancel(true);
+      throw new AutenticacionNoDisponibleException("La verificación de credenciales excedió el tiempo máximo", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Error al verificar credenciales", e.getCause());
+    } finally {
+      long duracion = System.nanoTime() - inicio;
+      verificaciones.incrementAndGet();
+      nanosTotales.addAndGet(duracion);
+      nanosMaximo.accumulateAndGet(duracion, Math::max);
+      VERIFICACION.registrar(duracion);
+    }
+  }
+
+  /**
+   * Regenera el hash con el costo actual. Un fallo aquí no impide el login
+   */
+  private void migrarPassword(Usuario usuario, String pass) {
+    try {
+      usuario.setPassword(hasher.hash(pass));
+      usuarios.update(usuario);
+      rehashes.incrementAndGet();
+    } catch (RuntimeException e) {
+      System.err.println("No se pudo actualizar el hash de la contraseña del legajo "
+          + usuario.getLegajo() + ": " + e.getMessage());
+    }
+  }
+
+  private static ThreadPoolExecutor crearPool(int hilos, int limiteCola) {
+    AtomicInteger contador = new AtomicInteger(1);
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(limiteCola),
+        r -> {
+          Thread t = new Thread(r, "auth-verificador-" + contador.getAndIncrement());
+          t.setDaemon(true);
+          t.setPriority(Thread.NORM_PRIORITY - 1);
+          return t;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+    return pool;
+  }
 }
@@ -0,0 +1,35 @@
+package usecase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import domain.Movimiento;
+
+/**
+ * Claves de idempotencia recientes con su movimiento, acotadas y con desalojo LRU
+ * Un reintento que llega poco después del original se responde desde acá sin ir a la base;
+ * las claves desalojadas siguen protegidas por la clave primaria de claves_idempotencia
+ *
+ * Configuración:
+ *   -Dclinica.idempotencia.capacidad=10000
+ */
+final class CacheIdempotencia {
+  private static final int CAPACIDAD = Integer.getInteger("clinica.idempotencia.capacidad", 10_000);
+
+  private final Map<String, Movimiento> recientes = new LinkedHashMap<>(256, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Movimiento> mayor) {
+      return size() > CAPACIDAD;
+    }
+  };
+
+  synchronized Movimiento get(String clave) {
+    return recientes.get(clave);
+  }
+
+  synchronized void put(String clave, Movimiento movimiento) {
+    recientes.put(clave, movimiento);
+  }
+}
@@ -0,0 +1,31 @@
+package usecase;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Corte de día cerrado compartido por los saldos de cierre y la caché de reportes
+ * Un egreso con fecha de las 23:59 puede confirmarse unos instantes después de medianoche, así que
+ * el día anterior sigue abierto durante un margen
+ *
+ * Configuración:
+ *   -Dclinica.cierre.margenMin=5   minutos después de medianoche en que el día anterior sigue abierto
+ */
+final class CierreDiario {
+  private static final Duration MARGEN = Duration.ofMinutes(Long.getLong("clinica.cierre.margenMin", 5));
+
+  private CierreDiario() {
+  }
+
+  /**
+   * Último día cuyos movimientos ya no pueden cambiar
+   */
+  static LocalDate ultimoDiaCerrado() {
+    return LocalDateTime.now().minus(MARGEN).toLocalDate().minusDays(1);
+  }
+
+  static boolean estaCerrado(LocalDate dia) {
+    return !dia.isAfter(ultimoDiaCerrado());
+  }
+}
@@ -0,0 +1,80 @@
+package usecase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import domain.TotalConsumo;
+import domain.enums.AgrupacionConsumo;
+import domain.enums.TipoMovimiento;
+import infra.eventos.MovimientoRegistrado;
+import infra.eventos.SuscriptorMovimientos;
+import infra.frecuencias.MasFrecuentes;
+
+/**
+ * Ranking aproximado de consumo (egresos) por insumo, servicio y usuario desde el arranque,
+ * para tableros en vivo. Se alimenta como suscriptor del bus de eventos de movimientos y cada
+ * egreso se suma en O(1) a un count-min sketch con su montículo de candidatas, en memoria fija
+ * sin importar cuántos insumos o movimientos haya. Las consultas exactas por período van por SQL
+ * (ReportesService.topConsumo)
+ *
+ * Configuración:
+ *   -Dclinica.topConsumo.candidatas=100   claves que sigue cada ranking (el top más grande que se puede pedir)
+ *   -Dclinica.topConsumo.ancho=4096       contadores por fila del sketch
+ *   -Dclinica.topConsumo.profundidad=4    filas del sketch
+ */
+public class ConsumoEnVivo implements SuscriptorMovimientos {
+  private static final int CANDIDATAS = Integer.getInteger("clinica.topConsumo.candidatas", 100);
+  private static final int ANCHO = Integer.getInteger("clinica.topConsumo.ancho", 4096);
+  private static final int PROFUNDIDAD = Integer.getInteger("clinica.topConsumo.profundidad", 4);
+
+  private final MasFrecuentes<String> porInsumo = new MasFrecuentes<>(CANDIDATAS, ANCHO, PROFUNDIDAD);
+  private final MasFrecuentes<Integer> porServicio = new MasFrecuentes<>(CANDIDATAS, ANCHO, PROFUNDIDAD);
+  private final MasFrecuentes<Integer> porUsuario = new MasFrecuentes<>(CANDIDATAS, ANCHO, PROFUNDIDAD);
+
+  @Override
+  public void alRecibir(MovimientoRegistrado e, long secuencia, boolean finDeLote) {
+    if (e.getTipo() != TipoMovimiento.EGRESO) {
+      return;
+    }
+    porInsumo.sumar(e.getCodigo(), e.getCantidad());
+    porServicio.sumar(e.getServicioId(), e.getCantidad());
+    porUsuario.sumar(e.getLegajo(), e.getCantidad());
+  }
+
+  /**
+   * Las n claves con más consumo estimado desde el arranque, de mayor a menor
+   *
+   * @throws IllegalArgumentException si n no es positivo o supera las candidatas seguidas
+   */
+  public List<TotalConsumo> top(AgrupacionConsumo por, int n) {
+    if (n <= 0 || n > CANDIDATAS) {
+      throw new IllegalArgumentException("El ranking en vivo admite entre 1 y " + CANDIDATAS + " posiciones");
+    }
+    List<TotalConsumo> out = new ArrayList<>();
+    for (Map.Entry<?, Long> e : ranking(por).top(n)) {
+      out.add(new TotalConsumo(por, e.getKey().toString(), e.getValue(), true));
+    }
+    return out;
+  }
+
+  /**
+   * Vuelve a empezar los rankings (por ejemplo, al comenzar un turno)
+   */
+  public void reiniciar() {
+    porInsumo.reiniciar();
+    porServicio.reiniciar();
+    porUsuario.reiniciar();
+  }
+
+  private MasFrecuentes<?> ranking(AgrupacionConsumo por) {
+    switch (por) {
+      case INSUMO:
+        return porInsumo;
+      case SERVICIO:
+        return porServicio;
+      default:
+        return porUsuario;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package usecase;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import domain.AnomaliaConsumo;
+import domain.Movimiento;
+import domain.enums.AmbitoAnomalia;
+import domain.enums.TipoMovimiento;
+import infra.alertas.GestorAlertas;
+import infra.alertas.TipoAlerta;
+import infra.eventos.MovimientoRegistrado;
+import infra.eventos.SuscriptorMovimientos;
+import infra.metricas.Contador;
+import infra.metricas.Metricas;
+
+/**
+ * Detector en línea de egresos fuera de lo habitual
+ * Mantiene media y varianza exponencialmente ponderadas de la cantidad de cada egreso por insumo y
+ * servicio, y de la cantidad de egresos por día de cada usuario. Cada egreso confirmado se compara
+ * con la línea de base y la actualiza en O(1), sin leer la base; lo que supera el umbral de z-score
+ * queda en el historial de hallazgos y se emite como alerta ANOMALIA.
+ * Se alimenta como suscriptor del bus de eventos de movimientos
+ *
+ * Configuración:
+ *   -Dclinica.anomalias.z=4.0            desvíos por encima de la media que cuentan como anomalía
+ *   -Dclinica.anomalias.alfa=0.1         peso de cada observación nueva en la media móvil
+ *   -Dclinica.anomalias.minMuestras=8    observaciones antes de empezar a evaluar una línea de base
+ *   -Dclinica.anomalias.estacional=false línea de base separada por día de la semana
+ *   -Dclinica.anomalias.historial=500    hallazgos que se conservan para consultar
+ */
+public class DetectorAnomalias implements SuscriptorMovimientos {
+  private static final double Z = Double.parseDouble(System.getProperty("clinica.anomalias.z", "4.0"));
+  private static final double ALFA = Double.parseDouble(System.getProperty("clinica.anomalias.alfa", "0.1"));
+  private static final int MIN_MUESTRAS = Integer.getInteger("clinica.anomalias.minMuestras", 8);
+  private static final boolean ESTACIONAL = Boolean.getBoolean("clinica.anomalias.estacional");
+  private static final int HISTORIAL = Integer.getInteger("clinica.anomalias.historial", 500);
+  // Piso del desvío relativo a la media: con egresos siempre iguales el desvío es cero y
+  // cualquier diferencia mínima daría un puntaje infinito
+  private static final double DESVIO_MINIMO_RELATIVO = 0.25;
+  private static final Contador DETECTADAS = Metricas.contador("anomalias.detectadas");
+
+  private final Map<String, Linea> porInsumoYServicio = new ConcurrentHashMap<>();
+  private final Map<String, LineaDiaria> porUsuario = new ConcurrentHashMap<>();
+  private final ArrayDeque<AnomaliaConsumo> hallazgos = new ArrayDeque<>();
+
+  /**
+   * Precarga las líneas de base con movimientos históricos, sin registrar hallazgos ni alertas
+   */
+  public void calentar(List<Movimiento> historial) {
+    List<Movimiento> ordenados = new ArrayList<>(historial);
+    ordenados.sort(Comparator.comparing(Movimiento::getFecha));
+    for (Movimiento m : ordenados) {
+      if (m.getTipo() == TipoMovimiento.EGRESO) {
+        evaluar(m.getInsumo().getCodigo(), m.getServicio().getId(), m.getUsuario().getLegajo(), m.getCantidad(),
+            m.getFecha(), false);
+      }
+    }
+  }
+
+  @Override
+  public void alRecibir(MovimientoRegistrado e, long secuencia, boolean finDeLote) {
+    if (e.getTipo() == TipoMovimiento.EGRESO) {
+      evaluar(e.getCodigo(), e.getServicioId(), e.getLegajo(), e.getCantidad(), e.getFecha(), true);
+    }
+  }
+
+  /**
+   * Hallazgos desde la fecha indicada, del más reciente al más viejo
+   *
+   * @param desde  null para todos los que se conservan
+   * @param ambito null para ambos ámbitos
+   */
+  public List<AnomaliaConsumo> anomalias(LocalDateTime desde, AmbitoAnomalia ambito) {
+    List<AnomaliaConsumo> out = new ArrayList<>();
+    synchronized (hallazgos) {
+      Iterator<AnomaliaConsumo> it = hallazgos.descendingIterator();
+      while (it.hasNext()) {
+        AnomaliaConsumo a = it.next();
+        if (desde != null && a.getFecha().isBefore(desde)) {
+          continue;
+        }
+        if (ambito == null || a.getAmbito() == ambito) {
+          out.add(a);
+        }
+      }
+    }
+    return out;
+  }
+
+  private void evaluar(String codigo, int servicioId, int legajo, int cantidad, LocalDateTime fecha,
+      boolean registrar) {
+    Linea linea = porInsumoYServicio.computeIfAbsent(clave(codigo + "#" + servicioId, fecha), k -> new Linea());
+    double[] base = linea.observar(cantidad);
+    if (base != null && registrar) {
+      registrar(new AnomaliaConsumo(AmbitoAnomalia.INSUMO_SERVICIO, codigo, servicioId, legajo, fecha, cantidad,
+          base[0], base[1]));
+    }
+    LineaDiaria diaria = porUsuario.computeIfAbsent(clave(String.valueOf(legajo), fecha), k -> new LineaDiaria());
+    base = diaria.contar(fecha.toLocalDate().toEpochDay());
+    if (base != null && registrar) {
+      registrar(new AnomaliaConsumo(AmbitoAnomalia.USUARIO, codigo, servicioId, legajo, fecha, base[2],
+          base[0], base[1]));
+    }
+  }
+
+  private void registrar(AnomaliaConsumo a) {
+    DETECTADAS.incrementar();
+    synchronized (hallazgos) {
+      if (hallazgos.size() >= HISTORIAL) {
+        hallazgos.pollFirst();
+      }
+      hallazgos.addLast(a);
+    }
+    if (a.getAmbito() == AmbitoAnomalia.INSUMO_SERVICIO) {
+      GestorAlertas.emitir(TipoAlerta.ANOMALIA, a.getCodigo(), String.format(
+          "Egreso inusual de %s en el servicio %d: %.0f unidades (habitual %.1f ± %.1f, legajo %d)",
+          a.getCodigo(), a.getServicioId(), a.getValor(), a.getMedia(), a.getDesvio(), a.getLegajo()));
+    } else {
+      GestorAlertas.emitir(TipoAlerta.ANOMALIA, "usuario-" + a.getLegajo(), String.format(
+          "Egresos inusuales del legajo %d: %.0f en el día (habitual %.1f ± %.1f)",
+          a.getLegajo(), a.getValor(), a.getMedia(), a.getDesvio()));
+    }
+  }
+
+  private static String clave(String base, LocalDateTime fecha) {
+    return ESTACIONAL ? base + "@" + fecha.getDayOfWeek().getValue() : base;
+  }
+
+  /**
+   * Desvío usado para el puntaje, con piso relativo a la media (y nunca menor a una unidad)
+   */
+  private static double desvioEfectivo(double media, double varianza) {
+    return Math.max(Math.sqrt(varianza), Math.max(media * DESVIO_MINIMO_RELATIVO, 1));
+  }
+
+  /**
+   * Media y varianza exponencialmente ponderadas de una serie de observaciones
+   */
+  static final class Linea {
+    private long muestras;
+    private double media;
+    private double varianza;
+
+    /**
+     * Compara la observación con la línea de base y la incorpora
+     *
+     * @return {media, desvío} previos si la observación es una anomalía, null si no
+     */
+    synchronized double[] observar(double valor) {
+      double[] anomalia = null;
+      double incorporado = valor;
+      if (muestras >= MIN_MUESTRAS) {
+        double desvio = desvioEfectivo(media, varianza);
+        double limite = media + Z * desvio;
+        if (valor > limite) {
+          anomalia = new double[] { media, desvio };
+          // Se incorpora recortada para que un pico aislado no corra la línea de base
+          incorporado = limite;
+        }
+      }
+      if (muestras == 0) {
+        media = incorporado;
+      } else {
+        double diferencia = incorporado - media;
+        double incremento = ALFA * diferencia;
+        media += incremento;
+        varianza = (1 - ALFA) * (varianza + diferencia * incremento);
+      }
+      muestras++;
+      return anomalia;
+    }
+  }
+
+  /**
+   * Cantidad de egresos por día: el día abierto se compara contra la línea de base de los días
+   * anteriores y se incorpora a ella al cerrarse. Solo cuentan los días con actividad (turnos)
+   */
+  static final class LineaDiaria {
+    private final Linea dias = new Linea();
+    private long diaAbierto = Long.MIN_VALUE;
+    private int egresos;
+    private boolean informado;
+
+    /**
+     * Suma un egreso al día indicado
+     *
+     * @return {media, desvío, egresos del día} la primera vez en el día que se supera el umbral, null si no
+     */
+    synchronized double[] contar(long dia) {
+      if (dia > diaAbierto) {
+        if (diaAbierto != Long.MIN_VALUE) {
+          dias.observar(egresos);
+        }
+        diaAbierto = dia;
+        egresos = 0;
+        informado = false;
+      }
+      // Los eventos atrasados se suman al día abierto
+      egresos++;
+      if (informado || dias.muestras < MIN_MUESTRAS) {
+        return null;
+      }
+      double desvio = desvioEfectivo(dias.media, dias.varianza);
+      if (egresos <= dias.media + Z * desvio) {
+        return null;
+      }
+      informado = true;
+      return new double[] { dias.media, desvio, egresos };
+    }
+  }
+}
@@ -8,10 +8,16 @@ import repo.UsuarioRepository;
 
 public class GestionUsuariosService {
   private final UsuarioRepository usuarios;
+  private final PasswordHasher hasher;
   private static final int MIN_PASSWORD_LENGTH = 6;
 
   public GestionUsuariosService(UsuarioRepository usuarios) {
+    this(usuarios, new PasswordHasher());
+  }
+
+  public GestionUsuariosService(UsuarioRepository usuarios, PasswordHasher hasher) {
     this.usuarios = usuarios;
+    this.hasher = hasher;
   }
 
   /**
@@ -21,28 +27,38 @@ public class GestionUsuariosService {
    */
   public void alta(Usuario u) {
     validarDatosUsuario(u);
+    validarPassword(u.getPassword());
 
     // Verificar que el legajo no exista
     if (usuarios.findByLegajo(u.getLegajo()).isPresent()) {
       throw new IllegalArgumentException("Ya existe un usuario con ese legajo");
     }
 
+    u.setPassword(hasher.hash(u.getPassword()));
     usuarios.save(u);
   }
 
   /**
    * Edita un usuario existente
+   * La contraseña del usuario recibido se ignora: si nuevaPassword es null o vacía se conserva la
+   * actual (ya hasheada), si no se valida y se guarda su hash
    * 
    * @throws IllegalArgumentException     si los datos son inválidos
    * @throws EntidadNoEncontradaException si el usuario no existe
    */
-  public void editar(Usuario u) {
+  public void editar(Usuario u, String nuevaPassword) {
     validarDatosUsuario(u);
 
     // Verificar que el usuario exista
-    usuarios.findByLegajo(u.getLegajo())
+    Usuario actual = usuarios.findByLegajo(u.getLegajo())
         .orElseThrow(() -> new EntidadNoEncontradaException("Usuario no encontrado"));
 
+    if (nuevaPassword == null || nuevaPassword.isEmpty()) {
+      u.setPassword(actual.getPassword());
+    } else {
+      validarPassword(nuevaPassword);
+      u.setPassword(hasher.hash(nuevaPassword));
+    }
     usuarios.update(u);
   }
 
@@ -93,11 +109,19 @@ public class GestionUsuariosService {
     if (u.getApellido() == null || u.getApellido().trim().isEmpty()) {
       throw new IllegalArgumentException("El apellido es requerido");
     }
-    if (u.getPassword() == null || u.getPassword().length() < MIN_PASSWORD_LENGTH) {
-      throw new IllegalArgumentException("La contraseña debe tener al menos " + MIN_PASSWORD_LENGTH + " caracteres");
-    }
     if (u.getRol() == null) {
       throw new IllegalArgumentException("El rol es requerido");
     }
   }
+
+  /**
+   * Valida una contraseña en texto plano antes de hashearla
+   * 
+   * @throws IllegalArgumentException si es demasiado corta
+   */
+  private void validarPassword(String password) {
+    if (password == null || password.length() < MIN_PASSWORD_LENGTH) {
+      throw new IllegalArgumentException("La contraseña debe tener al menos " + MIN_PASSWORD_LENGTH + " caracteres");
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package usecase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import domain.Insumo;
+import domain.ResultadoImportacion;
+import domain.enums.EstadoInsumo;
+import exceptions.DatabaseException;
+import repo.InsumoRepository;
+import repo.jdbc.TransactionManager;
+
+/**
+ * Importa el catálogo de insumos del proveedor desde un CSV
+ * El archivo se lee línea por línea (nunca completo en memoria), cada fila se valida y las
+ * válidas se envían a la base en lotes con upsertAll, un lote por transacción
+ *
+ * Formato: codigo;nombre;unidad;stock_minimo;fecha_vencimiento
+ *   - separador ';' o ',' (se detecta en la primera línea), encabezado opcional
+ *   - campos entre comillas dobles si contienen el separador
+ *   - fecha_vencimiento opcional, en formato AAAA-MM-DD
+ * Los insumos nuevos entran con stock 0; a los existentes solo se les actualizan los datos de catálogo
+ */
+public class ImportacionCatalogoService {
+  private static final int TAMANIO_LOTE = Integer.getInteger("clinica.importacion.lote", 2000);
+  private static final int LARGO_CODIGO = 30;
+  private static final int LARGO_NOMBRE = 120;
+  private static final int LARGO_UNIDAD = 20;
+
+  private final InsumoRepository insumos;
+
+  public ImportacionCatalogoService(InsumoRepository insumos) {
+    this.insumos = insumos;
+  }
+
+  /**
+   * @throws IOException si no se puede leer el archivo
+   */
+  public ResultadoImportacion importar(Path archivo) throws IOException {
+    try (BufferedReader in = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+      return importar(in);
+    }
+  }
+
+  public ResultadoImportacion importar(Reader origen) throws IOException {
+    long inicio = System.nanoTime();
+    BufferedReader in = origen instanceof BufferedReader ? (BufferedReader) origen : new BufferedReader(origen);
+    ResultadoImportacion resultado = new ResultadoImportacion();
+    Set<String> vistos = new HashSet<>();
+    List<Insumo> lote = new ArrayList<>(TAMANIO_LOTE);
+    List<String> campos = new ArrayList<>(5);
+
+    char separador = 0;
+    int numeroLinea = 0;
+    String linea;
+    while ((linea = in.readLine()) != null) {
+      numeroLinea++;
+      if (linea.isBlank()) {
+        continue;
+      }
+      if (separador == 0) {
+        separador = linea.indexOf(';') >= 0 ? ';' : ',';
+        if (linea.replace("\"", "").trim().toLowerCase().startsWith("codigo")) {
+          continue;
+        }
+      }
+
+      String error = separar(linea, separador, campos);
+      Insumo insumo = null;
+      if (error == null) {
+        try {
+          insumo = convertir(campos);
+        } catch (IllegalArgumentException e) {
+          error = e.getMessage();
+        }
+      }
+      if (error == null && !vistos.add(insumo.getCodigo())) {
+        error = "código repetido en el archivo: " + insumo.getCodigo();
+      }
+      if (error != null) {
+        resultado.rechazar(numeroLinea, error);
+        continue;
+      }
+
+      lote.add(insumo);
+      if (lote.size() == TAMANIO_LOTE) {
+        aplicar(lote, resultado);
+      }
+    }
+    aplicar(lote, resultado);
+
+    resultado.setDuracionMs((System.nanoTime() - inicio) / 1_000_000);
+    return resultado;
+  }
+
+  private void aplicar(List<Insumo> lote, ResultadoImportacion resultado) {
+    if (lote.isEmpty()) {
+      return;
+    }
+    try {
+      TransactionManager.beginTransaction();
+      int insertados = insumos.upsertAll(lote);
+      TransactionManager.commit();
+      resultado.sumarInsertados(insertados);
+      resultado.sumarActualizados(lote.size() - insertados);
+    } catch (SQLException e) {
+      TransactionManager.rollback();
+      throw new DatabaseException("Error al importar el catálogo", e);
+    } catch (RuntimeException e) {
+      TransactionManager.rollback();
+      throw e;
+    }
+    lote.clear();
+  }
+
+  /**
+   * Convierte una fila en Insumo
+   *
+   * @throws IllegalArgumentException con el motivo si la fila no es válida
+   */
+  private Insumo convertir(List<String> campos) {
+    if (campos.size() < 4 || campos.size() > 5) {
+      throw new IllegalArgumentException("se esperaban 4 o 5 columnas y hay " + campos.size());
+    }
+    String codigo = campos.get(0).trim().toUpperCase();
+    String nombre = campos.get(1).trim();
+    String unidad = campos.get(2).trim();
+    validarLargo("código", codigo, LARGO_CODIGO);
+    validarLargo("nombre", nombre, LARGO_NOMBRE);
+    validarLargo("unidad", unidad, LARGO_UNIDAD);
+
+    int stockMinimo;
+    try {
+      stockMinimo = Integer.parseInt(campos.get(3).trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("stock mínimo inválido: " + campos.get(3));
+    }
+
+    LocalDate vencimiento = null;
+    if (campos.size() == 5 && !campos.get(4).isBlank()) {
+      try {
+        vencimiento = LocalDate.parse(campos.get(4).trim());
+      } catch (DateTimeParseException e) {
+        throw new IllegalArgumentException("fecha de vencimiento inválida: " + campos.get(4));
+      }
+    }
+
+    // El constructor valida vacíos y negativos
+    return new Insumo(codigo, nombre, unidad, 0, stockMinimo, EstadoInsumo.ACTIVO, vencimiento);
+  }
+
+  private static void validarLargo(String campo, String valor, int maximo) {
+    if (valor.length() > maximo) {
+      throw new IllegalArgumentException("el " + campo + " supera los " + maximo + " caracteres");
+    }
+  }
+
+  /**
+   * Separa una línea en campos respetando comillas dobles ("" dentro de comillas es una comilla)
+   *
+   * @return motivo del error, o null si la línea es válida
+   */
+  static String separar(String linea, char separador, List<String> campos) {
+    campos.clear();
+    StringBuilder actual = new StringBuilder();
+    boolean entreComillas = false;
+    for (int i = 0; i < linea.length(); i++) {
+      char c = linea.charAt(i);
+      if (entreComillas) {
+        if (c == '"') {
+          if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+            actual.append('"');
+            i++;
+          } else {
+            entreComillas = false;
+          }
+        } else {
+          actual.append(c);
+        }
+      } else if (c == '"') {
+        entreComillas = true;
+      } else if (c == separador) {
+        campos.add(actual.toString());
+        actual.setLength(0);
+      } else {
+        actual.append(c);
+      }
+    }
+    if (entreComillas) {
+      return "comillas sin cerrar";
+    }
+    campos.add(actual.toString());
+    return null;
+  }
+}
@@ -0,0 +1,251 @@
+package usecase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import domain.DiferenciaInventario;
+import domain.Insumo;
+import domain.ResultadoConteo;
+import domain.Usuario;
+import exceptions.EntidadNoEncontradaException;
+import repo.InsumoRepository;
+
+/**
+ * Conciliación de un inventario físico (conteo de estanterías) contra el stock del sistema
+ * El archivo de conteo se lee línea por línea y las filas válidas se agrupan en tramos que se
+ * concilian en paralelo: cada tramo lee el stock de todos sus códigos en una consulta y, al aplicar,
+ * registra los ajustes (movimientos AJUSTE) en su propia transacción. Los movimientos AJUSTE con su
+ * usuario y fecha son el registro de auditoría del conteo.
+ * Volver a procesar el mismo conteo no ajusta dos veces: lo ya ajustado no tiene diferencia
+ *
+ * Formato: codigo;cantidad
+ *   - separador ';' o ',' (se detecta en la primera línea), encabezado opcional
+ *   - un archivo por depósito; los insumos que no figuran no se tocan
+ *
+ * Configuración:
+ *   -Dclinica.inventario.tramo=500   filas por tramo (una transacción cada uno)
+ *   -Dclinica.inventario.hilos=4     tramos que se concilian a la vez
+ */
+public class InventarioService {
+  private static final int TAMANIO_TRAMO = Integer.getInteger("clinica.inventario.tramo", 500);
+  private static final int HILOS = Integer.getInteger("clinica.inventario.hilos", 4);
+
+  private final StockService stock;
+  private final InsumoRepository insumos;
+
+  public InventarioService(StockService stock, InsumoRepository insumos) {
+    this.stock = stock;
+    this.insumos = insumos;
+  }
+
+  /**
+   * @throws IOException si no se puede leer el archivo
+   */
+  public ResultadoConteo conciliar(Path archivo, int depositoId, boolean aplicar, Usuario actor) throws IOException {
+    try (BufferedReader in = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+      return conciliar(in, depositoId, aplicar, actor);
+    }
+  }
+
+  /**
+   * Compara el conteo con el stock del depósito y, si se pide, ajusta cada diferencia
+   *
+   * @param aplicar false para solo calcular las diferencias (vista previa)
+   * @throws IllegalArgumentException     si falta el usuario
+   * @throws EntidadNoEncontradaException si no existe el depósito
+   */
+  public ResultadoConteo conciliar(Reader origen, int depositoId, boolean aplicar, Usuario actor) throws IOException {
+    if (actor == null) {
+      throw new IllegalArgumentException("El usuario es requerido");
+    }
+    stock.validarDeposito(depositoId);
+    long inicio = System.nanoTime();
+    BufferedReader in = origen instanceof BufferedReader ? (BufferedReader) origen : new BufferedReader(origen);
+    ResultadoConteo resultado = new ResultadoConteo(depositoId, aplicar);
+    Set<String> catalogo = new HashSet<>();
+    for (Insumo i : insumos.findAll()) {
+      catalogo.add(i.getCodigo());
+    }
+
+    AtomicInteger numeroHilo = new AtomicInteger();
+    ExecutorService hilos = Executors.newFixedThreadPool(HILOS, r -> {
+      Thread t = new Thread(r, "inventario-" + numeroHilo.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    // Acota los tramos leídos y todavía sin conciliar: el archivo nunca está completo en memoria
+    Semaphore enCurso = new Semaphore(HILOS * 2);
+    ArrayDeque<Tramo> tramos = new ArrayDeque<>();
+    try {
+      Set<String> vistos = new HashSet<>();
+      List<String> campos = new ArrayList<>(2);
+      Tramo tramo = new Tramo();
+      char separador = 0;
+      int numeroLinea = 0;
+      String linea;
+      while ((linea = in.readLine()) != null) {
+        numeroLinea++;
+        if (linea.isBlank()) {
+          continue;
+        }
+        if (separador == 0) {
+          separador = linea.indexOf(';') >= 0 ? ';' : ',';
+          if (linea.replace("\"", "").trim().toLowerCase().startsWith("codigo")) {
+            continue;
+          }
+        }
+
+        String error = ImportacionCatalogoService.separar(linea, separador, campos);
+        String codigo = null;
+        int cantidad = 0;
+        if (error == null && campos.size() != 2) {
+          error = "se esperaban 2 columnas y hay " + campos.size();
+        }
+        if (error == null) {
+          codigo = campos.get(0).trim().toUpperCase();
+          try {
+            cantidad = Integer.parseInt(campos.get(1).trim());
+            if (cantidad < 0) {
+              error = "cantidad negativa: " + cantidad;
+            }
+          } catch (NumberFormatException e) {
+            error = "cantidad inválida: " + campos.get(1);
+          }
+        }
+        if (error == null && !catalogo.contains(codigo)) {
+          error = "insumo inexistente: " + codigo;
+        }
+        if (error == null && !vistos.add(codigo)) {
+          error = "código repetido en el archivo: " + codigo;
+        }
+        if (error != null) {
+          resultado.rechazar(numeroLinea, error);
+          continue;
+        }
+
+        tramo.agregar(numeroLinea, codigo, cantidad);
+        if (tramo.contados.size() == TAMANIO_TRAMO) {
+          enviar(tramo, hilos, enCurso, depositoId, aplicar, actor);
+          tramos.add(tramo);
+          tramo = new Tramo();
+          // Los tramos terminados se suman enseguida para soltar sus filas
+          while (!tramos.isEmpty() && tramos.peekFirst().futuro.isDone()) {
+            juntar(tramos.pollFirst(), resultado);
+          }
+        }
+      }
+      if (!tramo.contados.isEmpty()) {
+        enviar(tramo, hilos, enCurso, depositoId, aplicar, actor);
+        tramos.add(tramo);
+      }
+
+      while (!tramos.isEmpty()) {
+        juntar(tramos.pollFirst(), resultado);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Conciliación interrumpida", e);
+    } finally {
+      hilos.shutdownNow();
+    }
+
+    resultado.setDuracionMs((System.nanoTime() - inicio) / 1_000_000);
+    return resultado;
+  }
+
+  /**
+   * Escribe las diferencias en CSV separado por ';' (reporte de discrepancias del conteo)
+   */
+  public void exportarDiferencias(ResultadoConteo resultado, Writer out) throws IOException {
+    out.write("codigo;deposito;sistema;contado;diferencia;movimiento\n");
+    StringBuilder fila = new StringBuilder();
+    for (DiferenciaInventario d : resultado.getDiferencias()) {
+      fila.setLength(0);
+      fila.append(d.getCodigo()).append(';')
+          .append(d.getDepositoId()).append(';')
+          .append(d.getSistema()).append(';')
+          .append(d.getContado()).append(';')
+          .append(d.getDiferencia()).append(';')
+          .append(d.getMovimientoId() != 0 ? String.valueOf(d.getMovimientoId()) : "")
+          .append('\n');
+      out.write(fila.toString());
+    }
+    out.flush();
+  }
+
+  private void enviar(Tramo tramo, ExecutorService hilos, Semaphore enCurso, int depositoId, boolean aplicar,
+      Usuario actor) throws InterruptedException {
+    enCurso.acquire();
+    tramo.futuro = hilos.submit(() -> {
+      try {
+        return aplicar
+            ? stock.ajustarInventario(depositoId, tramo.contados, actor)
+            : comparar(depositoId, tramo.contados);
+      } finally {
+        enCurso.release();
+      }
+    });
+  }
+
+  private List<DiferenciaInventario> comparar(int depositoId, Map<String, Integer> contados) {
+    Map<String, Integer> sistema = insumos.stockEnDeposito(depositoId, contados.keySet(), false);
+    List<DiferenciaInventario> diferencias = new ArrayList<>();
+    for (Map.Entry<String, Integer> e : contados.entrySet()) {
+      int enSistema = sistema.getOrDefault(e.getKey(), 0);
+      if (e.getValue() != enSistema) {
+        diferencias.add(new DiferenciaInventario(e.getKey(), depositoId, enSistema, e.getValue(), 0));
+      }
+    }
+    return diferencias;
+  }
+
+  /**
+   * Suma el resultado del tramo; si falló, sus filas quedan sin conciliar y el resto sigue
+   */
+  private static void juntar(Tramo t, ResultadoConteo resultado) throws InterruptedException {
+    try {
+      resultado.agregarDiferencias(t.futuro.get());
+      resultado.sumarContados(t.contados.size());
+    } catch (ExecutionException e) {
+      Throwable causa = e.getCause() != null ? e.getCause() : e;
+      resultado.fallarTramo(t.primeraLinea, t.ultimaLinea, t.contados.size(),
+          causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName());
+    }
+  }
+
+  /**
+   * Filas consecutivas del archivo que se concilian juntas
+   */
+  private static final class Tramo {
+    final Map<String, Integer> contados = new LinkedHashMap<>();
+    int primeraLinea;
+    int ultimaLinea;
+    Future<List<DiferenciaInventario>> futuro;
+
+    void agregar(int linea, String codigo, int cantidad) {
+      if (contados.isEmpty()) {
+        primeraLinea = linea;
+      }
+      ultimaLinea = linea;
+      contados.put(codigo, cantidad);
+    }
+  }
+}
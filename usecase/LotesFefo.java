@@ -0,0 +1,311 @@
+package usecase;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import domain.ConsumoLote;
+import domain.Lote;
+import exceptions.StockInsuficienteException;
+import repo.LoteRepository;
+
+/**
+ * Lotes de cada insumo y depósito ordenados por vencimiento, para elegir FEFO (primero el que
+ * primero vence) sin consultar la base en cada egreso. Elegir k lotes cuesta O(k + log n) aunque el
+ * insumo tenga cientos de lotes abiertos: los vencidos quedan al principio del orden y no se recorren.
+ * Cada cola se carga de la base la primera vez que se usa y se actualiza después de cada commit.
+ * Lleva una generación que cambia con cada actualización: si un cambio se planificó sobre una
+ * generación que ya no es la vigente (operaciones concurrentes) la cola se descarta y se recarga,
+ * así nunca se aplica dos veces ni sobre un estado que no correspondía.
+ * El stock del depósito que no está en ningún lote se trata como un lote más con el vencimiento
+ * del insumo (o al final si no tiene)
+ * Los egresos y transferencias no toman lotes vencidos (ni stock sin lote vencido): si lo que queda
+ * sin vencer no alcanza, el egreso falla aunque el stock total alcance
+ */
+final class LotesFefo {
+  private static final Comparator<Entrada> FEFO =
+      Comparator.comparing((Entrada e) -> e.vencimiento).thenComparingLong(e -> e.id);
+  // Única entre todas las colas, así una cola recargada nunca repite la generación de la descartada
+  private static final AtomicLong GENERACIONES = new AtomicLong();
+
+  private final LoteRepository lotes;
+  private final Map<String, Cola> colas = new ConcurrentHashMap<>();
+
+  LotesFefo(LoteRepository lotes) {
+    this.lotes = lotes;
+  }
+
+  /**
+   * Elige de qué lotes sale la cantidad según la cola en memoria
+   *
+   * @param stockAntes         stock del depósito antes del egreso
+   * @param vencimientoSinLote vencimiento del stock que no está en lotes (el del insumo, puede ser null)
+   * @param vigenteDesde       se saltean los lotes que vencen antes de esta fecha (null: se toman todos)
+   * @return null si la cola no alcanza a cubrir la cantidad (no coincide con la base o solo queda vencido)
+   */
+  Plan planificar(String codigo, int depositoId, int cant, int stockAntes, LocalDate vencimientoSinLote,
+      LocalDate vigenteDesde) {
+    Cola cola = cola(codigo, depositoId);
+    synchronized (cola) {
+      List<ConsumoLote> consumos = elegir(cola, cant, stockAntes, vencimientoSinLote, vigenteDesde);
+      return consumos == null ? null : new Plan(codigo, depositoId, cola.generacion, consumos);
+    }
+  }
+
+  /**
+   * Elige con los lotes leídos de la base en la transacción en curso, sin usar ni guardar la cola
+   * en memoria (que se descarta); para cuando la cola no coincidió con la base
+   *
+   * @throws StockInsuficienteException si lo que queda sin vencer no alcanza
+   */
+  Plan planificarDesdeBase(String codigo, int depositoId, int cant, int stockAntes, LocalDate vencimientoSinLote,
+      LocalDate vigenteDesde) {
+    invalidar(codigo, depositoId);
+    Cola cola = cargar(codigo, depositoId);
+    List<ConsumoLote> consumos = elegir(cola, cant, stockAntes, vencimientoSinLote, vigenteDesde);
+    if (consumos != null) {
+      return new Plan(codigo, depositoId, -1, consumos);
+    }
+    int vigente = vigente(cola, stockAntes, vencimientoSinLote, vigenteDesde);
+    if (vigente < cant) {
+      throw new StockInsuficienteException("Stock sin vencer insuficiente en el depósito " + depositoId
+          + ". Disponible: " + vigente + " (vencido: " + (stockAntes - vigente) + ")");
+    }
+    return null;
+  }
+
+  /**
+   * Indica si el insumo tiene stock en lotes en el depósito (carga la cola si hace falta)
+   */
+  boolean tieneLotes(String codigo, int depositoId) {
+    Cola cola = cola(codigo, depositoId);
+    synchronized (cola) {
+      return cola.suma > 0;
+    }
+  }
+
+  /**
+   * Generación vigente de la cola, para pasarla a sumar() después del commit (0 si no está cargada)
+   */
+  long generacion(String codigo, int depositoId) {
+    Cola cola = colas.get(clave(codigo, depositoId));
+    if (cola == null) {
+      return 0;
+    }
+    synchronized (cola) {
+      return cola.generacion;
+    }
+  }
+
+  /**
+   * Descuenta de la cola los lotes de un egreso ya confirmado
+   */
+  void aplicar(Plan plan) {
+    String k = clave(plan.codigo, plan.depositoId);
+    Cola cola = colas.get(k);
+    if (cola == null) {
+      return;
+    }
+    synchronized (cola) {
+      if (cola.generacion != plan.generacion) {
+        colas.remove(k, cola);
+        return;
+      }
+      for (ConsumoLote c : plan.consumos) {
+        if (c.esSinLote()) {
+          continue;
+        }
+        Entrada e = cola.porId.get(c.getLoteId());
+        if (e == null || e.cantidad < c.getCantidad()) {
+          colas.remove(k, cola);
+          return;
+        }
+        cola.quitar(e, c.getCantidad());
+      }
+      cola.generacion = GENERACIONES.incrementAndGet();
+    }
+  }
+
+  /**
+   * Suma a la cola los lotes de un ingreso ya confirmado
+   *
+   * @param generacionPrevia la generación leída antes de empezar la transacción
+   */
+  void sumar(String codigo, int depositoId, long generacionPrevia, List<ConsumoLote> entradas) {
+    String k = clave(codigo, depositoId);
+    Cola cola = colas.get(k);
+    if (cola == null) {
+      return;
+    }
+    synchronized (cola) {
+      if (cola.generacion != generacionPrevia) {
+        colas.remove(k, cola);
+        return;
+      }
+      for (ConsumoLote c : entradas) {
+        if (!c.esSinLote()) {
+          cola.agregar(c.getLoteId(), c.getNumero(), c.getVencimiento(), c.getCantidad());
+        }
+      }
+      cola.generacion = GENERACIONES.incrementAndGet();
+    }
+  }
+
+  void invalidar(String codigo, int depositoId) {
+    colas.remove(clave(codigo, depositoId));
+  }
+
+  private Cola cola(String codigo, int depositoId) {
+    String k = clave(codigo, depositoId);
+    Cola cola = colas.get(k);
+    if (cola == null) {
+      // Se carga fuera del mapa para no consultar la base con su lock tomado
+      Cola cargada = cargar(codigo, depositoId);
+      cola = colas.putIfAbsent(k, cargada);
+      if (cola == null) {
+        cola = cargada;
+      }
+    }
+    return cola;
+  }
+
+  private Cola cargar(String codigo, int depositoId) {
+    Cola cola = new Cola();
+    for (Lote l : lotes.findConStock(codigo, depositoId)) {
+      cola.agregar(l.getId(), l.getNumero(), l.getVencimiento(), l.getCantidad());
+    }
+    cola.generacion = GENERACIONES.incrementAndGet();
+    return cola;
+  }
+
+  /**
+   * Recorre los lotes en orden de vencimiento intercalando el stock sin lote en su lugar
+   */
+  private static List<ConsumoLote> elegir(Cola cola, int cant, int stockAntes, LocalDate vencimientoSinLote,
+      LocalDate vigenteDesde) {
+    List<ConsumoLote> consumos = new ArrayList<>();
+    int restante = cant;
+    int sinLote = vencido(vencimientoSinLote, vigenteDesde) ? 0 : (int) Math.max(0, stockAntes - cola.suma);
+    for (Entrada e : vigentes(cola, vigenteDesde)) {
+      if (restante == 0) {
+        break;
+      }
+      if (sinLote > 0 && vencimientoSinLote != null && vencimientoSinLote.isBefore(e.vencimiento)) {
+        int tomar = Math.min(sinLote, restante);
+        consumos.add(new ConsumoLote(0, null, vencimientoSinLote, tomar));
+        restante -= tomar;
+        sinLote = 0;
+        if (restante == 0) {
+          break;
+        }
+      }
+      int tomar = Math.min(e.cantidad, restante);
+      consumos.add(new ConsumoLote(e.id, e.numero, e.vencimiento, tomar));
+      restante -= tomar;
+    }
+    if (restante > 0 && sinLote > 0) {
+      int tomar = Math.min(sinLote, restante);
+      consumos.add(new ConsumoLote(0, null, vencimientoSinLote, tomar));
+      restante -= tomar;
+    }
+    return restante == 0 ? consumos : null;
+  }
+
+  /**
+   * Cantidad del depósito que no está vencida: lotes vigentes más el stock sin lote si está vigente
+   */
+  private static int vigente(Cola cola, int stockAntes, LocalDate vencimientoSinLote, LocalDate vigenteDesde) {
+    long vigente = vencido(vencimientoSinLote, vigenteDesde) ? 0 : Math.max(0, stockAntes - cola.suma);
+    for (Entrada e : vigentes(cola, vigenteDesde)) {
+      vigente += e.cantidad;
+    }
+    return (int) Math.min(vigente, stockAntes);
+  }
+
+  /**
+   * Lotes que vencen desde la fecha indicada, en orden FEFO: la vista arranca después de los vencidos
+   */
+  private static NavigableSet<Entrada> vigentes(Cola cola, LocalDate vigenteDesde) {
+    if (vigenteDesde == null) {
+      return cola.ordenados;
+    }
+    return cola.ordenados.tailSet(new Entrada(Long.MIN_VALUE, null, vigenteDesde), true);
+  }
+
+  private static boolean vencido(LocalDate vencimiento, LocalDate vigenteDesde) {
+    return vigenteDesde != null && vencimiento != null && vencimiento.isBefore(vigenteDesde);
+  }
+
+  private static String clave(String codigo, int depositoId) {
+    return codigo + "#" + depositoId;
+  }
+
+  /**
+   * Lotes elegidos para un egreso y la generación de la cola sobre la que se eligieron
+   * (-1 si se eligieron desde la base)
+   */
+  static final class Plan {
+    private final String codigo;
+    private final int depositoId;
+    private final long generacion;
+    private final List<ConsumoLote> consumos;
+
+    private Plan(String codigo, int depositoId, long generacion, List<ConsumoLote> consumos) {
+      this.codigo = codigo;
+      this.depositoId = depositoId;
+      this.generacion = generacion;
+      this.consumos = consumos;
+    }
+
+    List<ConsumoLote> getConsumos() {
+      return consumos;
+    }
+  }
+
+  private static final class Cola {
+    final TreeSet<Entrada> ordenados = new TreeSet<>(FEFO);
+    final Map<Long, Entrada> porId = new HashMap<>();
+    long suma;
+    long generacion;
+
+    void agregar(long id, String numero, LocalDate vencimiento, int cantidad) {
+      Entrada e = porId.get(id);
+      if (e == null) {
+        e = new Entrada(id, numero, vencimiento);
+        porId.put(id, e);
+        ordenados.add(e);
+      }
+      e.cantidad += cantidad;
+      suma += cantidad;
+    }
+
+    void quitar(Entrada e, int cantidad) {
+      e.cantidad -= cantidad;
+      suma -= cantidad;
+      if (e.cantidad == 0) {
+        ordenados.remove(e);
+        porId.remove(e.id);
+      }
+    }
+  }
+
+  private static final class Entrada {
+    final long id;
+    final String numero;
+    final LocalDate vencimiento;
+    int cantidad;
+
+    Entrada(long id, String numero, LocalDate vencimiento) {
+      this.id = id;
+      this.numero = numero;
+      this.vencimiento = vencimiento;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package usecase;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hash adaptativo de contraseñas con PBKDF2-HMAC-SHA256 y salt aleatorio
+ * Formato almacenado: pbkdf2_sha256$iteraciones$salt(base64)$hash(base64)
+ * Las contraseñas heredadas en texto plano se reconocen para migrarlas en el login
+ */
+public class PasswordHasher {
+  private static final String PREFIJO = "pbkdf2_sha256";
+  private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+  private static final int LARGO_SALT = 16;
+  private static final int LARGO_HASH_BITS = 256;
+
+  // Costo configurable con -Dclinica.auth.iteraciones=N
+  public static final int ITERACIONES_POR_DEFECTO = Integer.getInteger("clinica.auth.iteraciones", 210_000);
+
+  private final int iteraciones;
+  private final SecureRandom random = new SecureRandom();
+
+  public PasswordHasher() {
+    this(ITERACIONES_POR_DEFECTO);
+  }
+
+  public PasswordHasher(int iteraciones) {
+    if (iteraciones <= 0) {
+      throw new IllegalArgumentException("La cantidad de iteraciones debe ser positiva");
+    }
+    this.iteraciones = iteraciones;
+  }
+
+  /**
+   * Genera el hash de una contraseña con un salt nuevo y el costo actual
+   */
+  public String hash(String password) {
+    byte[] salt = new byte[LARGO_SALT];
+    random.nextBytes(salt);
+    byte[] hash = pbkdf2(password, salt, iteraciones);
+    Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+    return PREFIJO + "$" + iteraciones + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+  }
+
+  /**
+   * Verifica una contraseña contra el valor almacenado
+   * Si el valor almacenado no es un hash se compara como texto plano (migración)
+   */
+  public boolean verificar(String password, String almacenado) {
+    if (password == null || almacenado == null) {
+      return false;
+    }
+    if (!esHash(almacenado)) {
+      return MessageDigest.isEqual(
+          password.getBytes(StandardCharsets.UTF_8),
+          almacenado.getBytes(StandardCharsets.UTF_8));
+    }
+
+    String[] partes = almacenado.split("\\$");
+    if (partes.length != 4) {
+      return false;
+    }
+    try {
+      int iter = Integer.parseInt(partes[1]);
+      Base64.Decoder b64 = Base64.getDecoder();
+      byte[] salt = b64.decode(partes[2]);
+      byte[] esperado = b64.decode(partes[3]);
+      byte[] calculado = pbkdf2(password, salt, iter);
+      // Comparación en tiempo constante
+      return MessageDigest.isEqual(esperado, calculado);
+    } catch (IllegalArgumentException e) {
+      // Hash mal formado
+      return false;
+    }
+  }
+
+  /**
+   * Indica si el valor almacenado debe regenerarse: texto plano o costo distinto al actual
+   */
+  public boolean necesitaRehash(String almacenado) {
+    if (!esHash(almacenado)) {
+      return true;
+    }
+    String[] partes = almacenado.split("\\$");
+    try {
+      return partes.length != 4 || Integer.parseInt(partes[1]) != iteraciones;
+    } catch (NumberFormatException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Indica si el valor tiene formato de hash (y no es una contraseña en texto plano)
+   */
+  public boolean esHash(String valor) {
+    return valor != null && valor.startsWith(PREFIJO + "$");
+  }
+
+  public int getIteraciones() {
+    return iteraciones;
+  }
+
+  private static byte[] pbkdf2(String password, byte[] salt, int iteraciones) {
+    PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iteraciones, LARGO_HASH_BITS);
+    try {
+      SecretKeyFactory factory = SecretKeyFactory.getInstance(ALGORITMO);
+      return factory.generateSecret(spec).getEncoded();
+    } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+      throw new IllegalStateException("No se pudo calcular el hash de la contraseña", e);
+    } finally {
+      spec.clearPassword();
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package usecase;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import domain.Insumo;
+import domain.Movimiento;
+import domain.SugerenciaReposicion;
+import domain.enums.TipoMovimiento;
+import infra.eventos.MovimientoRegistrado;
+import infra.eventos.SuscriptorMovimientos;
+import repo.InsumoRepository;
+
+/**
+ * Motor de pronóstico de consumo y puntos de reposición
+ * Mantiene por insumo (y por insumo y servicio) una tasa de consumo diario con media y
+ * varianza exponencialmente ponderadas, actualizada en O(1) con cada egreso. Las
+ * sugerencias se calculan desde ese estado sin recorrer la tabla de movimientos.
+ * Se alimenta como suscriptor del bus de eventos de movimientos
+ *
+ * Configuración:
+ *   -Dclinica.pronostico.alfa=0.2          peso de cada día nuevo en la media móvil
+ *   -Dclinica.pronostico.leadTimeDias=7    demora de reposición del proveedor
+ *   -Dclinica.pronostico.revisionDias=14   días de consumo que cubre cada pedido
+ */
+public class PronosticoService implements SuscriptorMovimientos {
+  private static final double ALFA = Double.parseDouble(System.getProperty("clinica.pronostico.alfa", "0.2"));
+  private static final int DIAS_REPOSICION = Integer.getInteger("clinica.pronostico.leadTimeDias", 7);
+  private static final int DIAS_REVISION = Integer.getInteger("clinica.pronostico.revisionDias", 14);
+  // Nivel de servicio del 95% para el stock de seguridad
+  private static final double Z_NIVEL_SERVICIO = 1.65;
+  // Después de este tiempo sin consumo la media ya decayó a cero en la práctica
+  private static final int MAX_DIAS_SIN_CONSUMO = 120;
+
+  private final Map<String, TasaConsumo> porInsumo = new ConcurrentHashMap<>();
+  private final Map<String, TasaConsumo> porInsumoYServicio = new ConcurrentHashMap<>();
+  private final Map<String, Integer> stockConocido = new ConcurrentHashMap<>();
+  private final Map<String, Integer> stockMinimo = new ConcurrentHashMap<>();
+
+  /**
+   * Toma el stock actual de cada insumo del catálogo como punto de partida
+   */
+  public PronosticoService(InsumoRepository insumos) {
+    for (Insumo i : insumos.findAll()) {
+      stockConocido.put(i.getCodigo(), i.getStock());
+      stockMinimo.put(i.getCodigo(), i.getStockMinimo());
+    }
+  }
+
+  /**
+   * Precarga las tasas con movimientos históricos (por ejemplo, los últimos 60 días)
+   * No modifica el stock conocido, que ya refleja esos movimientos
+   */
+  public void calentar(List<Movimiento> historial) {
+    List<Movimiento> ordenados = new ArrayList<>(historial);
+    ordenados.sort(Comparator.comparing(Movimiento::getFecha));
+    for (Movimiento m : ordenados) {
+      if (m.getTipo() == TipoMovimiento.EGRESO) {
+        acumularConsumo(m.getInsumo().getCodigo(), m.getServicio().getId(), m.getCantidad(),
+            m.getFecha().toLocalDate());
+      }
+    }
+  }
+
+  @Override
+  public void alRecibir(MovimientoRegistrado e, long secuencia, boolean finDeLote) {
+    if (e.getTipo() == TipoMovimiento.EGRESO) {
+      registrarEgreso(e.getCodigo(), e.getServicioId(), e.getCantidad(), e.getFecha().toLocalDate(),
+          e.getStockResultante());
+    } else {
+      registrarIngreso(e.getCodigo(), e.getStockResultante());
+    }
+  }
+
+  /**
+   * Registra un egreso confirmado: actualiza las tasas y el stock conocido en O(1)
+   */
+  public void registrarEgreso(String codigo, int servicioId, int cantidad, LocalDate fecha, int stockResultante) {
+    acumularConsumo(codigo, servicioId, cantidad, fecha);
+    stockConocido.put(codigo, stockResultante);
+  }
+
+  /**
+   * Registra un ingreso confirmado: solo cambia el stock conocido
+   */
+  public void registrarIngreso(String codigo, int stockResultante) {
+    stockConocido.put(codigo, stockResultante);
+  }
+
+  /**
+   * Consumo diario estimado de un insumo en un servicio
+   */
+  public double consumoDiario(String codigo, int servicioId) {
+    TasaConsumo tasa = porInsumoYServicio.get(clave(codigo, servicioId));
+    return tasa == null ? 0 : tasa.estimar(LocalDate.now().toEpochDay())[0];
+  }
+
+  /**
+   * Calcula la sugerencia de reposición de un insumo
+   */
+  public Optional<SugerenciaReposicion> sugerencia(String codigo) {
+    Integer stock = stockConocido.get(codigo);
+    if (stock == null) {
+      return Optional.empty();
+    }
+    TasaConsumo tasa = porInsumo.get(codigo);
+    double[] estimacion = tasa == null ? new double[] { 0, 0 } : tasa.estimar(LocalDate.now().toEpochDay());
+    return Optional.of(calcular(codigo, stock, estimacion[0], Math.sqrt(estimacion[1])));
+  }
+
+  /**
+   * Reporte de insumos que alcanzaron su punto de reposición, ordenados por días de cobertura
+   */
+  public List<SugerenciaReposicion> sugerenciasDeReposicion() {
+    List<SugerenciaReposicion> out = new ArrayList<>();
+    for (String codigo : stockConocido.keySet()) {
+      sugerencia(codigo)
+          .filter(SugerenciaReposicion::debeReponer)
+          .ifPresent(out::add);
+    }
+    out.sort(Comparator.comparingDouble(SugerenciaReposicion::getDiasDeCobertura)
+        .thenComparing(SugerenciaReposicion::getCodigo));
+    return out;
+  }
+
+  private void acumularConsumo(String codigo, int servicioId, int cantidad, LocalDate fecha) {
+    long dia = fecha.toEpochDay();
+    porInsumo.computeIfAbsent(codigo, k -> new TasaConsumo()).registrar(dia, cantidad);
+    porInsumoYServicio.computeIfAbsent(clave(codigo, servicioId), k -> new TasaConsumo()).registrar(dia, cantidad);
+  }
+
+  /**
+   * Punto de reposición = demanda durante la demora + stock de seguridad (z * desvío * raíz de la demora)
+   * Cantidad sugerida = lo necesario para llegar al punto de reposición más el consumo del período de revisión
+   * El stock mínimo cargado a mano actúa como piso del punto de reposición
+   */
+  private SugerenciaReposicion calcular(String codigo, int stock, double tasa, double desvio) {
+    double seguridad = Z_NIVEL_SERVICIO * desvio * Math.sqrt(DIAS_REPOSICION);
+    int puntoReposicion = (int) Math.ceil(tasa * DIAS_REPOSICION + seguridad);
+    puntoReposicion = Math.max(puntoReposicion, stockMinimo.getOrDefault(codigo, 0));
+
+    double nivelObjetivo = puntoReposicion + tasa * DIAS_REVISION;
+    int cantidad = (int) Math.max(0, Math.ceil(nivelObjetivo - stock));
+    double cobertura = tasa > 0 ? stock / tasa : Double.POSITIVE_INFINITY;
+
+    return new SugerenciaReposicion(codigo, stock, tasa, desvio, cobertura, puntoReposicion, cantidad);
+  }
+
+  private static String clave(String codigo, int servicioId) {
+    return codigo + "#" + servicioId;
+  }
+
+  /**
+   * Tasa de consumo diario con media y varianza exponencialmente ponderadas
+   * El consumo se acumula en el día abierto y se incorpora a la media al cerrar el día;
+   * los días sin egresos cuentan como consumo cero
+   */
+  static final class TasaConsumo {
+    private long diaAbierto = Long.MIN_VALUE;
+    private double consumoDiaAbierto;
+    private double media;
+    private double varianza;
+    private boolean iniciada;
+
+    synchronized void registrar(long dia, double cantidad) {
+      avanzarHasta(dia);
+      consumoDiaAbierto += cantidad;
+    }
+
+    /**
+     * Devuelve {media, varianza} del consumo diario hasta el día indicado
+     */
+    synchronized double[] estimar(long hoy) {
+      avanzarHasta(hoy);
+      if (!iniciada) {
+        // Solo hay datos del día en curso
+        return new double[] { consumoDiaAbierto, 0 };
+      }
+      return new double[] { media, varianza };
+    }
+
+    private void avanzarHasta(long dia) {
+      if (diaAbierto == Long.MIN_VALUE) {
+        diaAbierto = dia;
+        return;
+      }
+      if (dia <= diaAbierto) {
+        // Los eventos atrasados se suman al día abierto
+        return;
+      }
+      cerrarDia(consumoDiaAbierto);
+      long vacios = Math.min(dia - diaAbierto - 1, MAX_DIAS_SIN_CONSUMO);
+      for (long i = 0; i < vacios; i++) {
+        cerrarDia(0);
+      }
+      consumoDiaAbierto = 0;
+      diaAbierto = dia;
+    }
+
+    private void cerrarDia(double consumo) {
+      if (!iniciada) {
+        media = consumo;
+        varianza = 0;
+        iniciada = true;
+        return;
+      }
+      double diferencia = consumo - media;
+      double incremento = ALFA * diferencia;
+      media += incremento;
+      varianza = (1 - ALFA) * (varianza + diferencia * incremento);
+    }
+  }
+}
@@ -1,15 +1,73 @@
 package usecase;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import domain.LineaKardex;
 import domain.Movimiento;
+import domain.TotalConsumo;
+import domain.enums.AgrupacionConsumo;
+import exceptions.EntidadNoEncontradaException;
+import infra.jfr.CacheMissEvent;
+import infra.jfr.ReporteEvent;
+import infra.metricas.Contador;
+import infra.metricas.Metricas;
 import repo.MovimientoRepository;
 
+/**
+ * Reportes de movimientos
+ * Los movimientos de un día ya cerrado no cambian: se guardan en caché por día y servicio, y cada
+ * consulta combina los días cerrados de la caché (cargando de a rangos los que falten) con una
+ * consulta en vivo de los días todavía abiertos. Así pedir los últimos 30 días cuesta una consulta
+ * del día actual y no del período completo
+ *
+ * El kardex de un insumo parte del saldo al día anterior al período (StockService.stockAl) y
+ * recorre sus movimientos en orden cronológico sumando el saldo línea por línea, sin cargar el
+ * período en memoria; la exportación a CSV escribe cada línea a medida que llega
+ *
+ * Los rankings de consumo (top-N por insumo, servicio o usuario) se calculan exactos con una
+ * agregación en la base para un período, o aproximados en vivo desde el arranque (ConsumoEnVivo)
+ *
+ * Configuración:
+ *   -Dclinica.reportes.cacheDias=1000      días (por servicio) que guarda la caché
+ */
 public class ReportesService {
+  private static final int CAPACIDAD_CACHE = Integer.getInteger("clinica.reportes.cacheDias", 1_000);
+  private static final Contador ACIERTOS = Metricas.contador("reportes.cache.aciertos");
+  private static final Contador FALLOS = Metricas.contador("reportes.cache.fallos");
+  private static final DateTimeFormatter FECHA_CSV = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
   private final MovimientoRepository movimientos;
+  private final StockService stock;
+  private final ConsumoEnVivo enVivo;
+  private final DiasCerrados dias = new DiasCerrados();
 
   public ReportesService(MovimientoRepository movimientos) {
+    this(movimientos, null);
+  }
+
+  /**
+   * @param stock servicio de stock para el saldo inicial del kardex (opcional; sin él no hay kardex)
+   */
+  public ReportesService(MovimientoRepository movimientos, StockService stock) {
+    this(movimientos, stock, null);
+  }
+
+  /**
+   * @param enVivo ranking aproximado alimentado por el bus de eventos (opcional; sin él no hay ranking en vivo)
+   */
+  public ReportesService(MovimientoRepository movimientos, StockService stock, ConsumoEnVivo enVivo) {
     this.movimientos = movimientos;
+    this.stock = stock;
+    this.enVivo = enVivo;
   }
 
   /**
@@ -21,17 +79,21 @@ public class ReportesService {
    * @throws IllegalArgumentException si las fechas son inválidas
    */
   public List<Movimiento> movimientosPorPeriodoYServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
-    if (desde == null || hasta == null) {
-      throw new IllegalArgumentException("Las fechas son requeridas");
-    }
-    if (hasta.isBefore(desde)) {
-      throw new IllegalArgumentException("La fecha hasta debe ser posterior a la fecha desde");
-    }
-    if (desde.isAfter(LocalDate.now())) {
-      throw new IllegalArgumentException("La fecha desde no puede ser futura");
-    }
+    validarPeriodo(desde, hasta);
 
-    return movimientos.findByPeriodoYServicio(desde, hasta, servicioId);
+    ReporteEvent evento = new ReporteEvent();
+    evento.begin();
+    List<Movimiento> resultado = consultar(desde, hasta, servicioId);
+    evento.end();
+    if (evento.shouldCommit()) {
+      evento.reporte = "movimientosPorPeriodoYServicio";
+      evento.desde = desde.toString();
+      evento.hasta = hasta.toString();
+      evento.servicioId = servicioId != null ? servicioId : 0;
+      evento.filas = resultado.size();
+      evento.commit();
+    }
+    return resultado;
   }
 
   /**
@@ -65,4 +127,252 @@ public class ReportesService {
     LocalDate desde = hasta.minusWeeks(1);
     return movimientosPorPeriodoYServicio(desde, hasta, null);
   }
-}
\ No newline at end of file
+
+  /**
+   * Ranking exacto de los n que más consumieron (egresos) en el período, de mayor a menor
+   * 
+   * @param servicioId solo los egresos de este servicio (opcional)
+   * @throws IllegalArgumentException si las fechas o n son inválidos
+   */
+  public List<TotalConsumo> topConsumo(AgrupacionConsumo por, LocalDate desde, LocalDate hasta, Integer servicioId,
+      int n) {
+    validarPeriodo(desde, hasta);
+    if (por == null) {
+      throw new IllegalArgumentException("La agrupación es requerida");
+    }
+    if (n <= 0) {
+      throw new IllegalArgumentException("La cantidad de posiciones debe ser positiva");
+    }
+
+    ReporteEvent evento = new ReporteEvent();
+    evento.begin();
+    List<TotalConsumo> ranking = movimientos.topConsumo(por, desde, hasta, servicioId, n);
+    evento.end();
+    if (evento.shouldCommit()) {
+      evento.reporte = "topConsumo." + por;
+      evento.desde = desde.toString();
+      evento.hasta = hasta.toString();
+      evento.servicioId = servicioId != null ? servicioId : 0;
+      evento.filas = ranking.size();
+      evento.commit();
+    }
+    return ranking;
+  }
+
+  /**
+   * Ranking aproximado de los n que más consumieron desde el arranque, sin consultar la base
+   * 
+   * @throws IllegalArgumentException si n es inválido
+   * @throws IllegalStateException    si no hay ranking en vivo
+   */
+  public List<TotalConsumo> topConsumoEnVivo(AgrupacionConsumo por, int n) {
+    if (por == null) {
+      throw new IllegalArgumentException("La agrupación es requerida");
+    }
+    if (enVivo == null) {
+      throw new IllegalStateException("No hay ranking de consumo en vivo configurado");
+    }
+    return enVivo.top(por, n);
+  }
+
+  /**
+   * Kardex de un insumo: cada movimiento del período en orden cronológico con el saldo total
+   * después de aplicarlo. Las líneas se entregan a medida que se leen
+   * 
+   * @return saldo al final del período
+   * @throws IllegalArgumentException     si las fechas son inválidas
+   * @throws IllegalStateException        si no hay servicio de stock
+   * @throws EntidadNoEncontradaException si no existe el insumo
+   */
+  public int kardex(String codigo, LocalDate desde, LocalDate hasta, Consumer<LineaKardex> destino) {
+    return recorrerKardex(codigo, desde, hasta, saldoInicial(codigo, desde, hasta), destino);
+  }
+
+  /**
+   * Exporta el kardex del insumo en CSV separado por ';': una línea con el saldo inicial y
+   * después una por movimiento
+   * 
+   * @return saldo al final del período
+   * @throws IOException si no se puede escribir
+   */
+  public int exportarKardexCsv(String codigo, LocalDate desde, LocalDate hasta, Writer salida) throws IOException {
+    int inicial = saldoInicial(codigo, desde, hasta);
+    salida.write("fecha;movimiento;tipo;deposito;deposito_destino;servicio;legajo;entrada;salida;saldo\n");
+    salida.write(desde.atStartOfDay().format(FECHA_CSV) + ";;SALDO_INICIAL;;;;;;;" + inicial + "\n");
+    try {
+      int saldoFinal = recorrerKardex(codigo, desde, hasta, inicial, l -> escribir(salida, l));
+      salida.flush();
+      return saldoFinal;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private int saldoInicial(String codigo, LocalDate desde, LocalDate hasta) {
+    validarPeriodo(desde, hasta);
+    if (stock == null) {
+      throw new IllegalStateException("El kardex necesita el servicio de stock");
+    }
+    return stock.stockAl(codigo, desde.minusDays(1));
+  }
+
+  private int recorrerKardex(String codigo, LocalDate desde, LocalDate hasta, int saldoInicial,
+      Consumer<LineaKardex> destino) {
+    ReporteEvent evento = new ReporteEvent();
+    evento.begin();
+    // Solo se guarda el saldo corriente: memoria constante sin importar el largo del período
+    int[] saldo = { saldoInicial };
+    int[] filas = { 0 };
+    movimientos.recorrerPorInsumo(codigo, desde, hasta, m -> {
+      LineaKardex linea = new LineaKardex(m, saldo[0]);
+      saldo[0] = linea.getSaldo();
+      filas[0]++;
+      destino.accept(linea);
+    });
+    evento.end();
+    if (evento.shouldCommit()) {
+      evento.reporte = "kardex";
+      evento.desde = desde.toString();
+      evento.hasta = hasta.toString();
+      evento.filas = filas[0];
+      evento.commit();
+    }
+    return saldo[0];
+  }
+
+  private static void escribir(Writer salida, LineaKardex l) {
+    Movimiento m = l.getMovimiento();
+    StringBuilder sb = new StringBuilder(96);
+    sb.append(m.getFecha().format(FECHA_CSV)).append(';')
+      .append(m.getId()).append(';')
+      .append(m.getTipo()).append(';')
+      .append(m.getDepositoId()).append(';')
+      .append(m.getDepositoDestinoId() != null ? m.getDepositoDestinoId().toString() : "").append(';')
+      .append(m.getServicio() != null ? campoCsv(m.getServicio().getNombre()) : "").append(';')
+      .append(m.getUsuario().getLegajo()).append(';')
+      .append(l.getEntrada()).append(';')
+      .append(l.getSalida()).append(';')
+      .append(l.getSaldo()).append('\n');
+    try {
+      salida.write(sb.toString());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String campoCsv(String valor) {
+    if (valor.indexOf(';') < 0 && valor.indexOf('"') < 0) {
+      return valor;
+    }
+    return '"' + valor.replace("\"", "\"\"") + '"';
+  }
+
+  private static void validarPeriodo(LocalDate desde, LocalDate hasta) {
+    if (desde == null || hasta == null) {
+      throw new IllegalArgumentException("Las fechas son requeridas");
+    }
+    if (hasta.isBefore(desde)) {
+      throw new IllegalArgumentException("La fecha hasta debe ser posterior a la fecha desde");
+    }
+    if (desde.isAfter(LocalDate.now())) {
+      throw new IllegalArgumentException("La fecha desde no puede ser futura");
+    }
+  }
+
+  /**
+   * Movimientos del período en el mismo orden que el repositorio (fecha descendente): primero los
+   * días abiertos consultados en vivo y después los cerrados, de la caché
+   */
+  private List<Movimiento> consultar(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    LocalDate ultimoCerrado = CierreDiario.ultimoDiaCerrado();
+    List<Movimiento> resultado = new ArrayList<>();
+    if (hasta.isAfter(ultimoCerrado)) {
+      LocalDate desdeAbierto = desde.isAfter(ultimoCerrado) ? desde : ultimoCerrado.plusDays(1);
+      resultado.addAll(movimientos.findByPeriodoYServicio(desdeAbierto, hasta, servicioId));
+    }
+    LocalDate hastaCerrado = hasta.isAfter(ultimoCerrado) ? ultimoCerrado : hasta;
+    if (hastaCerrado.isBefore(desde)) {
+      return resultado;
+    }
+
+    // Los días se juntan en un mapa local: la caché puede desalojarlos mientras se arma el resultado
+    Map<LocalDate, List<Movimiento>> porDia = new HashMap<>();
+    LocalDate faltaDesde = null;
+    for (LocalDate d = desde; !d.isAfter(hastaCerrado); d = d.plusDays(1)) {
+      List<Movimiento> delDia = dias.get(clave(d, servicioId));
+      if (delDia == null) {
+        if (faltaDesde == null) {
+          faltaDesde = d;
+        }
+        continue;
+      }
+      ACIERTOS.incrementar();
+      porDia.put(d, delDia);
+      if (faltaDesde != null) {
+        cargar(faltaDesde, d.minusDays(1), servicioId, porDia);
+        faltaDesde = null;
+      }
+    }
+    if (faltaDesde != null) {
+      cargar(faltaDesde, hastaCerrado, servicioId, porDia);
+    }
+
+    for (LocalDate d = hastaCerrado; !d.isBefore(desde); d = d.minusDays(1)) {
+      resultado.addAll(porDia.get(d));
+    }
+    return resultado;
+  }
+
+  /**
+   * Carga con una sola consulta un rango de días cerrados que no estaban en la caché
+   * (incluidos los días sin movimientos, para no volver a consultarlos)
+   */
+  private void cargar(LocalDate desde, LocalDate hasta, Integer servicioId, Map<LocalDate, List<Movimiento>> porDia) {
+    CacheMissEvent evento = new CacheMissEvent();
+    evento.begin();
+
+    Map<LocalDate, List<Movimiento>> encontrados = new HashMap<>();
+    for (Movimiento m : movimientos.findByPeriodoYServicio(desde, hasta, servicioId)) {
+      encontrados.computeIfAbsent(m.getFecha().toLocalDate(), d -> new ArrayList<>()).add(m);
+    }
+    for (LocalDate d = desde; !d.isAfter(hasta); d = d.plusDays(1)) {
+      List<Movimiento> delDia = List.copyOf(encontrados.getOrDefault(d, List.of()));
+      porDia.put(d, delDia);
+      dias.put(clave(d, servicioId), delDia);
+      FALLOS.incrementar();
+    }
+
+    evento.end();
+    if (evento.shouldCommit()) {
+      evento.cache = "reportes.dias";
+      evento.clave = clave(desde, servicioId) + ".." + hasta;
+      evento.commit();
+    }
+  }
+
+  private static String clave(LocalDate dia, Integer servicioId) {
+    return (servicioId != null ? servicioId.toString() : "*") + "@" + dia;
+  }
+
+  /**
+   * Movimientos de días cerrados por día y servicio, acotados y con desalojo LRU
+   */
+  private static final class DiasCerrados {
+    private final Map<String, List<Movimiento>> porClave = new LinkedHashMap<>(256, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List<Movimiento>> mayor) {
+        return size() > CAPACIDAD_CACHE;
+      }
+    };
+
+    synchronized List<Movimiento> get(String clave) {
+      return porClave.get(clave);
+    }
+
+    synchronized void put(String clave, List<Movimiento> movimientos) {
+      porClave.put(clave, movimientos);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package usecase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+import domain.LineaKardex;
+import domain.Movimiento;
+import domain.TotalConsumo;
+import domain.enums.AgrupacionConsumo;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.MovimientoRepository;
+
+/**
+ * ReportesService que mide la latencia y traza cada operación
+ */
+public class ReportesServiceInstrumentado extends ReportesService {
+  private static final Histograma POR_PERIODO_Y_SERVICIO =
+      Metricas.histograma("reportes.movimientosPorPeriodoYServicio");
+  private static final Histograma ULTIMO_MES = Metricas.histograma("reportes.movimientosUltimoMes");
+  private static final Histograma DEL_DIA = Metricas.histograma("reportes.movimientosDelDia");
+  private static final Histograma ULTIMA_SEMANA = Metricas.histograma("reportes.movimientosUltimaSemana");
+  private static final Histograma TOP_CONSUMO = Metricas.histograma("reportes.topConsumo");
+  private static final Histograma TOP_CONSUMO_EN_VIVO = Metricas.histograma("reportes.topConsumoEnVivo");
+  private static final Histograma KARDEX = Metricas.histograma("reportes.kardex");
+  private static final Histograma EXPORTAR_KARDEX = Metricas.histograma("reportes.exportarKardexCsv");
+
+  public ReportesServiceInstrumentado(MovimientoRepository movimientos) {
+    super(movimientos);
+  }
+
+  public ReportesServiceInstrumentado(MovimientoRepository movimientos, StockService stock) {
+    super(movimientos, stock);
+  }
+
+  public ReportesServiceInstrumentado(MovimientoRepository movimientos, StockService stock, ConsumoEnVivo enVivo) {
+    super(movimientos, stock, enVivo);
+  }
+
+  @Override
+  public List<Movimiento> movimientosPorPeriodoYServicio(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.movimientosPorPeriodoYServicio");
+    try {
+      return super.movimientosPorPeriodoYServicio(desde, hasta, servicioId);
+    } catch (RuntimeException e) {
+      POR_PERIODO_Y_SERVICIO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      POR_PERIODO_Y_SERVICIO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Movimiento> movimientosUltimoMes(int servicioId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.movimientosUltimoMes");
+    try {
+      return super.movimientosUltimoMes(servicioId);
+    } catch (RuntimeException e) {
+      ULTIMO_MES.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      ULTIMO_MES.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Movimiento> movimientosDelDia() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.movimientosDelDia");
+    try {
+      return super.movimientosDelDia();
+    } catch (RuntimeException e) {
+      DEL_DIA.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      DEL_DIA.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Movimiento> movimientosUltimaSemana() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.movimientosUltimaSemana");
+    try {
+      return super.movimientosUltimaSemana();
+    } catch (RuntimeException e) {
+      ULTIMA_SEMANA.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      ULTIMA_SEMANA.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<TotalConsumo> topConsumo(AgrupacionConsumo por, LocalDate desde, LocalDate hasta, Integer servicioId,
+      int n) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.topConsumo");
+    try {
+      return super.topConsumo(por, desde, hasta, servicioId, n);
+    } catch (RuntimeException e) {
+      TOP_CONSUMO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      TOP_CONSUMO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<TotalConsumo> topConsumoEnVivo(AgrupacionConsumo por, int n) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.topConsumoEnVivo");
+    try {
+      return super.topConsumoEnVivo(por, n);
+    } catch (RuntimeException e) {
+      TOP_CONSUMO_EN_VIVO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      TOP_CONSUMO_EN_VIVO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int kardex(String codigo, LocalDate desde, LocalDate hasta, Consumer<LineaKardex> destino) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.kardex");
+    try {
+      return super.kardex(codigo, desde, hasta, destino);
+    } catch (RuntimeException e) {
+      KARDEX.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      KARDEX.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int exportarKardexCsv(String codigo, LocalDate desde, LocalDate hasta, Writer salida) throws IOException {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("reportes.exportarKardexCsv");
+    try {
+      return super.exportarKardexCsv(codigo, desde, hasta, salida);
+    } catch (IOException | RuntimeException e) {
+      EXPORTAR_KARDEX.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      EXPORTAR_KARDEX.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package usecase;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import domain.Reserva;
+import domain.Usuario;
+import domain.enums.EstadoReserva;
+import exceptions.DatabaseException;
+import exceptions.EntidadNoEncontradaException;
+import exceptions.InsumoNoDisponibleException;
+import exceptions.StockInsuficienteException;
+import infra.temporizador.RuedaTemporizadora;
+import repo.InsumoRepository;
+import repo.ReservaRepository;
+import repo.jdbc.TransactionManager;
+
+/**
+ * Reservas de stock con vencimiento (por ejemplo, para cirugías programadas)
+ * Una reserva no retira stock: suma su cantidad al total reservado del insumo en el depósito
+ * (StockReservado), que los egresos no pueden consumir. Se toma con las filas de stock del depósito
+ * bloqueadas, igual que un egreso, así lo reservado nunca supera el stock. Al confirmarla se registra el egreso;
+ * al liberarla o vencer se devuelve al disponible.
+ * Los vencimientos los dispara una rueda de temporizadores en memoria, sin consultar la base: el
+ * hilo de la rueda solo devuelve la cantidad al disponible y el cierre en la base lo escribe otro
+ * hilo, así una base lenta no atrasa los demás vencimientos. Al arrancar se recargan las reservas
+ * activas y las ya vencidas se cierran enseguida (también las que vencieron sin llegar a cerrarse)
+ *
+ * Configuración:
+ *   -Dclinica.reservas.horas=48       validez por defecto de una reserva
+ *   -Dclinica.reservas.tickMs=1000    precisión de los vencimientos
+ */
+public class ReservaService implements AutoCloseable {
+  private static final long HORAS_POR_DEFECTO = Long.getLong("clinica.reservas.horas", 48);
+  private static final long TICK_MS = Long.getLong("clinica.reservas.tickMs", 1000);
+  // Una vuelta de la rueda cubre algo más de una hora con el tick por defecto
+  private static final int RANURAS = 4096;
+  private static final long ESPERA_CIERRE_SEG = 10;
+
+  private final StockService stock;
+  private final InsumoRepository insumos;
+  private final ReservaRepository reservas;
+  private final StockReservado reservado;
+  private final RuedaTemporizadora rueda;
+  // Escribe en la base el cierre de las reservas vencidas, fuera del hilo de la rueda
+  private final ExecutorService cierres = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "reservas-cierre");
+    t.setDaemon(true);
+    return t;
+  });
+  private final Map<Long, Activa> activas = new ConcurrentHashMap<>();
+
+  /**
+   * @param reservado el mismo que recibió StockService, para que sus egresos respeten las reservas
+   */
+  public ReservaService(StockService stock, InsumoRepository insumos, ReservaRepository reservas,
+      StockReservado reservado) {
+    this.stock = stock;
+    this.insumos = insumos;
+    this.reservas = reservas;
+    this.reservado = reservado;
+    this.rueda = new RuedaTemporizadora("reservas", TICK_MS, TimeUnit.MILLISECONDS, RANURAS);
+    for (Reserva r : reservas.findActivas()) {
+      reservado.sumar(r.getCodigo(), r.getDepositoId(), r.getCantidad());
+      programarVencimiento(r);
+    }
+  }
+
+  /**
+   * Reserva stock con la validez por defecto
+   */
+  public Reserva reservar(String codigo, int cant, int servicioId, int depositoId, Usuario actor) {
+    return reservar(codigo, cant, servicioId, depositoId, Duration.ofHours(HORAS_POR_DEFECTO), actor);
+  }
+
+  /**
+   * Reserva stock del depósito para un servicio hasta que se confirme, se libere o pase la validez
+   *
+   * @throws IllegalArgumentException     si los parámetros son inválidos
+   * @throws EntidadNoEncontradaException si no existe el insumo, el servicio o el depósito
+   * @throws InsumoNoDisponibleException  si el insumo está bloqueado o dado de baja
+   * @throws StockInsuficienteException   si el disponible (stock - reservado) no alcanza
+   */
+  public Reserva reservar(String codigo, int cant, int servicioId, int depositoId, Duration validez, Usuario actor) {
+    if (codigo == null || codigo.trim().isEmpty()) {
+      throw new IllegalArgumentException("El código no puede estar vacío");
+    }
+    if (cant <= 0) {
+      throw new IllegalArgumentException("La cantidad debe ser positiva");
+    }
+    if (validez == null || validez.isNegative() || validez.isZero()) {
+      throw new IllegalArgumentException("La validez de la reserva debe ser positiva");
+    }
+    if (actor == null) {
+      throw new IllegalArgumentException("El usuario es requerido");
+    }
+    stock.validarDisponible(stock.buscarInsumo(codigo));
+    stock.validarDeposito(depositoId);
+    if (stock.obtenerTodosLosServicios().stream().noneMatch(s -> s.getId() == servicioId)) {
+      throw new EntidadNoEncontradaException("Servicio no encontrado: " + servicioId);
+    }
+
+    LocalDateTime ahora = LocalDateTime.now();
+    Reserva r = new Reserva(0, codigo, depositoId, servicioId, cant, actor.getLegajo(), ahora, ahora.plus(validez),
+        EstadoReserva.ACTIVA);
+    boolean sumada = false;
+    try {
+      TransactionManager.beginTransaction();
+      // Con las filas del depósito bloqueadas ningún egreso descuenta entre la lectura y la reserva
+      int enDeposito = insumos.stockEnDeposito(depositoId, List.of(codigo), true).values().stream()
+          .mapToInt(Integer::intValue).sum();
+      if (!reservado.reservarSi(codigo, depositoId, cant, enDeposito)) {
+        throw new StockInsuficienteException("Stock insuficiente para reservar en el depósito " + depositoId
+            + ". Disponible: " + Math.max(0, enDeposito - reservado.de(codigo, depositoId)));
+      }
+      sumada = true;
+      reservas.save(r);
+      TransactionManager.commit();
+    } catch (SQLException e) {
+      TransactionManager.rollback();
+      if (sumada) {
+        reservado.restar(codigo, depositoId, cant);
+      }
+      throw new DatabaseException("Error al registrar la reserva", e);
+    } catch (RuntimeException e) {
+      TransactionManager.rollback();
+      if (sumada) {
+        reservado.restar(codigo, depositoId, cant);
+      }
+      throw e;
+    }
+    programarVencimiento(r);
+    return r;
+  }
+
+  /**
+   * Confirma la reserva registrando el egreso de su cantidad para su servicio
+   *
+   * @throws EntidadNoEncontradaException si la reserva no existe o ya no está activa
+   * @throws StockInsuficienteException   si el stock del depósito ya no cubre la reserva
+   */
+  public void confirmar(long id, Usuario actor) {
+    Activa a = tomar(id);
+    Reserva r = a.reserva;
+    try {
+      // La clave evita un segundo egreso si la confirmación se reintenta
+      stock.registrarEgreso(r.getCodigo(), r.getCantidad(), r.getServicioId(), r.getDepositoId(), actor,
+          "reserva-" + r.getId(), r.getCantidad());
+    } catch (RuntimeException e) {
+      // La reserva sigue vigente: vuelve a quedar activa con el tiempo que le quedaba
+      programarVencimiento(r);
+      throw e;
+    }
+    reservado.restar(r.getCodigo(), r.getDepositoId(), r.getCantidad());
+    r.setEstado(EstadoReserva.CONFIRMADA);
+    reservas.cerrar(id, EstadoReserva.CONFIRMADA);
+  }
+
+  /**
+   * Libera la reserva y devuelve su cantidad al disponible
+   *
+   * @throws EntidadNoEncontradaException si la reserva no existe o ya no está activa
+   */
+  public void liberar(long id) {
+    cerrar(tomar(id).reserva, EstadoReserva.LIBERADA);
+  }
+
+  /**
+   * Stock del depósito que se puede comprometer: stock - reservado (O(1) en reservas)
+   */
+  public int disponible(String codigo, int depositoId) {
+    return Math.max(0, insumos.stockEnDeposito(codigo, depositoId) - reservado.de(codigo, depositoId));
+  }
+
+  /**
+   * Reservas activas ordenadas por vencimiento
+   */
+  public List<Reserva> reservasActivas() {
+    List<Reserva> out = new ArrayList<>();
+    for (Activa a : activas.values()) {
+      out.add(a.reserva);
+    }
+    out.sort(Comparator.comparing(Reserva::getVence).thenComparing(Reserva::getId));
+    return out;
+  }
+
+  /**
+   * Detiene la rueda de vencimientos y espera los cierres pendientes; las reservas siguen activas en
+   * la base y se recargan al arrancar
+   */
+  @Override
+  public void close() {
+    rueda.close();
+    cierres.shutdown();
+    try {
+      if (!cierres.awaitTermination(ESPERA_CIERRE_SEG, TimeUnit.SECONDS)) {
+        cierres.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      cierres.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void programarVencimiento(Reserva r) {
+    long restanteMs = Duration.between(LocalDateTime.now(), r.getVence()).toMillis();
+    Activa a = new Activa(r);
+    // Se publica antes de programar: si vence enseguida, vencer() ya la encuentra
+    activas.put(r.getId(), a);
+    a.tarea = rueda.programar(() -> vencer(r.getId()), restanteMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Saca la reserva de las activas; quien la saca es el único que puede cerrarla
+   */
+  private Activa tomar(long id) {
+    Activa a = activas.remove(id);
+    if (a == null) {
+      throw new EntidadNoEncontradaException("Reserva no activa: " + id);
+    }
+    RuedaTemporizadora.Tarea tarea = a.tarea;
+    if (tarea != null) {
+      // Si todavía no estaba programada, al correr no la encuentra y no hace nada
+      tarea.cancelar();
+    }
+    return a;
+  }
+
+  /**
+   * Corre en el hilo de la rueda: solo toca memoria y deja la escritura en la base a otro hilo
+   */
+  private void vencer(long id) {
+    Activa a = activas.remove(id);
+    if (a == null) {
+      return;
+    }
+    Reserva r = a.reserva;
+    reservado.restar(r.getCodigo(), r.getDepositoId(), r.getCantidad());
+    r.setEstado(EstadoReserva.VENCIDA);
+    cierres.execute(() -> {
+      try {
+        reservas.cerrar(id, EstadoReserva.VENCIDA);
+      } catch (RuntimeException e) {
+        // Queda activa en la base: al arrancar se recarga ya vencida y se vuelve a cerrar
+        System.err.println("No se pudo cerrar la reserva vencida " + id + ": " + e.getMessage());
+      }
+    });
+  }
+
+  private void cerrar(Reserva r, EstadoReserva estado) {
+    reservado.restar(r.getCodigo(), r.getDepositoId(), r.getCantidad());
+    r.setEstado(estado);
+    reservas.cerrar(r.getId(), estado);
+  }
+
+  private static final class Activa {
+    final Reserva reserva;
+    volatile RuedaTemporizadora.Tarea tarea;
+
+    Activa(Reserva reserva) {
+      this.reserva = reserva;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package usecase;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import infra.metricas.Contador;
+import infra.metricas.Metricas;
+import repo.EscrowRepository;
+
+/**
+ * Stock en cuotas (escrow) para los insumos que retiran todos los servicios todo el día
+ * El stock de esos insumos en cada depósito se reparte en cuotas, filas separadas de la común:
+ * cada egreso descuenta solo de una cuota elegida al azar, así los egresos concurrentes casi
+ * nunca esperan el mismo bloqueo y el rendimiento crece con la cantidad de cuotas. Cuando una
+ * cuota no alcanza se recarga del stock común (lo pedido más un margen) y, si el común tampoco
+ * alcanza, se juntan todas las cuotas en el común. Como el stock solo pasa de una fila a otra
+ * dentro de la transacción del egreso, el total (común + cuotas) siempre es exacto
+ *
+ * Configuración:
+ *   -Dclinica.escrow.insumos=GUA-01,BAR-01   insumos con cuotas (ninguno por defecto)
+ *   -Dclinica.escrow.cuotas=8                cuotas por insumo y depósito
+ *   -Dclinica.escrow.recarga=50              margen que se agrega a una cuota al recargarla
+ */
+final class StockEscrow {
+  private static final Set<String> INSUMOS = Arrays.stream(System.getProperty("clinica.escrow.insumos", "").split(","))
+      .map(String::trim)
+      .filter(c -> !c.isEmpty())
+      .map(String::toUpperCase)
+      .collect(Collectors.toUnmodifiableSet());
+  private static final int CUOTAS = Math.max(1, Integer.getInteger("clinica.escrow.cuotas", 8));
+  private static final int RECARGA = Math.max(0, Integer.getInteger("clinica.escrow.recarga", 50));
+
+  private static final Contador RECARGAS = Metricas.contador("stock.escrow.recargas");
+  private static final Contador CONSOLIDACIONES = Metricas.contador("stock.escrow.consolidaciones");
+
+  private final EscrowRepository cuotas;
+
+  StockEscrow(EscrowRepository cuotas) {
+    this.cuotas = cuotas;
+  }
+
+  /**
+   * Indica si el insumo lleva su stock en cuotas
+   */
+  boolean aplica(String codigo) {
+    return INSUMOS.contains(codigo.toUpperCase());
+  }
+
+  /**
+   * Descuenta de una cuota al azar sin tocar la fila común del depósito
+   *
+   * @throws CuotaAgotada si la cuota no alcanza; la transacción debe deshacerse (para soltar la
+   *                      fila de la cuota) y reintentarse con recargarYDescontar
+   */
+  void descontar(String codigo, int depositoId, int cant) {
+    if (!cuotas.descontar(codigo, depositoId, elegirCuota(), cant)) {
+      throw CuotaAgotada.INSTANCIA;
+    }
+  }
+
+  /**
+   * Recarga una cuota desde el stock común y descuenta de ella; se bloquea primero la fila
+   * común y después la cuota, el mismo orden que usa consolidar
+   *
+   * @return false si el stock común no alcanza (no se modifica nada)
+   */
+  boolean recargarYDescontar(String codigo, int depositoId, int cant) {
+    int cuota = elegirCuota();
+    if (!cuotas.recargar(codigo, depositoId, cuota, cant + RECARGA, 0)
+        && (RECARGA == 0 || !cuotas.recargar(codigo, depositoId, cuota, cant, 0))) {
+      return false;
+    }
+    RECARGAS.incrementar();
+    // La fila de la cuota quedó bloqueada por esta transacción con al menos cant unidades
+    return cuotas.descontar(codigo, depositoId, cuota, cant);
+  }
+
+  /**
+   * Devuelve todas las cuotas al stock común (cuando el stock quedó repartido y ninguna cuota
+   * alcanza por sí sola, o para egresos que deben respetar reservas)
+   *
+   * @return cantidad devuelta al común
+   */
+  int consolidar(String codigo, int depositoId) {
+    int devuelto = cuotas.consolidar(codigo, depositoId);
+    if (devuelto > 0) {
+      CONSOLIDACIONES.incrementar();
+    }
+    return devuelto;
+  }
+
+  private static int elegirCuota() {
+    return ThreadLocalRandom.current().nextInt(CUOTAS);
+  }
+
+  /**
+   * La cuota elegida no alcanzó; sin traza porque se usa para reintentar, no para informar
+   */
+  static final class CuotaAgotada extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    static final CuotaAgotada INSTANCIA = new CuotaAgotada();
+
+    private CuotaAgotada() {
+      super("Cuota de escrow agotada", null, false, false);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package usecase;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Total reservado por insumo y depósito, mantenido en memoria por ReservaService
+ * Consultar y modificar el total es O(1) sin importar cuántas reservas abiertas haya;
+ * StockService lo descuenta del stock en cada egreso (disponible = stock - reservado)
+ */
+public class StockReservado {
+  private final Map<String, AtomicInteger> reservado = new ConcurrentHashMap<>();
+
+  /**
+   * Cantidad reservada del insumo en el depósito
+   */
+  public int de(String codigo, int depositoId) {
+    AtomicInteger total = reservado.get(clave(codigo, depositoId));
+    return total == null ? 0 : total.get();
+  }
+
+  /**
+   * Suma la cantidad al total reservado solo si el stock alcanza para cubrirla junto con
+   * lo ya reservado; la verificación y la suma son atómicas
+   *
+   * @return false si no hay disponible suficiente (no se modifica nada)
+   */
+  boolean reservarSi(String codigo, int depositoId, int cantidad, int stock) {
+    AtomicInteger total = reservado.computeIfAbsent(clave(codigo, depositoId), k -> new AtomicInteger());
+    while (true) {
+      int actual = total.get();
+      if (stock - actual < cantidad) {
+        return false;
+      }
+      if (total.compareAndSet(actual, actual + cantidad)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Suma sin verificar (al recargar reservas ya aceptadas)
+   */
+  void sumar(String codigo, int depositoId, int cantidad) {
+    reservado.computeIfAbsent(clave(codigo, depositoId), k -> new AtomicInteger()).addAndGet(cantidad);
+  }
+
+  void restar(String codigo, int depositoId, int cantidad) {
+    AtomicInteger total = reservado.get(clave(codigo, depositoId));
+    if (total != null) {
+      total.addAndGet(-cantidad);
+    }
+  }
+
+  private static String clave(String codigo, int depositoId) {
+    return codigo + "#" + depositoId;
+  }
+}
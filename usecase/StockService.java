@@ -1,42 +1,226 @@
 package usecase;
 
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import domain.Deposito;
+import domain.DiferenciaInventario;
 import domain.Usuario;
+import domain.ConsumoLote;
+import domain.CostoConsumo;
 import domain.Insumo;
+import domain.Lote;
 import domain.Movimiento;
+import domain.SaldoInsumo;
 import domain.Servicio;
+import domain.ValuacionInsumo;
+import domain.enums.EstadoInsumo;
 import domain.enums.TipoMovimiento;
+import exceptions.ClaveIdempotenciaDuplicadaException;
 import exceptions.DatabaseException;
 import exceptions.EntidadNoEncontradaException;
+import exceptions.InsumoNoDisponibleException;
 import exceptions.StockInsuficienteException;
+import infra.alertas.GestorAlertas;
+import infra.alertas.TipoAlerta;
+import infra.eventos.BusEventos;
+import infra.jfr.MovimientoStockEvent;
+import repo.DepositoRepository;
+import repo.EscrowRepository;
 import repo.InsumoRepository;
+import repo.LoteRepository;
 import repo.MovimientoRepository;
+import repo.SaldoRepository;
 import repo.ServicioRepository;
+import repo.ValuacionRepository;
 import repo.jdbc.TransactionManager;
 
 public class StockService {
+  // Largo de la columna claves_idempotencia.clave
+  private static final int LARGO_MAXIMO_CLAVE = 64;
+  // Movimientos que se aplican a la valuación por transacción
+  private static final int TRAMO_VALUACION = Integer.getInteger("clinica.valuacion.tramo", 200);
+
   private final InsumoRepository insumos;
   private final MovimientoRepository movimientos;
   private final ServicioRepository servicios;
+  private final DepositoRepository depositos;
+  private final LoteRepository lotes;
+  private final LotesFefo fefo;
+  private final StockEscrow escrow;
+  private final StockReservado reservado;
+  private final SaldoRepository saldos;
+  private final ValuacionStock valuacion;
+  private final BusEventos eventos;
+  private final CacheIdempotencia recientes = new CacheIdempotencia();
 
   public StockService(InsumoRepository i, MovimientoRepository m, ServicioRepository s) {
+    this(i, m, s, new Opciones());
+  }
+
+  /**
+   * @param opciones colaboradores opcionales (depósitos, lotes, cuotas, saldos, costos, reservas y eventos)
+   */
+  public StockService(InsumoRepository i, MovimientoRepository m, ServicioRepository s, Opciones opciones) {
     this.insumos = i;
     this.movimientos = m;
     this.servicios = s;
+    this.depositos = opciones.depositos;
+    this.lotes = opciones.lotes;
+    this.fefo = opciones.lotes != null ? new LotesFefo(opciones.lotes) : null;
+    this.escrow = opciones.cuotas != null ? new StockEscrow(opciones.cuotas) : null;
+    this.reservado = opciones.reservado;
+    this.saldos = opciones.saldos;
+    this.valuacion = opciones.costos != null ? new ValuacionStock(opciones.costos) : null;
+    this.eventos = opciones.eventos;
+  }
+
+  /**
+   * Colaboradores opcionales de StockService; los que no se indican quedan desactivados
+   */
+  public static final class Opciones {
+    private DepositoRepository depositos;
+    private LoteRepository lotes;
+    private EscrowRepository cuotas;
+    private SaldoRepository saldos;
+    private ValuacionRepository costos;
+    private StockReservado reservado = new StockReservado();
+    private BusEventos eventos;
+
+    /**
+     * Catálogo de depósitos (sin él solo se opera con la farmacia central)
+     */
+    public Opciones depositos(DepositoRepository depositos) {
+      this.depositos = depositos;
+      return this;
+    }
+
+    /**
+     * Lotes de cada insumo (sin él no se registran lotes ni se aplica FEFO)
+     */
+    public Opciones lotes(LoteRepository lotes) {
+      this.lotes = lotes;
+      return this;
+    }
+
+    /**
+     * Cuotas de escrow de los insumos más demandados (sin él todo el stock de un depósito está en una sola fila)
+     */
+    public Opciones cuotas(EscrowRepository cuotas) {
+      this.cuotas = cuotas;
+      return this;
+    }
+
+    /**
+     * Saldos de cierre por insumo (sin él no se puede consultar el stock a una fecha)
+     */
+    public Opciones saldos(SaldoRepository saldos) {
+      this.saldos = saldos;
+      return this;
+    }
+
+    /**
+     * Capas de costo y valuación por insumo (sin él no se valúa el stock)
+     */
+    public Opciones costos(ValuacionRepository costos) {
+      this.costos = costos;
+      return this;
+    }
+
+    /**
+     * Totales reservados por insumo y depósito, que los egresos no pueden tocar; el mismo que recibe
+     * ReservaService (por defecto uno propio)
+     */
+    public Opciones reservado(StockReservado reservado) {
+      if (reservado == null) {
+        throw new IllegalArgumentException("El total reservado es requerido");
+      }
+      this.reservado = reservado;
+      return this;
+    }
+
+    /**
+     * Bus donde se publica cada movimiento confirmado
+     */
+    public Opciones eventos(BusEventos eventos) {
+      this.eventos = eventos;
+      return this;
+    }
   }
 
   /**
-   * Registra el ingreso de un insumo al stock
+   * Registra el ingreso de un insumo al stock de la farmacia central
    * 
    * @throws IllegalArgumentException     si los parámetros son inválidos
    * @throws EntidadNoEncontradaException si no existe el insumo
    */
   public void registrarIngreso(String codigo, int cant, Usuario actor) {
+    registrarIngreso(codigo, cant, Deposito.CENTRAL, actor);
+  }
+
+  /**
+   * Registra el ingreso de un insumo al stock de un depósito
+   * 
+   * @throws IllegalArgumentException     si los parámetros son inválidos
+   * @throws EntidadNoEncontradaException si no existe el insumo o el depósito
+   */
+  public void registrarIngreso(String codigo, int cant, int depositoId, Usuario actor) {
+    registrarIngreso(codigo, cant, depositoId, actor, null);
+  }
+
+  /**
+   * Registra el ingreso de forma idempotente: si la clave ya se usó no registra nada y devuelve
+   * el movimiento original, así el cliente puede reintentar después de un timeout sin duplicarlo
+   * 
+   * @param claveIdempotencia clave única por operación elegida por el cliente (opcional)
+   * @return el movimiento registrado, o el original si es un reintento
+   * @throws IllegalArgumentException     si los parámetros son inválidos o la clave se usó para otra operación
+   * @throws EntidadNoEncontradaException si no existe el insumo o el depósito
+   */
+  public Movimiento registrarIngreso(String codigo, int cant, int depositoId, Usuario actor, String claveIdempotencia) {
+    return registrarIngreso(codigo, cant, depositoId, null, null, actor, claveIdempotencia);
+  }
+
+  /**
+   * Registra el ingreso de un lote: la cantidad se suma al stock del depósito y al lote, que se
+   * crea si no existe. Sin número de lote la cantidad queda como stock sin lote
+   * 
+   * @param numeroLote        número de lote del fabricante (opcional)
+   * @param vencimientoLote   vencimiento del lote (requerido si hay número de lote)
+   * @param claveIdempotencia clave única por operación elegida por el cliente (opcional)
+   * @return el movimiento registrado, o el original si es un reintento
+   * @throws IllegalArgumentException     si los parámetros son inválidos, el lote ya existe con otro
+   *                                      vencimiento o la clave se usó para otra operación
+   * @throws EntidadNoEncontradaException si no existe el insumo o el depósito
+   */
+  public Movimiento registrarIngreso(String codigo, int cant, int depositoId, String numeroLote,
+      LocalDate vencimientoLote, Usuario actor, String claveIdempotencia) {
+    return registrarIngreso(codigo, cant, depositoId, numeroLote, vencimientoLote, null, actor, claveIdempotencia);
+  }
+
+  /**
+   * Registra el ingreso de un lote con su costo de compra, que entra a la valuación del stock
+   * como una capa nueva. Sin costo, la cantidad entra al costo promedio vigente del insumo
+   * 
+   * @param costoUnitario costo de compra por unidad (opcional)
+   * @return el movimiento registrado, o el original si es un reintento
+   * @throws IllegalArgumentException     si los parámetros son inválidos, el costo es negativo, el lote
+   *                                      ya existe con otro vencimiento o la clave se usó para otra operación
+   * @throws EntidadNoEncontradaException si no existe el insumo o el depósito
+   */
+  public Movimiento registrarIngreso(String codigo, int cant, int depositoId, String numeroLote,
+      LocalDate vencimientoLote, BigDecimal costoUnitario, Usuario actor, String claveIdempotencia) {
+    MovimientoStockEvent evento = new MovimientoStockEvent();
+    evento.begin();
+
     // Validaciones
     if (codigo == null || codigo.trim().isEmpty()) {
       throw new IllegalArgumentException("El código no puede estar vacío");
@@ -44,30 +228,74 @@ public class StockService {
     if (cant <= 0) {
       throw new IllegalArgumentException("La cantidad debe ser positiva");
     }
+    if (costoUnitario != null && costoUnitario.signum() < 0) {
+      throw new IllegalArgumentException("El costo unitario no puede ser negativo");
+    }
     if (actor == null) {
       throw new IllegalArgumentException("El usuario es requerido");
     }
+    if (numeroLote != null) {
+      if (lotes == null) {
+        throw new IllegalArgumentException("Este servicio no registra lotes");
+      }
+      if (numeroLote.isBlank() || vencimientoLote == null) {
+        throw new IllegalArgumentException("El lote requiere número y vencimiento");
+      }
+    }
+    Movimiento previo = buscarReciente(claveIdempotencia, TipoMovimiento.INGRESO, codigo, cant, depositoId, null);
+    if (previo != null) {
+      return previo;
+    }
 
     // Lógica de negocio
-    Insumo ins = insumos.findByCodigo(codigo)
-        .orElseThrow(() -> new EntidadNoEncontradaException("Insumo no encontrado: " + codigo));
-
-    ins.aumentar(cant);
+    buscarInsumo(codigo);
+    validarDeposito(depositoId);
+    long generacionLotes = numeroLote != null ? fefo.generacion(codigo, depositoId) : 0;
 
     // Iniciar transacción para operaciones atómicas
     try {
       TransactionManager.beginTransaction();
       
-      // Actualizar stock
-      insumos.update(ins);
+      // Actualizar stock del depósito (una sola sentencia, sin leer antes)
+      insumos.ajustarStock(codigo, depositoId, cant);
+      Insumo ins = buscarInsumo(codigo);
 
       // Registrar movimiento
-      Movimiento mov = new Movimiento(0, TipoMovimiento.INGRESO, LocalDateTime.now(), cant, actor, ins, null);
+      Movimiento mov = new Movimiento(0, TipoMovimiento.INGRESO, LocalDateTime.now(), cant, actor, ins, null,
+          depositoId, null);
+      mov.setClaveIdempotencia(claveIdempotencia);
+      mov.setCostoUnitario(costoUnitario);
+      if (numeroLote != null) {
+        Lote lote = lotes.sumar(codigo, depositoId, numeroLote.trim(), vencimientoLote, cant);
+        if (!lote.getVencimiento().equals(vencimientoLote)) {
+          throw new IllegalArgumentException("El lote " + lote.getNumero() + " ya está registrado con vencimiento "
+              + lote.getVencimiento());
+        }
+        mov.setLotes(List.of(new ConsumoLote(lote.getId(), lote.getNumero(), lote.getVencimiento(), cant)));
+      }
       movimientos.save(mov);
+      if (numeroLote != null) {
+        lotes.registrarConsumos(mov, mov.getLotes());
+      }
+      valuar(mov);
       
       // Confirmar transacción
       TransactionManager.commit();
+      if (numeroLote != null) {
+        fefo.sumar(codigo, depositoId, generacionLotes, mov.getLotes());
+      }
+      recordar(mov);
+      registrarEvento(evento, mov);
+      publicar(mov);
+      return mov;
       
+    } catch (ClaveIdempotenciaDuplicadaException e) {
+      // Un reintento concurrente ganó: se deshace este y se devuelve el suyo
+      TransactionManager.rollback();
+      return original(claveIdempotencia, TipoMovimiento.INGRESO, codigo, cant, depositoId, null);
+    } catch (IllegalArgumentException e) {
+      TransactionManager.rollback();
+      throw e;
     } catch (SQLException e) {
       // Revertir transacción en caso de error
       TransactionManager.rollback();
@@ -80,13 +308,58 @@ public class StockService {
   }
 
   /**
-   * Registra el egreso de un insumo del stock
+   * Registra el egreso de un insumo del stock de la farmacia central
    * 
    * @throws IllegalArgumentException     si los parámetros son inválidos
    * @throws EntidadNoEncontradaException si no existe el insumo o servicio
+   * @throws InsumoNoDisponibleException  si el insumo está bloqueado (por ejemplo, vencido) o dado de baja
    * @throws StockInsuficienteException   si no hay suficiente stock
    */
   public void registrarEgreso(String codigo, int cant, int servicioId, Usuario actor) {
+    registrarEgreso(codigo, cant, servicioId, Deposito.CENTRAL, actor);
+  }
+
+  /**
+   * Registra el egreso de un insumo del stock de un depósito
+   * 
+   * @throws IllegalArgumentException     si los parámetros son inválidos
+   * @throws EntidadNoEncontradaException si no existe el insumo, servicio o depósito
+   * @throws InsumoNoDisponibleException  si el insumo está bloqueado (por ejemplo, vencido) o dado de baja
+   * @throws StockInsuficienteException   si el depósito no tiene suficiente stock disponible (sin contar el reservado)
+   */
+  public void registrarEgreso(String codigo, int cant, int servicioId, int depositoId, Usuario actor) {
+    registrarEgreso(codigo, cant, servicioId, depositoId, actor, null);
+  }
+
+  /**
+   * Registra el egreso de forma idempotente: si la clave ya se usó no registra nada y devuelve
+   * el movimiento original, así el cliente puede reintentar después de un timeout sin duplicarlo
+   * 
+   * @param claveIdempotencia clave única por operación elegida por el cliente (opcional)
+   * @return el movimiento registrado, o el original si es un reintento
+   * @throws IllegalArgumentException     si los parámetros son inválidos o la clave se usó para otra operación
+   * @throws EntidadNoEncontradaException si no existe el insumo, servicio o depósito
+   * @throws InsumoNoDisponibleException  si el insumo está bloqueado (por ejemplo, vencido) o dado de baja
+   * @throws StockInsuficienteException   si el depósito no tiene suficiente stock disponible (sin contar el reservado)
+   */
+  public Movimiento registrarEgreso(String codigo, int cant, int servicioId, int depositoId, Usuario actor,
+      String claveIdempotencia) {
+    return registrarEgreso(codigo, cant, servicioId, depositoId, actor, claveIdempotencia, 0);
+  }
+
+  /**
+   * Egreso que consume una reserva propia: esa cantidad no cuenta como reservada para este egreso
+   */
+  Movimiento registrarEgreso(String codigo, int cant, int servicioId, int depositoId, Usuario actor,
+      String claveIdempotencia, int reservaPropia) {
+    return egreso(codigo, cant, servicioId, depositoId, actor, claveIdempotencia, reservaPropia, false);
+  }
+
+  private Movimiento egreso(String codigo, int cant, int servicioId, int depositoId, Usuario actor,
+      String claveIdempotencia, int reservaPropia, boolean recargarCuota) {
+    MovimientoStockEvent evento = new MovimientoStockEvent();
+    evento.begin();
+
     // Validaciones
     if (codigo == null || codigo.trim().isEmpty()) {
       throw new IllegalArgumentException("El código no puede estar vacío");
@@ -97,38 +370,63 @@ public class StockService {
     if (actor == null) {
       throw new IllegalArgumentException("El usuario es requerido");
     }
+    Movimiento previo = buscarReciente(claveIdempotencia, TipoMovimiento.EGRESO, codigo, cant, depositoId, servicioId);
+    if (previo != null) {
+      return previo;
+    }
 
     // Lógica de negocio
-    Insumo ins = insumos.findByCodigo(codigo)
-        .orElseThrow(() -> new EntidadNoEncontradaException("Insumo no encontrado: " + codigo));
+    validarDisponible(buscarInsumo(codigo));
     Servicio srv = servicios.findById(servicioId)
         .orElseThrow(() -> new EntidadNoEncontradaException("Servicio no encontrado: " + servicioId));
-
-    if (ins.getStock() < cant) {
-      throw new StockInsuficienteException("Stock insuficiente. Disponible: " + ins.getStock());
-    }
+    validarDeposito(depositoId);
+    boolean enCuotas = usaCuotas(codigo, depositoId);
 
     // Iniciar transacción para operaciones atómicas
     try {
       TransactionManager.beginTransaction();
       
-      // Actualizar stock
-      ins.disminuir(cant);
-      insumos.update(ins);
+      // Descontar stock del depósito: la verificación y la resta son una sola sentencia
+      descontar(codigo, depositoId, cant, reservaPropia, enCuotas, recargarCuota);
+      Insumo ins = buscarInsumo(codigo);
+      // Los lotes salen por FEFO: primero los que vencen antes
+      LotesFefo.Plan plan = descontarLotes(codigo, depositoId, cant, ins, true);
 
       // Registrar movimiento
-      Movimiento mov = new Movimiento(0, TipoMovimiento.EGRESO, LocalDateTime.now(), cant, actor, ins, srv);
-      movimientos.save(mov);
+      Movimiento mov = new Movimiento(0, TipoMovimiento.EGRESO, LocalDateTime.now(), cant, actor, ins, srv,
+          depositoId, null);
+      mov.setClaveIdempotencia(claveIdempotencia);
+      registrarMovimiento(mov, plan);
 
       // Confirmar transacción
       TransactionManager.commit();
-
-      // Verificar si quedó en nivel crítico (después del commit)
-      if (ins.esCritico()) {
-        // Aquí podríamos agregar lógica para notificar stock crítico
-        System.out.println("¡ALERTA! Stock crítico en " + ins.getNombre());
+      if (plan != null) {
+        fefo.aplicar(plan);
       }
+      recordar(mov);
+      registrarEvento(evento, mov);
+      // Pronóstico, alertas y demás reacciones corren en los suscriptores del bus
+      publicar(mov);
+      return mov;
       
+    } catch (StockEscrow.CuotaAgotada e) {
+      // Se deshace para soltar la cuota y se reintenta recargándola del stock común
+      TransactionManager.rollback();
+      return egreso(codigo, cant, servicioId, depositoId, actor, claveIdempotencia, reservaPropia, true);
+    } catch (ClaveIdempotenciaDuplicadaException e) {
+      // Un reintento concurrente ganó: se deshace este y se devuelve el suyo
+      TransactionManager.rollback();
+      return original(claveIdempotencia, TipoMovimiento.EGRESO, codigo, cant, depositoId, servicioId);
+    } catch (StockInsuficienteException e) {
+      TransactionManager.rollback();
+      // El reintento de un egreso ya registrado puede quedarse sin stock antes de chocar con la clave
+      if (claveIdempotencia != null) {
+        Optional<Movimiento> registrado = movimientos.findByClaveIdempotencia(claveIdempotencia);
+        if (registrado.isPresent()) {
+          return original(claveIdempotencia, TipoMovimiento.EGRESO, codigo, cant, depositoId, servicioId);
+        }
+      }
+      throw e;
     } catch (SQLException e) {
       // Revertir transacción en caso de error
       TransactionManager.rollback();
@@ -140,6 +438,330 @@ public class StockService {
     }
   }
 
+  /**
+   * Transfiere stock de un depósito a otro en una sola transacción: o se mueven las dos
+   * cantidades o ninguna. Las filas se actualizan siempre en orden de id de depósito para
+   * que dos transferencias cruzadas no se bloqueen mutuamente
+   * 
+   * @throws IllegalArgumentException     si los parámetros son inválidos
+   * @throws EntidadNoEncontradaException si no existe el insumo o alguno de los depósitos
+   * @throws StockInsuficienteException   si el depósito origen no tiene suficiente stock
+   */
+  public void transferir(String codigo, int cant, int origenId, int destinoId, Usuario actor) {
+    transferir(codigo, cant, origenId, destinoId, actor, false);
+  }
+
+  private void transferir(String codigo, int cant, int origenId, int destinoId, Usuario actor, boolean recargarCuota) {
+    MovimientoStockEvent evento = new MovimientoStockEvent();
+    evento.begin();
+
+    // Validaciones
+    if (codigo == null || codigo.trim().isEmpty()) {
+      throw new IllegalArgumentException("El código no puede estar vacío");
+    }
+    if (cant <= 0) {
+      throw new IllegalArgumentException("La cantidad debe ser positiva");
+    }
+    if (origenId == destinoId) {
+      throw new IllegalArgumentException("El depósito destino debe ser distinto del origen");
+    }
+    if (actor == null) {
+      throw new IllegalArgumentException("El usuario es requerido");
+    }
+
+    // Lógica de negocio
+    buscarInsumo(codigo);
+    validarDeposito(origenId);
+    validarDeposito(destinoId);
+    long generacionDestino = fefo != null ? fefo.generacion(codigo, destinoId) : 0;
+    boolean enCuotas = usaCuotas(codigo, origenId);
+
+    try {
+      TransactionManager.beginTransaction();
+
+      if (origenId < destinoId) {
+        descontar(codigo, origenId, cant, 0, enCuotas, recargarCuota);
+        insumos.ajustarStock(codigo, destinoId, cant);
+      } else {
+        insumos.ajustarStock(codigo, destinoId, cant);
+        descontar(codigo, origenId, cant, 0, enCuotas, recargarCuota);
+      }
+      Insumo ins = buscarInsumo(codigo);
+      // Los lotes que salen del origen por FEFO llegan al destino con su número y vencimiento
+      LotesFefo.Plan plan = descontarLotes(codigo, origenId, cant, ins, true);
+      List<ConsumoLote> entradas = plan != null ? trasladarLotes(codigo, destinoId, plan.getConsumos()) : List.of();
+
+      Movimiento mov = new Movimiento(0, TipoMovimiento.TRANSFERENCIA, LocalDateTime.now(), cant, actor, ins, null,
+          origenId, destinoId);
+      registrarMovimiento(mov, plan);
+
+      TransactionManager.commit();
+      if (plan != null) {
+        fefo.aplicar(plan);
+        fefo.sumar(codigo, destinoId, generacionDestino, entradas);
+      }
+      registrarEvento(evento, mov);
+      publicar(mov);
+
+    } catch (StockEscrow.CuotaAgotada e) {
+      TransactionManager.rollback();
+      transferir(codigo, cant, origenId, destinoId, actor, true);
+    } catch (StockInsuficienteException e) {
+      TransactionManager.rollback();
+      throw e;
+    } catch (SQLException e) {
+      TransactionManager.rollback();
+      throw new DatabaseException("Error al registrar la transferencia", e);
+    } catch (Exception e) {
+      TransactionManager.rollback();
+      throw new RuntimeException("Error al registrar la transferencia", e);
+    }
+  }
+
+  /**
+   * Stock de un insumo en cada depósito; el total del insumo es la suma de estos valores
+   * 
+   * @throws EntidadNoEncontradaException si no existe el insumo
+   */
+  public Map<Integer, Integer> stockPorDeposito(String codigo) {
+    buscarInsumo(codigo);
+    return insumos.stockPorDeposito(codigo);
+  }
+
+  /**
+   * Stock total de un insumo al cierre de la fecha indicada (para hoy o después, el stock actual)
+   * Parte del saldo de cierre más cercano y lo corrige con los movimientos entre ambas fechas, así
+   * el costo depende de los movimientos desde ese saldo y no del historial completo. Sin saldos
+   * anteriores a la fecha, retrocede desde el primero posterior o desde el stock actual
+   * 
+   * @throws IllegalArgumentException     si la fecha es nula
+   * @throws IllegalStateException        si no hay repositorio de saldos
+   * @throws EntidadNoEncontradaException si no existe el insumo
+   */
+  public int stockAl(String codigo, LocalDate fecha) {
+    if (fecha == null) {
+      throw new IllegalArgumentException("La fecha es requerida");
+    }
+    if (saldos == null) {
+      throw new IllegalStateException("No hay saldos de cierre configurados");
+    }
+    buscarInsumo(codigo);
+
+    try {
+      // Una sola transacción: el saldo, los movimientos y el stock salen de la misma foto de la base
+      TransactionManager.beginTransaction();
+      int stock = calcularStockAl(codigo, fecha);
+      TransactionManager.commit();
+      return stock;
+
+    } catch (SQLException e) {
+      TransactionManager.rollback();
+      throw new DatabaseException("Error al consultar el stock al " + fecha, e);
+    } catch (RuntimeException e) {
+      TransactionManager.rollback();
+      throw e;
+    }
+  }
+
+  /**
+   * Registra el saldo de cierre de todos los insumos para un día ya cerrado; repetirlo no tiene efecto
+   * 
+   * @return cantidad de saldos registrados
+   * @throws IllegalArgumentException si el día todavía no cerró
+   * @throws IllegalStateException    si no hay repositorio de saldos
+   */
+  public int cerrarSaldos(LocalDate dia) {
+    if (dia == null || !CierreDiario.estaCerrado(dia)) {
+      throw new IllegalArgumentException("Solo se registran saldos de días cerrados");
+    }
+    if (saldos == null) {
+      throw new IllegalStateException("No hay saldos de cierre configurados");
+    }
+    return saldos.registrarCierre(dia);
+  }
+
+  /**
+   * Aplica a la valuación los movimientos anotados desde la última vez, en transacciones de a un
+   * tramo; la tarea programada la llama cada pocos segundos y las consultas de valuación antes de leer
+   * 
+   * @return cantidad de movimientos aplicados
+   * @throws IllegalStateException si no hay repositorio de valuación
+   */
+  public int aplicarValuaciones() {
+    if (valuacion == null) {
+      throw new IllegalStateException("No hay valuación de stock configurada");
+    }
+    // En este proceso se aplica de a uno; entre procesos, cada pendiente lo toma uno solo
+    synchronized (valuacion) {
+      int total = 0;
+      int leidos;
+      do {
+        try {
+          TransactionManager.beginTransaction();
+          leidos = valuacion.aplicarPendientes(TRAMO_VALUACION);
+          TransactionManager.commit();
+        } catch (SQLException e) {
+          TransactionManager.rollback();
+          throw new DatabaseException("Error al aplicar la valuación de stock", e);
+        } catch (RuntimeException e) {
+          TransactionManager.rollback();
+          throw e;
+        }
+        total += leidos;
+      } while (leidos == TRAMO_VALUACION);
+      return total;
+    }
+  }
+
+  /**
+   * Valuación actual de cada insumo por FIFO y por costo promedio, leída de lo acumulado con cada movimiento
+   * 
+   * @throws IllegalStateException si no hay repositorio de valuación
+   */
+  public List<ValuacionInsumo> valuacionStock() {
+    aplicarValuaciones();
+    return valuacion.valuacion();
+  }
+
+  /**
+   * Costo de lo consumido por servicio entre las fechas indicadas (ambas inclusive), por FIFO y por
+   * costo promedio. Los faltantes de inventario se informan con el servicio CostoConsumo.FALTANTES_INVENTARIO
+   * 
+   * @param servicioId null para todos los servicios
+   * @throws IllegalArgumentException si las fechas son inválidas
+   * @throws IllegalStateException    si no hay repositorio de valuación
+   */
+  public List<CostoConsumo> costoConsumo(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    if (desde == null || hasta == null || hasta.isBefore(desde)) {
+      throw new IllegalArgumentException("El período es inválido");
+    }
+    aplicarValuaciones();
+    return valuacion.consumo(desde, hasta, servicioId);
+  }
+
+  /**
+   * Bloquea de una vez todos los insumos vencidos y emite una alerta por cada uno que se bloqueó
+   * Los egresos de un insumo bloqueado se rechazan mirando solo su estado
+   *
+   * @return códigos de los insumos bloqueados en esta pasada
+   */
+  public List<String> bloquearVencidos() {
+    List<String> bloqueados;
+    try {
+      TransactionManager.beginTransaction();
+      bloqueados = insumos.bloquearVencidos(LocalDate.now());
+      TransactionManager.commit();
+    } catch (SQLException e) {
+      TransactionManager.rollback();
+      throw new DatabaseException("Error al bloquear los insumos vencidos", e);
+    } catch (RuntimeException e) {
+      TransactionManager.rollback();
+      throw e;
+    }
+    for (String codigo : bloqueados) {
+      GestorAlertas.emitir(TipoAlerta.VENCIMIENTO, codigo, "Insumo " + codigo + " bloqueado por vencimiento");
+    }
+    return bloqueados;
+  }
+
+  /**
+   * Lleva el stock del depósito a lo contado en un inventario físico, en una sola transacción: lee
+   * con bloqueo el stock de todos los códigos y registra un AJUSTE por cada diferencia. Los faltantes
+   * salen de los lotes por FEFO y no respetan reservas (ese stock ya no está); los sobrantes quedan sin lote
+   *
+   * @param contados cantidad contada por código (todos existentes en el catálogo)
+   * @return las diferencias encontradas, con el movimiento que ajustó cada una
+   */
+  List<DiferenciaInventario> ajustarInventario(int depositoId, Map<String, Integer> contados, Usuario actor) {
+    validarDeposito(depositoId);
+    List<DiferenciaInventario> diferencias = new ArrayList<>();
+    List<Movimiento> ajustes = new ArrayList<>();
+    List<LotesFefo.Plan> planes = new ArrayList<>();
+    try {
+      TransactionManager.beginTransaction();
+      Map<String, Integer> sistema = insumos.stockEnDeposito(depositoId, contados.keySet(), true);
+      for (Map.Entry<String, Integer> e : contados.entrySet()) {
+        String codigo = e.getKey();
+        int enSistema = sistema.getOrDefault(codigo, 0);
+        int diferencia = e.getValue() - enSistema;
+        if (diferencia == 0) {
+          continue;
+        }
+        LotesFefo.Plan plan = null;
+        Insumo ins;
+        if (diferencia > 0) {
+          insumos.ajustarStock(codigo, depositoId, diferencia);
+          ins = buscarInsumo(codigo);
+        } else {
+          descontar(codigo, depositoId, -diferencia, Integer.MAX_VALUE, false, false);
+          ins = buscarInsumo(codigo);
+          // Un faltante de inventario puede ser justamente lo vencido que se descartó
+          plan = descontarLotes(codigo, depositoId, -diferencia, ins, false);
+        }
+        Movimiento mov = new Movimiento(0, TipoMovimiento.AJUSTE, LocalDateTime.now(), diferencia, actor, ins, null,
+            depositoId, null);
+        registrarMovimiento(mov, plan);
+        ajustes.add(mov);
+        if (plan != null) {
+          planes.add(plan);
+        }
+        diferencias.add(new DiferenciaInventario(codigo, depositoId, enSistema, e.getValue(), mov.getId()));
+      }
+      TransactionManager.commit();
+    } catch (SQLException e) {
+      TransactionManager.rollback();
+      throw new DatabaseException("Error al ajustar el inventario del depósito " + depositoId, e);
+    } catch (RuntimeException e) {
+      TransactionManager.rollback();
+      throw e;
+    }
+    for (LotesFefo.Plan plan : planes) {
+      fefo.aplicar(plan);
+    }
+    for (Movimiento mov : ajustes) {
+      publicar(mov);
+    }
+    return diferencias;
+  }
+
+  private int calcularStockAl(String codigo, LocalDate fecha) {
+    LocalDate hoy = LocalDate.now();
+    if (!fecha.isBefore(hoy)) {
+      return buscarInsumo(codigo).getStock();
+    }
+    Optional<SaldoInsumo> anterior = saldos.findUltimoHasta(codigo, fecha);
+    if (anterior.isPresent()) {
+      SaldoInsumo a = anterior.get();
+      return a.getSaldo() + saldos.variacion(codigo, a.getFecha().plusDays(1), fecha);
+    }
+    Optional<SaldoInsumo> posterior = saldos.findPrimeroDesde(codigo, fecha.plusDays(1));
+    if (posterior.isPresent()) {
+      SaldoInsumo p = posterior.get();
+      return p.getSaldo() - saldos.variacion(codigo, fecha.plusDays(1), p.getFecha());
+    }
+    return buscarInsumo(codigo).getStock() - saldos.variacion(codigo, fecha.plusDays(1), hoy);
+  }
+
+  /**
+   * Lotes con stock de un insumo en todos los depósitos, del más próximo a vencer al más lejano
+   * 
+   * @throws EntidadNoEncontradaException si no existe el insumo
+   */
+  public List<Lote> lotesDe(String codigo) {
+    buscarInsumo(codigo);
+    return lotes != null ? lotes.findByInsumo(codigo) : List.of();
+  }
+
+  /**
+   * Obtiene la lista de depósitos (solo la farmacia central si no hay catálogo de depósitos)
+   */
+  public List<Deposito> obtenerDepositos() {
+    if (depositos == null) {
+      return List.of(new Deposito(Deposito.CENTRAL, "Farmacia central", true));
+    }
+    return depositos.findAll();
+  }
+
   /**
    * Obtiene la lista de insumos con stock crítico
    * 
@@ -194,4 +816,274 @@ public class StockService {
   public List<Servicio> obtenerTodosLosServicios() {
     return servicios.findAll();
   }
-}
\ No newline at end of file
+
+  /**
+   * Movimiento ya registrado con la clave según la caché de claves recientes; null si la clave
+   * no está en la caché (un reintento más viejo lo detecta la clave primaria al guardar)
+   */
+  private Movimiento buscarReciente(String clave, TipoMovimiento tipo, String codigo, int cant, int depositoId,
+      Integer servicioId) {
+    if (clave == null) {
+      return null;
+    }
+    if (clave.isBlank() || clave.length() > LARGO_MAXIMO_CLAVE) {
+      throw new IllegalArgumentException("La clave de idempotencia debe tener entre 1 y " + LARGO_MAXIMO_CLAVE
+          + " caracteres");
+    }
+    Movimiento previo = recientes.get(clave);
+    if (previo != null) {
+      verificarMismaOperacion(previo, tipo, codigo, cant, depositoId, servicioId);
+    }
+    return previo;
+  }
+
+  /**
+   * Movimiento original de una clave que ya estaba registrada en la base
+   */
+  private Movimiento original(String clave, TipoMovimiento tipo, String codigo, int cant, int depositoId,
+      Integer servicioId) {
+    Movimiento previo = movimientos.findByClaveIdempotencia(clave)
+        .orElseThrow(() -> new DatabaseException("No se encontró el movimiento de la clave " + clave));
+    verificarMismaOperacion(previo, tipo, codigo, cant, depositoId, servicioId);
+    recientes.put(clave, previo);
+    return previo;
+  }
+
+  private void recordar(Movimiento mov) {
+    if (mov.getClaveIdempotencia() != null) {
+      recientes.put(mov.getClaveIdempotencia(), mov);
+    }
+  }
+
+  /**
+   * Una clave reusada debe repetir la misma operación: tipo, insumo (sin distinguir mayúsculas, como
+   * lo guardan las cuotas y los lotes), cantidad, depósito y servicio (null en los ingresos)
+   */
+  private static void verificarMismaOperacion(Movimiento previo, TipoMovimiento tipo, String codigo, int cant,
+      int depositoId, Integer servicioId) {
+    Integer servicioPrevio = previo.getServicio() != null ? previo.getServicio().getId() : null;
+    if (previo.getTipo() != tipo || !previo.getInsumo().getCodigo().equalsIgnoreCase(codigo.trim())
+        || previo.getCantidad() != cant || previo.getDepositoId() != depositoId
+        || !Objects.equals(servicioPrevio, servicioId)) {
+      throw new IllegalArgumentException("La clave de idempotencia " + previo.getClaveIdempotencia()
+          + " ya se usó para otra operación");
+    }
+  }
+
+  Insumo buscarInsumo(String codigo) {
+    return insumos.findByCodigo(codigo)
+        .orElseThrow(() -> new EntidadNoEncontradaException("Insumo no encontrado: " + codigo));
+  }
+
+  /**
+   * @throws InsumoNoDisponibleException si el insumo está bloqueado o dado de baja
+   */
+  void validarDisponible(Insumo ins) {
+    if (ins.getEstado() != EstadoInsumo.ACTIVO) {
+      throw new InsumoNoDisponibleException("El insumo " + ins.getCodigo() + " está " + ins.getEstado()
+          + " y no admite egresos");
+    }
+  }
+
+  void validarDeposito(int depositoId) {
+    boolean existe = depositos != null
+        ? depositos.findById(depositoId).isPresent()
+        : depositoId == Deposito.CENTRAL;
+    if (!existe) {
+      throw new EntidadNoEncontradaException("Depósito no encontrado: " + depositoId);
+    }
+  }
+
+  /**
+   * Indica si un egreso del insumo en el depósito puede salir de una cuota de escrow: el insumo
+   * está en cuotas y no hay reservas ni lotes que respetar (esos egresos usan el stock común)
+   * Se decide antes de la transacción para no leer lotes dentro de ella antes de bloquear el stock;
+   * las reservas se vuelven a mirar con la cuota ya bloqueada (verificarSinReservas)
+   */
+  private boolean usaCuotas(String codigo, int depositoId) {
+    return escrow != null && escrow.aplica(codigo)
+        && reservado.de(codigo, depositoId) == 0
+        && (fefo == null || !fefo.tieneLotes(codigo, depositoId));
+  }
+
+  /**
+   * Descuenta stock del depósito sin tocar lo reservado (salvo la reserva propia que se está
+   * consumiendo) o lanza StockInsuficienteException sin modificar nada
+   * 
+   * @param enCuotas      descontar de una cuota de escrow en lugar del stock común
+   * @param recargarCuota reintento después de CuotaAgotada: recargar la cuota del stock común
+   */
+  private void descontar(String codigo, int depositoId, int cant, int reservaPropia, boolean enCuotas,
+      boolean recargarCuota) {
+    if (enCuotas) {
+      if (!recargarCuota) {
+        escrow.descontar(codigo, depositoId, cant);
+        verificarSinReservas(codigo, depositoId);
+        return;
+      }
+      if (escrow.recargarYDescontar(codigo, depositoId, cant)) {
+        verificarSinReservas(codigo, depositoId);
+        return;
+      }
+    }
+    int intocable = Math.max(0, reservado.de(codigo, depositoId) - reservaPropia);
+    if (insumos.ajustarStock(codigo, depositoId, -cant, intocable)) {
+      verificarReservas(codigo, depositoId, cant, reservaPropia, intocable);
+      return;
+    }
+    // Lo que falta puede estar repartido en cuotas de escrow: se juntan en el común y se reintenta
+    if (escrow != null && escrow.aplica(codigo) && escrow.consolidar(codigo, depositoId) > 0
+        && insumos.ajustarStock(codigo, depositoId, -cant, intocable)) {
+      verificarReservas(codigo, depositoId, cant, reservaPropia, intocable);
+      return;
+    }
+    throw new StockInsuficienteException("Stock insuficiente en el depósito " + depositoId
+        + ". Disponible: " + Math.max(0, insumos.stockEnDeposito(codigo, depositoId) - intocable)
+        + (intocable > 0 ? " (reservado: " + intocable + ")" : ""));
+  }
+
+  /**
+   * Con la cuota ya bloqueada por el descuento, confirma que sigue sin haber reservas: una reserva
+   * tomada después de decidir usar cuotas obliga a deshacer y reintentar por el stock común, que
+   * las respeta (el reintento vuelve a evaluar usaCuotas)
+   */
+  private void verificarSinReservas(String codigo, int depositoId) {
+    if (reservado.de(codigo, depositoId) != 0) {
+      throw StockEscrow.CuotaAgotada.INSTANCIA;
+    }
+  }
+
+  /**
+   * Con la fila del depósito ya bloqueada por el descuento, confirma que lo que queda cubre lo
+   * reservado: una reserva tomada entre la lectura de lo reservado y el bloqueo esperó a ese
+   * bloqueo, así que ya está sumada y no se pisa
+   */
+  private void verificarReservas(String codigo, int depositoId, int cant, int reservaPropia, int intocable) {
+    int ahora = Math.max(0, reservado.de(codigo, depositoId) - reservaPropia);
+    if (ahora <= intocable) {
+      return;
+    }
+    int queda = insumos.stockEnDeposito(codigo, depositoId);
+    if (queda < ahora) {
+      throw new StockInsuficienteException("Stock insuficiente en el depósito " + depositoId
+          + ". Disponible: " + Math.max(0, queda + cant - ahora) + " (reservado: " + ahora + ")");
+    }
+  }
+
+  /**
+   * Elige por FEFO los lotes de los que sale la cantidad y los descuenta en la transacción en curso
+   * Se llama después de descontar el stock del depósito, que ya bloquea la fila del insumo en el
+   * depósito: los egresos del mismo insumo y depósito eligen lotes de a uno
+   *
+   * @param sinVencidos no tomar lotes vencidos (egresos y transferencias)
+   * @return null si el servicio no registra lotes
+   * @throws StockInsuficienteException si sinVencidos y lo que queda sin vencer no alcanza
+   */
+  private LotesFefo.Plan descontarLotes(String codigo, int depositoId, int cant, Insumo ins, boolean sinVencidos) {
+    if (fefo == null) {
+      return null;
+    }
+    int stockAntes = insumos.stockEnDeposito(codigo, depositoId) + cant;
+    LocalDate vigenteDesde = sinVencidos ? LocalDate.now() : null;
+    LotesFefo.Plan plan = fefo.planificar(codigo, depositoId, cant, stockAntes, ins.getFechaVencimiento(), vigenteDesde);
+    if (plan != null && descontarDeLotes(plan.getConsumos())) {
+      return plan;
+    }
+    // La cola en memoria no coincidía con la base (otra instancia u operaciones concurrentes) o solo
+    // quedaba stock vencido: la base decide
+    try {
+      plan = fefo.planificarDesdeBase(codigo, depositoId, cant, stockAntes, ins.getFechaVencimiento(), vigenteDesde);
+    } catch (StockInsuficienteException e) {
+      GestorAlertas.emitir(TipoAlerta.VENCIMIENTO, codigo, "Stock vencido de " + codigo + " sin retirar del depósito "
+          + depositoId);
+      throw e;
+    }
+    if (plan == null || !descontarDeLotes(plan.getConsumos())) {
+      throw new DatabaseException("Los lotes de " + codigo + " no coinciden con el stock del depósito " + depositoId);
+    }
+    return plan;
+  }
+
+  /**
+   * Descuenta cada lote con una sentencia condicionada a su cantidad; si alguno no alcanza
+   * devuelve lo ya descontado y retorna false
+   */
+  private boolean descontarDeLotes(List<ConsumoLote> consumos) {
+    List<ConsumoLote> hechos = new ArrayList<>();
+    for (ConsumoLote c : consumos) {
+      if (c.esSinLote()) {
+        continue;
+      }
+      if (!lotes.ajustar(c.getLoteId(), -c.getCantidad())) {
+        for (ConsumoLote h : hechos) {
+          lotes.ajustar(h.getLoteId(), h.getCantidad());
+        }
+        return false;
+      }
+      hechos.add(c);
+    }
+    return true;
+  }
+
+  /**
+   * Suma al depósito destino los lotes que salieron del origen
+   */
+  private List<ConsumoLote> trasladarLotes(String codigo, int destinoId, List<ConsumoLote> consumos) {
+    List<ConsumoLote> entradas = new ArrayList<>();
+    for (ConsumoLote c : consumos) {
+      if (!c.esSinLote()) {
+        Lote destino = lotes.sumar(codigo, destinoId, c.getNumero(), c.getVencimiento(), c.getCantidad());
+        entradas.add(new ConsumoLote(destino.getId(), destino.getNumero(), destino.getVencimiento(), c.getCantidad()));
+      }
+    }
+    return entradas;
+  }
+
+  /**
+   * Guarda el movimiento y, si salió de lotes, de cuáles
+   */
+  private void registrarMovimiento(Movimiento mov, LotesFefo.Plan plan) {
+    if (plan != null) {
+      mov.setLotes(plan.getConsumos());
+    }
+    movimientos.save(mov);
+    if (plan != null) {
+      lotes.registrarConsumos(mov, plan.getConsumos());
+    }
+    valuar(mov);
+  }
+
+  /**
+   * Anota el movimiento guardado para valuarlo, en la transacción en curso
+   */
+  private void valuar(Movimiento mov) {
+    if (valuacion != null) {
+      valuacion.encolar(mov);
+    }
+  }
+
+  /**
+   * Publica el movimiento confirmado en el bus de eventos, si hay uno
+   */
+  private void publicar(Movimiento mov) {
+    if (eventos != null) {
+      eventos.publicar(mov);
+    }
+  }
+
+  /**
+   * Completa y emite el evento JFR del movimiento confirmado
+   */
+  private void registrarEvento(MovimientoStockEvent evento, Movimiento mov) {
+    evento.end();
+    if (evento.shouldCommit()) {
+      evento.tipo = mov.getTipo().name();
+      evento.codigo = mov.getInsumo().getCodigo();
+      evento.cantidad = mov.getCantidad();
+      evento.servicioId = mov.getServicio() != null ? mov.getServicio().getId() : 0;
+      evento.legajo = mov.getUsuario().getLegajo();
+      evento.stockResultante = mov.getInsumo().getStock();
+      evento.commit();
+    }
+  }
+}
@@ -0,0 +1,329 @@
+package usecase;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import domain.CostoConsumo;
+import domain.Deposito;
+import domain.Insumo;
+import domain.Lote;
+import domain.Movimiento;
+import domain.Servicio;
+import domain.Usuario;
+import domain.ValuacionInsumo;
+import infra.metricas.Histograma;
+import infra.metricas.Metricas;
+import infra.traza.Span;
+import infra.traza.Trazador;
+import repo.InsumoRepository;
+import repo.MovimientoRepository;
+import repo.ServicioRepository;
+
+/**
+ * StockService que mide la latencia y traza cada operación
+ */
+public class StockServiceInstrumentado extends StockService {
+  private static final Histograma REGISTRAR_INGRESO = Metricas.histograma("stock.registrarIngreso");
+  private static final Histograma REGISTRAR_EGRESO = Metricas.histograma("stock.registrarEgreso");
+  private static final Histograma TRANSFERIR = Metricas.histograma("stock.transferir");
+  private static final Histograma STOCK_POR_DEPOSITO = Metricas.histograma("stock.stockPorDeposito");
+  private static final Histograma STOCK_AL = Metricas.histograma("stock.stockAl");
+  private static final Histograma CERRAR_SALDOS = Metricas.histograma("stock.cerrarSaldos");
+  private static final Histograma BLOQUEAR_VENCIDOS = Metricas.histograma("stock.bloquearVencidos");
+  private static final Histograma APLICAR_VALUACIONES = Metricas.histograma("stock.aplicarValuaciones");
+  private static final Histograma VALUACION = Metricas.histograma("stock.valuacionStock");
+  private static final Histograma COSTO_CONSUMO = Metricas.histograma("stock.costoConsumo");
+  private static final Histograma LOTES = Metricas.histograma("stock.lotesDe");
+  private static final Histograma DEPOSITOS = Metricas.histograma("stock.obtenerDepositos");
+  private static final Histograma INSUMOS_CRITICOS = Metricas.histograma("stock.obtenerInsumosCriticos");
+  private static final Histograma PROXIMOS_A_VENCER = Metricas.histograma("stock.obtenerInsumosProximosAVencer");
+  private static final Histograma TODOS_LOS_INSUMOS = Metricas.histograma("stock.obtenerTodosLosInsumos");
+  private static final Histograma HAY_STOCK_SUFICIENTE = Metricas.histograma("stock.hayStockSuficiente");
+  private static final Histograma TODOS_LOS_SERVICIOS = Metricas.histograma("stock.obtenerTodosLosServicios");
+
+  public StockServiceInstrumentado(InsumoRepository i, MovimientoRepository m, ServicioRepository s) {
+    super(i, m, s);
+  }
+
+  public StockServiceInstrumentado(InsumoRepository i, MovimientoRepository m, ServicioRepository s,
+      Opciones opciones) {
+    super(i, m, s, opciones);
+  }
+
+  @Override
+  public Movimiento registrarIngreso(String codigo, int cant, int depositoId, String numeroLote,
+      LocalDate vencimientoLote, BigDecimal costoUnitario, Usuario actor, String claveIdempotencia) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.registrarIngreso");
+    try {
+      return super.registrarIngreso(codigo, cant, depositoId, numeroLote, vencimientoLote, costoUnitario, actor,
+          claveIdempotencia);
+    } catch (RuntimeException e) {
+      REGISTRAR_INGRESO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      REGISTRAR_INGRESO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Movimiento registrarEgreso(String codigo, int cant, int servicioId, int depositoId, Usuario actor,
+      String claveIdempotencia) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.registrarEgreso");
+    try {
+      return super.registrarEgreso(codigo, cant, servicioId, depositoId, actor, claveIdempotencia);
+    } catch (RuntimeException e) {
+      REGISTRAR_EGRESO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      REGISTRAR_EGRESO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public void transferir(String codigo, int cant, int origenId, int destinoId, Usuario actor) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.transferir");
+    try {
+      super.transferir(codigo, cant, origenId, destinoId, actor);
+    } catch (RuntimeException e) {
+      TRANSFERIR.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      TRANSFERIR.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public Map<Integer, Integer> stockPorDeposito(String codigo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.stockPorDeposito");
+    try {
+      return super.stockPorDeposito(codigo);
+    } catch (RuntimeException e) {
+      STOCK_POR_DEPOSITO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      STOCK_POR_DEPOSITO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int stockAl(String codigo, LocalDate fecha) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.stockAl");
+    try {
+      return super.stockAl(codigo, fecha);
+    } catch (RuntimeException e) {
+      STOCK_AL.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      STOCK_AL.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int cerrarSaldos(LocalDate dia) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.cerrarSaldos");
+    try {
+      return super.cerrarSaldos(dia);
+    } catch (RuntimeException e) {
+      CERRAR_SALDOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      CERRAR_SALDOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<String> bloquearVencidos() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.bloquearVencidos");
+    try {
+      return super.bloquearVencidos();
+    } catch (RuntimeException e) {
+      BLOQUEAR_VENCIDOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      BLOQUEAR_VENCIDOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public int aplicarValuaciones() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.aplicarValuaciones");
+    try {
+      return super.aplicarValuaciones();
+    } catch (RuntimeException e) {
+      APLICAR_VALUACIONES.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      APLICAR_VALUACIONES.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<ValuacionInsumo> valuacionStock() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.valuacionStock");
+    try {
+      return super.valuacionStock();
+    } catch (RuntimeException e) {
+      VALUACION.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      VALUACION.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<CostoConsumo> costoConsumo(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.costoConsumo");
+    try {
+      return super.costoConsumo(desde, hasta, servicioId);
+    } catch (RuntimeException e) {
+      COSTO_CONSUMO.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      COSTO_CONSUMO.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Lote> lotesDe(String codigo) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.lotesDe");
+    try {
+      return super.lotesDe(codigo);
+    } catch (RuntimeException e) {
+      LOTES.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      LOTES.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Deposito> obtenerDepositos() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.obtenerDepositos");
+    try {
+      return super.obtenerDepositos();
+    } catch (RuntimeException e) {
+      DEPOSITOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      DEPOSITOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Insumo> obtenerInsumosCriticos() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.obtenerInsumosCriticos");
+    try {
+      return super.obtenerInsumosCriticos();
+    } catch (RuntimeException e) {
+      INSUMOS_CRITICOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      INSUMOS_CRITICOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Insumo> obtenerInsumosProximosAVencer(int diasAlerta) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.obtenerInsumosProximosAVencer");
+    try {
+      return super.obtenerInsumosProximosAVencer(diasAlerta);
+    } catch (RuntimeException e) {
+      PROXIMOS_A_VENCER.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      PROXIMOS_A_VENCER.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Insumo> obtenerTodosLosInsumos() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.obtenerTodosLosInsumos");
+    try {
+      return super.obtenerTodosLosInsumos();
+    } catch (RuntimeException e) {
+      TODOS_LOS_INSUMOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      TODOS_LOS_INSUMOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public boolean hayStockSuficiente(String codigo, int cantidad) {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.hayStockSuficiente");
+    try {
+      return super.hayStockSuficiente(codigo, cantidad);
+    } catch (RuntimeException e) {
+      HAY_STOCK_SUFICIENTE.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      HAY_STOCK_SUFICIENTE.registrar(System.nanoTime() - inicio);
+    }
+  }
+
+  @Override
+  public List<Servicio> obtenerTodosLosServicios() {
+    long inicio = System.nanoTime();
+    Span span = Trazador.iniciarRaiz("stock.obtenerTodosLosServicios");
+    try {
+      return super.obtenerTodosLosServicios();
+    } catch (RuntimeException e) {
+      TODOS_LOS_SERVICIOS.registrarError();
+      span.marcarError(e);
+      throw e;
+    } finally {
+      span.close();
+      TODOS_LOS_SERVICIOS.registrar(System.nanoTime() - inicio);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package usecase;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import domain.CapaCosto;
+import domain.CostoConsumo;
+import domain.Movimiento;
+import domain.ValuacionInsumo;
+import domain.ValuacionPendiente;
+import domain.enums.TipoMovimiento;
+import repo.ValuacionRepository;
+
+/**
+ * Valuación incremental del stock por FIFO y por costo promedio ponderado
+ * Cada movimiento solo anota un pendiente en la transacción que lo registra, sin bloquear la
+ * valuación de su insumo: así los egresos de un mismo insumo no se serializan en ella y siguen
+ * repartidos por depósito y por cuota de escrow. Los pendientes se aplican después en el orden en
+ * que se anotaron: las entradas agregan una capa al final de la cola y recalculan el promedio, y las
+ * salidas consumen las capas más viejas y suman su costo al consumido del día y servicio. Así el
+ * valor del inventario y el costo de un período se leen de lo acumulado sin recorrer movimientos.
+ * Las transferencias no cambian la valuación (es por insumo, no por depósito). Las entradas sin
+ * costo (sobrantes de inventario o ingresos sin costo informado) entran al costo promedio vigente
+ */
+final class ValuacionStock {
+  private static final int ESCALA_IMPORTE = 4;
+  private static final int ESCALA_PROMEDIO = 6;
+
+  private final ValuacionRepository valuaciones;
+
+  ValuacionStock(ValuacionRepository valuaciones) {
+    this.valuaciones = valuaciones;
+  }
+
+  /**
+   * Anota un movimiento ya guardado para valuarlo, dentro de su transacción
+   */
+  void encolar(Movimiento mov) {
+    if (mov.getTipo() == TipoMovimiento.TRANSFERENCIA) {
+      return;
+    }
+    int servicioId = mov.getServicio() != null ? mov.getServicio().getId() : CostoConsumo.FALTANTES_INVENTARIO;
+    valuaciones.encolar(new ValuacionPendiente(0, mov.getId(), mov.getInsumo().getCodigo(), mov.getTipo(),
+        mov.getCantidad(), mov.getCostoUnitario(), servicioId, mov.getFecha()));
+  }
+
+  /**
+   * Aplica los pendientes más viejos, dentro de una transacción. Cada pendiente se toma antes de
+   * aplicarlo, así dos aplicaciones concurrentes nunca aplican el mismo
+   *
+   * @return cantidad de pendientes leídos (si es el límite, puede haber más)
+   */
+  int aplicarPendientes(int limite) {
+    List<ValuacionPendiente> pendientes = valuaciones.pendientes(limite);
+    // Valuaciones ya bloqueadas en esta transacción, con lo aplicado hasta ahora
+    Map<String, ValuacionInsumo> bloqueadas = new HashMap<>();
+    for (ValuacionPendiente p : pendientes) {
+      if (!valuaciones.tomarPendiente(p.getId())) {
+        continue;
+      }
+      ValuacionInsumo v = bloqueadas.get(p.getCodigo());
+      if (v == null) {
+        v = valuaciones.bloquear(p.getCodigo());
+      }
+      v = p.esEntrada() ? entrada(v, p) : salida(v, p);
+      valuaciones.guardar(v);
+      bloqueadas.put(p.getCodigo(), v);
+    }
+    return pendientes.size();
+  }
+
+  private ValuacionInsumo entrada(ValuacionInsumo v, ValuacionPendiente p) {
+    int cant = p.getCantidad();
+    BigDecimal costo = p.getCostoUnitario() != null ? p.getCostoUnitario() : v.getCostoPromedio();
+    BigDecimal valorEntrada = costo.multiply(BigDecimal.valueOf(cant));
+    int cantidad = v.getCantidad() + cant;
+    // Promedio ponderado: (valor anterior al promedio + valor de la entrada) / cantidad nueva
+    BigDecimal promedio = v.getCostoPromedio().multiply(BigDecimal.valueOf(v.getCantidad()))
+        .add(valorEntrada)
+        .divide(BigDecimal.valueOf(cantidad), ESCALA_PROMEDIO, RoundingMode.HALF_EVEN);
+
+    valuaciones.agregarCapa(v.getCodigo(), cant, costo.setScale(ESCALA_IMPORTE, RoundingMode.HALF_EVEN),
+        p.getMovimientoId(), p.getFecha());
+    return new ValuacionInsumo(v.getCodigo(), cantidad,
+        v.getValorFifo().add(valorEntrada).setScale(ESCALA_IMPORTE, RoundingMode.HALF_EVEN), promedio);
+  }
+
+  private ValuacionInsumo salida(ValuacionInsumo v, ValuacionPendiente p) {
+    int cant = Math.abs(p.getCantidad());
+    BigDecimal deCapas = BigDecimal.ZERO;
+    int restante = cant;
+    for (CapaCosto capa : valuaciones.capasParaSalida(v.getCodigo(), cant)) {
+      int toma = Math.min(restante, capa.getCantidad());
+      deCapas = deCapas.add(capa.getCostoUnitario().multiply(BigDecimal.valueOf(toma)));
+      valuaciones.consumirCapa(capa.getId(), capa.getCantidad() - toma);
+      restante -= toma;
+      if (restante == 0) {
+        break;
+      }
+    }
+    // Stock que no estaba en capas (anterior a la valuación): sale al costo promedio
+    BigDecimal promedio = v.getCostoPromedio();
+    BigDecimal costoFifo = deCapas.add(promedio.multiply(BigDecimal.valueOf(restante)))
+        .setScale(ESCALA_IMPORTE, RoundingMode.HALF_EVEN);
+    BigDecimal costoPromedio = promedio.multiply(BigDecimal.valueOf(cant))
+        .setScale(ESCALA_IMPORTE, RoundingMode.HALF_EVEN);
+
+    valuaciones.sumarConsumo(p.getFecha().toLocalDate(), p.getServicioId(), v.getCodigo(), cant, costoFifo,
+        costoPromedio);
+    return new ValuacionInsumo(v.getCodigo(), Math.max(v.getCantidad() - (cant - restante), 0),
+        v.getValorFifo().subtract(deCapas).max(BigDecimal.ZERO).setScale(ESCALA_IMPORTE, RoundingMode.HALF_EVEN),
+        promedio);
+  }
+
+  /**
+   * Valuación de todos los insumos
+   */
+  List<ValuacionInsumo> valuacion() {
+    return valuaciones.findAll();
+  }
+
+  /**
+   * Costo de lo consumido entre las fechas indicadas por servicio, sumando los días del período
+   */
+  List<CostoConsumo> consumo(LocalDate desde, LocalDate hasta, Integer servicioId) {
+    return valuaciones.consumoPorServicio(desde, hasta, servicioId);
+  }
+}